@@ -0,0 +1,116 @@
+package ch.epfl.rechor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Mesure la durée de phases nommées, par exemple celles du démarrage de l'application, et en
+ * produit un rapport. Les phases peuvent être mesurées simultanément par plusieurs fils
+ * d'exécution ; elles apparaissent dans le rapport dans l'ordre de leur achèvement.
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class PhaseTimer {
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Une phase à mesurer.
+     *
+     * @param <T> le type du résultat de la phase
+     * @param <E> le type de l'exception que la phase peut lever
+     */
+    @FunctionalInterface
+    public interface Phase<T, E extends Exception> {
+        /**
+         * Exécute la phase.
+         *
+         * @return le résultat de la phase
+         * @throws E si la phase échoue
+         */
+        T run() throws E;
+    }
+
+    /**
+     * La durée d'une phase achevée.
+     *
+     * @param name  le nom de la phase
+     * @param nanos la durée de la phase, en nanosecondes
+     */
+    public record Timing(String name, long nanos) {
+        /**
+         * Vérifie que le nom n'est pas nul et que la durée est positive.
+         *
+         * @throws NullPointerException     si le nom est nul
+         * @throws IllegalArgumentException si la durée est négative
+         */
+        public Timing {
+            Objects.requireNonNull(name);
+            Preconditions.checkArgument(nanos >= 0);
+        }
+    }
+
+    private final List<Timing> timings = new ArrayList<>();
+
+    /**
+     * Exécute la phase donnée et enregistre sa durée, qu'elle réussisse ou non.
+     *
+     * @param name  le nom de la phase
+     * @param phase la phase à exécuter
+     * @param <T>   le type du résultat de la phase
+     * @param <E>   le type de l'exception que la phase peut lever
+     * @return le résultat de la phase
+     * @throws E si la phase échoue
+     */
+    public <T, E extends Exception> T time(String name, Phase<T, E> phase) throws E {
+        long start = System.nanoTime();
+        try {
+            return phase.run();
+        } finally {
+            record(name, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Enregistre la durée d'une phase mesurée par ailleurs.
+     *
+     * @param name  le nom de la phase
+     * @param nanos la durée de la phase, en nanosecondes
+     * @throws IllegalArgumentException si la durée est négative
+     */
+    public void record(String name, long nanos) {
+        Timing timing = new Timing(name, nanos);
+        synchronized (timings) {
+            timings.add(timing);
+        }
+    }
+
+    /**
+     * Retourne la durée des phases achevées, dans l'ordre de leur achèvement.
+     *
+     * @return la liste immuable des durées
+     */
+    public List<Timing> timings() {
+        synchronized (timings) {
+            return List.copyOf(timings);
+        }
+    }
+
+    /**
+     * Retourne un rapport donnant, à raison d'une ligne par phase achevée, son nom et sa durée
+     * en millisecondes.
+     *
+     * @return le rapport
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (Timing timing : timings()) {
+            report.append(String.format(Locale.ROOT, "%-24s %8.1f ms%n",
+                    timing.name(), timing.nanos() / NANOS_PER_MILLI));
+        }
+        return report.toString();
+    }
+}
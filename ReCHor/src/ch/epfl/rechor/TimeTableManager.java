@@ -0,0 +1,277 @@
+package ch.epfl.rechor;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Gestionnaire de l'horaire utilisé par l'application, qui le recharge lorsqu'une nouvelle version
+ * en est exportée, sans interrompre les recherches.
+ * <p>
+ * Le gestionnaire surveille l'horaire au moyen d'un {@link WatchService}. Lorsqu'il est modifié,
+ * et une fois qu'aucune modification n'a eu lieu pendant une période de calme, la nouvelle
+ * version est chargée et son index des arrêts construit en arrière-plan, puis elle remplace
+ * atomiquement l'ancienne pour les recherches suivantes, et les auditeurs en sont informés afin
+ * d'invalider leurs caches (profils, index des arrêts). Les recherches en cours se terminent avec
+ * l'ancienne version, qu'elles ont obtenue de {@link #current()}. Le gestionnaire ne conservant
+ * aucune référence vers l'ancienne version, ses fichiers sont libérés dès qu'elle n'est plus
+ * utilisée.
+ * </p>
+ * <p>
+ * Les fichiers d'un horaire étant projetés en mémoire, ils ne doivent pas être réécrits sur
+ * place : une nouvelle version doit être écrite à côté, puis remplacer l'ancienne par un
+ * renommage ou par le changement d'un lien symbolique. Si le chargement de la nouvelle version
+ * échoue, par exemple parce qu'elle est incomplète, l'ancienne version reste utilisée.
+ * </p>
+ * <p>
+ * Les mises à jour en temps réel appliquées à une version ({@link TimeTableStartup#realTime()})
+ * ne sont pas reportées sur la suivante, dont les index de liaisons peuvent différer : elles
+ * sont perdues au rechargement, et la source des mises à jour doit les appliquer à nouveau à la
+ * nouvelle version, que les auditeurs reçoivent.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class TimeTableManager implements AutoCloseable {
+
+    /**
+     * Période de calme par défaut, après la dernière modification de l'horaire.
+     */
+    public static final Duration DEFAULT_QUIET_PERIOD = Duration.ofSeconds(2);
+
+    private static final System.Logger LOGGER =
+            System.getLogger(TimeTableManager.class.getName());
+    // Signale la libération des anciennes versions de l'horaire
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Path timetable;
+    private final Executor executor;
+    private final Duration quietPeriod;
+    private final AtomicReference<TimeTableStartup> current;
+    private final List<Consumer<TimeTableStartup>> listeners = new CopyOnWriteArrayList<>();
+    private final WatchService watchService;
+    private final Thread watcher;
+    // Clés de surveillance de la version actuelle de l'horaire
+    private final List<WatchKey> watchKeys = new ArrayList<>();
+    // Verrou sérialisant les rechargements
+    private final Object reloadLock = new Object();
+    private long generation = 0;
+
+    private TimeTableManager(Path timetable, Executor executor, Duration quietPeriod,
+                             TimeTableStartup initial) throws IOException {
+        this.timetable = timetable.toAbsolutePath();
+        this.executor = executor;
+        this.quietPeriod = quietPeriod;
+        this.current = new AtomicReference<>(initial);
+        this.watchService = timetable.getFileSystem().newWatchService();
+        register();
+        this.watcher = Thread.ofPlatform()
+                .name("timetable-watcher")
+                .daemon()
+                .unstarted(this::watch);
+    }
+
+    /**
+     * Charge l'horaire situé au chemin donné et commence à le surveiller, avec la période de
+     * calme par défaut.
+     *
+     * @param timetable le chemin de l'horaire, qui est soit un dossier horaire, soit un
+     *                  conteneur écrit par {@code TimeTablePacker}
+     * @param executor  l'exécuteur chargé des différentes phases des chargements
+     * @param timer     le chronomètre enregistrant la durée des phases du chargement initial
+     * @return le gestionnaire de l'horaire
+     * @throws IOException en cas d'erreur d'entrée/sortie lors du chargement initial
+     */
+    public static TimeTableManager start(Path timetable, Executor executor, PhaseTimer timer)
+            throws IOException {
+        return start(timetable, executor, timer, DEFAULT_QUIET_PERIOD);
+    }
+
+    /**
+     * Charge l'horaire situé au chemin donné et commence à le surveiller.
+     *
+     * @param timetable   le chemin de l'horaire, qui est soit un dossier horaire, soit un
+     *                    conteneur écrit par {@code TimeTablePacker}
+     * @param executor    l'exécuteur chargé des différentes phases des chargements
+     * @param timer       le chronomètre enregistrant la durée des phases du chargement initial
+     * @param quietPeriod la durée sans modification après laquelle une nouvelle version est
+     *                    chargée
+     * @return le gestionnaire de l'horaire
+     * @throws IOException              en cas d'erreur d'entrée/sortie lors du chargement
+     *                                  initial
+     * @throws IllegalArgumentException si la période de calme est négative
+     */
+    public static TimeTableManager start(Path timetable, Executor executor, PhaseTimer timer,
+                                         Duration quietPeriod) throws IOException {
+        Preconditions.checkArgument(!quietPeriod.isNegative());
+        TimeTableStartup initial =
+                TimeTableStartup.load(timetable, LocalDate.now(), executor, timer);
+        TimeTableManager manager = new TimeTableManager(timetable, executor, quietPeriod, initial);
+        manager.watcher.start();
+        return manager;
+    }
+
+    /**
+     * Retourne la version actuelle de l'horaire, qu'une recherche doit utiliser du début à la
+     * fin.
+     *
+     * @return la version actuelle de l'horaire et de son index des arrêts
+     */
+    public TimeTableStartup current() {
+        return current.get();
+    }
+
+    /**
+     * Retourne le nombre de rechargements réussis de l'horaire depuis son chargement initial.
+     *
+     * @return le numéro de la version actuelle de l'horaire
+     */
+    public long generation() {
+        synchronized (reloadLock) {
+            return generation;
+        }
+    }
+
+    /**
+     * Ajoute un auditeur, appelé avec la nouvelle version de l'horaire après chaque
+     * rechargement, par le fil d'exécution ayant effectué le rechargement.
+     *
+     * @param listener l'auditeur
+     */
+    public void addListener(Consumer<TimeTableStartup> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Recharge immédiatement l'horaire, puis remplace la version actuelle par la nouvelle et en
+     * informe les auditeurs. Si le chargement échoue, la version actuelle est conservée.
+     *
+     * @return vrai si et seulement si le rechargement a réussi
+     */
+    public boolean reload() {
+        synchronized (reloadLock) {
+            TimeTableStartup next;
+            try {
+                next = TimeTableStartup.load(timetable, LocalDate.now(), executor,
+                        new PhaseTimer());
+            } catch (IOException | RuntimeException e) {
+                // Version incomplète ou invalide
+                LOGGER.log(System.Logger.Level.WARNING,
+                        "Timetable reload failed, keeping the current version", e);
+                return false;
+            }
+
+            TimeTableStartup previous = current.getAndSet(next);
+            generation += 1;
+            long previousGeneration = generation - 1;
+            CLEANER.register(previous.timeTable(), () -> LOGGER.log(System.Logger.Level.DEBUG,
+                    "Timetable version %d released".formatted(previousGeneration)));
+            try {
+                register();
+            } catch (IOException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Cannot watch the timetable", e);
+            }
+            for (Consumer<TimeTableStartup> listener : listeners) {
+                listener.accept(next);
+            }
+            LOGGER.log(System.Logger.Level.INFO,
+                    "Timetable reloaded (version %d)".formatted(generation));
+            return true;
+        }
+    }
+
+    /**
+     * Arrête la surveillance de l'horaire. La version actuelle reste utilisable.
+     *
+     * @throws IOException en cas d'erreur lors de la fermeture du service de surveillance
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Surveille le dossier contenant l'horaire, afin de détecter son remplacement, ainsi que
+     * l'horaire lui-même et ses sous-dossiers s'il s'agit d'un dossier. Les anciennes clés de
+     * surveillance sont annulées, l'horaire pouvant avoir été remplacé.
+     */
+    private void register() throws IOException {
+        synchronized (watchKeys) {
+            watchKeys.forEach(WatchKey::cancel);
+            watchKeys.clear();
+            watchKeys.add(register(timetable.getParent()));
+            if (Files.isDirectory(timetable)) {
+                watchKeys.add(register(timetable));
+                try (DirectoryStream<Path> entries =
+                             Files.newDirectoryStream(timetable, Files::isDirectory)) {
+                    for (Path entry : entries) {
+                        watchKeys.add(register(entry));
+                    }
+                }
+            }
+        }
+    }
+
+    private WatchKey register(Path directory) throws IOException {
+        return directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * Boucle du fil de surveillance : attend une modification de l'horaire, puis la fin de la
+     * période de calme, et le recharge.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                boolean changed = handle(watchService.take());
+                // Attente de la fin de la période de calme, les modifications suivantes étant
+                // regroupées
+                WatchKey key;
+                while ((key = watchService.poll(quietPeriod.toMillis(), TimeUnit.MILLISECONDS))
+                        != null) {
+                    changed |= handle(key);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // La surveillance est terminée
+        }
+    }
+
+    /**
+     * Traite les événements de la clé donnée, et retourne vrai si et seulement si l'un d'eux
+     * concerne l'horaire.
+     */
+    private boolean handle(WatchKey key) {
+        Path directory = (Path) key.watchable();
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // Dans le dossier parent, seuls les événements concernant l'horaire sont pertinents
+            changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || !directory.equals(timetable.getParent())
+                    || timetable.getFileName().equals(event.context());
+        }
+        key.reset();
+        return changed;
+    }
+}
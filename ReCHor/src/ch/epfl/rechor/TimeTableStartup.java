@@ -0,0 +1,170 @@
+package ch.epfl.rechor;
+
+import ch.epfl.rechor.timetable.CachedTimeTable;
+import ch.epfl.rechor.timetable.OvernightTimeTable;
+import ch.epfl.rechor.timetable.RealTimeTimeTable;
+import ch.epfl.rechor.timetable.StationAliases;
+import ch.epfl.rechor.timetable.StationGrid;
+import ch.epfl.rechor.timetable.Stations;
+import ch.epfl.rechor.timetable.TimeTable;
+import ch.epfl.rechor.timetable.mapped.FileTimeTable;
+import ch.epfl.rechor.timetable.mapped.PackedTimeTable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Résultat du démarrage de l'application : l'horaire chargé, ainsi que l'index des arrêts et
+ * l'index spatial des gares construits à partir de ses gares.
+ * <p>
+ * Le démarrage charge les fichiers de l'horaire simultanément, puis lit en parallèle les noms
+ * des gares et leurs alias pour construire l'index des arrêts, tout en construisant l'index
+ * spatial des gares. Les liaisons du jour sont en
+ * outre chargées en mémoire en arrière-plan, afin que la première recherche ne les lise pas sur
+ * le disque. La durée de chaque phase est enregistrée par un {@link PhaseTimer}.
+ * </p>
+ *
+ * @param timeTable          l'horaire, dont les données de chaque jour sont mises en cache,
+ *                           mises à jour en temps réel, puis complétées par celles de la
+ *                           matinée du lendemain
+ * @param realTime           la couche de l'horaire à laquelle appliquer les mises à jour en
+ *                           temps réel, dont les index de liaisons sont ceux de chaque jour
+ *                           de l'horaire chargé ; ses mises à jour sont propres à cette version
+ *                           de l'horaire et perdues lorsqu'elle est rechargée
+ * @param stopIndex          l'index des noms des arrêts et de leurs alias
+ * @param stationNameToIndex la table associant à chaque nom d'arrêt ou alias l'index de sa gare
+ * @param stationGrid        l'index spatial des gares, pour les recherches par position
+ * @param prefault           l'achèvement du chargement en arrière-plan des liaisons du jour,
+ *                           qui n'échoue jamais
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public record TimeTableStartup(TimeTable timeTable, RealTimeTimeTable realTime,
+                               StopIndex stopIndex,
+                               Map<String, Integer> stationNameToIndex,
+                               StationGrid stationGrid, CompletableFuture<Void> prefault) {
+
+    /**
+     * Les noms des gares et de leurs alias.
+     *
+     * @param stationNames les noms des gares, par index
+     * @param aliases      les alias, par index
+     * @param aliasTargets le nom de la gare de chaque alias, par index
+     */
+    private record Names(String[] stationNames, String[] aliases, String[] aliasTargets) {}
+
+    /**
+     * Charge l'horaire situé au chemin donné et construit l'index de ses arrêts.
+     *
+     * @param timetable le chemin de l'horaire, qui est soit un dossier horaire, soit un
+     *                  conteneur écrit par {@code TimeTablePacker}
+     * @param today     la date dont les liaisons doivent être chargées en arrière-plan
+     * @param executor  l'exécuteur chargé des différentes phases du démarrage
+     * @param timer     le chronomètre enregistrant la durée de chaque phase
+     * @return le résultat du démarrage
+     * @throws IOException en cas d'erreur d'entrée/sortie lors du chargement de l'horaire
+     */
+    public static TimeTableStartup load(Path timetable, LocalDate today, Executor executor,
+                                        PhaseTimer timer) throws IOException {
+        boolean packed = !Files.isDirectory(timetable);
+        TimeTable underlying = timer.time("timetable", () -> packed
+                ? PackedTimeTable.in(timetable)
+                : FileTimeTable.in(timetable, executor, timer));
+        // Les mises à jour en temps réel modifiant les liaisons d'un jour, elles sont appliquées
+        // au-dessus du cache, qui suppose que les données d'une date ne changent pas, et
+        // au-dessous de la matinée du lendemain, afin qu'elles désignent les liaisons de chaque
+        // jour de l'horaire et atteignent aussi celles du lendemain ajoutées à la veille
+        RealTimeTimeTable realTime = new RealTimeTimeTable(new CachedTimeTable(underlying));
+        // Chaque jour est complété par la matinée du lendemain, pour les voyages de nuit
+        TimeTable timeTable = new OvernightTimeTable(realTime);
+
+        // Chargement en arrière-plan des liaisons du jour, qui n'empêche pas la suite du démarrage
+        CompletableFuture<Void> prefault = CompletableFuture.runAsync(() -> {
+            try {
+                timer.time("prefault " + today, () -> {
+                    if (packed) {
+                        ((PackedTimeTable) underlying).prefault(today);
+                    } else {
+                        FileTimeTable.prefault(timetable, today);
+                    }
+                    return timeTable.connectionsFor(today);
+                });
+            } catch (IOException | UncheckedIOException e) {
+                // Le jour est absent de l'horaire : ses liaisons seront chargées à la demande
+            }
+        }, executor);
+
+        CompletableFuture<StationGrid> stationGrid = CompletableFuture.supplyAsync(
+                () -> timer.time("station grid", () -> StationGrid.of(timeTable.stations())),
+                executor);
+        Names names = timer.time("stop names", () -> names(timeTable, executor));
+        return timer.time("stop index", () -> {
+            Map<String, Integer> stationNameToIndex = new HashMap<>();
+            LinkedHashMap<String, String> aliasToMain = new LinkedHashMap<>();
+            List<String> allNames = new ArrayList<>(
+                    names.stationNames().length + names.aliases().length);
+
+            // Ajout des noms principaux
+            for (int i = 0; i < names.stationNames().length; i++) {
+                allNames.add(names.stationNames()[i]);
+                stationNameToIndex.put(names.stationNames()[i], i);
+            }
+
+            // Ajout des alias, qui pointent vers l'index de leur station principale
+            for (int i = 0; i < names.aliases().length; i++) {
+                String alias = names.aliases()[i];
+                String mainName = names.aliasTargets()[i];
+                aliasToMain.put(alias, mainName);
+                allNames.add(alias);
+                Integer mainIndex = stationNameToIndex.get(mainName);
+                if (mainIndex != null) {
+                    stationNameToIndex.put(alias, mainIndex);
+                }
+            }
+            return new TimeTableStartup(timeTable, realTime,
+                    new StopIndex(allNames, aliasToMain),
+                    Map.copyOf(stationNameToIndex), stationGrid.join(), prefault);
+        });
+    }
+
+    /**
+     * Lit simultanément les noms des gares et ceux de leurs alias.
+     */
+    private static Names names(TimeTable timeTable, Executor executor) {
+        Stations stations = timeTable.stations();
+        StationAliases aliases = timeTable.stationAliases();
+
+        CompletableFuture<String[]> stationNames = CompletableFuture.supplyAsync(() -> {
+            String[] result = new String[stations.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = stations.name(i);
+            }
+            return result;
+        }, executor);
+        CompletableFuture<String[]> aliasNames = CompletableFuture.supplyAsync(() -> {
+            String[] result = new String[aliases.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = aliases.alias(i);
+            }
+            return result;
+        }, executor);
+        CompletableFuture<String[]> aliasTargets = CompletableFuture.supplyAsync(() -> {
+            String[] result = new String[aliases.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = aliases.stationName(i);
+            }
+            return result;
+        }, executor);
+        return new Names(stationNames.join(), aliasNames.join(), aliasTargets.join());
+    }
+}
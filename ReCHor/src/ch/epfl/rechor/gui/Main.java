@@ -1,8 +1,5 @@
 package ch.epfl.rechor.gui;
 
-import ch.epfl.rechor.timetable.CachedTimeTable;
-import ch.epfl.rechor.timetable.StationAliases;
-import ch.epfl.rechor.timetable.Stations;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
@@ -14,14 +11,17 @@ import javafx.scene.control.SplitPane;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
 
-import ch.epfl.rechor.StopIndex;
+import ch.epfl.rechor.PhaseTimer;
+import ch.epfl.rechor.TimeTableManager;
+import ch.epfl.rechor.TimeTableStartup;
 import ch.epfl.rechor.timetable.TimeTable;
-import ch.epfl.rechor.timetable.mapped.FileTimeTable;
 import ch.epfl.rechor.journey.*;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Classe principale, qui permet de lancer le programme.
@@ -35,14 +35,22 @@ public class Main extends Application {
     private static final int HEIGHT = 600;
     private static final String DEP_STOP_ID = "#depStop";
     private static final List<Journey> EMPTY_JOURNEY_LIST = List.of();
+    // Conteneur horaire unique, écrit par TimeTablePacker, préféré au dossier s'il existe
+    private static final String TIMETABLE_CONTAINER = "timetable.rch";
+    private static final String TIMETABLE_DIRECTORY = "timetable";
+    private static final System.Logger LOGGER = System.getLogger(Main.class.getName());
 
-    // Map pour les lookups des indices de stations
-    private Map<String, Integer> stationNameToIndex;
+    // Gestionnaire rechargeant l'horaire lorsqu'une nouvelle version en est exportée
+    private TimeTableManager manager;
+    // Version actuelle de l'horaire, de son index des arrêts et des indices de ses stations
+    private ObjectProperty<TimeTableStartup> timeTableO;
 
     // Cache de profils pour optimiser les recherches répétées
     private ObjectProperty<Profile> cacheProfile;
     private ObjectProperty<String> cacheStop;
     private ObjectProperty<LocalDate> cacheDate;
+    private ObjectProperty<Object> cacheDayKey;
+    private ObjectProperty<Set<Vehicle>> cacheVehicles;
 
     /**
      * Charge les données horaires présentes dans la TimeTable, et construire l'interface graphique
@@ -54,28 +62,45 @@ public class Main extends Application {
      */
     @Override
     public void start(Stage stage) throws Exception {
-        //Chargement de la timetable
-        CachedTimeTable timeTable = new CachedTimeTable(FileTimeTable.in(
-                Path.of("timetable")));
+        PhaseTimer timer = new PhaseTimer();
+        long startTime = System.nanoTime();
 
-        // Extraction des données des stations
-        StopIndex stopIndex = createStopIndex(timeTable);
-
-        // Création de l'UI et du routeur
-        QueryUI queryUI = QueryUI.create(stopIndex);
-        Router router = new Router(timeTable);
+        //Chargement de la timetable, depuis le conteneur unique s'il existe, et construction
+        // de l'index des arrêts, les liaisons du jour étant chargées en arrière-plan
+        Path container = Path.of(TIMETABLE_CONTAINER);
+        manager = TimeTableManager.start(
+                Files.exists(container) ? container : Path.of(TIMETABLE_DIRECTORY),
+                ForkJoinPool.commonPool(), timer);
+        timeTableO = new SimpleObjectProperty<>(manager.current());
 
         // Initialisation du cache
         cacheProfile = new SimpleObjectProperty<>();
         cacheStop = new SimpleObjectProperty<>();
         cacheDate = new SimpleObjectProperty<>();
-
-        // Création du binding pour les trajets
+        cacheDayKey = new SimpleObjectProperty<>();
+        cacheVehicles = new SimpleObjectProperty<>();
+
+        // Remplacement de l'horaire rechargé, qui invalide le cache de profil
+        manager.addListener(startup -> Platform.runLater(() -> {
+            cacheProfile.set(null);
+            cacheStop.set(null);
+            cacheDate.set(null);
+            cacheDayKey.set(null);
+            cacheVehicles.set(null);
+            timeTableO.set(startup);
+        }));
+
+        // Création de l'UI
+        QueryUI queryUI = QueryUI.create(timeTableO.map(TimeTableStartup::stopIndex));
+
+        // Création du binding pour les trajets, recalculés lorsque l'horaire est rechargé
         ObservableValue<List<Journey>> journeysO = Bindings.createObjectBinding(
-                () -> calculateJourneys(queryUI, router),
+                () -> calculateJourneys(queryUI, timeTableO.get()),
                 queryUI.depStopO(),
                 queryUI.arrStopO(),
-                queryUI.dateO()
+                queryUI.dateO(),
+                queryUI.vehiclesO(),
+                timeTableO
         );
 
         // Construction et affichage de l'interface
@@ -96,48 +121,29 @@ public class Main extends Application {
 
         // Focus initial
         Platform.runLater(() -> scene.lookup(DEP_STOP_ID).requestFocus());
+
+        // Rapport de la durée des phases du démarrage
+        timer.record("startup", System.nanoTime() - startTime);
+        LOGGER.log(System.Logger.Level.INFO, "Startup timings:%n%s".formatted(timer.report()));
     }
 
     /**
-     * Crée l'index des arrêts à partir de la table horaire.
+     * Arrête la surveillance de l'horaire à la fermeture de l'application.
+     *
+     * @throws Exception en cas d'erreur lors de l'arrêt de la surveillance.
      */
-    private StopIndex createStopIndex(TimeTable timeTable) {
-        Stations stations = timeTable.stations();
-        StationAliases stationAliases = timeTable.stationAliases();
-
-        // Construction directe
-        List<String> allNamesForStopIndex = new ArrayList<>();
-        stationNameToIndex = new HashMap<>();
-        LinkedHashMap<String, String> aliasToMain = new LinkedHashMap<>();
-
-        // Ajout des noms principaux
-        for (int i = 0; i < stations.size(); i++) {
-            String stationName = stations.name(i);
-            allNamesForStopIndex.add(stationName);
-            stationNameToIndex.put(stationName, i);
-        }
-
-        // Ajout des alias avec référence aux noms principaux
-        for (int i = 0; i < stationAliases.size(); i++) {
-            String alias = stationAliases.alias(i);
-            String mainName = stationAliases.stationName(i);
-
-            aliasToMain.put(alias, mainName);
-            allNamesForStopIndex.add(alias);
-
-            // Alias pointent vers l'index de leur station principale
-            Integer mainIndex = stationNameToIndex.get(mainName);
-            if (mainIndex != null) {
-                stationNameToIndex.put(alias, mainIndex);
-            }
+    @Override
+    public void stop() throws Exception {
+        if (manager != null) {
+            manager.close();
         }
-        return new StopIndex(allNamesForStopIndex, aliasToMain);
     }
 
     /**
-     * Calcule les trajets en fonction des paramètres de recherche.
+     * Calcule les trajets en fonction des paramètres de recherche, avec la version donnée de
+     * l'horaire.
      */
-    private List<Journey> calculateJourneys(QueryUI queryUI, Router router) {
+    private List<Journey> calculateJourneys(QueryUI queryUI, TimeTableStartup startup) {
         String depName = queryUI.depStopO().getValue();
         String arrName = queryUI.arrStopO().getValue();
         LocalDate date = queryUI.dateO().getValue();
@@ -147,29 +153,41 @@ public class Main extends Application {
             return EMPTY_JOURNEY_LIST;
 
         // Lookup
+        Map<String, Integer> stationNameToIndex = startup.stationNameToIndex();
         Integer depId = stationNameToIndex.get(depName);
         Integer arrId = stationNameToIndex.get(arrName);
 
         if (depId == null || arrId == null)
             return EMPTY_JOURNEY_LIST;
 
-        updateCacheIfNeeded(date, arrName, arrId, router);
+        updateCacheIfNeeded(date, arrName, arrId, queryUI.vehiclesO().getValue(),
+                new Router(startup.timeTable()));
         return JourneyExtractor.journeys(cacheProfile.get(), depId);
     }
 
     /**
-     * Met à jour le cache de profil si nécessaire.
+     * Met à jour le cache de profil si nécessaire, le profil dépendant de l'arrêt d'arrivée, de
+     * la date et des types de véhicules autorisés. Le profil en cache est réutilisé pour toute
+     * date dont les données horaires ont la même clé que celles de sa date, ce qui exclut
+     * notamment sa propre date une fois que des mises à jour en temps réel y ont été appliquées.
      */
-    private void updateCacheIfNeeded(LocalDate date, String arrName, int arrId, Router router) {
-        // Cache invalide si les valeurs ne correspondent pas
-        boolean cacheInvalid = !Objects.equals(date, cacheDate.getValue()) ||
-                !Objects.equals(arrName, cacheStop.getValue());
-
-        if (cacheInvalid) {
-            cacheProfile.set(router.profile(date, arrId));
-            cacheDate.set(date);
-            cacheStop.set(arrName);
+    private void updateCacheIfNeeded(LocalDate date, String arrName, int arrId,
+                                     Set<Vehicle> vehicles, Router router) {
+        boolean sameStop = Objects.equals(arrName, cacheStop.getValue())
+                && Objects.equals(vehicles, cacheVehicles.getValue());
+        TimeTable timeTable = router.timetable();
+        Object dayKey = timeTable.dayKey(date);
+        if (sameStop && dayKey.equals(cacheDayKey.getValue())) {
+            if (!date.equals(cacheDate.getValue())) {
+                cacheProfile.set(cacheProfile.get().withDate(date));
+            }
+        } else {
+            cacheProfile.set(router.profile(date, arrId, vehicles));
         }
+        cacheDate.set(date);
+        cacheDayKey.set(dayKey);
+        cacheStop.set(arrName);
+        cacheVehicles.set(vehicles);
     }
 
     /**
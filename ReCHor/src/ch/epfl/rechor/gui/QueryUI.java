@@ -1,6 +1,9 @@
 package ch.epfl.rechor.gui;
 
 import ch.epfl.rechor.StopIndex;
+import ch.epfl.rechor.journey.Vehicle;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ObservableValue;
 import javafx.scene.Node;
 import javafx.scene.control.Button;
@@ -8,6 +11,9 @@ import javafx.scene.control.DatePicker;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.control.TextFormatter;
+import javafx.scene.control.ToggleButton;
+import javafx.scene.control.Tooltip;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.util.converter.LocalTimeStringConverter;
@@ -15,11 +21,14 @@ import javafx.util.converter.LocalTimeStringConverter;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Représente l'interface de requête, c'est à dire la partie de l'interface graphique
  * qui permet à l'utilisateur de choisir les arrêts de départ et d'arrivée,
- * et la date/heure de voyage désiré.
+ * la date/heure de voyage désiré et les types de véhicules pouvant être empruntés.
  *
  * @author Antoine Lepin (390950)
  * @author Darius Giannoli (380759)
@@ -29,10 +38,12 @@ import java.time.format.DateTimeFormatter;
  * @param arrStopO une valeur observable contenant le nom de l'arrêt d'arrivée.
  * @param dateO une valeur observable contenant la date de voyage.
  * @param timeO une valeur observable contenant l'heure de voyage.
+ * @param vehiclesO une valeur observable contenant l'ensemble (non modifiable) des types de
+ *                  véhicules autorisés.
  */
 public record QueryUI(Node rootNode, ObservableValue<String> depStopO,
         ObservableValue<String> arrStopO, ObservableValue<LocalDate> dateO,
-        ObservableValue<LocalTime> timeO) {
+        ObservableValue<LocalTime> timeO, ObservableValue<Set<Vehicle>> vehiclesO) {
     // Identifiants des champs
     private static final String DEP_STOP_ID = "depStop";
     private static final String ARR_STOP_ID = "arrStop";
@@ -56,6 +67,7 @@ public record QueryUI(Node rootNode, ObservableValue<String> depStopO,
 
     // Constantes
     private static final int SPACING = 5;
+    private static final int ICON_SIZE = 16;
 
     /**
      * Construit le graphe de scène pour la recherche de voyages, avec les champs pour choisir
@@ -65,9 +77,21 @@ public record QueryUI(Node rootNode, ObservableValue<String> depStopO,
      * @return retourne une instance de QueryUI contenant le nœud JavaFX qui se trouve à sa racine.
      */
     public static QueryUI create(StopIndex index) {
+        return create(new SimpleObjectProperty<>(index));
+    }
+
+    /**
+     * Construit le graphe de scène pour la recherche de voyages, dont les arrêts proposés sont
+     * ceux de l'index contenu dans la valeur observable donnée, qui peut changer lorsque l'horaire
+     * est rechargé.
+     *
+     * @param indexO une valeur observable contenant l'index à donner aux StopField.
+     * @return retourne une instance de QueryUI contenant le nœud JavaFX qui se trouve à sa racine.
+     */
+    public static QueryUI create(ObservableValue<StopIndex> indexO) {
         // Création des champs d'arrêts
-        StopField depField = createStopField(index, DEP_STOP_ID, DEP_STOP_PROMPT);
-        StopField arrField = createStopField(index, ARR_STOP_ID, ARR_STOP_PROMPT);
+        StopField depField = createStopField(indexO, DEP_STOP_ID, DEP_STOP_PROMPT);
+        StopField arrField = createStopField(indexO, ARR_STOP_ID, ARR_STOP_PROMPT);
 
         // Bouton d'échange
         Button swapButton = new Button("↔");
@@ -92,6 +116,14 @@ public record QueryUI(Node rootNode, ObservableValue<String> depStopO,
         timeField.setId("time");
         timeField.setTextFormatter(timeFormatter);
 
+        // Boutons des types de véhicules, tous autorisés initialement
+        ObjectProperty<Set<Vehicle>> vehiclesO = new SimpleObjectProperty<>(
+                Collections.unmodifiableSet(EnumSet.allOf(Vehicle.class)));
+        HBox vehicleButtons = new HBox(SPACING);
+        for (Vehicle vehicle : Vehicle.ALL) {
+            vehicleButtons.getChildren().add(createVehicleButton(vehicle, vehiclesO));
+        }
+
         // Construction de l'interface
         VBox root = new VBox(SPACING,
                 new HBox(SPACING,
@@ -100,19 +132,46 @@ public record QueryUI(Node rootNode, ObservableValue<String> depStopO,
                         createLabeledControl(ARR_LABEL, arrTextField)),
                 new HBox(SPACING,
                         createLabeledControl(DATE_LABEL, datePicker),
-                        createLabeledControl(TIME_LABEL, timeField))
+                        createLabeledControl(TIME_LABEL, timeField),
+                        vehicleButtons)
         );
         root.getStylesheets().add("query.css");
 
         return new QueryUI(root, depField.stopO(), arrField.stopO(),
-                datePicker.valueProperty(), timeFormatter.valueProperty());
+                datePicker.valueProperty(), timeFormatter.valueProperty(), vehiclesO);
+    }
+
+    /**
+     * Crée un bouton, initialement enfoncé, autorisant le type de véhicule donné, qui met à
+     * jour l'ensemble des types autorisés lorsqu'il est enfoncé ou relâché.
+     */
+    private static ToggleButton createVehicleButton(Vehicle vehicle,
+                                                    ObjectProperty<Set<Vehicle>> vehiclesO) {
+        ImageView icon = new ImageView(VehicleIcons.iconFor(vehicle));
+        icon.setFitWidth(ICON_SIZE);
+        icon.setFitHeight(ICON_SIZE);
+        ToggleButton button = new ToggleButton(null, icon);
+        button.setSelected(true);
+        button.setTooltip(new Tooltip(vehicle.name()));
+        button.selectedProperty().addListener((o, oldV, selected) -> {
+            EnumSet<Vehicle> vehicles = EnumSet.noneOf(Vehicle.class);
+            vehicles.addAll(vehiclesO.get());
+            if (selected) {
+                vehicles.add(vehicle);
+            } else {
+                vehicles.remove(vehicle);
+            }
+            vehiclesO.set(Collections.unmodifiableSet(vehicles));
+        });
+        return button;
     }
 
     /**
      * Crée un champ d'arrêt configuré.
      */
-    private static StopField createStopField(StopIndex index, String id, String prompt) {
-        StopField field = StopField.create(index);
+    private static StopField createStopField(ObservableValue<StopIndex> indexO, String id,
+                                             String prompt) {
+        StopField field = StopField.create(indexO);
         TextField textField = field.textField();
         textField.setId(id);
         textField.setPromptText(prompt);
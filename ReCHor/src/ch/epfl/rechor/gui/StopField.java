@@ -2,6 +2,7 @@ package ch.epfl.rechor.gui;
 
 import ch.epfl.rechor.StopIndex;
 import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.ObservableList;
 import javafx.geometry.Bounds;
@@ -35,6 +36,18 @@ public record StopField(TextField textField, ObservableValue<String> stopO) {
      * @return retourne un StopField associé au StopIndex passé en argument.
      */
     public static StopField create(StopIndex index) {
+        return create(new SimpleObjectProperty<>(index));
+    }
+
+    /**
+     * Crée un StopField dont le champ textuel et la fenêtre sont associés à l'index contenu dans
+     * la valeur observable donnée, qui peut changer lorsque l'horaire est rechargé. Les arrêts
+     * proposés sont toujours ceux de l'index actuel.
+     *
+     * @param indexO une valeur observable contenant l'index des arrêts à proposer.
+     * @return retourne un StopField associé à l'index contenu dans indexO.
+     */
+    public static StopField create(ObservableValue<StopIndex> indexO) {
         TextField textField = new TextField();
         ReadOnlyStringWrapper selected = new ReadOnlyStringWrapper("");
 
@@ -74,7 +87,7 @@ public record StopField(TextField textField, ObservableValue<String> stopO) {
             if (isFocused) {
                 // Affiche la popup avec les suggestions quand on gagne le focus
                 updateAndShowSuggestions(textField, list, popup,
-                        index.stopsMatching(textField.getText(), MAX_SUGGESTIONS));
+                        indexO.getValue().stopsMatching(textField.getText(), MAX_SUGGESTIONS));
 
             } else {
                 // Valide la sélection quand on perd le focus
@@ -92,7 +105,7 @@ public record StopField(TextField textField, ObservableValue<String> stopO) {
             // Ne met à jour que si la popup est visible pour éviter les calculs inutiles
             if (popup.isShowing()) {
                 updateAndShowSuggestions(textField, list, popup,
-                        index.stopsMatching(newText, MAX_SUGGESTIONS));
+                        indexO.getValue().stopsMatching(newText, MAX_SUGGESTIONS));
             }
         });
 
@@ -0,0 +1,162 @@
+package ch.epfl.rechor.journey;
+
+import java.io.Serial;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Classe utilitaire permettant d'extraire en parallèle les voyages d'un même profil pour
+ * plusieurs gares de départ.
+ * <p>
+ * Chaque appel à {@link JourneyExtractor#journeys(Profile, int)} ne fait que lire le profil, les
+ * extractions pour différentes gares de départ sont donc indépendantes et peuvent être réparties
+ * sur les fils d'un {@link ForkJoinPool}. Les voyages de chaque gare sont transmis au consommateur
+ * dès qu'ils sont extraits, sous la forme d'un lot ({@link Batch}), et ne sont pas conservés
+ * ensuite : la mémoire utilisée reste donc bornée par le nombre de fils, et non par le nombre de
+ * gares de départ.
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class BulkJourneyExtractor {
+
+    // Nombre maximal de gares de départ traitées séquentiellement par une tâche
+    private static final int LEAF_SIZE = 8;
+
+    /**
+     * Constructeur privé pour empêcher l'instanciation de cette classe utilitaire.
+     */
+    private BulkJourneyExtractor() {
+    }
+
+    /**
+     * Lot de voyages extraits pour une gare de départ.
+     *
+     * @param depStationId l'indice de la gare de départ
+     * @param journeys     les voyages optimaux depuis cette gare, triés comme ceux retournés par
+     *                     {@link JourneyExtractor#journeys(Profile, int)} (éventuellement vide)
+     */
+    public record Batch(int depStationId, List<Journey> journeys) {
+
+        /**
+         * Constructeur compact qui copie la liste des voyages afin de garantir l'immuabilité.
+         */
+        public Batch {
+            journeys = List.copyOf(journeys);
+        }
+    }
+
+    /**
+     * Extrait, en utilisant le pool commun, les voyages depuis toutes les gares du profil.
+     *
+     * @param profile  le profil contenant les frontières de Pareto
+     * @param consumer le consommateur auquel chaque lot est transmis
+     * @see #journeysForAll(Profile, ForkJoinPool, Consumer)
+     */
+    public static void journeysForAll(Profile profile, Consumer<Batch> consumer) {
+        journeysForAll(profile, ForkJoinPool.commonPool(), consumer);
+    }
+
+    /**
+     * Extrait, dans le pool donné, les voyages depuis toutes les gares du profil.
+     *
+     * @param profile  le profil contenant les frontières de Pareto
+     * @param pool     le pool dans lequel les extractions sont effectuées
+     * @param consumer le consommateur auquel chaque lot est transmis
+     * @see #journeys(Profile, int[], ForkJoinPool, Consumer)
+     */
+    public static void journeysForAll(Profile profile, ForkJoinPool pool,
+                                      Consumer<Batch> consumer) {
+        int[] depStationIds = IntStream.range(0, profile.stationFront().size()).toArray();
+        journeys(profile, depStationIds, pool, consumer);
+    }
+
+    /**
+     * Extrait, dans le pool donné, les voyages depuis chacune des gares de départ données.
+     * <p>
+     * Le consommateur est appelé exactement une fois par gare de départ, depuis les fils du pool,
+     * dans un ordre quelconque. Ses appels ne sont jamais simultanés, il n'a donc pas besoin
+     * d'être lui-même sûr vis-à-vis des fils. La méthode ne retourne qu'une fois tous les lots
+     * transmis.
+     *
+     * @param profile       le profil contenant les frontières de Pareto
+     * @param depStationIds les indices des gares de départ
+     * @param pool          le pool dans lequel les extractions sont effectuées
+     * @param consumer      le consommateur auquel chaque lot est transmis
+     * @throws IndexOutOfBoundsException si l'un des indices de gare est invalide
+     * @throws NullPointerException      si le pool ou le consommateur est null
+     */
+    public static void journeys(Profile profile, int[] depStationIds, ForkJoinPool pool,
+                                Consumer<Batch> consumer) {
+        Objects.requireNonNull(pool);
+        Objects.requireNonNull(consumer);
+
+        int[] ids = depStationIds.clone();
+        for (int id : ids) {
+            Objects.checkIndex(id, profile.stationFront().size());
+        }
+
+        // Chargement des liaisons et courses depuis le fil appelant, pour que les tâches
+        // trouvent les données du jour déjà présentes dans un éventuel cache
+        profile.connections();
+        profile.trips();
+
+        Object lock = new Object();
+        Consumer<Batch> serialized = batch -> {
+            synchronized (lock) {
+                consumer.accept(batch);
+            }
+        };
+        pool.invoke(new ExtractionTask(profile, ids, 0, ids.length, serialized));
+    }
+
+    /**
+     * Tâche extrayant les voyages pour un intervalle du tableau des gares de départ,
+     * en le divisant en deux tant qu'il contient plus de {@code LEAF_SIZE} gares.
+     * <p>
+     * Comme toute {@link java.util.concurrent.ForkJoinTask}, la tâche est sérialisable, mais elle
+     * n'est jamais sérialisée : ses attributs, dont le profil et le consommateur ne le sont pas,
+     * sont donc transitoires.
+     */
+    private static final class ExtractionTask extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient Profile profile;
+        private final transient int[] depStationIds;
+        private final transient int from;
+        private final transient int to;
+        private final transient Consumer<Batch> consumer;
+
+        /**
+         * Construit une tâche pour les gares d'index [from, to) du tableau donné.
+         */
+        ExtractionTask(Profile profile, int[] depStationIds, int from, int to,
+                       Consumer<Batch> consumer) {
+            this.profile = profile;
+            this.depStationIds = depStationIds;
+            this.from = from;
+            this.to = to;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++) {
+                    int depStationId = depStationIds[i];
+                    consumer.accept(new Batch(depStationId,
+                            JourneyExtractor.journeys(profile, depStationId)));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ExtractionTask(profile, depStationIds, from, middle, consumer),
+                    new ExtractionTask(profile, depStationIds, middle, to, consumer));
+        }
+    }
+}
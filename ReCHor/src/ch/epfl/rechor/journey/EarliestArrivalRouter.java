@@ -0,0 +1,331 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.Connections;
+import ch.epfl.rechor.timetable.TimeTable;
+import ch.epfl.rechor.timetable.Trips;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Représente un routeur capable de calculer, pour une heure de départ fixée, un voyage arrivant
+ * au plus tôt d'une gare de départ à une gare d'arrivée.
+ * <p>
+ * Contrairement à {@link Router}, qui parcourt toutes les liaisons du jour à rebours pour calculer
+ * les frontières de Pareto de toutes les gares, ce routeur parcourt les liaisons par ordre
+ * d'heure de départ croissante (Connection Scan « en avant »), en partant de la première liaison
+ * ne partant pas avant l'heure demandée, et s'arrête dès qu'aucune liaison restante ne peut
+ * améliorer l'heure d'arrivée à destination.
+ * <p>
+ * Les changements suivent le même modèle que le profil : après être arrivé à une gare, il faut
+ * attendre la durée du changement vers la gare (éventuellement la même) de la liaison suivante.
+ * L'heure d'arrivée calculée inclut donc, comme les tuples d'un profil, la durée du changement
+ * vers la gare de destination.
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class EarliestArrivalRouter {
+
+    // Valeur des tableaux d'état indiquant une absence (de liaison, de course, etc.)
+    private static final int NONE = -1;
+
+    private final TimeTable timetable;
+
+    // Changements indexés par gare de départ (la table de l'horaire est indexée par arrivée)
+    private final OutgoingTransfers outgoing;
+
+    /**
+     * Construit un routeur pour l'horaire donné, en pré-calculant l'index des changements par
+     * gare de départ.
+     *
+     * @param timetable l'horaire dans lequel chercher les voyages
+     */
+    public EarliestArrivalRouter(TimeTable timetable) {
+        this.timetable = timetable;
+        this.outgoing = new OutgoingTransfers(timetable.transfers(),
+                timetable.stations().size());
+    }
+
+    /**
+     * Retourne l'horaire utilisé par le routeur.
+     *
+     * @return l'horaire
+     */
+    public TimeTable timetable() {
+        return timetable;
+    }
+
+    /**
+     * Calcule l'heure d'arrivée au plus tôt à la gare d'arrivée en partant de la gare de départ
+     * au plus tôt à l'heure donnée, en utilisant au moins une liaison.
+     *
+     * @param date         la date du voyage
+     * @param depStationId l'indice de la gare de départ
+     * @param arrStationId l'indice de la gare d'arrivée
+     * @param depMins      l'heure de départ, en minutes après minuit
+     * @return l'heure d'arrivée en minutes après minuit, changement à destination compris,
+     * ou -1 si la gare d'arrivée n'est pas atteignable
+     * @throws IndexOutOfBoundsException si l'un des indices de gare est invalide
+     */
+    public int earliestArrival(LocalDate date, int depStationId, int arrStationId, int depMins) {
+        return scan(date, depStationId, arrStationId, depMins).arrMins;
+    }
+
+    /**
+     * Calcule un voyage arrivant au plus tôt à la gare d'arrivée en partant de la gare de départ
+     * au plus tôt à l'heure donnée. Le voyage retourné a la même forme que ceux extraits d'un
+     * profil par {@link JourneyExtractor} (étapes à pied initiale, de changement et finale).
+     *
+     * @param date         la date du voyage
+     * @param depStationId l'indice de la gare de départ
+     * @param arrStationId l'indice de la gare d'arrivée
+     * @param depMins      l'heure de départ, en minutes après minuit
+     * @return le voyage, ou un optionnel vide si la gare d'arrivée n'est pas atteignable
+     * @throws IndexOutOfBoundsException si l'un des indices de gare est invalide
+     */
+    public Optional<Journey> journey(LocalDate date, int depStationId, int arrStationId,
+                                     int depMins) {
+        ScanState state = scan(date, depStationId, arrStationId, depMins);
+        if (state.arrMins == NONE) {
+            return Optional.empty();
+        }
+        return Optional.of(buildJourney(state, date, depStationId, arrStationId));
+    }
+
+    /**
+     * État final d'un parcours des liaisons.
+     */
+    private static final class ScanState {
+        private final Connections connections;
+        // Pour chaque gare, la liaison dont l'arrivée a permis d'y être prêt au plus tôt
+        private final int[] readyVia;
+        // Pour chaque course, la liaison à laquelle on y est monté
+        private final int[] boardedAt;
+        // Dernière liaison du voyage et heure d'arrivée à destination
+        private int lastConnection = NONE;
+        private int arrMins = NONE;
+
+        private ScanState(Connections connections, int nStations, int nTrips) {
+            this.connections = connections;
+            this.readyVia = new int[nStations];
+            this.boardedAt = new int[nTrips];
+            Arrays.fill(readyVia, NONE);
+            Arrays.fill(boardedAt, NONE);
+        }
+    }
+
+    /**
+     * Parcourt les liaisons du jour par ordre d'heure de départ croissante.
+     */
+    private ScanState scan(LocalDate date, int depStationId, int arrStationId, int depMins) {
+        int nStations = timetable.stations().size();
+        Objects.checkIndex(depStationId, nStations);
+        Objects.checkIndex(arrStationId, nStations);
+
+        Connections connections = timetable.connectionsFor(date);
+        ScanState state = new ScanState(connections, nStations,
+                timetable.tripsFor(date).size());
+
+        // Heure à partir de laquelle on peut monter dans une liaison partant de chaque gare
+        int[] ready = new int[nStations];
+        Arrays.fill(ready, Integer.MAX_VALUE);
+        relaxTransfers(ready, state.readyVia, depStationId, depMins, NONE);
+        // Sans changement défini au sein de la gare de départ, on peut y partir immédiatement
+        if (ready[depStationId] == Integer.MAX_VALUE) {
+            ready[depStationId] = depMins;
+        }
+
+        // Les liaisons sont triées par heure de départ décroissante : on part de la dernière
+        // liaison ne partant pas avant depMins et on remonte vers l'index 0
+        int best = Integer.MAX_VALUE;
+        for (int cId = firstIndexBefore(connections, depMins) - 1; cId >= 0; cId--) {
+            int connDepMins = connections.depMins(cId);
+            // Arrêt anticipé : plus aucune liaison ne peut arriver plus tôt
+            if (connDepMins >= best) {
+                break;
+            }
+
+            int tripId = connections.tripId(cId);
+            if (state.boardedAt[tripId] == NONE) {
+                int depStation = timetable.stationId(connections.depStopId(cId));
+                if (ready[depStation] > connDepMins) {
+                    continue;
+                }
+                state.boardedAt[tripId] = cId;
+            }
+
+            int arrStation = timetable.stationId(connections.arrStopId(cId));
+            int connArrMins = connections.arrMins(cId);
+            relaxTransfers(ready, state.readyVia, arrStation, connArrMins, cId);
+
+            int walk = walkMinutes(arrStation, arrStationId);
+            if (walk >= 0 && connArrMins + walk < best) {
+                best = connArrMins + walk;
+                state.lastConnection = cId;
+            }
+        }
+
+        state.arrMins = best == Integer.MAX_VALUE ? NONE : best;
+        return state;
+    }
+
+    /**
+     * Met à jour l'heure à laquelle on est prêt à partir de chaque gare atteignable à pied
+     * depuis la gare donnée, où l'on se trouve à l'heure donnée.
+     */
+    private void relaxTransfers(int[] ready, int[] readyVia, int stationId, int mins,
+                                int viaConnection) {
+        for (int i = outgoing.start(stationId); i < outgoing.end(stationId); i++) {
+            int target = outgoing.arrStationId(i);
+            int readyMins = mins + outgoing.minutes(i);
+            if (readyMins < ready[target]) {
+                ready[target] = readyMins;
+                readyVia[target] = viaConnection;
+            }
+        }
+    }
+
+    /**
+     * Retourne la durée du changement entre deux gares, ou -1 s'il n'existe pas.
+     */
+    private int walkMinutes(int depStationId, int arrStationId) {
+        return outgoing.minutesBetween(depStationId, arrStationId);
+    }
+
+    /**
+     * Retourne, par recherche dichotomique, le plus petit index de liaison dont l'heure de départ
+     * est strictement antérieure à l'heure donnée (ou le nombre de liaisons s'il n'y en a pas).
+     */
+    private static int firstIndexBefore(Connections connections, int depMins) {
+        int low = 0;
+        int high = connections.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (connections.depMins(middle) >= depMins) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reconstruit le voyage à partir de l'état final du parcours, en remontant de la dernière
+     * liaison à la gare de départ.
+     */
+    private Journey buildJourney(ScanState state, LocalDate date, int depStationId,
+                                 int arrStationId) {
+        Connections connections = state.connections;
+
+        // Remontée des étapes en transport : paires (liaison de montée, liaison de descente)
+        List<int[]> rides = new ArrayList<>();
+        int alight = state.lastConnection;
+        while (alight != NONE) {
+            int board = state.boardedAt[connections.tripId(alight)];
+            rides.addFirst(new int[]{board, alight});
+            int boardStation = timetable.stationId(connections.depStopId(board));
+            alight = state.readyVia[boardStation];
+        }
+        return journey(timetable, outgoing, connections, date, depStationId, arrStationId,
+                rides);
+    }
+
+    /**
+     * Construit le voyage formé des étapes en transport données, chacune décrite par sa liaison
+     * de montée et sa liaison de descente, en les reliant par des étapes à pied. Le voyage a la
+     * même forme que ceux extraits d'un profil par {@link JourneyExtractor}.
+     *
+     * @param timetable    l'horaire
+     * @param outgoing     les changements de l'horaire, indexés par gare de départ
+     * @param connections  les liaisons du jour
+     * @param date         la date du voyage
+     * @param depStationId l'indice de la gare de départ
+     * @param arrStationId l'indice de la gare d'arrivée
+     * @param rides        les paires (liaison de montée, liaison de descente), non vide
+     * @return le voyage
+     */
+    static Journey journey(TimeTable timetable, OutgoingTransfers outgoing,
+                           Connections connections, LocalDate date, int depStationId,
+                           int arrStationId, List<int[]> rides) {
+        List<Journey.Leg> legs = new ArrayList<>();
+        int firstBoard = rides.getFirst()[0];
+        int firstDepStop = connections.depStopId(firstBoard);
+        int firstStation = timetable.stationId(firstDepStop);
+        if (firstStation != depStationId) {
+            int connDepMins = connections.depMins(firstBoard);
+            int walk = outgoing.minutesBetween(depStationId, firstStation);
+            legs.add(new Journey.Leg.Foot(
+                    JourneyExtractor.createStationStop(timetable, depStationId),
+                    JourneyExtractor.createDateTime(date, connDepMins - walk),
+                    JourneyExtractor.createStop(timetable, firstDepStop),
+                    JourneyExtractor.createDateTime(date, connDepMins)));
+        }
+
+        for (int i = 0; i < rides.size(); i++) {
+            int board = rides.get(i)[0];
+            int last = rides.get(i)[1];
+            legs.add(transportLeg(timetable, connections, date, board, last));
+
+            int arrStop = connections.arrStopId(last);
+            int arrMins = connections.arrMins(last);
+            int arrStation = timetable.stationId(arrStop);
+            if (i + 1 < rides.size()) {
+                // Changement vers la liaison de montée de l'étape suivante
+                int nextDepStop = connections.depStopId(rides.get(i + 1)[0]);
+                int walk = outgoing.minutesBetween(arrStation,
+                        timetable.stationId(nextDepStop));
+                legs.add(new Journey.Leg.Foot(
+                        JourneyExtractor.createStop(timetable, arrStop),
+                        JourneyExtractor.createDateTime(date, arrMins),
+                        JourneyExtractor.createStop(timetable, nextDepStop),
+                        JourneyExtractor.createDateTime(date, arrMins + walk)));
+            } else if (arrStation != arrStationId) {
+                int walk = outgoing.minutesBetween(arrStation, arrStationId);
+                legs.add(new Journey.Leg.Foot(
+                        JourneyExtractor.createStop(timetable, arrStop),
+                        JourneyExtractor.createDateTime(date, arrMins),
+                        JourneyExtractor.createStationStop(timetable, arrStationId),
+                        JourneyExtractor.createDateTime(date, arrMins + walk)));
+            }
+        }
+        return new Journey(legs);
+    }
+
+    /**
+     * Construit l'étape en transport allant de la liaison de montée à la liaison de descente,
+     * en collectant les arrêts intermédiaires.
+     */
+    private static Journey.Leg.Transport transportLeg(TimeTable timetable,
+                                                      Connections connections, LocalDate date,
+                                                      int board, int last) {
+        List<Journey.Leg.IntermediateStop> intermediateStops = new ArrayList<>();
+        for (int cId = board; cId != last; ) {
+            int stopId = connections.arrStopId(cId);
+            int arrMins = connections.arrMins(cId);
+            cId = connections.nextConnectionId(cId);
+            intermediateStops.add(new Journey.Leg.IntermediateStop(
+                    JourneyExtractor.createStop(timetable, stopId),
+                    JourneyExtractor.createDateTime(date, arrMins),
+                    JourneyExtractor.createDateTime(date, connections.depMins(cId))));
+        }
+
+        Trips trips = timetable.tripsFor(date);
+        int tripId = connections.tripId(board);
+        int routeId = trips.routeId(tripId);
+        return new Journey.Leg.Transport(
+                JourneyExtractor.createStop(timetable, connections.depStopId(board)),
+                JourneyExtractor.createDateTime(date, connections.depMins(board)),
+                JourneyExtractor.createStop(timetable, connections.arrStopId(last)),
+                JourneyExtractor.createDateTime(date, connections.arrMins(last)),
+                intermediateStops,
+                timetable.routes().vehicle(routeId),
+                timetable.routes().name(routeId),
+                trips.destination(tripId));
+    }
+}
@@ -0,0 +1,108 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.Connections;
+
+import java.util.List;
+
+/**
+ * Représente un profil accompagné des points de reprise de son calcul, qui permettent à
+ * {@link Router#repair} de le recalculer partiellement après une modification des liaisons, par
+ * exemple des retards.
+ * <p>
+ * Les liaisons étant parcourues par heure de départ décroissante, l'état du calcul après le
+ * parcours des liaisons partant après une heure donnée ne dépend que de ces liaisons. Un point de
+ * reprise conserve cet état pour chacune des heures limites demandées. Si les liaisons modifiées
+ * partent toutes avant l'heure limite d'un point de reprise, le calcul peut reprendre à ce point,
+ * et seules les liaisons partant plus tôt doivent être parcourues à nouveau.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class IncrementalProfile {
+
+    /**
+     * Un point de reprise du calcul d'un profil. Son état ne doit jamais être modifié : la reprise
+     * du calcul se fait sur une copie.
+     *
+     * @param boundaryMins l'heure limite, en minutes après minuit
+     * @param connectionId l'index de la première liaison restant à parcourir, qui part au plus
+     *                     tard à l'heure limite
+     * @param state        l'état du calcul avant le parcours de cette liaison
+     */
+    record Checkpoint(int boundaryMins, int connectionId, Profile.Builder state) {}
+
+    private final Profile profile;
+    private final Connections connections;
+    private final int tripCount;
+    private final int[] boundaries;
+    private final List<Checkpoint> checkpoints;
+    private final int firstScannedConnection;
+
+    /**
+     * Construit un profil incrémental.
+     *
+     * @param profile                le profil
+     * @param connections            les liaisons à partir desquelles le profil a été calculé
+     * @param tripCount              le nombre de courses du jour du profil
+     * @param boundaries             les heures limites des points de reprise, décroissantes
+     * @param checkpoints            les points de reprise, par index de liaison croissant
+     * @param firstScannedConnection l'index de la première liaison parcourue par le calcul
+     */
+    IncrementalProfile(Profile profile, Connections connections, int tripCount, int[] boundaries,
+                       List<Checkpoint> checkpoints, int firstScannedConnection) {
+        this.profile = profile;
+        this.connections = connections;
+        this.tripCount = tripCount;
+        this.boundaries = boundaries;
+        this.checkpoints = List.copyOf(checkpoints);
+        this.firstScannedConnection = firstScannedConnection;
+    }
+
+    /**
+     * Retourne le profil.
+     *
+     * @return le profil
+     */
+    public Profile profile() {
+        return profile;
+    }
+
+    /**
+     * Retourne le nombre de liaisons que le calcul de ce profil a parcourues, qui est inférieur au
+     * nombre total de liaisons si le calcul a repris à un point de reprise.
+     *
+     * @return le nombre de liaisons parcourues
+     */
+    public int scannedConnections() {
+        return connections.size() - firstScannedConnection;
+    }
+
+    /**
+     * Retourne les liaisons à partir desquelles le profil a été calculé.
+     */
+    Connections connections() {
+        return connections;
+    }
+
+    /**
+     * Retourne le nombre de courses du jour du profil.
+     */
+    int tripCount() {
+        return tripCount;
+    }
+
+    /**
+     * Retourne les heures limites des points de reprise, décroissantes.
+     */
+    int[] boundaries() {
+        return boundaries;
+    }
+
+    /**
+     * Retourne les points de reprise, par index de liaison croissant.
+     */
+    List<Checkpoint> checkpoints() {
+        return checkpoints;
+    }
+}
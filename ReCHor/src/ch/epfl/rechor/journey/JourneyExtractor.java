@@ -418,7 +418,7 @@ public final class JourneyExtractor {
      * @param minutes le nombre de minutes après minuit
      * @return un objet LocalDateTime correspondant à la date et l'heure calculée
      */
-    private static LocalDateTime createDateTime(LocalDate date, int minutes) {
+    static LocalDateTime createDateTime(LocalDate date, int minutes) {
         return LocalDateTime.of(date, LocalTime.MIDNIGHT).plusMinutes(minutes);
     }
 
@@ -430,7 +430,7 @@ public final class JourneyExtractor {
      * @return l'objet Stop correspondant
      * @throws IllegalArgumentException si stopId est invalide
      */
-    private static Stop createStop(TimeTable timeTable, int stopId) {
+    static Stop createStop(TimeTable timeTable, int stopId) {
         if (stopId < 0) {
             throw new IllegalArgumentException();
         }
@@ -465,7 +465,7 @@ public final class JourneyExtractor {
      * @return l'objet Stop correspondant à la gare
      * @throws IllegalArgumentException si stationId est invalide
      */
-    private static Stop createStationStop(TimeTable timeTable, int stationId) {
+    static Stop createStationStop(TimeTable timeTable, int stationId) {
         if (stationId < 0 || stationId >= timeTable.stations().size()) {
             throw new IllegalArgumentException();
         }
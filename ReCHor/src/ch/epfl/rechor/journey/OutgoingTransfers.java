@@ -0,0 +1,103 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.PackedRange;
+import ch.epfl.rechor.timetable.Transfers;
+
+import java.util.Arrays;
+
+/**
+ * Index des changements par gare de départ.
+ * <p>
+ * La table des changements de l'horaire est triée par gare d'arrivée, ce qui convient au parcours
+ * à rebours des liaisons, mais pas aux parcours en avant, qui doivent énumérer les gares atteignables
+ * à pied depuis une gare donnée. Cet index, calculé une fois pour toutes, range les changements
+ * partant de la gare s aux index [start(s), end(s)).
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+final class OutgoingTransfers {
+
+    // Valeur retournée par minutesBetween en l'absence de changement
+    static final int NONE = -1;
+
+    private final int[] start;
+    private final int[] arrStationIds;
+    private final int[] minutes;
+
+    /**
+     * Construit l'index des changements donnés, pour un horaire comportant le nombre de gares
+     * donné.
+     *
+     * @param transfers les changements de l'horaire
+     * @param nStations le nombre de gares de l'horaire
+     */
+    OutgoingTransfers(Transfers transfers, int nStations) {
+        int nTransfers = transfers.size();
+
+        // Comptage des changements partant de chaque gare, puis répartition
+        int[] starts = new int[nStations + 1];
+        for (int i = 0; i < nTransfers; i++) {
+            starts[transfers.depStationId(i) + 1] += 1;
+        }
+        for (int s = 0; s < nStations; s++) {
+            starts[s + 1] += starts[s];
+        }
+        int[] arrStations = new int[nTransfers];
+        int[] mins = new int[nTransfers];
+        int[] next = Arrays.copyOf(starts, nStations);
+        for (int arrStation = 0; arrStation < nStations; arrStation++) {
+            int range = transfers.arrivingAt(arrStation);
+            for (int i = PackedRange.startInclusive(range);
+                 i < PackedRange.endExclusive(range); i++) {
+                int slot = next[transfers.depStationId(i)]++;
+                arrStations[slot] = arrStation;
+                mins[slot] = transfers.minutes(i);
+            }
+        }
+
+        this.start = starts;
+        this.arrStationIds = arrStations;
+        this.minutes = mins;
+    }
+
+    /**
+     * Retourne le premier index des changements partant de la gare donnée.
+     */
+    int start(int depStationId) {
+        return start[depStationId];
+    }
+
+    /**
+     * Retourne l'index suivant le dernier changement partant de la gare donnée.
+     */
+    int end(int depStationId) {
+        return start[depStationId + 1];
+    }
+
+    /**
+     * Retourne la gare d'arrivée du changement d'index donné.
+     */
+    int arrStationId(int i) {
+        return arrStationIds[i];
+    }
+
+    /**
+     * Retourne la durée, en minutes, du changement d'index donné.
+     */
+    int minutes(int i) {
+        return minutes[i];
+    }
+
+    /**
+     * Retourne la durée du changement entre deux gares, ou {@code NONE} s'il n'existe pas.
+     */
+    int minutesBetween(int depStationId, int arrStationId) {
+        for (int i = start(depStationId); i < end(depStationId); i++) {
+            if (arrStationIds[i] == arrStationId) {
+                return minutes[i];
+            }
+        }
+        return NONE;
+    }
+}
@@ -6,7 +6,10 @@ import ch.epfl.rechor.timetable.Trips;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Enregistrement qui représente un profil, c'est-à-dire une table donnant pour chaque gare du
@@ -32,6 +35,18 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId,
         stationFront = List.copyOf(stationFront);
     }
 
+    /**
+     * Retourne un profil identique à celui-ci, mais pour la date donnée. Cela n'a de sens que si
+     * les données de cette date ont la même clé ({@link TimeTable#dayKey}) que celles de la date
+     * du profil, les frontières de Pareto étant alors les mêmes.
+     *
+     * @param newDate la date du nouveau profil
+     * @return le profil pour la date donnée
+     */
+    public Profile withDate(LocalDate newDate) {
+        return new Profile(timeTable, newDate, arrStationId, stationFront);
+    }
+
     /**
      * Retourne les liaisons correspondant à la date du profil.
      *
@@ -68,6 +83,11 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId,
     /**
      * La classe Builder permet de construire un profil augmenté.
      * Un profil augmenté contient, outre les frontières pour les gares, celles pour les courses.
+     * <p>
+     * Par défaut, les bâtisseurs de frontières sont stockés dans des tableaux indexés par gare et
+     * par course. Un bâtisseur « creux », obtenu avec {@link #sparse}, les stocke plutôt dans des
+     * tables associatives, ce qui convient lorsque seule une petite partie des gares et des courses
+     * est concernée (profil restreint à quelques gares de départ, par exemple).
      *
      * @author Antoine Lepin (390950)
      * @author Darius Giannoli (380759)
@@ -78,9 +98,16 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId,
         private final LocalDate date;
         private final int arrStationId;
 
-        // Tableaux de bâtisseurs de frontières
+        // Nombre de gares et de courses, bornant les index valides
+        private final int stationCount;
+        private final int tripCount;
+
+        // Tableaux de bâtisseurs de frontières (null si le bâtisseur est creux)
         private final ParetoFront.Builder[] stationsParetoFront;
         private final ParetoFront.Builder[] tripsParetoFront;
+        // Tables des bâtisseurs de frontières (null si le bâtisseur n'est pas creux)
+        private final Map<Integer, ParetoFront.Builder> sparseStations;
+        private final Map<Integer, ParetoFront.Builder> sparseTrips;
 
         /**
          * Construit un bâtisseur de profil pour l'horaire, la date et la gare de destination
@@ -91,13 +118,83 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId,
          * @param arrStationId l'indice de la gare d'arrivée (destination).
          */
         public Builder(TimeTable timeTable, LocalDate date, int arrStationId) {
+            this(timeTable, date, arrStationId, false);
+        }
+
+        /**
+         * Construit un bâtisseur de profil, dense ou creux.
+         */
+        private Builder(TimeTable timeTable, LocalDate date, int arrStationId, boolean sparse) {
             this.timeTable = timeTable;
             this.date = date;
             this.arrStationId = arrStationId;
+            this.stationCount = timeTable.stations().size();
+            this.tripCount = timeTable.tripsFor(date).size();
+
+            // Initialisation des tableaux ou des tables de builders (vides initialement)
+            this.stationsParetoFront = sparse ? null : new ParetoFront.Builder[stationCount];
+            this.tripsParetoFront = sparse ? null : new ParetoFront.Builder[tripCount];
+            this.sparseStations = sparse ? new HashMap<>() : null;
+            this.sparseTrips = sparse ? new HashMap<>() : null;
+        }
+
+        /**
+         * Construit une copie profonde du bâtisseur donné : ses bâtisseurs de frontières sont
+         * eux-mêmes copiés, de sorte que la copie et l'original peuvent ensuite être modifiés
+         * indépendamment. Cela permet de conserver l'état d'un calcul de profil en cours.
+         *
+         * @param that le bâtisseur à copier.
+         */
+        public Builder(Builder that) {
+            this.timeTable = that.timeTable;
+            this.date = that.date;
+            this.arrStationId = that.arrStationId;
+            this.stationCount = that.stationCount;
+            this.tripCount = that.tripCount;
+            this.stationsParetoFront = that.stationsParetoFront == null
+                    ? null : copyOf(that.stationsParetoFront);
+            this.tripsParetoFront = that.tripsParetoFront == null
+                    ? null : copyOf(that.tripsParetoFront);
+            this.sparseStations = that.sparseStations == null
+                    ? null : copyOf(that.sparseStations);
+            this.sparseTrips = that.sparseTrips == null ? null : copyOf(that.sparseTrips);
+        }
+
+        /**
+         * Retourne une copie du tableau de bâtisseurs donné, dont les bâtisseurs sont copiés.
+         */
+        private static ParetoFront.Builder[] copyOf(ParetoFront.Builder[] builders) {
+            ParetoFront.Builder[] copy = new ParetoFront.Builder[builders.length];
+            for (int i = 0; i < builders.length; i++) {
+                if (builders[i] != null) {
+                    copy[i] = new ParetoFront.Builder(builders[i]);
+                }
+            }
+            return copy;
+        }
 
-            // Initialisation des tableaux de builders (vides initialement)
-            this.stationsParetoFront = new ParetoFront.Builder[timeTable.stations().size()];
-            this.tripsParetoFront = new ParetoFront.Builder[timeTable.tripsFor(date).size()];
+        /**
+         * Retourne une copie de la table de bâtisseurs donnée, dont les bâtisseurs sont copiés.
+         */
+        private static Map<Integer, ParetoFront.Builder> copyOf(
+                Map<Integer, ParetoFront.Builder> builders) {
+            Map<Integer, ParetoFront.Builder> copy = new HashMap<>();
+            builders.forEach((id, builder) -> copy.put(id, new ParetoFront.Builder(builder)));
+            return copy;
+        }
+
+        /**
+         * Construit un bâtisseur de profil creux pour l'horaire, la date et la gare de
+         * destination donnés, dont les bâtisseurs de frontières sont stockés dans des tables
+         * associatives indexées par gare et par course.
+         *
+         * @param timeTable    l'horaire associé.
+         * @param date         la date du profil.
+         * @param arrStationId l'indice de la gare d'arrivée (destination).
+         * @return un bâtisseur de profil creux
+         */
+        public static Builder sparse(TimeTable timeTable, LocalDate date, int arrStationId) {
+            return new Builder(timeTable, date, arrStationId, true);
         }
 
         /**
@@ -109,7 +206,9 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId,
          */
         public ParetoFront.Builder forStation(int stationId) {
             validateStationId(stationId);
-            return stationsParetoFront[stationId];
+            return sparseStations != null
+                    ? sparseStations.get(stationId)
+                    : stationsParetoFront[stationId];
         }
 
         /**
@@ -121,7 +220,7 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId,
          */
         public ParetoFront.Builder forTrip(int tripId) {
             validateTripId(tripId);
-            return tripsParetoFront[tripId];
+            return sparseTrips != null ? sparseTrips.get(tripId) : tripsParetoFront[tripId];
         }
 
         /**
@@ -133,7 +232,11 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId,
          */
         public void setForStation(int stationId, ParetoFront.Builder builder) {
             validateStationId(stationId);
-            stationsParetoFront[stationId] = builder;
+            if (sparseStations != null) {
+                sparseStations.put(stationId, builder);
+            } else {
+                stationsParetoFront[stationId] = builder;
+            }
         }
 
         /**
@@ -145,7 +248,11 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId,
          */
         public void setForTrip(int tripId, ParetoFront.Builder builder) {
             validateTripId(tripId);
-            tripsParetoFront[tripId] = builder;
+            if (sparseTrips != null) {
+                sparseTrips.put(tripId, builder);
+            } else {
+                tripsParetoFront[tripId] = builder;
+            }
         }
 
         /**
@@ -156,6 +263,15 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId,
          * @return le profil construit
          */
         public Profile build() {
+            if (sparseStations != null) {
+                // Seules les gares présentes dans la table ont une frontière non vide
+                List<ParetoFront> stationFront =
+                        new ArrayList<>(Collections.nCopies(stationCount, ParetoFront.EMPTY));
+                sparseStations.forEach((stationId, builder) ->
+                        stationFront.set(stationId, builder.build()));
+                return new Profile(timeTable, date, arrStationId, stationFront);
+            }
+
             List<ParetoFront> stationFront = new ArrayList<>(stationsParetoFront.length);
 
             // Conversion des builders en ParetoFront
@@ -173,7 +289,7 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId,
          * @throws IndexOutOfBoundsException si l'identifiant est invalide
          */
         private void validateStationId(int stationId) {
-            if (stationId < 0 || stationId >= stationsParetoFront.length) {
+            if (stationId < 0 || stationId >= stationCount) {
                 throw new IndexOutOfBoundsException();
             }
         }
@@ -185,7 +301,7 @@ public record Profile(TimeTable timeTable, LocalDate date, int arrStationId,
          * @throws IndexOutOfBoundsException si l'identifiant est invalide
          */
         private void validateTripId(int tripId) {
-            if (tripId < 0 || tripId >= tripsParetoFront.length) {
+            if (tripId < 0 || tripId >= tripCount) {
                 throw new IndexOutOfBoundsException();
             }
         }
@@ -0,0 +1,383 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.Connections;
+import ch.epfl.rechor.timetable.TimeTable;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Représente un routeur calculant, pour une heure de départ fixée, les voyages optimaux d'une
+ * gare de départ à une gare d'arrivée au moyen de l'algorithme RAPTOR (Round-bAsed Public
+ * Transit Optimized Router).
+ * <p>
+ * Contrairement à {@link Router} et {@link EarliestArrivalRouter}, qui parcourent les liaisons
+ * une à une, ce routeur procède par tours : le tour k détermine l'heure d'arrivée au plus tôt à
+ * chaque gare avec k courses au plus, en parcourant les motifs de lignes (voir
+ * {@link RoutePatterns}) desservant les gares améliorées au tour précédent. Les voyages obtenus
+ * forment donc la frontière de Pareto des critères (heure d'arrivée, nombre de changements),
+ * comme celle d'un profil pour l'heure de départ donnée. Les motifs sont déduits des liaisons
+ * d'un jour une seule fois, puis réutilisés pour tous les jours dont les données ont la même clé
+ * (voir {@link TimeTable#dayKey}) ; seuls ceux de la dernière clé demandée sont conservés.
+ * <p>
+ * Les motifs d'un même tour sont indépendants et peuvent être parcourus en parallèle, dans le
+ * pool donné à la construction, lorsqu'ils sont assez nombreux. Le résultat ne dépend pas de
+ * l'ordre du parcours.
+ * <p>
+ * Les changements suivent le même modèle que {@link EarliestArrivalRouter} : l'heure d'arrivée
+ * d'un voyage inclut la durée du changement vers la gare de destination.
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class RaptorRouter {
+
+    // Nombre maximal de courses d'un voyage, égal au nombre de changements représentables plus 1
+    private static final int MAX_ROUNDS = 128;
+    // Nombre de motifs d'un tour à partir duquel ils sont parcourus en parallèle
+    private static final int PARALLEL_THRESHOLD = 256;
+    // Valeur des tableaux d'état indiquant une absence (de gare, de liaison, etc.)
+    private static final int NONE = -1;
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    // Étiquette d'arrivée : heure d'arrivée (12 bits), liaisons de montée et de descente (24 bits
+    // chacune), de sorte que la plus petite étiquette soit celle de l'arrivée la plus précoce
+    private static final long NO_LABEL = Long.MAX_VALUE;
+    private static final int MINUTES_OFFSET = 240;
+    private static final int ARR_SHIFT = 48;
+    private static final int BOARD_SHIFT = 24;
+    private static final int CONNECTION_MASK = 0xFFFFFF;
+
+    private final TimeTable timetable;
+    private final ForkJoinPool pool;
+    private final OutgoingTransfers outgoing;
+    // Motifs de la dernière clé de jour demandée, publiés en un seul bloc avec leur clé
+    private volatile DayPatterns cached = null;
+
+    /**
+     * Motifs conservés en cache.
+     *
+     * @param key      la clé des données du jour, telle que retournée par {@link TimeTable#dayKey}
+     * @param patterns les motifs des liaisons de ce jour
+     */
+    private record DayPatterns(Object key, RoutePatterns patterns) {
+    }
+
+    /**
+     * Construit un routeur pour l'horaire donné, parcourant les motifs en parallèle dans le pool
+     * commun.
+     *
+     * @param timetable l'horaire dans lequel chercher les voyages
+     */
+    public RaptorRouter(TimeTable timetable) {
+        this(timetable, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construit un routeur pour l'horaire donné, parcourant les motifs en parallèle dans le pool
+     * donné.
+     *
+     * @param timetable l'horaire dans lequel chercher les voyages
+     * @param pool      le pool dans lequel parcourir les motifs
+     */
+    public RaptorRouter(TimeTable timetable, ForkJoinPool pool) {
+        this.timetable = timetable;
+        this.pool = Objects.requireNonNull(pool);
+        this.outgoing = new OutgoingTransfers(timetable.transfers(),
+                timetable.stations().size());
+    }
+
+    /**
+     * Retourne l'horaire utilisé par le routeur.
+     *
+     * @return l'horaire
+     */
+    public TimeTable timetable() {
+        return timetable;
+    }
+
+    /**
+     * Calcule l'heure d'arrivée au plus tôt à la gare d'arrivée en partant de la gare de départ
+     * au plus tôt à l'heure donnée, en utilisant au moins une liaison.
+     *
+     * @param date         la date du voyage
+     * @param depStationId l'indice de la gare de départ
+     * @param arrStationId l'indice de la gare d'arrivée
+     * @param depMins      l'heure de départ, en minutes après minuit
+     * @return l'heure d'arrivée en minutes après minuit, changement à destination compris,
+     * ou -1 si la gare d'arrivée n'est pas atteignable
+     * @throws IndexOutOfBoundsException si l'un des indices de gare est invalide
+     */
+    public int earliestArrival(LocalDate date, int depStationId, int arrStationId, int depMins) {
+        List<Round> rounds = rounds(patternsFor(date), depStationId, arrStationId, depMins);
+        int best = UNREACHED;
+        for (int k = 1; k < rounds.size(); k++) {
+            best = Math.min(best, rounds.get(k).ready[arrStationId]);
+        }
+        return best == UNREACHED ? NONE : best;
+    }
+
+    /**
+     * Calcule les voyages optimaux de la gare de départ à la gare d'arrivée en partant au plus
+     * tôt à l'heure donnée, c.-à-d. pour chaque nombre de changements, le voyage arrivant au plus
+     * tôt s'il arrive plus tôt que tous ceux ayant moins de changements. Les voyages ont la même
+     * forme que ceux extraits d'un profil par {@link JourneyExtractor}.
+     *
+     * @param date         la date du voyage
+     * @param depStationId l'indice de la gare de départ
+     * @param arrStationId l'indice de la gare d'arrivée
+     * @param depMins      l'heure de départ, en minutes après minuit
+     * @return les voyages, par nombre de changements croissant (et donc heure d'arrivée
+     * décroissante), vide si la gare d'arrivée n'est pas atteignable
+     * @throws IndexOutOfBoundsException si l'un des indices de gare est invalide
+     */
+    public List<Journey> journeys(LocalDate date, int depStationId, int arrStationId,
+                                  int depMins) {
+        RoutePatterns patterns = patternsFor(date);
+        List<Round> rounds = rounds(patterns, depStationId, arrStationId, depMins);
+        List<Journey> journeys = new ArrayList<>();
+        int best = UNREACHED;
+        for (int k = 1; k < rounds.size(); k++) {
+            int arrMins = rounds.get(k).ready[arrStationId];
+            if (arrMins < best) {
+                best = arrMins;
+                journeys.add(buildJourney(date, patterns.connections(), rounds, k, depStationId,
+                        arrStationId));
+            }
+        }
+        return journeys;
+    }
+
+    /**
+     * État d'un tour de l'algorithme : heure d'arrivée au plus tôt (étiquette) à chaque gare par
+     * une course de plus qu'au tour précédent, et heure à laquelle on est prêt à partir de chaque
+     * gare après un changement. Seules les améliorations du tour y figurent.
+     */
+    private static final class Round {
+        private final AtomicLongArray arrivals;
+        private final int[] ready;
+        // Gare depuis laquelle on a changé pour être prêt à partir de chaque gare
+        private final int[] readyVia;
+
+        private Round(int nStations) {
+            this.arrivals = new AtomicLongArray(nStations);
+            this.ready = new int[nStations];
+            this.readyVia = new int[nStations];
+            for (int s = 0; s < nStations; s++) {
+                arrivals.set(s, NO_LABEL);
+            }
+            Arrays.fill(ready, UNREACHED);
+            Arrays.fill(readyVia, NONE);
+        }
+    }
+
+    /**
+     * Retourne les motifs du jour donné, recalculés lorsque la clé de ses données diffère de celle
+     * des motifs en cache. Le calcul a lieu hors de tout verrou : deux fils peuvent donc calculer
+     * les mêmes motifs simultanément, ce qui ne fait que retarder l'un d'eux.
+     */
+    RoutePatterns patternsFor(LocalDate date) {
+        Object key = timetable.dayKey(date);
+        DayPatterns data = cached;
+        if (data == null || !key.equals(data.key())) {
+            data = new DayPatterns(key, new RoutePatterns(timetable,
+                    timetable.connectionsFor(date), timetable.tripsFor(date).size()));
+            cached = data;
+        }
+        return data.patterns();
+    }
+
+    /**
+     * Effectue les tours de l'algorithme sur les motifs donnés jusqu'à ce qu'aucune gare ne soit
+     * améliorée, et retourne leur état, le tour d'index 0 étant celui du départ, ou une liste
+     * vide si la gare d'arrivée n'est pas atteignable.
+     */
+    private List<Round> rounds(RoutePatterns patterns, int depStationId, int arrStationId,
+                               int depMins) {
+        int nStations = timetable.stations().size();
+        Objects.checkIndex(depStationId, nStations);
+        Objects.checkIndex(arrStationId, nStations);
+        Connections connections = patterns.connections();
+
+        // Heure au plus tôt, tous tours confondus, de l'arrivée et du départ de chaque gare
+        int[] bestArrival = new int[nStations];
+        int[] bestReady = new int[nStations];
+        Arrays.fill(bestArrival, UNREACHED);
+        Arrays.fill(bestReady, UNREACHED);
+
+        List<Round> rounds = new ArrayList<>();
+        Round start = new Round(nStations);
+        for (int i = outgoing.start(depStationId); i < outgoing.end(depStationId); i++) {
+            int target = outgoing.arrStationId(i);
+            start.ready[target] = depMins + outgoing.minutes(i);
+        }
+        // Sans changement défini au sein de la gare de départ, on peut y partir immédiatement
+        if (start.ready[depStationId] == UNREACHED) {
+            start.ready[depStationId] = depMins;
+        }
+        System.arraycopy(start.ready, 0, bestReady, 0, nStations);
+        rounds.add(start);
+
+        int bestDestination = UNREACHED;
+        Round previous = start;
+        while (rounds.size() < MAX_ROUNDS) {
+            // Position de la première gare améliorée au tour précédent dans chaque motif
+            int[] scanFrom = new int[patterns.size()];
+            Arrays.fill(scanFrom, NONE);
+            List<Integer> marked = new ArrayList<>();
+            for (int s = 0; s < nStations; s++) {
+                if (previous.ready[s] == UNREACHED) {
+                    continue;
+                }
+                for (int i = patterns.stationStart(s); i < patterns.stationEnd(s); i++) {
+                    int pattern = patterns.patternAt(i);
+                    int position = patterns.positionAt(i);
+                    if (position == patterns.length(pattern)) {
+                        continue;
+                    }
+                    if (scanFrom[pattern] == NONE) {
+                        marked.add(pattern);
+                        scanFrom[pattern] = position;
+                    } else {
+                        scanFrom[pattern] = Math.min(scanFrom[pattern], position);
+                    }
+                }
+            }
+            if (marked.isEmpty()) {
+                break;
+            }
+
+            Round round = new Round(nStations);
+            int bound = bestDestination;
+            IntStream scans = marked.stream().mapToInt(Integer::intValue);
+            if (marked.size() >= PARALLEL_THRESHOLD) {
+                pool.submit(() -> scans.parallel().forEach(p -> scanPattern(patterns,
+                        connections, p, scanFrom[p], bestReady, bestArrival, bound,
+                        round))).join();
+            } else {
+                scans.forEach(p -> scanPattern(patterns, connections, p, scanFrom[p], bestReady,
+                        bestArrival, bound, round));
+            }
+
+            // Changements depuis les gares améliorées
+            boolean improved = false;
+            for (int s = 0; s < nStations; s++) {
+                long label = round.arrivals.get(s);
+                if (label == NO_LABEL) {
+                    continue;
+                }
+                int arrMins = arrMins(label);
+                bestArrival[s] = arrMins;
+                for (int i = outgoing.start(s); i < outgoing.end(s); i++) {
+                    int target = outgoing.arrStationId(i);
+                    int readyMins = arrMins + outgoing.minutes(i);
+                    // La destination peut être la gare de départ, à laquelle on est prêt dès
+                    // le tour 0, mais qu'un voyage doit atteindre au moyen d'une liaison
+                    if ((readyMins < bestReady[target] || target == arrStationId)
+                            && readyMins < round.ready[target]
+                            && readyMins < bestDestination) {
+                        round.ready[target] = readyMins;
+                        round.readyVia[target] = s;
+                        improved = true;
+                    }
+                }
+            }
+            for (int s = 0; s < nStations; s++) {
+                bestReady[s] = Math.min(bestReady[s], round.ready[s]);
+            }
+            bestDestination = Math.min(bestDestination, round.ready[arrStationId]);
+            rounds.add(round);
+            previous = round;
+            if (!improved) {
+                break;
+            }
+        }
+        return bestDestination == UNREACHED ? List.of() : rounds;
+    }
+
+    /**
+     * Parcourt le motif donné à partir de la position donnée, en montant dans la première course
+     * que l'on peut prendre à chaque arrêt, et enregistre les arrivées améliorées dans l'état du
+     * tour.
+     *
+     * @param bestReady   l'heure au plus tôt à laquelle on peut partir de chaque gare
+     * @param bestArrival l'heure d'arrivée au plus tôt à chaque gare lors des tours précédents
+     * @param bound       l'heure d'arrivée au plus tôt à destination lors des tours précédents
+     */
+    private static void scanPattern(RoutePatterns patterns, Connections connections, int pattern,
+                                    int from, int[] bestReady, int[] bestArrival, int bound,
+                                    Round round) {
+        int length = patterns.length(pattern);
+        int trip = patterns.tripCount(pattern);
+        int boardConnection = NONE;
+        for (int position = from; position <= length; position++) {
+            int stationId = patterns.stationId(pattern, position);
+            if (boardConnection != NONE) {
+                int alight = patterns.connectionId(pattern, trip, position - 1);
+                int arrMins = connections.arrMins(alight);
+                if (arrMins < bestArrival[stationId] && arrMins < bound) {
+                    round.arrivals.accumulateAndGet(stationId,
+                            label(arrMins, boardConnection, alight), Math::min);
+                }
+            }
+            if (position < length && bestReady[stationId] != UNREACHED) {
+                // Une course plus précoce peut être prise à cet arrêt
+                int earliest = patterns.firstTripFrom(pattern, position, bestReady[stationId]);
+                if (earliest < trip) {
+                    trip = earliest;
+                    boardConnection = patterns.connectionId(pattern, trip, position);
+                }
+            }
+        }
+    }
+
+    /**
+     * Empaquète une étiquette d'arrivée.
+     */
+    private static long label(int arrMins, int boardConnection, int alightConnection) {
+        return (long) (arrMins + MINUTES_OFFSET) << ARR_SHIFT
+                | (long) boardConnection << BOARD_SHIFT
+                | alightConnection;
+    }
+
+    /**
+     * Retourne l'heure d'arrivée de l'étiquette donnée.
+     */
+    private static int arrMins(long label) {
+        return (int) (label >>> ARR_SHIFT) - MINUTES_OFFSET;
+    }
+
+    /**
+     * Reconstruit le voyage arrivant à destination au tour donné, en remontant les tours jusqu'au
+     * départ. La montée dans chaque course est rattachée au premier tour auquel on pouvait être
+     * prêt à la prendre.
+     */
+    private Journey buildJourney(LocalDate date, Connections connections, List<Round> rounds,
+                                 int k, int depStationId, int arrStationId) {
+        List<int[]> rides = new ArrayList<>();
+        int stationId = rounds.get(k).readyVia[arrStationId];
+        while (k > 0) {
+            long label = rounds.get(k).arrivals.get(stationId);
+            int board = (int) (label >>> BOARD_SHIFT) & CONNECTION_MASK;
+            int alight = (int) label & CONNECTION_MASK;
+            rides.addFirst(new int[]{board, alight});
+
+            int boardStation = timetable.stationId(connections.depStopId(board));
+            int boardMins = connections.depMins(board);
+            int j = 0;
+            while (rounds.get(j).ready[boardStation] > boardMins) {
+                j += 1;
+            }
+            k = j;
+            stationId = rounds.get(j).readyVia[boardStation];
+        }
+        return EarliestArrivalRouter.journey(timetable, outgoing, connections, date,
+                depStationId, arrStationId, rides);
+    }
+}
@@ -0,0 +1,302 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.Connections;
+import ch.epfl.rechor.timetable.TimeTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Motifs de lignes d'un jour, utilisés par {@link RaptorRouter}.
+ * <p>
+ * Un motif regroupe les courses du jour desservant exactement la même suite de gares, et dont
+ * aucune ne dépasse une autre : si une course part d'une gare du motif avant une autre, elle
+ * part aussi avant elle de toutes les autres gares, et y arrive avant elle. Les courses qui en
+ * dépasseraient une autre sont placées dans un motif distinct desservant les mêmes gares. Les
+ * courses d'un motif peuvent desservir des voies ou quais différents d'une même gare, puisque
+ * les changements sont définis entre gares. Les
+ * courses d'un motif sont triées par heure de départ, ce qui permet de trouver par recherche
+ * dichotomique la première course que l'on peut prendre à une gare donnée.
+ * <p>
+ * Les motifs sont déduits des liaisons du jour en suivant, pour chaque course, les liaisons
+ * suivantes depuis sa première liaison, celle de plus petite position : les courses raccourcies,
+ * comme celles du lendemain dans {@link ch.epfl.rechor.timetable.OvernightConnections}, ne
+ * commencent pas forcément à la position 0. Les courses d'un motif ayant L liaisons sont rangées
+ * dans un unique tableau : la liaison d'index i de la course t du motif p est à l'index
+ * {@code connectionStart(p) + t * L + i}.
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+final class RoutePatterns {
+
+    private final Connections connections;
+    // Gares desservies par les motifs, celles du motif p occupant les index
+    // [positionStart[p], positionStart[p + 1])
+    private final int[] positionStart;
+    private final int[] stationIds;
+    // Liaisons des courses des motifs, celles du motif p commençant à connectionStart[p]
+    private final int[] connectionStart;
+    private final int[] tripCounts;
+    private final int[] tripConnections;
+    // Positions des gares dans les motifs, celles de la gare s occupant les index
+    // [stationStart[s], stationStart[s + 1])
+    private final int[] stationStart;
+    private final int[] stationPatterns;
+    private final int[] stationPositions;
+
+    /**
+     * Suite des gares desservies par une course, utilisée comme clé de regroupement.
+     */
+    private record StationSequence(int[] stations) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StationSequence that && Arrays.equals(stations, that.stations);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(stations);
+        }
+    }
+
+    /**
+     * Déduit les motifs des courses des liaisons données.
+     *
+     * @param timetable   l'horaire
+     * @param connections les liaisons du jour
+     * @param tripCount   le nombre de courses du jour
+     */
+    RoutePatterns(TimeTable timetable, Connections connections, int tripCount) {
+        this.connections = connections;
+
+        // Liaisons de chaque course, par position, en partant de sa première liaison
+        int[] firstConnection = new int[tripCount];
+        Arrays.fill(firstConnection, -1);
+        for (int cId = 0; cId < connections.size(); cId++) {
+            int tripId = connections.tripId(cId);
+            int first = firstConnection[tripId];
+            if (first < 0 || connections.tripPos(cId) < connections.tripPos(first)) {
+                firstConnection[tripId] = cId;
+            }
+        }
+        Map<StationSequence, List<int[]>> groups = new HashMap<>();
+        List<StationSequence> order = new ArrayList<>();
+        for (int tripId = 0; tripId < tripCount; tripId++) {
+            int first = firstConnection[tripId];
+            if (first < 0) {
+                continue;
+            }
+            List<Integer> tripConns = new ArrayList<>();
+            int cId = first;
+            do {
+                tripConns.add(cId);
+                cId = connections.nextConnectionId(cId);
+            } while (cId != first);
+
+            int[] conns = tripConns.stream().mapToInt(Integer::intValue).toArray();
+            int[] stations = new int[conns.length + 1];
+            for (int i = 0; i < conns.length; i++) {
+                stations[i] = timetable.stationId(connections.depStopId(conns[i]));
+            }
+            stations[conns.length] =
+                    timetable.stationId(connections.arrStopId(conns[conns.length - 1]));
+            StationSequence key = new StationSequence(stations);
+            groups.computeIfAbsent(key, k -> {
+                order.add(k);
+                return new ArrayList<>();
+            }).add(conns);
+        }
+
+        // Séparation de chaque groupe en motifs sans dépassement
+        List<int[]> patternStations = new ArrayList<>();
+        List<List<int[]>> patternTrips = new ArrayList<>();
+        for (StationSequence key : order) {
+            List<int[]> trips = groups.get(key);
+            trips.sort((t1, t2) -> compareTrips(connections, t1, t2));
+            List<List<int[]>> split = new ArrayList<>();
+            for (int[] trip : trips) {
+                List<int[]> target = null;
+                for (List<int[]> pattern : split) {
+                    if (follows(connections, pattern.getLast(), trip)) {
+                        target = pattern;
+                        break;
+                    }
+                }
+                if (target == null) {
+                    target = new ArrayList<>();
+                    split.add(target);
+                }
+                target.add(trip);
+            }
+            for (List<int[]> pattern : split) {
+                patternStations.add(key.stations());
+                patternTrips.add(pattern);
+            }
+        }
+
+        int nPatterns = patternStations.size();
+        int nPositions = 0;
+        int nConnections = 0;
+        for (int p = 0; p < nPatterns; p++) {
+            nPositions += patternStations.get(p).length;
+            nConnections += (patternStations.get(p).length - 1) * patternTrips.get(p).size();
+        }
+        this.positionStart = new int[nPatterns + 1];
+        this.stationIds = new int[nPositions];
+        this.connectionStart = new int[nPatterns];
+        this.tripCounts = new int[nPatterns];
+        this.tripConnections = new int[nConnections];
+        int nextConnection = 0;
+        for (int p = 0; p < nPatterns; p++) {
+            int[] stations = patternStations.get(p);
+            positionStart[p + 1] = positionStart[p] + stations.length;
+            System.arraycopy(stations, 0, stationIds, positionStart[p], stations.length);
+            connectionStart[p] = nextConnection;
+            tripCounts[p] = patternTrips.get(p).size();
+            for (int[] trip : patternTrips.get(p)) {
+                System.arraycopy(trip, 0, tripConnections, nextConnection, trip.length);
+                nextConnection += trip.length;
+            }
+        }
+
+        // Index des positions des gares dans les motifs
+        int nStations = timetable.stations().size();
+        this.stationStart = new int[nStations + 1];
+        for (int i = 0; i < nPositions; i++) {
+            stationStart[stationIds[i] + 1] += 1;
+        }
+        for (int s = 0; s < nStations; s++) {
+            stationStart[s + 1] += stationStart[s];
+        }
+        this.stationPatterns = new int[nPositions];
+        this.stationPositions = new int[nPositions];
+        int[] next = Arrays.copyOf(stationStart, nStations);
+        for (int p = 0; p < nPatterns; p++) {
+            for (int i = positionStart[p]; i < positionStart[p + 1]; i++) {
+                int slot = next[stationIds[i]]++;
+                stationPatterns[slot] = p;
+                stationPositions[slot] = i - positionStart[p];
+            }
+        }
+    }
+
+    /**
+     * Compare deux courses desservant les mêmes gares par heure de départ de leur première
+     * gare, puis par heure d'arrivée à leur dernière gare.
+     */
+    private static int compareTrips(Connections connections, int[] t1, int[] t2) {
+        int byDep = Integer.compare(connections.depMins(t1[0]), connections.depMins(t2[0]));
+        return byDep != 0
+                ? byDep
+                : Integer.compare(connections.arrMins(t1[t1.length - 1]),
+                connections.arrMins(t2[t2.length - 1]));
+    }
+
+    /**
+     * Retourne vrai si et seulement si la seconde course ne part ni n'arrive à aucune gare avant
+     * la première.
+     */
+    private static boolean follows(Connections connections, int[] before, int[] after) {
+        for (int i = 0; i < before.length; i++) {
+            if (connections.depMins(after[i]) < connections.depMins(before[i])
+                    || connections.arrMins(after[i]) < connections.arrMins(before[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retourne les liaisons à partir desquelles les motifs ont été déduits.
+     */
+    Connections connections() {
+        return connections;
+    }
+
+    /**
+     * Retourne le nombre de motifs.
+     */
+    int size() {
+        return tripCounts.length;
+    }
+
+    /**
+     * Retourne le nombre de liaisons de chaque course du motif donné, qui dessert une gare de
+     * plus.
+     */
+    int length(int pattern) {
+        return positionStart[pattern + 1] - positionStart[pattern] - 1;
+    }
+
+    /**
+     * Retourne le nombre de courses du motif donné.
+     */
+    int tripCount(int pattern) {
+        return tripCounts[pattern];
+    }
+
+    /**
+     * Retourne l'index de la gare du motif donné à la position donnée.
+     */
+    int stationId(int pattern, int position) {
+        return stationIds[positionStart[pattern] + position];
+    }
+
+    /**
+     * Retourne l'index de la liaison partant de la position donnée de la course d'index donné
+     * (dans le motif) du motif donné.
+     */
+    int connectionId(int pattern, int trip, int position) {
+        return tripConnections[connectionStart[pattern] + trip * length(pattern) + position];
+    }
+
+    /**
+     * Retourne l'index, dans le motif donné, de la première course partant de la position donnée
+     * au plus tôt à l'heure donnée, ou le nombre de courses du motif s'il n'y en a pas.
+     */
+    int firstTripFrom(int pattern, int position, int depMins) {
+        int low = 0;
+        int high = tripCounts[pattern];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (connections.depMins(connectionId(pattern, middle, position)) < depMins) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Retourne le premier index des positions de la gare donnée dans les motifs.
+     */
+    int stationStart(int stationId) {
+        return stationStart[stationId];
+    }
+
+    /**
+     * Retourne l'index suivant le dernier index des positions de la gare donnée dans les motifs.
+     */
+    int stationEnd(int stationId) {
+        return stationStart[stationId + 1];
+    }
+
+    /**
+     * Retourne le motif de la position d'index donné.
+     */
+    int patternAt(int i) {
+        return stationPatterns[i];
+    }
+
+    /**
+     * Retourne la position dans son motif de la position d'index donné.
+     */
+    int positionAt(int i) {
+        return stationPositions[i];
+    }
+}
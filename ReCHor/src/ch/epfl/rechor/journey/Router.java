@@ -2,14 +2,22 @@ package ch.epfl.rechor.journey;
 
 import ch.epfl.rechor.Bits32_24_8;
 import ch.epfl.rechor.PackedRange;
+import ch.epfl.rechor.Preconditions;
 import ch.epfl.rechor.timetable.TimeTable;
 import ch.epfl.rechor.timetable.Connections;
 import ch.epfl.rechor.timetable.Stations;
 import ch.epfl.rechor.timetable.Transfers;
+import ch.epfl.rechor.timetable.Trips;
 
 import java.time.LocalDate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
 
 
 /**
@@ -22,6 +30,46 @@ import java.util.NoSuchElementException;
  */
 public record Router(TimeTable timetable) {
 
+    // Masque de tous les types de véhicules, un bit par type dans l'ordre de leur définition
+    private static final int ALL_VEHICLES = (1 << Vehicle.ALL.size()) - 1;
+    // Nombre maximal de changements représentable dans des critères empaquetés
+    private static final int MAX_CHANGES = 127;
+
+    /**
+     * Limites imposées aux voyages d'un profil. Les tuples des voyages qui les dépassent sont
+     * éliminés pendant le parcours, avant d'être ajoutés aux frontières, ce qui réduit leur
+     * taille. Le profil obtenu contient exactement les voyages optimaux parmi ceux qui respectent
+     * les limites.
+     *
+     * @param maxChanges  le nombre maximal de changements d'un voyage, entre 0 et 127.
+     * @param maxDuration la durée maximale d'un voyage, en minutes, strictement positive.
+     */
+    public record Limits(int maxChanges, int maxDuration) {
+        /**
+         * Absence de limite.
+         */
+        public static final Limits NONE = new Limits(MAX_CHANGES, Integer.MAX_VALUE);
+
+        /**
+         * Vérifie la validité des limites.
+         *
+         * @throws IllegalArgumentException si le nombre de changements n'est pas compris entre
+         *                                  0 et 127, ou si la durée n'est pas strictement
+         *                                  positive.
+         */
+        public Limits {
+            Preconditions.checkArgument(maxChanges >= 0 && maxChanges <= MAX_CHANGES);
+            Preconditions.checkArgument(maxDuration > 0);
+        }
+
+        /**
+         * Retourne l'heure d'arrivée maximale d'un voyage partant à l'heure donnée.
+         */
+        private int maxArrMins(int depMins) {
+            return (int) Math.min(Integer.MAX_VALUE, (long) depMins + maxDuration);
+        }
+    }
+
     /**
      * Calcule le profil des voyages optimaux permettant de se rendre à la gare de destination
      * (destinationStationId) pour le jour spécifié.
@@ -31,13 +79,285 @@ public record Router(TimeTable timetable) {
      * @return le profil (Profile) des voyages optimaux.
      */
     public Profile profile(LocalDate date, int destinationStationId) {
-        // Récupération des gares et du nombre total de gares.
         Profile.Builder profileBuilder = new Profile.Builder(timetable, date, destinationStationId);
-        Stations stations = timetable.stations();
-        int nStations = stations.size();
+        scan(profileBuilder, timetable.connectionsFor(date), walkTimes(destinationStationId),
+                null, null);
+        return profileBuilder.build();
+    }
+
+    /**
+     * Calcule le profil des voyages optimaux permettant de se rendre à la gare de destination
+     * pour le jour spécifié, en n'empruntant que des véhicules des types donnés.
+     * <p>
+     * Le type de véhicule de chaque course du jour est déterminé avant le parcours, qui ignore
+     * les liaisons des courses dont le type n'est pas autorisé. Les frontières ne contiennent
+     * donc que des voyages autorisés, contrairement à un filtrage des voyages extraits d'un
+     * profil complet, qui perdrait les voyages autorisés dominés par des voyages interdits.
+     *
+     * @param date                 la date du voyage.
+     * @param destinationStationId l'indice de la gare de destination.
+     * @param vehicles             les types de véhicules autorisés.
+     * @return le profil (Profile) des voyages optimaux n'empruntant que ces véhicules.
+     */
+    public Profile profile(LocalDate date, int destinationStationId, Set<Vehicle> vehicles) {
+        return profile(date, destinationStationId, vehicles, Limits.NONE);
+    }
+
+    /**
+     * Calcule le profil des voyages optimaux permettant de se rendre à la gare de destination
+     * pour le jour spécifié, en n'empruntant que des véhicules des types donnés et en respectant
+     * les limites données.
+     *
+     * @param date                 la date du voyage.
+     * @param destinationStationId l'indice de la gare de destination.
+     * @param vehicles             les types de véhicules autorisés.
+     * @param limits               les limites du nombre de changements et de la durée des
+     *                             voyages.
+     * @return le profil (Profile) des voyages optimaux respectant ces contraintes.
+     */
+    public Profile profile(LocalDate date, int destinationStationId, Set<Vehicle> vehicles,
+                           Limits limits) {
+        int allowedVehicles = 0;
+        for (Vehicle vehicle : vehicles) {
+            allowedVehicles |= 1 << vehicle.ordinal();
+        }
+        if (allowedVehicles == ALL_VEHICLES && limits.equals(Limits.NONE)) {
+            return profile(date, destinationStationId);
+        }
+
+        Profile.Builder profileBuilder = new Profile.Builder(timetable, date, destinationStationId);
+        Connections connections = timetable.connectionsFor(date);
+        int[] walkTimes = walkTimes(destinationStationId);
+        scan(profileBuilder, connections, walkTimes, null, null,
+                firstUsefulConnection(connections, walkTimes), null,
+                allowedVehicles == ALL_VEHICLES ? null : tripVehicles(date), allowedVehicles,
+                limits);
+        return profileBuilder.build();
+    }
 
-        // Pré-calcul des temps de marche depuis chaque gare vers la destination.
+    /**
+     * Retourne le type de véhicule de chaque course du jour donné, sous la forme de son index
+     * dans {@link Vehicle#ALL}.
+     *
+     * @param date la date des courses.
+     * @return un tableau indexé par course contenant l'index du type de son véhicule.
+     */
+    private byte[] tripVehicles(LocalDate date) {
+        Trips trips = timetable.tripsFor(date);
+        byte[] routeVehicles = new byte[timetable.routes().size()];
+        for (int routeId = 0; routeId < routeVehicles.length; routeId++) {
+            routeVehicles[routeId] = (byte) timetable.routes().vehicle(routeId).ordinal();
+        }
+        byte[] tripVehicles = new byte[trips.size()];
+        for (int tripId = 0; tripId < tripVehicles.length; tripId++) {
+            tripVehicles[tripId] = routeVehicles[trips.routeId(tripId)];
+        }
+        return tripVehicles;
+    }
+
+    /**
+     * Calcule le profil des voyages optimaux permettant de se rendre à la gare de destination
+     * pour le jour spécifié, restreint aux voyages partant de l'une des gares de départ données.
+     * <p>
+     * Les frontières des gares de départ sont identiques à celles du profil complet, et
+     * {@link JourneyExtractor} peut être utilisé avec ce profil pour ces gares. Les frontières
+     * des autres gares ne contiennent que les tuples utiles aux voyages partant des gares de
+     * départ, et sont vides pour les gares qui n'en font pas partie.
+     * <p>
+     * Deux pré-passes peu coûteuses déterminent les liaisons utiles : un parcours en avant depuis
+     * les gares de départ (à n'importe quelle heure) élimine les liaisons inatteignables, et un
+     * parcours à rebours depuis la destination élimine celles depuis lesquelles la destination
+     * n'est pas atteignable. Les frontières sont stockées dans un bâtisseur de profil creux.
+     *
+     * @param date                 la date du voyage.
+     * @param destinationStationId l'indice de la gare de destination.
+     * @param originStationIds     les indices des gares de départ.
+     * @return le profil (Profile) des voyages optimaux depuis les gares de départ.
+     * @throws IndexOutOfBoundsException si l'un des indices de gare est invalide.
+     */
+    public Profile profile(LocalDate date, int destinationStationId, int[] originStationIds) {
+        int nStations = timetable.stations().size();
+        Objects.checkIndex(destinationStationId, nStations);
+        for (int originStationId : originStationIds) {
+            Objects.checkIndex(originStationId, nStations);
+        }
+
+        Connections connections = timetable.connectionsFor(date);
+        int[] walkTimes = walkTimes(destinationStationId);
+
+        // Heure d'arrivée au plus tôt à chaque gare depuis les gares de départ
+        int[] earliestArrival = new int[nStations];
+        BitSet usable = forwardReachable(date, connections, originStationIds, earliestArrival);
+        keepUseful(date, connections, walkTimes, usable);
+
+        Profile.Builder profileBuilder =
+                Profile.Builder.sparse(timetable, date, destinationStationId);
+        scan(profileBuilder, connections, walkTimes, usable, earliestArrival);
+        return profileBuilder.build();
+    }
+
+    /**
+     * Calcule le profil des voyages optimaux permettant de se rendre à la gare de destination
+     * pour le jour spécifié, en conservant des points de reprise du calcul aux heures limites
+     * données, qui permettent de le recalculer partiellement avec {@link #repair}.
+     * <p>
+     * Chaque point de reprise contient une copie de l'état du calcul : des heures limites plus
+     * nombreuses permettent des reprises plus tardives, au prix d'un calcul initial plus long et
+     * d'une consommation de mémoire plus importante.
+     *
+     * @param date                 la date du voyage.
+     * @param destinationStationId l'indice de la gare de destination.
+     * @param boundaryMins         les heures limites des points de reprise, en minutes après
+     *                             minuit, dans un ordre quelconque.
+     * @return le profil des voyages optimaux et ses points de reprise.
+     */
+    public IncrementalProfile incrementalProfile(LocalDate date, int destinationStationId,
+                                                 int... boundaryMins) {
+        int[] boundaries = boundaryMins.clone();
+        Arrays.sort(boundaries);
+        // Les liaisons étant parcourues par heure de départ décroissante, les heures limites
+        // le sont aussi
+        for (int i = 0, j = boundaries.length - 1; i < j; i++, j--) {
+            int boundary = boundaries[i];
+            boundaries[i] = boundaries[j];
+            boundaries[j] = boundary;
+        }
+        return incrementalScan(date, destinationStationId, boundaries,
+                new Profile.Builder(timetable, date, destinationStationId), 0, List.of());
+    }
+
+    /**
+     * Recalcule le profil donné à partir des liaisons actuelles de l'horaire, en reprenant le
+     * calcul au point de reprise le plus tardif encore valide, c.-à-d. précédant la première
+     * liaison modifiée. Seules les liaisons partant au plus tard à l'heure limite de ce point de
+     * reprise sont parcourues à nouveau.
+     * <p>
+     * Le profil obtenu est identique à celui calculé sans point de reprise. Ses points de reprise
+     * sont ceux du profil donné qui sont encore valides, complétés par ceux enregistrés lors du
+     * nouveau parcours.
+     *
+     * @param previous le profil incrémental à recalculer, calculé avec le même horaire.
+     * @return le profil recalculé.
+     */
+    public IncrementalProfile repair(IncrementalProfile previous) {
+        Profile profile = previous.profile();
+        Connections connections = timetable.connectionsFor(profile.date());
+        if (connections == previous.connections()) {
+            return previous;
+        }
+        if (timetable.tripsFor(profile.date()).size() != previous.tripCount()) {
+            // Les index des courses ont changé, aucun point de reprise n'est valide
+            return incrementalScan(profile.date(), profile.arrStationId(), previous.boundaries(),
+                    new Profile.Builder(timetable, profile.date(), profile.arrStationId()), 0,
+                    List.of());
+        }
+
+        // Un point de reprise est valide si les liaisons qui le précèdent n'ont pas changé, car
+        // les tuples de son état ne désignent que ces liaisons
+        int unchanged = commonPrefix(previous.connections(), connections);
+        if (unchanged == connections.size() && unchanged == previous.connections().size()) {
+            return previous;
+        }
+        List<IncrementalProfile.Checkpoint> valid = new ArrayList<>();
+        for (IncrementalProfile.Checkpoint checkpoint : previous.checkpoints()) {
+            if (checkpoint.connectionId() <= unchanged) {
+                valid.add(checkpoint);
+            }
+        }
+        if (valid.isEmpty()) {
+            return incrementalScan(profile.date(), profile.arrStationId(), previous.boundaries(),
+                    new Profile.Builder(timetable, profile.date(), profile.arrStationId()), 0,
+                    List.of());
+        }
+        IncrementalProfile.Checkpoint resume = valid.getLast();
+        return incrementalScan(profile.date(), profile.arrStationId(), previous.boundaries(),
+                new Profile.Builder(resume.state()), resume.connectionId(), valid);
+    }
+
+    /**
+     * Parcourt les liaisons du jour à partir de l'index donné, avec le bâtisseur donné, en
+     * enregistrant les points de reprise des heures limites qui n'en ont pas encore.
+     */
+    private IncrementalProfile incrementalScan(LocalDate date, int destinationStationId,
+                                               int[] boundaries, Profile.Builder profileBuilder,
+                                               int resumeFrom,
+                                               List<IncrementalProfile.Checkpoint> kept) {
+        Connections connections = timetable.connectionsFor(date);
+        int[] walkTimes = walkTimes(destinationStationId);
+        CheckpointRecorder recorder = new CheckpointRecorder(boundaries, kept);
+        int from = Math.max(resumeFrom, firstUsefulConnection(connections, walkTimes));
+        scan(profileBuilder, connections, walkTimes, null, null, from, recorder, null,
+                ALL_VEHICLES, Limits.NONE);
+        return new IncrementalProfile(profileBuilder.build(), connections,
+                timetable.tripsFor(date).size(), boundaries, recorder.checkpoints, from);
+    }
+
+    /**
+     * Retourne le nombre de liaisons initiales identiques des deux tables de liaisons données,
+     * en ne comparant que les attributs utilisés par le parcours.
+     */
+    private static int commonPrefix(Connections c1, Connections c2) {
+        int size = Math.min(c1.size(), c2.size());
+        for (int id = 0; id < size; id++) {
+            if (c1.depMins(id) != c2.depMins(id)
+                    || c1.arrMins(id) != c2.arrMins(id)
+                    || c1.depStopId(id) != c2.depStopId(id)
+                    || c1.arrStopId(id) != c2.arrStopId(id)
+                    || c1.tripId(id) != c2.tripId(id)
+                    || c1.tripPos(id) != c2.tripPos(id)) {
+                return id;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Enregistreur des points de reprise d'un parcours des liaisons, qui copie l'état du calcul
+     * lorsque le parcours atteint la première liaison partant au plus tard à chaque heure limite.
+     */
+    private static final class CheckpointRecorder {
+        private final int[] boundaries;
+        private final List<IncrementalProfile.Checkpoint> checkpoints;
+        // Index de la prochaine heure limite à atteindre
+        private int next;
+
+        /**
+         * Construit un enregistreur pour les heures limites décroissantes données, dont les
+         * points de reprise donnés sont déjà enregistrés.
+         */
+        CheckpointRecorder(int[] boundaries, List<IncrementalProfile.Checkpoint> kept) {
+            this.boundaries = boundaries;
+            this.checkpoints = new ArrayList<>(kept);
+            this.next = kept.size();
+        }
+
+        /**
+         * Signale que le parcours va traiter la liaison d'index et d'heure de départ donnés.
+         */
+        void reach(int connectionId, int depMins, Profile.Builder profileBuilder) {
+            while (next < boundaries.length && depMins <= boundaries[next]) {
+                IncrementalProfile.Checkpoint last =
+                        checkpoints.isEmpty() ? null : checkpoints.getLast();
+                // Les heures limites atteintes à la même liaison partagent le même état
+                Profile.Builder state = last != null && last.connectionId() == connectionId
+                        ? last.state()
+                        : new Profile.Builder(profileBuilder);
+                checkpoints.add(new IncrementalProfile.Checkpoint(
+                        boundaries[next], connectionId, state));
+                next += 1;
+            }
+        }
+    }
+
+    /**
+     * Pré-calcule les temps de marche depuis chaque gare vers la destination.
+     *
+     * @param destinationStationId l'indice de la gare de destination.
+     * @return un tableau indexé par gare contenant le temps de marche, ou -1 s'il n'existe pas.
+     */
+    private int[] walkTimes(int destinationStationId) {
         Transfers transfers = timetable.transfers();
+        int nStations = timetable.stations().size();
         int[] walkTimes = new int[nStations];
         for (int i = 0; i < nStations; i++) {
             try {
@@ -46,30 +366,81 @@ public record Router(TimeTable timetable) {
                 walkTimes[i] = -1;
             }
         }
+        return walkTimes;
+    }
 
-        // Récupération des liaisons actives pour la date.
-        Connections connections = timetable.connectionsFor(date);
+    /**
+     * Parcourt les liaisons (triées par heure de départ décroissante) et remplit le profil.
+     *
+     * @param profileBuilder  le bâtisseur du profil augmenté.
+     * @param connections     les liaisons du jour.
+     * @param walkTimes       les temps de marche de chaque gare vers la destination.
+     * @param usable          les liaisons à considérer, ou null pour toutes les considérer.
+     * @param earliestArrival l'heure d'arrivée au plus tôt à chaque gare, en dessous de laquelle
+     *                        les tuples de sa frontière sont inutiles, ou null si aucune.
+     */
+    private void scan(Profile.Builder profileBuilder, Connections connections, int[] walkTimes,
+                      BitSet usable, int[] earliestArrival) {
+        scan(profileBuilder, connections, walkTimes, usable, earliestArrival,
+                firstUsefulConnection(connections, walkTimes), null, null, ALL_VEHICLES,
+                Limits.NONE);
+    }
+
+    /**
+     * Parcourt les liaisons à partir de l'index donné et remplit le profil, en enregistrant
+     * éventuellement des points de reprise.
+     *
+     * @param profileBuilder  le bâtisseur du profil augmenté.
+     * @param connections     les liaisons du jour.
+     * @param walkTimes       les temps de marche de chaque gare vers la destination.
+     * @param usable          les liaisons à considérer, ou null pour toutes les considérer.
+     * @param earliestArrival l'heure d'arrivée au plus tôt à chaque gare, ou null si aucune.
+     * @param from            l'index de la première liaison à parcourir.
+     * @param recorder        l'enregistreur des points de reprise, ou null si aucun.
+     * @param tripVehicles    l'index du type de véhicule de chaque course, ou null si tous les
+     *                        types sont autorisés.
+     * @param allowedVehicles le masque des types de véhicules autorisés.
+     * @param limits          les limites imposées aux voyages.
+     */
+    private void scan(Profile.Builder profileBuilder, Connections connections, int[] walkTimes,
+                      BitSet usable, int[] earliestArrival, int from,
+                      CheckpointRecorder recorder, byte[] tripVehicles, int allowedVehicles,
+                      Limits limits) {
+        Departure departure = new Departure(timetable, timetable.transfers(), connections);
         int nConnections = connections.size();
 
         // Parcours de chaque liaison par ordre d'index
-        // (les connexions sont déjà triées par ordre décroissant d'heure de départ).
-        for (int cId = 0; cId < nConnections; cId++) {
+        // (les connexions sont déjà triées par ordre décroissant d'heure de départ),
+        // en sautant celles qui partent trop tard pour atteindre la destination.
+        for (int cId = from; cId < nConnections; cId++) {
+            if (recorder != null) {
+                recorder.reach(cId, connections.depMins(cId), profileBuilder);
+            }
+            if (usable != null && !usable.get(cId)) {
+                continue;
+            }
+            final int tripId = connections.tripId(cId);
+            if (tripVehicles != null && (allowedVehicles & 1 << tripVehicles[tripId]) == 0) {
+                continue;
+            }
             final int arrivalStop = connections.arrStopId(cId);
             final int arrivalStation = timetable.stationId(arrivalStop);
             final int arrMinsOfConn = connections.arrMins(cId);
-            final int tripId = connections.tripId(cId);
+            // Un voyage empruntant la liaison part au plus tard à son heure de départ
+            final int maxArrMins = limits.maxArrMins(connections.depMins(cId));
 
             // Builder pour accumuler la frontière temporaire de la connexion courante.
             ParetoFront.Builder builder = new ParetoFront.Builder();
             // Option 1
-            firstOption(walkTimes[arrivalStation], arrMinsOfConn, cId, builder);
+            firstOption(walkTimes[arrivalStation], arrMinsOfConn, cId, maxArrMins, builder);
             // Option 2
             ParetoFront.Builder builderForTrip = profileBuilder.forTrip(tripId);
             secondOption(builderForTrip, builder);
             // Option 3
             ParetoFront.Builder builderForStation = profileBuilder.forStation
                     (timetable.stationId(connections.arrStopId(cId)));
-            thirdOption(builderForStation, cId, arrMinsOfConn, builder);
+            thirdOption(builderForStation, cId, arrMinsOfConn, limits.maxChanges(), maxArrMins,
+                    builder);
 
             // Optimisation 1: Si frontière calculée est vide. passer à la suivante
             if (builder.isEmpty()) {continue;}
@@ -80,9 +451,147 @@ public record Router(TimeTable timetable) {
                 builderForTrip.addAll(builder);
             }
             //Optimisation 2
-            secondOptimisation(transfers, connections, builder, profileBuilder, cId);
+            secondOptimisation(departure, builder, profileBuilder, cId, earliestArrival,
+                    limits.maxDuration());
+        }
+    }
+
+    /**
+     * Détermine l'index de la première liaison pouvant faire partie d'un voyage vers la
+     * destination. Une liaison partant après la dernière arrivée à une gare depuis laquelle on
+     * peut marcher jusqu'à la destination, augmentée du temps de marche, ne peut pas y mener ;
+     * comme les liaisons sont triées par heure de départ décroissante, ces liaisons forment un
+     * préfixe de la table, qu'il n'est pas nécessaire de parcourir.
+     *
+     * @param connections les liaisons du jour.
+     * @param walkTimes   les temps de marche de chaque gare vers la destination.
+     * @return l'index de la première liaison à parcourir.
+     */
+    private int firstUsefulConnection(Connections connections, int[] walkTimes) {
+        int lastUsefulDepMins = -1;
+        for (int stationId = 0; stationId < walkTimes.length; stationId++) {
+            if (walkTimes[stationId] < 0) {
+                continue;
+            }
+            int lastArrMins = connections.lastArrMinsAt(stationId);
+            if (lastArrMins == Integer.MAX_VALUE) {
+                // Aucune borne connue, toutes les liaisons doivent être parcourues
+                return 0;
+            }
+            if (lastArrMins >= 0) {
+                lastUsefulDepMins = Math.max(lastUsefulDepMins, lastArrMins + walkTimes[stationId]);
+            }
+        }
+
+        // Recherche dichotomique de la première liaison partant au plus tard à lastUsefulDepMins
+        int low = 0;
+        int high = connections.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (connections.depMins(mid) > lastUsefulDepMins) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Pré-passe en avant : détermine les liaisons atteignables depuis l'une des gares de départ,
+     * en partant à n'importe quelle heure, et l'heure d'arrivée au plus tôt à chaque gare.
+     * Les changements suivent le même modèle que le profil.
+     *
+     * @param date             la date du voyage.
+     * @param connections      les liaisons du jour.
+     * @param originStationIds les indices des gares de départ.
+     * @param earliestArrival  tableau rempli avec l'heure d'arrivée au plus tôt à chaque gare
+     *                         ({@code Integer.MIN_VALUE} pour les gares de départ,
+     *                         {@code Integer.MAX_VALUE} pour les gares inatteignables).
+     * @return l'ensemble des index des liaisons atteignables.
+     */
+    private BitSet forwardReachable(LocalDate date, Connections connections,
+                                    int[] originStationIds, int[] earliestArrival) {
+        int nStations = earliestArrival.length;
+        OutgoingTransfers outgoing = new OutgoingTransfers(timetable.transfers(), nStations);
+        BitSet reachable = new BitSet(connections.size());
+        boolean[] tripReached = new boolean[timetable.tripsFor(date).size()];
+
+        // Heure à partir de laquelle on peut monter dans une liaison partant de chaque gare
+        int[] ready = new int[nStations];
+        Arrays.fill(ready, Integer.MAX_VALUE);
+        Arrays.fill(earliestArrival, Integer.MAX_VALUE);
+        for (int originStationId : originStationIds) {
+            earliestArrival[originStationId] = Integer.MIN_VALUE;
+            for (int i = outgoing.start(originStationId); i < outgoing.end(originStationId); i++) {
+                ready[outgoing.arrStationId(i)] = Integer.MIN_VALUE;
+            }
+        }
+
+        // Parcours par heure de départ croissante, donc par index décroissant
+        for (int cId = connections.size() - 1; cId >= 0; cId--) {
+            int tripId = connections.tripId(cId);
+            if (!tripReached[tripId]) {
+                int depStation = timetable.stationId(connections.depStopId(cId));
+                if (ready[depStation] > connections.depMins(cId)) {
+                    continue;
+                }
+                tripReached[tripId] = true;
+            }
+            reachable.set(cId);
+
+            int arrStation = timetable.stationId(connections.arrStopId(cId));
+            int arrMins = connections.arrMins(cId);
+            if (arrMins < earliestArrival[arrStation]) {
+                earliestArrival[arrStation] = arrMins;
+                for (int i = outgoing.start(arrStation); i < outgoing.end(arrStation); i++) {
+                    int target = outgoing.arrStationId(i);
+                    ready[target] = Math.min(ready[target], arrMins + outgoing.minutes(i));
+                }
+            }
+        }
+        return reachable;
+    }
+
+    /**
+     * Pré-passe à rebours : retire de l'ensemble donné les liaisons depuis lesquelles la
+     * destination n'est pas atteignable, c'est-à-dire celles dont la frontière serait vide.
+     *
+     * @param date        la date du voyage.
+     * @param connections les liaisons du jour.
+     * @param walkTimes   les temps de marche de chaque gare vers la destination.
+     * @param usable      l'ensemble des liaisons considérées, modifié en place.
+     */
+    private void keepUseful(LocalDate date, Connections connections, int[] walkTimes,
+                            BitSet usable) {
+        Transfers transfers = timetable.transfers();
+        boolean[] tripUseful = new boolean[timetable.tripsFor(date).size()];
+        // Heure de départ au plus tard depuis chaque gare permettant d'atteindre la destination
+        int[] latestDeparture = new int[walkTimes.length];
+        Arrays.fill(latestDeparture, Integer.MIN_VALUE);
+
+        for (int cId = usable.nextSetBit(0); cId >= 0; cId = usable.nextSetBit(cId + 1)) {
+            int arrStation = timetable.stationId(connections.arrStopId(cId));
+            int tripId = connections.tripId(cId);
+            boolean useful = walkTimes[arrStation] >= 0
+                    || tripUseful[tripId]
+                    || connections.arrMins(cId) <= latestDeparture[arrStation];
+            if (!useful) {
+                usable.clear(cId);
+                continue;
+            }
+            tripUseful[tripId] = true;
+
+            int depStation = timetable.stationId(connections.depStopId(cId));
+            int depMins = connections.depMins(cId);
+            int arrivingAt = transfers.arrivingAt(depStation);
+            for (int j = PackedRange.startInclusive(arrivingAt);
+                 j < PackedRange.endExclusive(arrivingAt); j++) {
+                int stationId = transfers.depStationId(j);
+                latestDeparture[stationId] = Math.max(latestDeparture[stationId],
+                        depMins - transfers.minutes(j));
+            }
         }
-        return profileBuilder.build();
     }
 
     /**
@@ -91,11 +600,12 @@ public record Router(TimeTable timetable) {
      * @param walkTime temps de marche depuis la gare d'arrivée vers la destination.
      * @param arrMinsOfConn l'heure d'arrivée de la liaison en minutes.
      * @param currentConnectionId l'id de la liaison.
+     * @param maxArrMins l'heure d'arrivée maximale autorisée par la durée maximale.
      * @param builder le bâtisseur de frontière de Pareto auquel on ajoute le tuple.
      */
-    private void firstOption(int walkTime, int arrMinsOfConn,
-                             int currentConnectionId, ParetoFront.Builder builder) {
-        if (walkTime >= 0) {
+    private void firstOption(int walkTime, int arrMinsOfConn, int currentConnectionId,
+                             int maxArrMins, ParetoFront.Builder builder) {
+        if (walkTime >= 0 && arrMinsOfConn + walkTime <= maxArrMins) {
             int arrivalTimeWithWalk = arrMinsOfConn + walkTime;
             int newPayload = Bits32_24_8.pack(currentConnectionId, 0);
             // Le tuple est ajouté avec 0 changement
@@ -121,18 +631,23 @@ public record Router(TimeTable timetable) {
      *                       liaison.
      * @param connectionId l'id de la liaison.
      * @param arrMinsOfConn l'heure d'arrivée de la liaison en minutes.
+     * @param maxChanges le nombre maximal de changements autorisé.
+     * @param maxArrMins l'heure d'arrivée maximale autorisée par la durée maximale.
      * @param builder le bâtisseur de frontière de Pareto auquel on ajoute builderStation.
      */
     private void thirdOption(ParetoFront.Builder builderStation, int connectionId,
-                             int arrMinsOfConn, ParetoFront.Builder builder) {
+                             int arrMinsOfConn, int maxChanges, int maxArrMins,
+                             ParetoFront.Builder builder) {
         int payload = Bits32_24_8.pack(connectionId, 0);
 
-        if (builderStation != null) {
+        if (builderStation != null && maxChanges > 0) {
             builderStation.forEach(tuple -> {
                 int tupleDepMins = PackedCriteria.depMins(tuple);
-                if (tupleDepMins >= arrMinsOfConn) {
-                    int arrMins = PackedCriteria.arrMins(tuple);
-                    int changes = PackedCriteria.changes(tuple);
+                int arrMins = PackedCriteria.arrMins(tuple);
+                int changes = PackedCriteria.changes(tuple);
+                // Les tuples dépassant les limites une fois le changement ajouté sont ignorés
+                if (tupleDepMins >= arrMinsOfConn && changes < maxChanges
+                        && arrMins <= maxArrMins) {
                     long newCriteria = PackedCriteria.pack(arrMins, changes, payload);
                     builder.add(PackedCriteria.withAdditionalChange(newCriteria));
                 }
@@ -154,14 +669,35 @@ public record Router(TimeTable timetable) {
     public void secondOptimisation(Transfers transfers, Connections connections,
                                    ParetoFront.Builder builder, Profile.Builder profileBuilder,
                                    int currentConnectionId) {
-        int departureStation = timetable.stationId(connections.depStopId(currentConnectionId));
-        int depTime = connections.depMins(currentConnectionId);
-
-        int arrivingAt = transfers.arrivingAt(departureStation);
-        for(int j = PackedRange.startInclusive(arrivingAt);
-            j < PackedRange.endExclusive(arrivingAt); j++) {
-            int depStationId = transfers.depStationId(j);
-            int depMinusTransfer = depTime - transfers.minutes(j);
+        secondOptimisation(new Departure(timetable, transfers, connections), builder,
+                profileBuilder, currentConnectionId, null, Limits.NONE.maxDuration());
+    }
+
+    /**
+     * Deuxième optimisation, comme {@link #secondOptimisation(Transfers, Connections,
+     * ParetoFront.Builder, Profile.Builder, int)}, en ignorant en plus les gares auxquelles
+     * on ne peut pas arriver avant l'heure de départ des tuples à y ajouter.
+     *
+     * @param departure       le décodeur des départs des liaisons du jour.
+     * @param builder         le bâtisseur de frontière de Pareto temporaire de la connexion
+     *                        courante.
+     * @param profileBuilder  le bâtisseur du profil augmenté en construction.
+     * @param currentConnectionId id de la liaison.
+     * @param earliestArrival l'heure d'arrivée au plus tôt à chaque gare, ou null si aucune.
+     * @param maxDuration     la durée maximale des voyages, en minutes.
+     */
+    private void secondOptimisation(Departure departure, ParetoFront.Builder builder,
+                                    Profile.Builder profileBuilder, int currentConnectionId,
+                                    int[] earliestArrival, int maxDuration) {
+        departure.decode(currentConnectionId);
+        int depTime = departure.depMins;
+
+        for (int j = 0; j < departure.transferCount; j++) {
+            int depStationId = departure.transferStationIds[j];
+            int depMinusTransfer = depTime - departure.transferMinutes[j];
+            if (earliestArrival != null && depMinusTransfer < earliestArrival[depStationId]) {
+                continue;
+            }
             ParetoFront.Builder secondStationBuilder = profileBuilder.forStation(depStationId);
 
             if(secondStationBuilder == null) {
@@ -174,12 +710,15 @@ public record Router(TimeTable timetable) {
             }
 
             builder.forEach((tuple) -> {
+                // Les tuples des voyages trop longs partant de cette gare sont ignorés
+                if (PackedCriteria.arrMins(tuple) - depMinusTransfer > maxDuration) {
+                    return;
+                }
                 int connectionId = Bits32_24_8.unpack24(PackedCriteria.payload(tuple));
-                int TripPosition = connections.tripPos(connectionId);
-                int currentTripPos = connections.tripPos(currentConnectionId);
+                int TripPosition = departure.connections.tripPos(connectionId);
 
                 int newPayload = Bits32_24_8.pack(currentConnectionId,TripPosition -
-                        currentTripPos);
+                        departure.tripPos);
 
                 long newCriteria = PackedCriteria.withDepMins(
                         PackedCriteria.pack(PackedCriteria.arrMins(tuple),
@@ -189,5 +728,53 @@ public record Router(TimeTable timetable) {
 
         }
     }
-}
 
+    /**
+     * Décodeur du départ des liaisons : heure de départ, position dans la course et changements
+     * arrivant à la gare de départ de la dernière liaison décodée, copiés dans des tableaux
+     * réutilisés d'une liaison à l'autre. Le décodage d'une liaison n'est fait qu'une fois tant
+     * qu'aucune autre liaison n'est décodée.
+     */
+    private static final class Departure {
+        private final TimeTable timetable;
+        private final Transfers transfers;
+        private final Connections connections;
+        private int connectionId = -1;
+        private int depMins;
+        private int tripPos;
+        // Gares de départ et durées des changements arrivant à la gare de départ
+        private int transferCount;
+        private int[] transferStationIds = new int[16];
+        private int[] transferMinutes = new int[16];
+
+        private Departure(TimeTable timetable, Transfers transfers, Connections connections) {
+            this.timetable = timetable;
+            this.transfers = transfers;
+            this.connections = connections;
+        }
+
+        /**
+         * Décode le départ de la liaison donnée, s'il ne l'est pas déjà.
+         */
+        private void decode(int connectionId) {
+            if (connectionId == this.connectionId) {
+                return;
+            }
+            this.connectionId = connectionId;
+            this.depMins = connections.depMins(connectionId);
+            this.tripPos = connections.tripPos(connectionId);
+            int arrivingAt = transfers.arrivingAt(
+                    timetable.stationId(connections.depStopId(connectionId)));
+            int start = PackedRange.startInclusive(arrivingAt);
+            transferCount = PackedRange.length(arrivingAt);
+            if (transferCount > transferStationIds.length) {
+                transferStationIds = new int[transferCount];
+                transferMinutes = new int[transferCount];
+            }
+            for (int j = 0; j < transferCount; j++) {
+                transferStationIds[j] = transfers.depStationId(start + j);
+                transferMinutes[j] = transfers.minutes(start + j);
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.Connections;
+import ch.epfl.rechor.timetable.TimeTable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Représente un routeur répondant aux requêtes d'une gare à une autre, pour une heure de départ
+ * fixée, au moyen des motifs de changements pré-calculés par {@link TransferPatterns}.
+ * <p>
+ * Au lieu de parcourir les liaisons du jour, le routeur évalue chacun des motifs de la gare de
+ * départ vers la destination : pour chaque course du motif, il détermine, au moyen des motifs de
+ * lignes du jour (voir {@link RoutePatterns}), la course directe de la gare de montée à la gare
+ * de descente arrivant au plus tôt, en partant au plus tôt à l'heure à laquelle on est prêt à la
+ * gare de montée. Seules les quelques liaisons desservant ces paires de gares sont donc
+ * examinées. Tous les voyages optimaux du jour des motifs suivant l'un d'entre eux, le résultat
+ * est exact pour tout jour ayant la même clé (voir {@link TimeTable#dayKey}), pour autant que les
+ * liaisons de ce jour aient l'empreinte enregistrée avec les motifs.
+ * <p>
+ * Pour les autres jours, et pour les destinations dont les motifs n'ont pas été calculés, le
+ * routeur se rabat sur un {@link RaptorRouter}, dont il partage les motifs de lignes et le
+ * modèle des changements, de sorte que les deux donnent toujours les mêmes voyages optimaux.
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class TransferPatternRouter {
+
+    private static final int NONE = -1;
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    // Nombre maximal de courses d'un voyage, égal au nombre de changements représentables plus 1
+    private static final int MAX_RIDES = 128;
+
+    private final TimeTable timetable;
+    private final Path directory;
+    private final RaptorRouter fallback;
+    private final OutgoingTransfers outgoing;
+    // Derniers motifs lus de chaque destination ; les absences ne sont pas conservées
+    private final Map<Integer, TransferPatterns> patterns = new ConcurrentHashMap<>();
+    // Empreinte des liaisons de la dernière clé de jour demandée, publiée avec sa clé
+    private volatile DayFingerprint cachedFingerprint = null;
+
+    /**
+     * Empreinte conservée en cache.
+     *
+     * @param key         la clé des données du jour, telle que retournée par
+     *                    {@link TimeTable#dayKey}
+     * @param fingerprint l'empreinte des liaisons de ce jour
+     */
+    private record DayFingerprint(Object key, TransferPatterns.Fingerprint fingerprint) {
+    }
+
+    /**
+     * Construit un routeur pour l'horaire donné, utilisant les motifs stockés dans le dossier
+     * donné.
+     *
+     * @param timetable l'horaire dans lequel chercher les voyages
+     * @param directory le dossier contenant les motifs, écrits par
+     *                  {@link TransferPatterns#compute}
+     */
+    public TransferPatternRouter(TimeTable timetable, Path directory) {
+        this.timetable = timetable;
+        this.directory = Objects.requireNonNull(directory);
+        this.fallback = new RaptorRouter(timetable);
+        this.outgoing = new OutgoingTransfers(timetable.transfers(),
+                timetable.stations().size());
+    }
+
+    /**
+     * Retourne vrai si et seulement si les requêtes du jour donné vers la gare donnée sont
+     * résolues au moyen des motifs pré-calculés, et non par le routeur de repli.
+     *
+     * @param date         le jour
+     * @param arrStationId l'indice de la gare d'arrivée
+     * @return vrai si les motifs de la gare couvrent le jour donné
+     * @throws IndexOutOfBoundsException si l'indice de gare est invalide
+     * @throws UncheckedIOException      en cas d'erreur de lecture des motifs
+     */
+    public boolean covers(LocalDate date, int arrStationId) {
+        return patternsFor(date, arrStationId).isPresent();
+    }
+
+    /**
+     * Calcule l'heure d'arrivée au plus tôt à la gare d'arrivée en partant de la gare de départ
+     * au plus tôt à l'heure donnée, en utilisant au moins une liaison.
+     *
+     * @param date         la date du voyage
+     * @param depStationId l'indice de la gare de départ
+     * @param arrStationId l'indice de la gare d'arrivée
+     * @param depMins      l'heure de départ, en minutes après minuit
+     * @return l'heure d'arrivée en minutes après minuit, changement à destination compris,
+     * ou -1 si la gare d'arrivée n'est pas atteignable
+     * @throws IndexOutOfBoundsException si l'un des indices de gare est invalide
+     * @throws UncheckedIOException      en cas d'erreur de lecture des motifs
+     */
+    public int earliestArrival(LocalDate date, int depStationId, int arrStationId, int depMins) {
+        Objects.checkIndex(depStationId, timetable.stations().size());
+        Optional<TransferPatterns> transferPatterns = patternsFor(date, arrStationId);
+        if (transferPatterns.isEmpty()) {
+            return fallback.earliestArrival(date, depStationId, arrStationId, depMins);
+        }
+        int best = UNREACHED;
+        for (Evaluation evaluation : evaluate(date, transferPatterns.get(), depStationId,
+                depMins)) {
+            if (evaluation != null) {
+                best = Math.min(best, evaluation.arrMins);
+            }
+        }
+        return best == UNREACHED ? NONE : best;
+    }
+
+    /**
+     * Calcule les voyages optimaux de la gare de départ à la gare d'arrivée en partant au plus
+     * tôt à l'heure donnée, comme {@link RaptorRouter#journeys}.
+     *
+     * @param date         la date du voyage
+     * @param depStationId l'indice de la gare de départ
+     * @param arrStationId l'indice de la gare d'arrivée
+     * @param depMins      l'heure de départ, en minutes après minuit
+     * @return les voyages, par nombre de changements croissant (et donc heure d'arrivée
+     * décroissante), vide si la gare d'arrivée n'est pas atteignable
+     * @throws IndexOutOfBoundsException si l'un des indices de gare est invalide
+     * @throws UncheckedIOException      en cas d'erreur de lecture des motifs
+     */
+    public List<Journey> journeys(LocalDate date, int depStationId, int arrStationId,
+                                  int depMins) {
+        Objects.checkIndex(depStationId, timetable.stations().size());
+        Optional<TransferPatterns> transferPatterns = patternsFor(date, arrStationId);
+        if (transferPatterns.isEmpty()) {
+            return fallback.journeys(date, depStationId, arrStationId, depMins);
+        }
+        Connections connections = fallback.patternsFor(date).connections();
+        List<Journey> journeys = new ArrayList<>();
+        int best = UNREACHED;
+        for (Evaluation evaluation : evaluate(date, transferPatterns.get(), depStationId,
+                depMins)) {
+            if (evaluation != null && evaluation.arrMins < best) {
+                best = evaluation.arrMins;
+                journeys.add(EarliestArrivalRouter.journey(timetable, outgoing, connections,
+                        date, depStationId, arrStationId, evaluation.rides));
+            }
+        }
+        return journeys;
+    }
+
+    /**
+     * Voyage obtenu en suivant un motif : paires (liaison de montée, liaison de descente) de ses
+     * courses, et heure d'arrivée à destination.
+     */
+    private record Evaluation(List<int[]> rides, int arrMins) {
+    }
+
+    /**
+     * Retourne les motifs de la gare donnée s'ils couvrent le jour donné. Les motifs en cache
+     * sont utilisés s'ils couvrent ce jour ; sinon, le fichier est relu, de sorte que des motifs
+     * calculés après la création du routeur sont pris en compte.
+     */
+    private Optional<TransferPatterns> patternsFor(LocalDate date, int arrStationId) {
+        int stationCount = timetable.stations().size();
+        Objects.checkIndex(arrStationId, stationCount);
+        Object key = timetable.dayKey(date);
+        TransferPatterns cachedPatterns = patterns.get(arrStationId);
+        if (cachedPatterns != null && covers(cachedPatterns, date, key)) {
+            return Optional.of(cachedPatterns);
+        }
+        Optional<TransferPatterns> transferPatterns;
+        try {
+            transferPatterns = TransferPatterns.read(directory, arrStationId, stationCount)
+                    .filter(p -> covers(p, date, key));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        transferPatterns.ifPresent(p -> patterns.put(arrStationId, p));
+        return transferPatterns;
+    }
+
+    /**
+     * Retourne vrai si et seulement si les motifs donnés couvrent le jour donné, de clé donnée.
+     */
+    private boolean covers(TransferPatterns transferPatterns, LocalDate date, Object key) {
+        return timetable.dayKey(transferPatterns.date()).equals(key)
+                && transferPatterns.fingerprint().equals(fingerprintFor(date, key));
+    }
+
+    /**
+     * Retourne l'empreinte des liaisons du jour donné, de clé donnée, recalculée lorsque cette
+     * clé diffère de celle de l'empreinte en cache.
+     */
+    private TransferPatterns.Fingerprint fingerprintFor(LocalDate date, Object key) {
+        DayFingerprint data = cachedFingerprint;
+        if (data == null || !key.equals(data.key())) {
+            data = new DayFingerprint(key,
+                    TransferPatterns.Fingerprint.of(timetable.connectionsFor(date)));
+            cachedFingerprint = data;
+        }
+        return data.fingerprint();
+    }
+
+    /**
+     * Évalue les motifs de la gare de départ et retourne, pour chaque nombre de changements, le
+     * voyage arrivant au plus tôt parmi ceux suivant un motif, ou null s'il n'y en a pas.
+     */
+    private Evaluation[] evaluate(LocalDate date, TransferPatterns transferPatterns,
+                                  int depStationId, int depMins) {
+        RoutePatterns routePatterns = fallback.patternsFor(date);
+        int arrStationId = transferPatterns.arrStationId();
+        Evaluation[] best = new Evaluation[MAX_RIDES];
+        for (int[] pattern : transferPatterns.patterns(depStationId)) {
+            List<int[]> rides = new ArrayList<>(pattern.length / 2);
+            int stationId = depStationId;
+            int mins = depMins;
+            for (int i = 0; i < pattern.length && mins != UNREACHED; i += 2) {
+                int walk = outgoing.minutesBetween(stationId, pattern[i]);
+                // Sans changement défini au sein de la gare de départ, on peut y partir
+                // immédiatement
+                if (walk == OutgoingTransfers.NONE && i == 0 && pattern[i] == depStationId) {
+                    walk = 0;
+                }
+                int[] ride = walk == OutgoingTransfers.NONE
+                        ? null
+                        : directRide(routePatterns, pattern[i], pattern[i + 1], mins + walk);
+                if (ride == null) {
+                    mins = UNREACHED;
+                } else {
+                    rides.add(ride);
+                    stationId = pattern[i + 1];
+                    mins = routePatterns.connections().arrMins(ride[1]);
+                }
+            }
+            int walk = mins == UNREACHED
+                    ? OutgoingTransfers.NONE
+                    : outgoing.minutesBetween(stationId, arrStationId);
+            if (walk == OutgoingTransfers.NONE) {
+                continue;
+            }
+            int changes = rides.size() - 1;
+            if (best[changes] == null || mins + walk < best[changes].arrMins) {
+                best[changes] = new Evaluation(rides, mins + walk);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Retourne la paire (liaison de montée, liaison de descente) de la course directe de la gare
+     * de montée à la gare de descente arrivant au plus tôt, parmi celles partant de la gare de
+     * montée au plus tôt à l'heure donnée, ou null s'il n'y en a pas.
+     */
+    private static int[] directRide(RoutePatterns routePatterns, int boardStationId,
+                                    int alightStationId, int depMins) {
+        Connections connections = routePatterns.connections();
+        int[] best = null;
+        int bestArrMins = UNREACHED;
+        for (int i = routePatterns.stationStart(boardStationId);
+             i < routePatterns.stationEnd(boardStationId); i++) {
+            int pattern = routePatterns.patternAt(i);
+            int position = routePatterns.positionAt(i);
+            int length = routePatterns.length(pattern);
+            int trip = position < length
+                    ? routePatterns.firstTripFrom(pattern, position, depMins)
+                    : routePatterns.tripCount(pattern);
+            if (trip == routePatterns.tripCount(pattern)) {
+                continue;
+            }
+            // Les courses d'un motif ne se dépassant pas, la première que l'on peut prendre
+            // arrive au plus tôt à la première desserte suivante de la gare de descente
+            for (int next = position + 1; next <= length; next++) {
+                if (routePatterns.stationId(pattern, next) == alightStationId) {
+                    int alight = routePatterns.connectionId(pattern, trip, next - 1);
+                    if (connections.arrMins(alight) < bestArrMins) {
+                        bestArrMins = connections.arrMins(alight);
+                        best = new int[]{
+                                routePatterns.connectionId(pattern, trip, position), alight};
+                    }
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+}
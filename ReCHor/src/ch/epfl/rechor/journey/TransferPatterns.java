@@ -0,0 +1,375 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.Bits32_24_8;
+import ch.epfl.rechor.timetable.Connections;
+import ch.epfl.rechor.timetable.TimeTable;
+import ch.epfl.rechor.timetable.mapped.Structure;
+import ch.epfl.rechor.timetable.mapped.StructuredBuffer;
+import ch.epfl.rechor.timetable.mapped.StructuredBufferWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Représente les motifs de changements (transfer patterns) de toutes les gares vers une gare de
+ * destination, pré-calculés pour un jour donné et stockés dans un fichier.
+ * <p>
+ * Le motif d'un voyage est la suite des gares auxquelles il monte dans une course et en
+ * descend : (b1, a1, b2, a2, ...), bi étant la gare de montée de la i-ème course et ai sa gare de
+ * descente. Les motifs d'une gare de départ sont ceux des voyages optimaux de tous les tuples de
+ * sa frontière de Pareto dans le profil de la destination, toutes heures de départ confondues,
+ * sans doublons. Ils sont déduits directement des charges utiles des tuples, sans construire les
+ * voyages correspondants. Pour ce jour, les voyages optimaux partant à une heure quelconque
+ * suivent donc l'un de ces motifs, ce qu'exploite {@link TransferPatternRouter}.
+ * <p>
+ * Les motifs de chaque destination sont stockés dans un fichier distinct du dossier donné, nommé
+ * d'après l'index de la destination, formé d'un en-tête (jour du calcul, nombre de gares et
+ * empreinte des liaisons du jour, voir {@link Fingerprint}), des
+ * index de début des motifs de chaque gare de départ, puis des motifs eux-mêmes, chacun précédé
+ * de son nombre de courses. Chaque fichier est écrit sous un nom temporaire puis renommé, de
+ * sorte qu'un calcul interrompu peut être repris sans recalculer les destinations terminées.
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class TransferPatterns {
+
+    // Champs de l'en-tête d'un fichier de motifs
+    private static final int EPOCH_DAY = 0; // S32 jour pour lequel les motifs ont été calculés
+    private static final int STATION_COUNT = 1; // S32 nombre de gares de l'horaire
+    private static final int CONNECTION_COUNT = 2; // S32 nombre de liaisons du jour
+    private static final int CONTENT_HASH = 3; // S32 hachage des liaisons du jour
+    private static final Structure HEADER_STRUCTURE = new Structure(
+            Structure.field(EPOCH_DAY, Structure.FieldType.S32),
+            Structure.field(STATION_COUNT, Structure.FieldType.S32),
+            Structure.field(CONNECTION_COUNT, Structure.FieldType.S32),
+            Structure.field(CONTENT_HASH, Structure.FieldType.S32));
+
+    // Index du premier élément des motifs de chaque gare de départ, puis nombre d'éléments
+    private static final int PATTERNS_START = 0; // S32
+    private static final Structure START_STRUCTURE = new Structure(
+            Structure.field(PATTERNS_START, Structure.FieldType.S32));
+
+    // Éléments des motifs : nombre de courses, puis gares de montée et de descente
+    private static final int ELEMENT = 0; // U16
+    private static final Structure ELEMENT_STRUCTURE = new Structure(
+            Structure.field(ELEMENT, Structure.FieldType.U16));
+
+    private static final String FILE_EXTENSION = ".bin";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    private final LocalDate date;
+    private final Fingerprint fingerprint;
+    private final int arrStationId;
+    private final StructuredBuffer starts;
+    private final StructuredBuffer elements;
+
+    /**
+     * Empreinte des liaisons d'un jour, écrite dans l'en-tête des fichiers de motifs. Deux jours
+     * de même clé (voir {@link TimeTable#dayKey}) ont la même empreinte, mais la clé d'un jour
+     * n'étant pas stable d'une exécution à l'autre, c'est l'empreinte qui permet de s'assurer que
+     * des motifs lus ont été calculés pour les liaisons actuelles du jour.
+     *
+     * @param connectionCount le nombre de liaisons du jour
+     * @param contentHash     un hachage de l'ensemble des attributs des liaisons du jour
+     */
+    public record Fingerprint(int connectionCount, int contentHash) {
+
+        /**
+         * Calcule l'empreinte des liaisons données, en temps linéaire en leur nombre.
+         *
+         * @param connections les liaisons d'un jour
+         * @return l'empreinte de ces liaisons
+         */
+        public static Fingerprint of(Connections connections) {
+            int hash = 1;
+            for (int id = 0; id < connections.size(); id++) {
+                hash = 31 * hash + connections.depStopId(id);
+                hash = 31 * hash + connections.depMins(id);
+                hash = 31 * hash + connections.arrStopId(id);
+                hash = 31 * hash + connections.arrMins(id);
+                hash = 31 * hash + connections.tripId(id);
+                hash = 31 * hash + connections.tripPos(id);
+                hash = 31 * hash + connections.nextConnectionId(id);
+            }
+            return new Fingerprint(connections.size(), hash);
+        }
+    }
+
+    /**
+     * Constructeur privé recevant le contenu d'un fichier déjà validé.
+     */
+    private TransferPatterns(LocalDate date, Fingerprint fingerprint, int arrStationId,
+                             StructuredBuffer starts, StructuredBuffer elements) {
+        this.date = date;
+        this.fingerprint = fingerprint;
+        this.arrStationId = arrStationId;
+        this.starts = starts;
+        this.elements = elements;
+    }
+
+    /**
+     * Calcule, en parallèle dans le pool commun, les motifs des destinations données.
+     *
+     * @see #compute(Router, LocalDate, int[], Path, ForkJoinPool)
+     */
+    public static int compute(Router router, LocalDate date, int[] destinationIds,
+                              Path directory) throws IOException {
+        return compute(router, date, destinationIds, directory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Calcule, en parallèle dans le pool donné, les motifs de toutes les gares vers chacune des
+     * destinations données, et les écrit dans le dossier donné, créé au besoin. Les destinations
+     * dont le dossier contient déjà les motifs pour ce jour et pour des liaisons de même
+     * empreinte sont ignorées, ce qui permet de reprendre un calcul interrompu. Le profil de
+     * chaque destination n'est conservé que le temps d'en déduire les motifs.
+     *
+     * @param router         le routeur utilisé pour calculer les profils
+     * @param date           le jour pour lequel calculer les motifs
+     * @param destinationIds les indices des gares de destination
+     * @param directory      le dossier dans lequel écrire les motifs
+     * @param pool           le pool dans lequel les profils sont calculés
+     * @return le nombre de destinations dont les motifs ont été calculés
+     * @throws IOException               en cas d'erreur d'entrée/sortie
+     * @throws IndexOutOfBoundsException si l'un des indices de destination est invalide
+     */
+    public static int compute(Router router, LocalDate date, int[] destinationIds,
+                              Path directory, ForkJoinPool pool) throws IOException {
+        Objects.requireNonNull(date);
+        int stationCount = router.timetable().stations().size();
+        int[] destinations = destinationIds.clone();
+        for (int destinationId : destinations) {
+            Objects.checkIndex(destinationId, stationCount);
+        }
+        Files.createDirectories(directory);
+        Fingerprint fingerprint = Fingerprint.of(router.timetable().connectionsFor(date));
+
+        AtomicInteger computed = new AtomicInteger();
+        try {
+            pool.submit(() -> IntStream.of(destinations).distinct().parallel().forEach(d -> {
+                try {
+                    Optional<TransferPatterns> existing = read(directory, d, stationCount);
+                    if (existing.isPresent() && existing.get().date().equals(date)
+                            && existing.get().fingerprint().equals(fingerprint)) {
+                        return;
+                    }
+                    write(directory, d, date, fingerprint, patternsOf(router.profile(date, d)));
+                    computed.incrementAndGet();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })).join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return computed.get();
+    }
+
+    /**
+     * Lit les motifs de la destination donnée dans le dossier donné.
+     *
+     * @param directory    le dossier contenant les motifs
+     * @param arrStationId l'indice de la gare de destination
+     * @param stationCount le nombre de gares de l'horaire
+     * @return les motifs, ou un optionnel vide si le dossier ne contient pas de motifs pour cette
+     * destination, ou s'ils ont été calculés pour un horaire ayant un autre nombre de gares
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static Optional<TransferPatterns> read(Path directory, int arrStationId,
+                                                  int stationCount) throws IOException {
+        Path file = file(directory, arrStationId);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int headerSize = HEADER_STRUCTURE.totalSize();
+        int startsSize = (stationCount + 1) * START_STRUCTURE.totalSize();
+        if (buffer.capacity() < headerSize + startsSize) {
+            return Optional.empty();
+        }
+        StructuredBuffer header = new StructuredBuffer(HEADER_STRUCTURE,
+                buffer.slice(0, headerSize));
+        if (header.getS32(STATION_COUNT, 0) != stationCount) {
+            return Optional.empty();
+        }
+        return Optional.of(new TransferPatterns(
+                LocalDate.ofEpochDay(header.getS32(EPOCH_DAY, 0)),
+                new Fingerprint(header.getS32(CONNECTION_COUNT, 0), header.getS32(CONTENT_HASH, 0)),
+                arrStationId,
+                new StructuredBuffer(START_STRUCTURE, buffer.slice(headerSize, startsSize)),
+                new StructuredBuffer(ELEMENT_STRUCTURE, buffer.slice(headerSize + startsSize,
+                        buffer.capacity() - headerSize - startsSize))));
+    }
+
+    /**
+     * Retourne le jour pour lequel les motifs ont été calculés.
+     *
+     * @return le jour du calcul
+     */
+    public LocalDate date() {
+        return date;
+    }
+
+    /**
+     * Retourne l'empreinte des liaisons pour lesquelles les motifs ont été calculés.
+     *
+     * @return l'empreinte des liaisons du jour du calcul
+     */
+    public Fingerprint fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Retourne l'indice de la gare de destination des motifs.
+     *
+     * @return l'indice de la destination
+     */
+    public int arrStationId() {
+        return arrStationId;
+    }
+
+    /**
+     * Retourne les motifs des voyages optimaux de la gare donnée vers la destination, chacun
+     * sous la forme d'un tableau contenant, pour chaque course, l'indice de sa gare de montée
+     * suivi de celui de sa gare de descente.
+     *
+     * @param depStationId l'indice de la gare de départ
+     * @return les motifs, vide si la destination n'est pas atteignable depuis cette gare
+     * @throws IndexOutOfBoundsException si l'indice de gare est invalide
+     */
+    public List<int[]> patterns(int depStationId) {
+        Objects.checkIndex(depStationId, starts.size() - 1);
+        List<int[]> patterns = new ArrayList<>();
+        int end = starts.getS32(PATTERNS_START, depStationId + 1);
+        int i = starts.getS32(PATTERNS_START, depStationId);
+        while (i < end) {
+            int[] pattern = new int[2 * elements.getU16(ELEMENT, i)];
+            for (int j = 0; j < pattern.length; j++) {
+                pattern[j] = elements.getU16(ELEMENT, i + 1 + j);
+            }
+            patterns.add(pattern);
+            i += 1 + pattern.length;
+        }
+        return patterns;
+    }
+
+    /**
+     * Retourne les motifs distincts de chaque gare vers la destination du profil donné.
+     */
+    private static List<List<int[]>> patternsOf(Profile profile) {
+        int stationCount = profile.stationFront().size();
+        List<List<int[]>> patterns = new ArrayList<>(stationCount);
+        for (int stationId = 0; stationId < stationCount; stationId++) {
+            Set<List<Integer>> distinct = new LinkedHashSet<>();
+            profile.forStation(stationId).forEach(criteria ->
+                    distinct.add(Arrays.stream(pattern(profile, criteria)).boxed().toList()));
+            patterns.add(distinct.stream()
+                    .map(p -> p.stream().mapToInt(Integer::intValue).toArray())
+                    .toList());
+        }
+        return patterns;
+    }
+
+    /**
+     * Retourne le motif du voyage optimal correspondant au tuple donné, en suivant les tuples
+     * des gares de descente successives comme le fait {@link JourneyExtractor}.
+     */
+    private static int[] pattern(Profile profile, long criteria) {
+        TimeTable timeTable = profile.timeTable();
+        Connections connections = profile.connections();
+        int changes = PackedCriteria.changes(criteria);
+        int arrMins = PackedCriteria.arrMins(criteria);
+
+        int[] pattern = new int[2 * (changes + 1)];
+        long current = criteria;
+        for (int i = 0; i <= changes; i++) {
+            int payload = PackedCriteria.payload(current);
+            int board = Bits32_24_8.unpack24(payload);
+            int alight = board;
+            for (int stop = 0; stop < Bits32_24_8.unpack8(payload); stop++) {
+                alight = connections.nextConnectionId(alight);
+            }
+            pattern[2 * i] = timeTable.stationId(connections.depStopId(board));
+            pattern[2 * i + 1] = timeTable.stationId(connections.arrStopId(alight));
+            if (i < changes) {
+                current = profile.forStation(pattern[2 * i + 1])
+                        .get(arrMins, changes - i - 1);
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * Écrit les motifs de la destination donnée, sous un nom temporaire puis sous leur nom
+     * définitif.
+     */
+    private static void write(Path directory, int arrStationId, LocalDate date,
+                              Fingerprint fingerprint, List<List<int[]>> patterns)
+            throws IOException {
+        int stationCount = patterns.size();
+        StructuredBufferWriter header = new StructuredBufferWriter(HEADER_STRUCTURE, 1);
+        header.setS32(EPOCH_DAY, 0, Math.toIntExact(date.toEpochDay()));
+        header.setS32(STATION_COUNT, 0, stationCount);
+        header.setS32(CONNECTION_COUNT, 0, fingerprint.connectionCount());
+        header.setS32(CONTENT_HASH, 0, fingerprint.contentHash());
+
+        StructuredBufferWriter starts =
+                new StructuredBufferWriter(START_STRUCTURE, stationCount + 1);
+        int elementCount = 0;
+        for (int stationId = 0; stationId < stationCount; stationId++) {
+            starts.setS32(PATTERNS_START, stationId, elementCount);
+            for (int[] pattern : patterns.get(stationId)) {
+                elementCount += 1 + pattern.length;
+            }
+        }
+        starts.setS32(PATTERNS_START, stationCount, elementCount);
+
+        StructuredBufferWriter elements = new StructuredBufferWriter(ELEMENT_STRUCTURE,
+                elementCount);
+        int i = 0;
+        for (List<int[]> stationPatterns : patterns) {
+            for (int[] pattern : stationPatterns) {
+                elements.setU16(ELEMENT, i++, pattern.length / 2);
+                for (int stationId : pattern) {
+                    elements.setU16(ELEMENT, i++, stationId);
+                }
+            }
+        }
+
+        ByteBuffer content = ByteBuffer.allocate(header.buffer().capacity()
+                + starts.buffer().capacity() + elements.buffer().capacity());
+        content.put(header.buffer()).put(starts.buffer()).put(elements.buffer());
+        Path file = file(directory, arrStationId);
+        Path temporary = directory.resolve(arrStationId + TEMPORARY_EXTENSION);
+        Files.write(temporary, content.array());
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Retourne le chemin du fichier des motifs de la destination donnée.
+     */
+    private static Path file(Path directory, int arrStationId) {
+        return directory.resolve(arrStationId + FILE_EXTENSION);
+    }
+}
@@ -0,0 +1,98 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.Json;
+import ch.epfl.rechor.Preconditions;
+import ch.epfl.rechor.timetable.Stations;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * La classe TravelTimeGeoJsonConverter offre des méthodes permettant de convertir les temps de
+ * parcours d'une matrice (ou d'une colonne de celle-ci) en un document GeoJSON, contenant un point
+ * par gare atteignable, par exemple pour afficher une carte isochrone.
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class TravelTimeGeoJsonConverter {
+    /** Facteur pour arrondir les coordonnées à 5 décimales */
+    private static final double ROUNDING_CONSTANT = Math.pow(10, 5);
+
+    /**
+     * Constructeur privé pour que la classe soit non instanciable.
+     */
+    private TravelTimeGeoJsonConverter() {}
+
+    /**
+     * Convertit la colonne donnée d'une matrice de temps de parcours en document GeoJSON.
+     *
+     * @param matrix           la matrice des temps de parcours
+     * @param stations         les gares de l'horaire
+     * @param destinationIndex l'index de la colonne (destination) à convertir
+     * @return le document GeoJSON, sous forme de chaîne de caractères
+     * @throws IndexOutOfBoundsException si l'index de la colonne est invalide
+     */
+    public static String toGeoJson(TravelTimeMatrix matrix, Stations stations,
+                                   int destinationIndex) {
+        return toGeoJson(stations, matrix.column(destinationIndex));
+    }
+
+    /**
+     * Convertit des valeurs indexées par gare en un document GeoJSON de type FeatureCollection,
+     * contenant pour chaque gare atteignable un point à ses coordonnées, ainsi que son nom et sa
+     * valeur (en minutes) comme propriétés. Les gares dont la valeur vaut
+     * {@link TravelTimeMatrix#UNREACHABLE} sont ignorées.
+     *
+     * @param stations les gares de l'horaire
+     * @param minutes  les valeurs, en minutes, indexées par gare
+     * @return le document GeoJSON, sous forme de chaîne de caractères
+     * @throws IllegalArgumentException si le nombre de valeurs diffère du nombre de gares
+     */
+    public static String toGeoJson(Stations stations, int[] minutes) {
+        Preconditions.checkArgument(minutes.length == stations.size());
+
+        List<Json> features = new ArrayList<>();
+        for (int stationId = 0; stationId < minutes.length; stationId++) {
+            if (minutes[stationId] != TravelTimeMatrix.UNREACHABLE) {
+                features.add(feature(stations, stationId, minutes[stationId]));
+            }
+        }
+
+        var obj = new LinkedHashMap<String, Json>();
+        obj.put("type", new Json.JString("FeatureCollection"));
+        obj.put("features", new Json.JArray(features));
+        return new Json.JObject(obj).toString();
+    }
+
+    /**
+     * Construit l'objet GeoJSON de type Feature correspondant à une gare.
+     *
+     * @param stations  les gares de l'horaire
+     * @param stationId l'indice de la gare
+     * @param minutes   la valeur associée à la gare
+     * @return l'objet GeoJSON représentant la gare
+     */
+    private static Json feature(Stations stations, int stationId, int minutes) {
+        double lon = Math.ceil(stations.longitude(stationId) * ROUNDING_CONSTANT)
+                / ROUNDING_CONSTANT;
+        double lat = Math.ceil(stations.latitude(stationId) * ROUNDING_CONSTANT)
+                / ROUNDING_CONSTANT;
+
+        var geometry = new LinkedHashMap<String, Json>();
+        geometry.put("type", new Json.JString("Point"));
+        geometry.put("coordinates",
+                new Json.JArray(List.of(new Json.JNumber(lon), new Json.JNumber(lat))));
+
+        var properties = new LinkedHashMap<String, Json>();
+        properties.put("name", new Json.JString(stations.name(stationId)));
+        properties.put("minutes", new Json.JNumber(minutes));
+
+        var feature = new LinkedHashMap<String, Json>();
+        feature.put("type", new Json.JString("Feature"));
+        feature.put("geometry", new Json.JObject(geometry));
+        feature.put("properties", new Json.JObject(properties));
+        return new Json.JObject(feature);
+    }
+}
@@ -0,0 +1,249 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.Transfers;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Représente une matrice de temps de parcours entre toutes les gares du réseau et un ensemble de
+ * gares de destination, pour une heure de départ donnée.
+ * <p>
+ * Chaque colonne de la matrice correspond à une destination et donne, pour chaque gare, soit
+ * l'heure d'arrivée au plus tôt à la destination, soit la durée minimale d'un voyage vers la
+ * destination, en partant au plus tôt à l'heure donnée. Ces valeurs sont déduites directement des
+ * tuples des frontières de Pareto d'un profil, sans extraire les voyages correspondants.
+ * Les valeurs sont stockées dans un unique tableau d'entiers, colonne par colonne.
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class TravelTimeMatrix {
+
+    /**
+     * Valeur indiquant qu'une destination n'est pas atteignable depuis une gare.
+     */
+    public static final int UNREACHABLE = -1;
+
+    /**
+     * Critère stocké dans la matrice.
+     */
+    public enum Criterion {
+        /**
+         * Heure d'arrivée au plus tôt à la destination, en minutes après minuit
+         */
+        ARRIVAL,
+        /**
+         * Durée minimale (en minutes) d'un voyage partant au plus tôt à l'heure donnée
+         */
+        DURATION
+    }
+
+    private final int depMins;
+    private final Criterion criterion;
+    private final int[] destinationIds;
+    private final int stationCount;
+    // Valeurs de la matrice, rangées destination par destination
+    private final int[] values;
+
+    /**
+     * Constructeur privé recevant les valeurs déjà calculées.
+     */
+    private TravelTimeMatrix(int depMins, Criterion criterion, int[] destinationIds,
+                             int stationCount, int[] values) {
+        this.depMins = depMins;
+        this.criterion = criterion;
+        this.destinationIds = destinationIds;
+        this.stationCount = stationCount;
+        this.values = values;
+    }
+
+    /**
+     * Calcule, en parallèle dans le pool commun, la matrice des temps de parcours vers les
+     * destinations données.
+     *
+     * @see #compute(Router, LocalDate, int, int[], Criterion, ForkJoinPool)
+     */
+    public static TravelTimeMatrix compute(Router router, LocalDate date, int depMins,
+                                           int[] destinationIds, Criterion criterion) {
+        return compute(router, date, depMins, destinationIds, criterion,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Calcule, en parallèle dans le pool donné, la matrice des temps de parcours de toutes les
+     * gares vers les destinations données. Le profil de chaque destination n'est conservé que le
+     * temps d'en déduire la colonne correspondante.
+     *
+     * @param router         le routeur utilisé pour calculer les profils
+     * @param date           la date du voyage
+     * @param depMins        l'heure de départ, en minutes après minuit
+     * @param destinationIds les indices des gares de destination
+     * @param criterion      le critère à stocker dans la matrice
+     * @param pool           le pool dans lequel les profils sont calculés
+     * @return la matrice des temps de parcours
+     * @throws IndexOutOfBoundsException si l'un des indices de destination est invalide
+     */
+    public static TravelTimeMatrix compute(Router router, LocalDate date, int depMins,
+                                           int[] destinationIds, Criterion criterion,
+                                           ForkJoinPool pool) {
+        Objects.requireNonNull(criterion);
+        int stationCount = router.timetable().stations().size();
+        int[] destinations = destinationIds.clone();
+        for (int destinationId : destinations) {
+            Objects.checkIndex(destinationId, stationCount);
+        }
+
+        int[] values = new int[destinations.length * stationCount];
+        pool.submit(() -> IntStream.range(0, destinations.length).parallel().forEach(d -> {
+            Profile profile = router.profile(date, destinations[d]);
+            int[] column = valuesFor(profile, depMins, criterion);
+            System.arraycopy(column, 0, values, d * stationCount, stationCount);
+        })).join();
+
+        return new TravelTimeMatrix(depMins, criterion, destinations, stationCount, values);
+    }
+
+    /**
+     * Retourne, pour chaque gare du profil, l'heure d'arrivée au plus tôt à la destination du
+     * profil en partant au plus tôt à l'heure donnée.
+     *
+     * @param profile le profil de la destination
+     * @param depMins l'heure de départ, en minutes après minuit
+     * @return un tableau indexé par gare contenant les heures d'arrivée,
+     * ou {@code UNREACHABLE} pour les gares depuis lesquelles la destination n'est pas atteignable
+     */
+    public static int[] arrivalTimes(Profile profile, int depMins) {
+        return valuesFor(profile, depMins, Criterion.ARRIVAL);
+    }
+
+    /**
+     * Retourne, pour chaque gare du profil, la durée minimale d'un voyage vers la destination du
+     * profil partant au plus tôt à l'heure donnée.
+     *
+     * @param profile le profil de la destination
+     * @param depMins l'heure de départ, en minutes après minuit
+     * @return un tableau indexé par gare contenant les durées en minutes,
+     * ou {@code UNREACHABLE} pour les gares depuis lesquelles la destination n'est pas atteignable
+     */
+    public static int[] minDurations(Profile profile, int depMins) {
+        return valuesFor(profile, depMins, Criterion.DURATION);
+    }
+
+    /**
+     * Calcule la colonne de la matrice correspondant au profil donné. Pour chaque gare, seuls les
+     * tuples dont l'heure de départ est postérieure ou égale à depMins sont considérés ; le trajet
+     * entièrement à pied vers la destination, s'il existe, est également pris en compte.
+     */
+    private static int[] valuesFor(Profile profile, int depMins, Criterion criterion) {
+        int stationCount = profile.stationFront().size();
+        int destinationId = profile.arrStationId();
+        Transfers transfers = profile.timeTable().transfers();
+
+        int[] column = new int[stationCount];
+        int[] best = new int[1];
+        for (int stationId = 0; stationId < stationCount; stationId++) {
+            best[0] = Integer.MAX_VALUE;
+
+            profile.forStation(stationId).forEach(tuple -> {
+                int tupleDepMins = PackedCriteria.depMins(tuple);
+                if (tupleDepMins >= depMins) {
+                    int arrMins = PackedCriteria.arrMins(tuple);
+                    int value = criterion == Criterion.ARRIVAL ? arrMins : arrMins - tupleDepMins;
+                    best[0] = Math.min(best[0], value);
+                }
+            });
+
+            int walkMinutes = stationId == destinationId
+                    ? 0
+                    : walkMinutes(transfers, stationId, destinationId);
+            if (walkMinutes >= 0) {
+                int value = criterion == Criterion.ARRIVAL ? depMins + walkMinutes : walkMinutes;
+                best[0] = Math.min(best[0], value);
+            }
+
+            column[stationId] = best[0] == Integer.MAX_VALUE ? UNREACHABLE : best[0];
+        }
+        return column;
+    }
+
+    /**
+     * Retourne la durée de marche entre deux gares, ou -1 si aucun changement n'existe.
+     */
+    private static int walkMinutes(Transfers transfers, int depStationId, int arrStationId) {
+        try {
+            return transfers.minutesBetween(depStationId, arrStationId);
+        } catch (NoSuchElementException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Retourne l'heure de départ pour laquelle la matrice a été calculée.
+     *
+     * @return l'heure de départ, en minutes après minuit
+     */
+    public int depMins() {
+        return depMins;
+    }
+
+    /**
+     * Retourne le critère stocké dans la matrice.
+     *
+     * @return le critère de la matrice
+     */
+    public Criterion criterion() {
+        return criterion;
+    }
+
+    /**
+     * Retourne le nombre de destinations (colonnes) de la matrice.
+     *
+     * @return le nombre de destinations
+     */
+    public int destinationCount() {
+        return destinationIds.length;
+    }
+
+    /**
+     * Retourne l'indice de la gare de destination de la colonne donnée.
+     *
+     * @param destinationIndex l'index de la colonne
+     * @return l'indice de la gare de destination
+     * @throws IndexOutOfBoundsException si l'index est invalide
+     */
+    public int destinationId(int destinationIndex) {
+        return destinationIds[destinationIndex];
+    }
+
+    /**
+     * Retourne la valeur de la matrice pour la gare et la colonne données.
+     *
+     * @param stationId        l'indice de la gare de départ
+     * @param destinationIndex l'index de la colonne (destination)
+     * @return l'heure d'arrivée ou la durée, selon le critère, ou {@code UNREACHABLE}
+     * @throws IndexOutOfBoundsException si l'un des index est invalide
+     */
+    public int get(int stationId, int destinationIndex) {
+        Objects.checkIndex(stationId, stationCount);
+        Objects.checkIndex(destinationIndex, destinationIds.length);
+        return values[destinationIndex * stationCount + stationId];
+    }
+
+    /**
+     * Retourne une copie de la colonne de la destination donnée, indexée par gare.
+     *
+     * @param destinationIndex l'index de la colonne (destination)
+     * @return les valeurs de la colonne
+     * @throws IndexOutOfBoundsException si l'index est invalide
+     */
+    public int[] column(int destinationIndex) {
+        Objects.checkIndex(destinationIndex, destinationIds.length);
+        int from = destinationIndex * stationCount;
+        return Arrays.copyOfRange(values, from, from + stationCount);
+    }
+}
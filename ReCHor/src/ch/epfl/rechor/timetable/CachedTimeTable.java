@@ -1,10 +1,21 @@
 package ch.epfl.rechor.timetable;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Représente un horaire dont les données qui dépendent de la date (les courses et les liaisons)
  * sont stockées dans un cache, pour un accès ultérieur plus rapide.
+ * <p>
+ * Les données des deux dernières dates demandées sont retournées sans consulter l'horaire
+ * sous-jacent, qui doit donc retourner toujours les mêmes données pour une date donnée. Deux
+ * dates suffisent à un {@link OvernightTimeTable} placé au-dessus, qui lit alternativement les
+ * données d'un jour et de son lendemain. Un horaire dont les données changent, comme
+ * {@link RealTimeTimeTable}, doit envelopper le cache et non l'inverse ; l'ordre d'imbrication
+ * pris en charge est ainsi, de l'extérieur vers l'intérieur : {@link OvernightTimeTable},
+ * {@link RealTimeTimeTable}, {@code CachedTimeTable}, puis l'horaire chargé depuis les fichiers.
+ * </p>
  *
  * @author Antoine Lepin (390950)
  * @author Darius Giannoli (380759)
@@ -14,10 +25,25 @@ public final class CachedTimeTable implements TimeTable {
     // L'horaire sous-jacent dont les données seront mises en cache
     private final TimeTable underlying;
 
-    // Cache pour les courses et liaisons (dépendant de la date)
-    private Trips cachedTrips = null;
-    private Connections cachedConnections = null;
-    private LocalDate cachedDate = null;
+    // Nombre de dates conservées : un jour et son lendemain
+    private static final int CAPACITY = 2;
+
+    // Cache pour les courses et liaisons (dépendant de la date), de la date la plus récemment
+    // chargée à la plus ancienne, publié en un seul bloc afin que des lectures concurrentes
+    // (extraction parallèle, par exemple) voient toujours des courses et des liaisons de la même
+    // date. Les données sont partagées par toutes les dates ayant la même clé
+    private volatile List<DayData> cached = List.of();
+
+    /**
+     * Données d'une journée conservées dans le cache.
+     *
+     * @param date        la dernière date pour laquelle les données ont été demandées
+     * @param key         la clé des données, telle que retournée par {@link TimeTable#dayKey}
+     * @param trips       les courses actives ce jour-là
+     * @param connections les liaisons actives ce jour-là
+     */
+    private record DayData(LocalDate date, Object key, Trips trips, Connections connections) {
+    }
 
     /**
      * Construit une instance de CachedTimeTable à partir de l'horaire sous-jacent.
@@ -84,13 +110,7 @@ public final class CachedTimeTable implements TimeTable {
      */
     @Override
     public Trips tripsFor(LocalDate date) {
-        if (cachedTrips == null || !date.equals(cachedDate)) {
-            // Si la date ne correspond pas au cache actuel, on recharge les données
-            cachedTrips = underlying.tripsFor(date);
-            cachedConnections = underlying.connectionsFor(date);
-            cachedDate = date;
-        }
-        return cachedTrips;
+        return dayData(date).trips();
     }
 
     /**
@@ -104,11 +124,58 @@ public final class CachedTimeTable implements TimeTable {
      */
     @Override
     public Connections connectionsFor(LocalDate date) {
-        if (cachedConnections == null || !date.equals(cachedDate)) {
-            cachedTrips = underlying.tripsFor(date);
-            cachedConnections = underlying.connectionsFor(date);
-            cachedDate = date;
+        return dayData(date).connections();
+    }
+
+    /**
+     * Retourne la clé des données de la date donnée.
+     * Méthode déléguée à l'horaire sous-jacent.
+     *
+     * @param date la date
+     * @return la clé des données de la date
+     */
+    @Override
+    public Object dayKey(LocalDate date) {
+        return underlying.dayKey(date);
+    }
+
+    /**
+     * Retourne les données de la date donnée, en les rechargeant depuis l'horaire sous-jacent
+     * si la date est absente du cache et que la clé de ses données ne correspond à celle d'aucune
+     * date du cache. Deux dates dont les données ont la même clé partagent ainsi les mêmes
+     * courses et liaisons.
+     *
+     * @param date la date du voyage.
+     * @return les courses et liaisons actives pour cette date.
+     */
+    private DayData dayData(LocalDate date) {
+        List<DayData> days = cached;
+        for (DayData data : days) {
+            if (date.equals(data.date())) {
+                return data;
+            }
+        }
+        Object key = underlying.dayKey(date);
+        DayData data = null;
+        for (DayData day : days) {
+            if (key.equals(day.key())) {
+                // Mêmes données pour une autre date : seule la date change
+                data = new DayData(date, key, day.trips(), day.connections());
+                break;
+            }
+        }
+        if (data == null) {
+            // Si la clé ne correspond à aucune date du cache, on recharge les données
+            data = new DayData(date, key, underlying.tripsFor(date),
+                    underlying.connectionsFor(date));
+        }
+        // La date la plus anciennement chargée est évincée
+        List<DayData> updated = new ArrayList<>(CAPACITY);
+        updated.add(data);
+        for (int i = 0; i < days.size() && updated.size() < CAPACITY; i++) {
+            updated.add(days.get(i));
         }
-        return cachedConnections;
+        cached = List.copyOf(updated);
+        return data;
     }
-}
\ No newline at end of file
+}
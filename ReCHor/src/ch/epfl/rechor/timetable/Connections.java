@@ -80,4 +80,20 @@ public interface Connections extends Indexed {
      * @throws IndexOutOfBoundsException si l'index est invalide
      */
     int nextConnectionId(int id);
+
+    /**
+     * Retourne une borne supérieure de l'heure d'arrivée des liaisons arrivant à la gare donnée
+     * (à l'un quelconque de ses arrêts), exprimée en minutes après minuit, ou -1 si aucune liaison
+     * n'y arrive. Une liaison partant après cette borne ne permet donc pas d'atteindre la gare.
+     * <p>
+     * L'implémentation par défaut ne connaît aucune borne et retourne Integer.MAX_VALUE ; les
+     * implémentations disposant d'un résumé précalculé peuvent en retourner une plus précise.
+     *
+     * @param stationId l'index de la gare
+     * @return une borne supérieure de l'heure d'arrivée à la gare, ou -1 si aucune liaison n'y
+     * arrive
+     */
+    default int lastArrMinsAt(int stationId) {
+        return Integer.MAX_VALUE;
+    }
 }
\ No newline at end of file
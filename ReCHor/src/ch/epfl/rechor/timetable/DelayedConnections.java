@@ -0,0 +1,540 @@
+package ch.epfl.rechor.timetable;
+
+import ch.epfl.rechor.Preconditions;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Vue immuable de liaisons auxquelles sont appliqués des retards et des annulations, sans copie
+ * des liaisons sous-jacentes.
+ * <p>
+ * Les mises à jour sont stockées dans une table associative de types primitifs indexée par
+ * l'index des liaisons sous-jacentes. Les liaisons retardées sont retirées de leur position
+ * d'origine et réinsérées à la position correspondant à leurs nouvelles heures, selon l'ordre de
+ * tri des liaisons sous-jacentes (heure de départ décroissante, puis heure d'arrivée
+ * décroissante, puis course et position décroissante), afin que la vue reste triée comme
+ * l'exige le routeur ; seules ces liaisons sont ainsi triées à nouveau, les autres conservant
+ * leur ordre relatif. Les liaisons annulées sont retirées de la
+ * vue, de même que les liaisons suivantes de leur course, que le véhicule ne peut pas atteindre.
+ * Le retard à l'arrivée d'une liaison retardée se propage de même aux liaisons suivantes de sa
+ * course, au départ comme à l'arrivée, jusqu'à la prochaine liaison de la course ayant reçu sa
+ * propre mise à jour, de sorte que le véhicule ne parte jamais d'un arrêt avant d'y être arrivé.
+ * </p>
+ * <p>
+ * L'accès à une liaison coûte O(log k), où k est le nombre de liaisons mises à jour, et O(1) en
+ * l'absence de mise à jour. Les mises à jour produisent une nouvelle vue ({@link #withUpdates}),
+ * qui peut être publiée pendant que d'autres fils d'exécution parcourent l'ancienne.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class DelayedConnections implements Connections {
+
+    /**
+     * Une mise à jour en temps réel d'une liaison.
+     *
+     * @param connectionId l'index de la liaison dans les liaisons sous-jacentes
+     * @param depDelay     le retard au départ, en minutes (négatif en cas d'avance)
+     * @param arrDelay     le retard à l'arrivée, en minutes (négatif en cas d'avance)
+     * @param cancelled    vrai si et seulement si la liaison est annulée
+     */
+    public record Update(int connectionId, int depDelay, int arrDelay, boolean cancelled) {
+        /**
+         * Vérifie la validité de la mise à jour.
+         *
+         * @throws IllegalArgumentException si l'index de la liaison est négatif, si l'un des
+         *                                  retards dépasse un jour en valeur absolue, ou si une
+         *                                  annulation est accompagnée d'un retard
+         */
+        public Update {
+            Preconditions.checkArgument(connectionId >= 0);
+            Preconditions.checkArgument(Math.abs(depDelay) <= OvernightConnections.MINUTES_PER_DAY
+                    && Math.abs(arrDelay) <= OvernightConnections.MINUTES_PER_DAY);
+            Preconditions.checkArgument(!cancelled || (depDelay == 0 && arrDelay == 0));
+        }
+
+        /**
+         * Retourne la mise à jour retardant la liaison donnée, et les liaisons suivantes de sa
+         * course du retard à l'arrivée. Des retards nuls rétablissent l'horaire prévu de la
+         * liaison et des suivantes.
+         *
+         * @param connectionId l'index de la liaison
+         * @param depDelay     le retard au départ, en minutes
+         * @param arrDelay     le retard à l'arrivée, en minutes
+         * @return la mise à jour
+         */
+        public static Update delay(int connectionId, int depDelay, int arrDelay) {
+            return new Update(connectionId, depDelay, arrDelay, false);
+        }
+
+        /**
+         * Retourne la mise à jour annulant la liaison donnée.
+         *
+         * @param connectionId l'index de la liaison
+         * @return la mise à jour
+         */
+        public static Update cancel(int connectionId) {
+            return new Update(connectionId, 0, 0, true);
+        }
+    }
+
+    // Valeur représentant une annulation dans les tables de mises à jour, que des retards d'au
+    // plus un jour ne peuvent pas produire
+    private static final long CANCELLED = Long.MIN_VALUE;
+    private static final long NO_UPDATE = 0;
+
+    private final Connections underlying;
+    // Mises à jour reçues, par index de liaison sous-jacente
+    private final IntLongHashMap updates;
+    // Mises à jour effectives, les annulations étant étendues à la fin de leur course
+    private final IntLongHashMap effective;
+    // Index triés des liaisons retirées de leur position d'origine (retardées ou annulées)
+    private final int[] removed;
+    // Index des liaisons retardées, dans l'ordre de la vue, et rang de chacune dans ce tableau
+    private final int[] inserted;
+    private final IntLongHashMap insertedIndex;
+    // Pour chaque liaison retardée, le nombre de liaisons non déplacées qui la précèdent, et sa
+    // position dans la vue
+    private final int[] insertRank;
+    private final int[] insertPos;
+    private final int maxArrDelay;
+
+    /**
+     * Construit une vue des liaisons données, sans aucune mise à jour.
+     *
+     * @param underlying les liaisons sous-jacentes
+     */
+    public DelayedConnections(Connections underlying) {
+        this(underlying, new IntLongHashMap());
+    }
+
+    private DelayedConnections(Connections underlying, IntLongHashMap updates) {
+        this.underlying = underlying;
+        this.updates = updates;
+        this.effective = new IntLongHashMap();
+
+        // Les mises à jour effectives sont déterminées course par course, une seule fois pour
+        // chaque course ayant reçu au moins une mise à jour
+        IntLongHashMap updatedTrips = new IntLongHashMap();
+        int maxArrDelay = 0;
+        for (int id : updates.sortedKeys()) {
+            int tripId = underlying.tripId(id);
+            if (!updatedTrips.containsKey(tripId)) {
+                updatedTrips.put(tripId, id);
+                maxArrDelay = Math.max(maxArrDelay, propagate(firstOfTrip(id)));
+            }
+        }
+        this.maxArrDelay = maxArrDelay;
+
+        this.removed = effective.sortedKeys();
+        Integer[] delayed = Arrays.stream(removed)
+                .filter(id -> effective.get(id, NO_UPDATE) != CANCELLED)
+                .boxed()
+                .toArray(Integer[]::new);
+        // Nombre de liaisons non déplacées précédant chaque liaison retardée dans la vue
+        IntLongHashMap ranks = new IntLongHashMap();
+        for (int id : delayed) {
+            int position = insertionPoint(id);
+            ranks.put(id, position - lowerBound(removed, position));
+        }
+        Arrays.sort(delayed, Comparator
+                .<Integer>comparingLong(id -> ranks.get(id, 0))
+                .thenComparing((a, b) -> compareInView(a, delayedDepMins(a), delayedArrMins(a),
+                        b, delayedDepMins(b), delayedArrMins(b)))
+                .thenComparingInt(id -> id));
+
+        int delayedCount = delayed.length;
+        this.inserted = new int[delayedCount];
+        this.insertedIndex = new IntLongHashMap();
+        this.insertRank = new int[delayedCount];
+        this.insertPos = new int[delayedCount];
+        for (int j = 0; j < delayedCount; j++) {
+            inserted[j] = delayed[j];
+            insertedIndex.put(delayed[j], j);
+            insertRank[j] = (int) ranks.get(delayed[j], 0);
+            insertPos[j] = insertRank[j] + j;
+        }
+    }
+
+    /**
+     * Retourne le nombre de liaisons sous-jacentes qui précèdent, dans l'ordre de la vue, la
+     * liaison retardée d'index donné : celles partant plus tard, puis, parmi celles partant à la
+     * même minute, celles qui la précèdent selon {@link #compareInView}. Ce dernier critère
+     * garantit que les liaisons d'une même course partant à la même minute restent rangées par
+     * position décroissante, comme l'exige le routeur.
+     */
+    private int insertionPoint(int id) {
+        int depMins = delayedDepMins(id);
+        int arrMins = delayedArrMins(id);
+        int low = countDepartingFrom(underlying, depMins + 1);
+        int high = countDepartingFrom(underlying, depMins);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareInView(mid, underlying.depMins(mid), underlying.arrMins(mid),
+                    id, depMins, arrMins) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compare deux liaisons sous-jacentes, d'heures de départ et d'arrivée données, selon l'ordre
+     * de tri des liaisons de l'importateur et du prétraitement : heure de départ décroissante,
+     * puis heure d'arrivée décroissante, puis course, puis position décroissante.
+     */
+    private int compareInView(int a, int aDepMins, int aArrMins,
+                              int b, int bDepMins, int bArrMins) {
+        int c = Integer.compare(bDepMins, aDepMins);
+        if (c == 0) {
+            c = Integer.compare(bArrMins, aArrMins);
+        }
+        if (c == 0) {
+            c = Integer.compare(underlying.tripId(a), underlying.tripId(b));
+        }
+        if (c == 0) {
+            c = Integer.compare(underlying.tripPos(b), underlying.tripPos(a));
+        }
+        return c;
+    }
+
+    /**
+     * Retourne l'heure de départ, retard compris, de la liaison sous-jacente d'index donné.
+     */
+    private int delayedDepMins(int underlyingId) {
+        return underlying.depMins(underlyingId)
+                + depDelay(effective.get(underlyingId, NO_UPDATE));
+    }
+
+    /**
+     * Retourne l'heure d'arrivée, retard compris, de la liaison sous-jacente d'index donné.
+     */
+    private int delayedArrMins(int underlyingId) {
+        return underlying.arrMins(underlyingId)
+                + arrDelay(effective.get(underlyingId, NO_UPDATE));
+    }
+
+    /**
+     * Retourne l'index de la première liaison de la course de la liaison d'index donné, qui suit
+     * la dernière.
+     */
+    private int firstOfTrip(int id) {
+        int current = id;
+        while (true) {
+            int next = underlying.nextConnectionId(current);
+            if (underlying.tripPos(next) <= underlying.tripPos(current)) {
+                return next;
+            }
+            current = next;
+        }
+    }
+
+    /**
+     * Détermine les mises à jour effectives des liaisons de la course commençant par la liaison
+     * d'index donné : le retard à l'arrivée d'une liaison mise à jour se propage, au départ et à
+     * l'arrivée, aux liaisons suivantes de la course jusqu'à la prochaine liaison mise à jour, et
+     * une annulation s'étend à la fin de la course. Retourne le plus grand retard à l'arrivée.
+     *
+     * @throws IllegalArgumentException si, compte tenu des retards, une liaison de la course
+     *                                  arrive avant de partir ou part avant l'arrivée de la
+     *                                  précédente
+     */
+    private int propagate(int first) {
+        int maxArrDelay = 0;
+        long propagated = NO_UPDATE;
+        int previousArrMins = Integer.MIN_VALUE;
+        int current = first;
+        do {
+            long update = updates.containsKey(current)
+                    ? updates.get(current, NO_UPDATE)
+                    : propagated;
+            if (update == CANCELLED) {
+                cancelFrom(current);
+                return maxArrDelay;
+            }
+            int depMins = underlying.depMins(current) + depDelay(update);
+            int arrMins = underlying.arrMins(current) + arrDelay(update);
+            Preconditions.checkArgument(previousArrMins <= depMins && depMins <= arrMins);
+            if (update != NO_UPDATE) {
+                effective.put(current, update);
+                maxArrDelay = Math.max(maxArrDelay, arrDelay(update));
+            }
+            propagated = pack(arrDelay(update), arrDelay(update));
+            previousArrMins = arrMins;
+            current = underlying.nextConnectionId(current);
+        } while (current != first);
+        return maxArrDelay;
+    }
+
+    /**
+     * Annule la liaison d'index donné et les liaisons suivantes de sa course.
+     */
+    private void cancelFrom(int id) {
+        int current = id;
+        while (true) {
+            effective.put(current, CANCELLED);
+            int next = underlying.nextConnectionId(current);
+            // La dernière liaison d'une course est suivie de la première
+            if (underlying.tripPos(next) <= underlying.tripPos(current)) {
+                return;
+            }
+            current = next;
+        }
+    }
+
+    /**
+     * Retourne une nouvelle vue des mêmes liaisons sous-jacentes, à laquelle les mises à jour
+     * données sont appliquées en plus de celles de cette vue. Une mise à jour remplace la
+     * précédente mise à jour de la même liaison. Cette vue n'est pas modifiée.
+     *
+     * @param newUpdates les mises à jour à appliquer
+     * @return la nouvelle vue
+     * @throws IndexOutOfBoundsException si l'index de l'une des liaisons est invalide
+     * @throws IllegalArgumentException  si, compte tenu des retards propagés, l'une des
+     *                                   liaisons retardées arriverait avant de partir, ou
+     *                                   partirait avant l'arrivée de la liaison précédente de
+     *                                   sa course
+     */
+    public DelayedConnections withUpdates(Collection<Update> newUpdates) {
+        IntLongHashMap copy = new IntLongHashMap(updates);
+        for (Update update : newUpdates) {
+            Objects.checkIndex(update.connectionId(), underlying.size());
+            copy.put(update.connectionId(), update.cancelled()
+                    ? CANCELLED
+                    : pack(update.depDelay(), update.arrDelay()));
+        }
+        return new DelayedConnections(underlying, copy);
+    }
+
+    /**
+     * Retourne les liaisons sous-jacentes, sans mise à jour.
+     *
+     * @return les liaisons sous-jacentes
+     */
+    public Connections underlying() {
+        return underlying;
+    }
+
+    /**
+     * Retourne le nombre de mises à jour reçues par cette vue, y compris celles rétablissant
+     * l'horaire prévu.
+     *
+     * @return le nombre de mises à jour
+     */
+    public int updateCount() {
+        return updates.size();
+    }
+
+    private static long pack(int depDelay, int arrDelay) {
+        return ((long) depDelay << Integer.SIZE) | (arrDelay & 0xFFFFFFFFL);
+    }
+
+    private static int depDelay(long update) {
+        return (int) (update >> Integer.SIZE);
+    }
+
+    private static int arrDelay(long update) {
+        return (int) update;
+    }
+
+    /**
+     * Retourne le nombre de liaisons partant au plus tôt à l'heure donnée, qui forment un préfixe
+     * des liaisons puisque celles-ci sont triées par heure de départ décroissante.
+     */
+    private static int countDepartingFrom(Connections connections, int mins) {
+        int low = 0;
+        int high = connections.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (connections.depMins(mid) >= mins) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Retourne le nombre d'éléments du tableau trié donné strictement inférieurs à la valeur
+     * donnée.
+     */
+    private static int lowerBound(int[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Retourne le nombre d'éléments du tableau trié donné inférieurs ou égaux à la valeur donnée.
+     */
+    private static int upperBound(int[] sorted, int value) {
+        return lowerBound(sorted, value + 1);
+    }
+
+    /**
+     * Retourne l'index sous-jacent de la liaison d'index donné dans la vue.
+     */
+    private int underlyingId(int id) {
+        Objects.checkIndex(id, size());
+        if (removed.length == 0) {
+            return id;
+        }
+        int j = Arrays.binarySearch(insertPos, id);
+        if (j >= 0) {
+            return inserted[j];
+        }
+        // Rang de la liaison parmi les liaisons non déplacées
+        int rank = id - (-j - 1);
+        // Recherche du plus petit i tel que removed[i] - i > rank, la liaison cherchée étant
+        // alors précédée de i liaisons déplacées
+        int low = 0;
+        int high = removed.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (removed[mid] - mid <= rank) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return rank + low;
+    }
+
+    /**
+     * Retourne l'index dans la vue de la liaison sous-jacente d'index donné, qui ne doit pas
+     * être annulée.
+     */
+    private int viewId(int underlyingId) {
+        if (effective.containsKey(underlyingId)) {
+            return insertPos[(int) insertedIndex.get(underlyingId, 0)];
+        }
+        int rank = underlyingId - lowerBound(removed, underlyingId);
+        return rank + upperBound(insertRank, rank);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return le nombre de liaisons non annulées
+     */
+    @Override
+    public int size() {
+        return underlying.size() - removed.length + inserted.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'index de l'arrêt de départ
+     */
+    @Override
+    public int depStopId(int id) {
+        return underlying.depStopId(underlyingId(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'heure de départ, retard compris, en minutes après minuit
+     */
+    @Override
+    public int depMins(int id) {
+        return delayedDepMins(underlyingId(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'index de l'arrêt d'arrivée
+     */
+    @Override
+    public int arrStopId(int id) {
+        return underlying.arrStopId(underlyingId(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'heure d'arrivée, retard compris, en minutes après minuit
+     */
+    @Override
+    public int arrMins(int id) {
+        return delayedArrMins(underlyingId(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'index de la course
+     */
+    @Override
+    public int tripId(int id) {
+        return underlying.tripId(underlyingId(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return la position de la liaison dans sa course
+     */
+    @Override
+    public int tripPos(int id) {
+        return underlying.tripPos(underlyingId(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Les liaisons annulées étant retirées de la vue, la dernière liaison non annulée d'une
+     * course est suivie de la première.
+     *
+     * @param id l'index de la liaison
+     * @return l'index de la liaison suivante de la même course
+     */
+    @Override
+    public int nextConnectionId(int id) {
+        int next = underlying.nextConnectionId(underlyingId(id));
+        while (effective.get(next, NO_UPDATE) == CANCELLED) {
+            next = underlying.nextConnectionId(next);
+        }
+        return viewId(next);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * La borne des liaisons sous-jacentes est augmentée du plus grand retard à l'arrivée.
+     *
+     * @param stationId l'index de la gare
+     * @return une borne supérieure de l'heure d'arrivée à la gare, ou -1 si aucune liaison n'y
+     * arrive
+     */
+    @Override
+    public int lastArrMinsAt(int stationId) {
+        int lastArrMins = underlying.lastArrMinsAt(stationId);
+        return lastArrMins < 0 || lastArrMins == Integer.MAX_VALUE
+                ? lastArrMins
+                : lastArrMins + maxArrDelay;
+    }
+}
@@ -0,0 +1,188 @@
+package ch.epfl.rechor.timetable;
+
+import ch.epfl.rechor.Preconditions;
+import ch.epfl.rechor.journey.Vehicle;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Tableau des départs d'un horaire, permettant d'obtenir rapidement les prochains départs d'une
+ * gare ou d'un quai à partir d'une heure donnée.
+ * <p>
+ * Un index des liaisons du jour par gare de départ est construit lors de la première requête,
+ * puis réutilisé pour tous les jours dont les données ont la même clé (voir
+ * {@link TimeTable#dayKey}) ; seul l'index de la dernière clé demandée est conservé. Les
+ * liaisons partant de la gare s occupent les index [start(s), start(s + 1)) de l'index, triées
+ * par heure de départ croissante, de sorte que le premier départ d'une requête est trouvé par
+ * recherche dichotomique. Les départs d'un quai sont ceux de sa gare partant de ce quai.
+ * <p>
+ * Une même instance peut être utilisée simultanément par plusieurs fils d'exécution.
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class DepartureBoard {
+
+    private final TimeTable timetable;
+    // Index de la dernière clé de jour demandée, publié en un seul bloc
+    private volatile Index cached = null;
+
+    /**
+     * Un départ d'une gare.
+     *
+     * @param depTime      la date et l'heure de départ
+     * @param routeName    le nom de la ligne
+     * @param destination  la destination de la course
+     * @param vehicle      le type de véhicule de la ligne
+     * @param platformName le nom de la voie ou du quai de départ, ou null s'il n'est pas connu
+     * @param connectionId l'index de la liaison dans les liaisons du jour
+     */
+    public record Departure(LocalDateTime depTime, String routeName, String destination,
+                            Vehicle vehicle, String platformName, int connectionId) {
+        /**
+         * Vérifie la validité du départ.
+         *
+         * @throws NullPointerException si l'un des attributs autres que le nom du quai est null
+         */
+        public Departure {
+            Objects.requireNonNull(depTime);
+            Objects.requireNonNull(routeName);
+            Objects.requireNonNull(destination);
+            Objects.requireNonNull(vehicle);
+        }
+    }
+
+    /**
+     * Index des liaisons du jour par gare de départ.
+     *
+     * @param key           la clé des données du jour, telle que retournée par
+     *                      {@link TimeTable#dayKey}
+     * @param connections   les liaisons à partir desquelles l'index a été construit
+     * @param trips         les courses du jour
+     * @param start         l'index de la première liaison partant de chaque gare
+     * @param connectionIds les index des liaisons, par gare puis par heure de départ
+     */
+    private record Index(Object key, Connections connections, Trips trips, int[] start,
+                         int[] connectionIds) {
+    }
+
+    /**
+     * Construit un tableau des départs pour l'horaire donné.
+     *
+     * @param timetable l'horaire
+     */
+    public DepartureBoard(TimeTable timetable) {
+        this.timetable = Objects.requireNonNull(timetable);
+    }
+
+    /**
+     * Retourne les prochains départs de l'arrêt donné, partant au plus tôt à l'heure donnée,
+     * par heure de départ croissante. Les départs d'une gare incluent ceux de tous ses quais.
+     *
+     * @param date    la date
+     * @param stopId  l'index de l'arrêt, gare ou quai
+     * @param depMins l'heure de départ minimale, en minutes après minuit
+     * @param count   le nombre maximal de départs à retourner
+     * @return les départs, au plus count
+     * @throws IndexOutOfBoundsException si l'index d'arrêt est invalide
+     * @throws IllegalArgumentException  si le nombre de départs est négatif
+     */
+    public List<Departure> departures(LocalDate date, int stopId, int depMins, int count) {
+        Objects.checkIndex(stopId,
+                timetable.stations().size() + timetable.platforms().size());
+        Preconditions.checkArgument(count >= 0);
+        Index index = indexFor(date);
+        Connections connections = index.connections();
+        int stationId = timetable.stationId(stopId);
+        boolean anyPlatform = timetable.isStationId(stopId);
+
+        List<Departure> departures = new ArrayList<>(Math.min(count, 64));
+        int end = index.start()[stationId + 1];
+        for (int i = firstDepartingFrom(index, stationId, depMins);
+             i < end && departures.size() < count; i++) {
+            int connectionId = index.connectionIds()[i];
+            int depStopId = connections.depStopId(connectionId);
+            if (anyPlatform || depStopId == stopId) {
+                departures.add(departure(date, index, connectionId));
+            }
+        }
+        return departures;
+    }
+
+    /**
+     * Retourne l'index du jour donné, reconstruit, hors de tout verrou, lorsque la clé de ses
+     * données diffère de celle de l'index en cache.
+     */
+    private Index indexFor(LocalDate date) {
+        Object key = timetable.dayKey(date);
+        Index index = cached;
+        if (index == null || !key.equals(index.key())) {
+            index = index(key, timetable.connectionsFor(date), timetable.tripsFor(date));
+            cached = index;
+        }
+        return index;
+    }
+
+    /**
+     * Construit l'index des liaisons données par gare de départ.
+     */
+    private Index index(Object key, Connections connections, Trips trips) {
+        int nStations = timetable.stations().size();
+        int nConnections = connections.size();
+        int[] depStations = new int[nConnections];
+        int[] start = new int[nStations + 1];
+        for (int cId = 0; cId < nConnections; cId++) {
+            depStations[cId] = timetable.stationId(connections.depStopId(cId));
+            start[depStations[cId] + 1] += 1;
+        }
+        for (int s = 0; s < nStations; s++) {
+            start[s + 1] += start[s];
+        }
+        // Les liaisons étant triées par heure de départ décroissante, les parcourir à rebours
+        // range celles de chaque gare par heure de départ croissante
+        int[] next = start.clone();
+        int[] connectionIds = new int[nConnections];
+        for (int cId = nConnections - 1; cId >= 0; cId--) {
+            connectionIds[next[depStations[cId]]++] = cId;
+        }
+        return new Index(key, connections, trips, start, connectionIds);
+    }
+
+    /**
+     * Retourne l'index, dans l'index du jour, de la première liaison partant de la gare donnée
+     * au plus tôt à l'heure donnée.
+     */
+    private static int firstDepartingFrom(Index index, int stationId, int depMins) {
+        int low = index.start()[stationId];
+        int high = index.start()[stationId + 1];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (index.connections().depMins(index.connectionIds()[middle]) < depMins) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Retourne le départ correspondant à la liaison donnée.
+     */
+    private Departure departure(LocalDate date, Index index, int connectionId) {
+        Connections connections = index.connections();
+        int tripId = connections.tripId(connectionId);
+        int routeId = index.trips().routeId(tripId);
+        return new Departure(
+                date.atStartOfDay().plusMinutes(connections.depMins(connectionId)),
+                timetable.routes().name(routeId),
+                index.trips().destination(tripId),
+                timetable.routes().vehicle(routeId),
+                timetable.platformName(connections.depStopId(connectionId)),
+                connectionId);
+    }
+}
@@ -0,0 +1,158 @@
+package ch.epfl.rechor.timetable;
+
+import ch.epfl.rechor.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * Table associative à adressage ouvert, dont les clés sont des entiers positifs ou nuls et les
+ * valeurs des entiers longs, stockés dans des tableaux de types primitifs afin d'éviter
+ * l'emballage des clés et des valeurs.
+ * <p>
+ * Les collisions sont résolues par sondage linéaire, et la table est agrandie de manière à ce
+ * qu'elle ne soit jamais remplie à plus de moitié. Les instances ne sont pas sûres pour un accès
+ * concurrent : une table partagée entre plusieurs fils d'exécution ne doit plus être modifiée.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+final class IntLongHashMap {
+
+    private static final int EMPTY_KEY = -1;
+    private static final int MIN_CAPACITY = 8;
+    // Constante multiplicative de Fibonacci, qui répartit bien des clés consécutives
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    private int[] keys;
+    private long[] values;
+    private int size;
+
+    /**
+     * Construit une table vide.
+     */
+    IntLongHashMap() {
+        this.keys = emptyKeys(MIN_CAPACITY);
+        this.values = new long[MIN_CAPACITY];
+    }
+
+    /**
+     * Construit une copie de la table donnée.
+     *
+     * @param that la table à copier
+     */
+    IntLongHashMap(IntLongHashMap that) {
+        this.keys = that.keys.clone();
+        this.values = that.values.clone();
+        this.size = that.size;
+    }
+
+    private static int[] emptyKeys(int capacity) {
+        int[] keys = new int[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        return keys;
+    }
+
+    /**
+     * Retourne l'index de la case contenant la clé donnée, ou de la case vide où elle doit être
+     * placée si elle est absente.
+     */
+    private int slot(int key) {
+        int mask = keys.length - 1;
+        int slot = (key * HASH_MULTIPLIER) & mask;
+        while (keys[slot] != EMPTY_KEY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Retourne le nombre d'associations de la table.
+     *
+     * @return le nombre d'associations
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Retourne vrai si et seulement si la table contient une valeur pour la clé donnée.
+     *
+     * @param key la clé
+     * @return vrai si la clé est présente
+     */
+    boolean containsKey(int key) {
+        return key >= 0 && keys[slot(key)] == key;
+    }
+
+    /**
+     * Retourne la valeur associée à la clé donnée, ou la valeur par défaut donnée si la clé est
+     * absente.
+     *
+     * @param key          la clé
+     * @param defaultValue la valeur à retourner si la clé est absente
+     * @return la valeur associée à la clé, ou la valeur par défaut
+     */
+    long get(int key, long defaultValue) {
+        if (key < 0) {
+            return defaultValue;
+        }
+        int slot = slot(key);
+        return keys[slot] == key ? values[slot] : defaultValue;
+    }
+
+    /**
+     * Associe la valeur donnée à la clé donnée, en remplaçant l'éventuelle valeur précédente.
+     *
+     * @param key   la clé
+     * @param value la valeur
+     * @throws IllegalArgumentException si la clé est négative
+     */
+    void put(int key, long value) {
+        Preconditions.checkArgument(key >= 0);
+        int slot = slot(key);
+        if (keys[slot] == EMPTY_KEY) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+                slot = slot(key);
+            }
+            keys[slot] = key;
+            size += 1;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Retourne les clés de la table, triées par ordre croissant.
+     *
+     * @return un nouveau tableau contenant les clés triées
+     */
+    int[] sortedKeys() {
+        int[] sorted = new int[size];
+        int i = 0;
+        for (int key : keys) {
+            if (key != EMPTY_KEY) {
+                sorted[i++] = key;
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Double la capacité de la table et y replace toutes les associations.
+     */
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = emptyKeys(oldKeys.length * 2);
+        values = new long[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ch.epfl.rechor.timetable;
+
+import ch.epfl.rechor.Preconditions;
+
+import java.util.Objects;
+
+/**
+ * Vue composite, sans copie, des liaisons d'un jour précédées de celles de la matinée du
+ * lendemain, qui permet de trouver en un seul parcours les voyages se poursuivant après minuit.
+ * <p>
+ * Les liaisons du lendemain retenues sont celles partant avant l'heure de fin de matinée donnée,
+ * mais pas avant la dernière liaison du jour, afin que la vue reste triée par heure de départ
+ * décroissante. Leurs heures sont décalées d'un jour (1440 minutes) et leurs courses sont
+ * renumérotées à la suite de celles du jour, comme dans {@link OvernightTrips}. Les liaisons du
+ * jour suivent, décalées du nombre de liaisons du lendemain retenues.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class OvernightConnections implements Connections {
+
+    /**
+     * Nombre de minutes dans un jour.
+     */
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final Connections today;
+    private final Connections nextDay;
+    private final int nextDayTripOffset;
+    // Les liaisons du lendemain retenues sont celles d'index compris entre from (inclus) et
+    // to (exclu)
+    private final int from;
+    private final int to;
+
+    /**
+     * Construit la vue composite des liaisons du jour et de la matinée du lendemain donnés.
+     *
+     * @param today             les liaisons du jour
+     * @param nextDay           les liaisons du lendemain
+     * @param nextDayTripOffset le décalage à ajouter aux index des courses du lendemain, en
+     *                          principe le nombre de courses du jour
+     * @param nextDayEndMins    l'heure de fin de la matinée du lendemain, en minutes après minuit
+     *                          du lendemain ; seules les liaisons partant avant sont retenues
+     * @throws IllegalArgumentException si le décalage des courses est négatif, ou si l'heure de
+     *                                  fin n'est pas comprise entre 0 et 1440
+     */
+    public OvernightConnections(Connections today, Connections nextDay, int nextDayTripOffset,
+                                int nextDayEndMins) {
+        Preconditions.checkArgument(nextDayTripOffset >= 0);
+        Preconditions.checkArgument(nextDayEndMins >= 0 && nextDayEndMins <= MINUTES_PER_DAY);
+        this.today = today;
+        this.nextDay = nextDay;
+        this.nextDayTripOffset = nextDayTripOffset;
+
+        this.from = countDepartingFrom(nextDay, nextDayEndMins);
+        this.to = today.size() == 0
+                ? nextDay.size()
+                : Math.max(from, countDepartingFrom(nextDay, today.depMins(0) - MINUTES_PER_DAY));
+    }
+
+    /**
+     * Retourne le nombre de liaisons partant au plus tôt à l'heure donnée, qui forment un préfixe
+     * des liaisons puisque celles-ci sont triées par heure de départ décroissante.
+     */
+    private static int countDepartingFrom(Connections connections, int mins) {
+        int low = 0;
+        int high = connections.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (connections.depMins(mid) >= mins) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Retourne le nombre de liaisons du lendemain retenues, qui occupent les premiers index de la
+     * vue.
+     *
+     * @return le nombre de liaisons du lendemain retenues
+     */
+    public int nextDaySize() {
+        return to - from;
+    }
+
+    /**
+     * Retourne l'index, dans les liaisons du lendemain, de la liaison d'index donné de la vue.
+     */
+    private int nextDayId(int id) {
+        return from + Objects.checkIndex(id, to - from);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return le nombre de liaisons du lendemain retenues et du jour
+     */
+    @Override
+    public int size() {
+        return nextDaySize() + today.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'index de l'arrêt de départ
+     */
+    @Override
+    public int depStopId(int id) {
+        return id < nextDaySize()
+                ? nextDay.depStopId(nextDayId(id))
+                : today.depStopId(id - nextDaySize());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'heure de départ en minutes après minuit du jour
+     */
+    @Override
+    public int depMins(int id) {
+        return id < nextDaySize()
+                ? nextDay.depMins(nextDayId(id)) + MINUTES_PER_DAY
+                : today.depMins(id - nextDaySize());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'index de l'arrêt d'arrivée
+     */
+    @Override
+    public int arrStopId(int id) {
+        return id < nextDaySize()
+                ? nextDay.arrStopId(nextDayId(id))
+                : today.arrStopId(id - nextDaySize());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'heure d'arrivée en minutes après minuit du jour
+     */
+    @Override
+    public int arrMins(int id) {
+        return id < nextDaySize()
+                ? nextDay.arrMins(nextDayId(id)) + MINUTES_PER_DAY
+                : today.arrMins(id - nextDaySize());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'index de la course, les courses du lendemain suivant celles du jour
+     */
+    @Override
+    public int tripId(int id) {
+        return id < nextDaySize()
+                ? nextDay.tripId(nextDayId(id)) + nextDayTripOffset
+                : today.tripId(id - nextDaySize());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return la position de la liaison dans sa course
+     */
+    @Override
+    public int tripPos(int id) {
+        return id < nextDaySize()
+                ? nextDay.tripPos(nextDayId(id))
+                : today.tripPos(id - nextDaySize());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Les courses du lendemain dont certaines liaisons ne sont pas retenues sont raccourcies : la
+     * liaison suivante est la prochaine liaison retenue de la course, les liaisons qui ne le sont
+     * pas étant sautées.
+     *
+     * @param id l'index de la liaison
+     * @return l'index de la liaison suivante de la même course
+     */
+    @Override
+    public int nextConnectionId(int id) {
+        if (id >= nextDaySize()) {
+            return today.nextConnectionId(id - nextDaySize()) + nextDaySize();
+        }
+        // Les liaisons d'une course formant un cycle, la boucle s'arrête au plus tard sur la
+        // liaison elle-même
+        int next = nextDay.nextConnectionId(nextDayId(id));
+        while (next < from || next >= to) {
+            next = nextDay.nextConnectionId(next);
+        }
+        return next - from;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * La borne est la plus grande de celles des deux jours, celle du lendemain étant décalée d'un
+     * jour.
+     *
+     * @param stationId l'index de la gare
+     * @return une borne supérieure de l'heure d'arrivée à la gare, ou -1 si aucune liaison n'y
+     * arrive
+     */
+    @Override
+    public int lastArrMinsAt(int stationId) {
+        int todayLast = today.lastArrMinsAt(stationId);
+        int nextDayLast = nextDaySize() == 0 ? -1 : nextDay.lastArrMinsAt(stationId);
+        if (todayLast == Integer.MAX_VALUE || nextDayLast == Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.max(todayLast, nextDayLast < 0 ? -1 : nextDayLast + MINUTES_PER_DAY);
+    }
+}
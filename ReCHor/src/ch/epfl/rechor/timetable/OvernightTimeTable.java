@@ -0,0 +1,157 @@
+package ch.epfl.rechor.timetable;
+
+import ch.epfl.rechor.Preconditions;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Représente un horaire dont les courses et les liaisons d'un jour sont complétées par celles de
+ * la matinée du lendemain, au moyen des vues composites {@link OvernightTrips} et
+ * {@link OvernightConnections}. Un seul parcours des liaisons d'un jour trouve ainsi les voyages
+ * se poursuivant après minuit.
+ * <p>
+ * Les données qui ne dépendent pas de la date sont celles de l'horaire sous-jacent. Si le
+ * lendemain est absent de l'horaire sous-jacent, les données du jour sont utilisées seules.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class OvernightTimeTable implements TimeTable {
+
+    /**
+     * Heure de fin de la matinée du lendemain par défaut, en minutes après minuit (9h00).
+     */
+    public static final int DEFAULT_NEXT_DAY_END_MINS = 9 * 60;
+
+    // L'horaire sous-jacent
+    private final TimeTable underlying;
+    // L'heure de fin de la matinée du lendemain
+    private final int nextDayEndMins;
+
+    /**
+     * Construit un horaire complétant chaque jour de l'horaire donné par la matinée du lendemain,
+     * qui se termine à l'heure donnée.
+     *
+     * @param underlying     l'horaire sous-jacent
+     * @param nextDayEndMins l'heure de fin de la matinée du lendemain, en minutes après minuit ;
+     *                       seules les liaisons du lendemain partant avant sont retenues
+     * @throws IllegalArgumentException si l'heure n'est pas comprise entre 0 et 1440
+     */
+    public OvernightTimeTable(TimeTable underlying, int nextDayEndMins) {
+        Preconditions.checkArgument(nextDayEndMins >= 0
+                && nextDayEndMins <= OvernightConnections.MINUTES_PER_DAY);
+        this.underlying = underlying;
+        this.nextDayEndMins = nextDayEndMins;
+    }
+
+    /**
+     * Construit un horaire complétant chaque jour de l'horaire donné par la matinée du lendemain,
+     * jusqu'à l'heure par défaut ({@value #DEFAULT_NEXT_DAY_END_MINS} minutes après minuit).
+     *
+     * @param underlying l'horaire sous-jacent
+     */
+    public OvernightTimeTable(TimeTable underlying) {
+        this(underlying, DEFAULT_NEXT_DAY_END_MINS);
+    }
+
+    /**
+     * Retourne les gares de l'horaire.
+     * Méthode déléguée à l'horaire sous-jacent.
+     */
+    @Override
+    public Stations stations() {
+        return underlying.stations();
+    }
+
+    /**
+     * Retourne les alias des gares.
+     * Méthode déléguée à l'horaire sous-jacent.
+     */
+    @Override
+    public StationAliases stationAliases() {
+        return underlying.stationAliases();
+    }
+
+    /**
+     * Retourne les plateformes de l'horaire.
+     * Méthode déléguée à l'horaire sous-jacent.
+     */
+    @Override
+    public Platforms platforms() {
+        return underlying.platforms();
+    }
+
+    /**
+     * Retourne les lignes de transport public.
+     * Méthode déléguée à l'horaire sous-jacent.
+     */
+    @Override
+    public Routes routes() {
+        return underlying.routes();
+    }
+
+    /**
+     * Retourne les changements (transfers) de l'horaire.
+     * Méthode déléguée à l'horaire sous-jacent.
+     */
+    @Override
+    public Transfers transfers() {
+        return underlying.transfers();
+    }
+
+    /**
+     * Retourne les courses du jour donné, suivies de celles du lendemain.
+     *
+     * @param date la date du voyage.
+     * @return les courses du jour et du lendemain.
+     */
+    @Override
+    public Trips tripsFor(LocalDate date) {
+        Trips today = underlying.tripsFor(date);
+        Trips nextDay = nextDayTrips(date);
+        return nextDay == null ? today : new OvernightTrips(today, nextDay);
+    }
+
+    /**
+     * Retourne les liaisons du jour donné, précédées de celles de la matinée du lendemain.
+     *
+     * @param date la date du voyage.
+     * @return les liaisons du jour et de la matinée du lendemain.
+     */
+    @Override
+    public Connections connectionsFor(LocalDate date) {
+        Connections today = underlying.connectionsFor(date);
+        if (nextDayTrips(date) == null) {
+            return today;
+        }
+        return new OvernightConnections(today, underlying.connectionsFor(date.plusDays(1)),
+                underlying.tripsFor(date).size(), nextDayEndMins);
+    }
+
+    /**
+     * Retourne la clé des données de la date donnée, formée des clés du jour et du lendemain
+     * dans l'horaire sous-jacent.
+     *
+     * @param date la date
+     * @return la clé des données de la date
+     */
+    @Override
+    public Object dayKey(LocalDate date) {
+        return List.of(underlying.dayKey(date), underlying.dayKey(date.plusDays(1)));
+    }
+
+    /**
+     * Retourne les courses du lendemain de la date donnée, ou null si le lendemain est absent de
+     * l'horaire sous-jacent.
+     */
+    private Trips nextDayTrips(LocalDate date) {
+        try {
+            return underlying.tripsFor(date.plusDays(1));
+        } catch (UncheckedIOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ch.epfl.rechor.timetable;
+
+/**
+ * Vue composite, sans copie, des courses d'un jour suivies de celles du lendemain. Les courses du
+ * jour conservent leur index, tandis que celles du lendemain sont décalées du nombre de courses du
+ * jour.
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class OvernightTrips implements Trips {
+
+    private final Trips today;
+    private final Trips nextDay;
+    private final int todaySize;
+
+    /**
+     * Construit la vue composite des courses des deux jours donnés.
+     *
+     * @param today   les courses du jour
+     * @param nextDay les courses du lendemain
+     */
+    public OvernightTrips(Trips today, Trips nextDay) {
+        this.today = today;
+        this.nextDay = nextDay;
+        this.todaySize = today.size();
+    }
+
+    /**
+     * Retourne l'index, dans la vue composite, de la course du lendemain d'index donné.
+     *
+     * @param nextDayTripId l'index de la course dans les courses du lendemain
+     * @return l'index de la course dans la vue composite
+     */
+    public int nextDayTripId(int nextDayTripId) {
+        return todaySize + nextDayTripId;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return le nombre total de courses des deux jours
+     */
+    @Override
+    public int size() {
+        return todaySize + nextDay.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la course dans la vue composite
+     * @return l'index de la ligne associée
+     */
+    @Override
+    public int routeId(int id) {
+        return id < todaySize ? today.routeId(id) : nextDay.routeId(id - todaySize);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la course dans la vue composite
+     * @return le nom de la destination finale
+     */
+    @Override
+    public String destination(int id) {
+        return id < todaySize ? today.destination(id) : nextDay.destination(id - todaySize);
+    }
+}
@@ -0,0 +1,230 @@
+package ch.epfl.rechor.timetable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Représente un horaire dont les liaisons tiennent compte des retards et des annulations en temps
+ * réel, appliqués au moyen de vues {@link DelayedConnections} sans copie des liaisons de
+ * l'horaire sous-jacent.
+ * <p>
+ * Les mises à jour peuvent être appliquées par un fil d'exécution pendant que d'autres calculent
+ * des profils : chaque mise à jour publie atomiquement une nouvelle vue des liaisons de sa date,
+ * que voient tous les appels ultérieurs à {@link #connectionsFor}, tandis qu'un parcours en cours
+ * continue d'utiliser la vue qu'il a obtenue. Comme cet horaire change au fil des mises à jour,
+ * il ne doit pas être enveloppé dans un {@link CachedTimeTable}, mais peut en envelopper un.
+ * </p>
+ * <p>
+ * Les index des liaisons des mises à jour sont ceux des liaisons de chaque jour de l'horaire
+ * sous-jacent. Dans l'horaire de l'application, cet horaire est donc placé au-dessous de
+ * l'{@link OvernightTimeTable}, qui ajoute à chaque jour la matinée du lendemain : les index ne
+ * dépendent ainsi que du jour de la liaison, et une mise à jour d'un jour est aussi visible dans
+ * la matinée du lendemain ajoutée à la veille.
+ * </p>
+ * <p>
+ * Les mises à jour peuvent être lues depuis un flux textuel ({@link #applyFeed}), par exemple un
+ * fichier ou une connexion réseau, à raison d'une mise à jour par ligne :
+ * </p>
+ * <pre>
+ * 2025-03-18 1234 3 5        # liaison 1234 : 3 minutes de retard au départ, 5 à l'arrivée
+ * 2025-03-18 1240 cancelled  # liaison 1240 annulée
+ * </pre>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class RealTimeTimeTable implements TimeTable {
+
+    private static final String CANCELLED = "cancelled";
+    private static final char COMMENT = '#';
+
+    // L'horaire sous-jacent
+    private final TimeTable underlying;
+    // Les vues des liaisons des dates ayant reçu des mises à jour
+    private final ConcurrentHashMap<LocalDate, DelayedConnections> delayed =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Construit un horaire appliquant les mises à jour en temps réel à l'horaire donné.
+     *
+     * @param underlying l'horaire sous-jacent
+     */
+    public RealTimeTimeTable(TimeTable underlying) {
+        this.underlying = underlying;
+    }
+
+    /**
+     * Applique atomiquement les mises à jour données aux liaisons de la date donnée, dont les
+     * index sont ceux des liaisons de l'horaire sous-jacent. Une mise à jour remplace la
+     * précédente mise à jour de la même liaison.
+     *
+     * @param date    la date des liaisons mises à jour
+     * @param updates les mises à jour
+     * @throws IndexOutOfBoundsException si l'index de l'une des liaisons est invalide
+     * @throws IllegalArgumentException  si l'une des liaisons retardées arriverait avant de
+     *                                   partir, ou partirait avant l'arrivée de la liaison
+     *                                   précédente de sa course ; aucune mise à jour n'est
+     *                                   alors appliquée
+     */
+    public void update(LocalDate date, Collection<DelayedConnections.Update> updates) {
+        delayed.compute(date, (d, current) -> (current == null
+                ? new DelayedConnections(underlying.connectionsFor(d))
+                : current).withUpdates(updates));
+    }
+
+    /**
+     * Lit les mises à jour du flux donné, jusqu'à sa fin, et les applique. Les mises à jour
+     * consécutives d'une même date sont appliquées ensemble, lors d'un changement de date, d'une
+     * ligne vide ou à la fin du flux, ce qui permet à un émetteur de délimiter ses lots par des
+     * lignes vides. Le texte suivant un {@code #} est ignoré.
+     *
+     * @param reader le flux des mises à jour
+     * @throws IOException en cas d'erreur de lecture, ou si une ligne est invalide ; les lots
+     *                     précédant cette ligne restent appliqués
+     */
+    public void applyFeed(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader b ? b : new BufferedReader(reader);
+        LocalDate batchDate = null;
+        List<DelayedConnections.Update> batch = new ArrayList<>();
+        String line;
+        while ((line = lines.readLine()) != null) {
+            int comment = line.indexOf(COMMENT);
+            String[] fields = (comment < 0 ? line : line.substring(0, comment)).strip()
+                    .split("\\s+");
+            if (fields[0].isEmpty()) {
+                if (line.isBlank()) {
+                    flush(batchDate, batch);
+                }
+                continue;
+            }
+            try {
+                LocalDate date = LocalDate.parse(fields[0]);
+                if (!date.equals(batchDate)) {
+                    flush(batchDate, batch);
+                    batchDate = date;
+                }
+                batch.add(parseUpdate(fields));
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new IOException("Invalid delay feed line: " + line, e);
+            }
+        }
+        flush(batchDate, batch);
+    }
+
+    /**
+     * Retourne la mise à jour décrite par les champs donnés d'une ligne du flux, dont le premier
+     * est la date.
+     */
+    private static DelayedConnections.Update parseUpdate(String[] fields) {
+        if (fields.length == 3 && fields[2].equals(CANCELLED)) {
+            return DelayedConnections.Update.cancel(Integer.parseInt(fields[1]));
+        }
+        if (fields.length != 4) {
+            throw new IllegalArgumentException();
+        }
+        return DelayedConnections.Update.delay(Integer.parseInt(fields[1]),
+                Integer.parseInt(fields[2]), Integer.parseInt(fields[3]));
+    }
+
+    /**
+     * Applique le lot de mises à jour donné, s'il n'est pas vide, puis le vide.
+     */
+    private void flush(LocalDate date, List<DelayedConnections.Update> batch) {
+        if (!batch.isEmpty()) {
+            update(date, batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Retourne les gares de l'horaire.
+     * Méthode déléguée à l'horaire sous-jacent.
+     */
+    @Override
+    public Stations stations() {
+        return underlying.stations();
+    }
+
+    /**
+     * Retourne les alias des gares.
+     * Méthode déléguée à l'horaire sous-jacent.
+     */
+    @Override
+    public StationAliases stationAliases() {
+        return underlying.stationAliases();
+    }
+
+    /**
+     * Retourne les plateformes de l'horaire.
+     * Méthode déléguée à l'horaire sous-jacent.
+     */
+    @Override
+    public Platforms platforms() {
+        return underlying.platforms();
+    }
+
+    /**
+     * Retourne les lignes de transport public.
+     * Méthode déléguée à l'horaire sous-jacent.
+     */
+    @Override
+    public Routes routes() {
+        return underlying.routes();
+    }
+
+    /**
+     * Retourne les changements (transfers) de l'horaire.
+     * Méthode déléguée à l'horaire sous-jacent.
+     */
+    @Override
+    public Transfers transfers() {
+        return underlying.transfers();
+    }
+
+    /**
+     * Retourne les courses actives pour la date donnée, que les mises à jour ne modifient pas.
+     * Méthode déléguée à l'horaire sous-jacent.
+     *
+     * @param date la date du voyage.
+     * @return les courses actives pour cette date.
+     */
+    @Override
+    public Trips tripsFor(LocalDate date) {
+        return underlying.tripsFor(date);
+    }
+
+    /**
+     * Retourne les liaisons actives pour la date donnée, compte tenu des mises à jour reçues
+     * jusqu'ici pour cette date.
+     *
+     * @param date la date du voyage.
+     * @return les liaisons actives pour cette date.
+     */
+    @Override
+    public Connections connectionsFor(LocalDate date) {
+        DelayedConnections connections = delayed.get(date);
+        return connections != null ? connections : underlying.connectionsFor(date);
+    }
+
+    /**
+     * Retourne la clé des données de la date donnée, qui change à chaque mise à jour de cette
+     * date.
+     *
+     * @param date la date
+     * @return la clé des données de la date
+     */
+    @Override
+    public Object dayKey(LocalDate date) {
+        DelayedConnections connections = delayed.get(date);
+        return connections == null
+                ? underlying.dayKey(date)
+                : List.of(underlying.dayKey(date), connections);
+    }
+}
@@ -0,0 +1,334 @@
+package ch.epfl.rechor.timetable;
+
+import ch.epfl.rechor.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * Index spatial des gares, permettant de trouver rapidement les gares les plus proches d'une
+ * position, ou celles situées dans un rayon donné autour d'elle.
+ * <p>
+ * Les gares sont projetées sur un plan (projection équirectangulaire, les longitudes étant
+ * réduites selon la plus grande latitude des gares), puis réparties dans une grille uniforme de
+ * cellules carrées. Les gares d'une cellule sont rangées consécutivement, les cellules c
+ * occupant les index [start(c), start(c + 1)). Une recherche ne parcourt que les cellules
+ * voisines de la position, et mesure la distance exacte (sur la sphère terrestre) des gares
+ * qu'elles contiennent. La projection ne surestimant pas les distances, aucune gare n'est
+ * manquée, du moins pour des distances de quelques centaines de kilomètres au plus.
+ * </p>
+ * <p>
+ * L'index est immuable et peut être partagé entre plusieurs fils d'exécution. Il est construit
+ * une fois pour toutes à partir des gares d'un horaire.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class StationGrid {
+
+    /**
+     * Rayon moyen de la Terre, en mètres.
+     */
+    public static final double EARTH_RADIUS = 6_371_000;
+
+    private static final double METERS_PER_DEGREE = EARTH_RADIUS * Math.PI / 180;
+    // Nombre moyen de gares par cellule, lorsque la taille des cellules est choisie
+    private static final double STATIONS_PER_CELL = 2;
+    private static final double MIN_CELL_SIZE = 100;
+    private static final int MAX_CELLS = 1 << 24;
+    // Marge compensant l'imprécision de la projection
+    private static final double PROJECTION_MARGIN = 1.01;
+    // Une distance, en décimètres, et un index de gare sont empaquetés dans un long pour le tri
+    private static final double DECIMETERS_PER_METER = 10;
+
+    private final double[] longitudes;
+    private final double[] latitudes;
+    private final double minLongitude;
+    private final double minLatitude;
+    // Mètres par degré de longitude, sur le plan
+    private final double metersPerLongitude;
+    private final double cellSize;
+    private final int nx;
+    private final int ny;
+    private final int[] start;
+    private final int[] stationIds;
+
+    private StationGrid(Stations stations, double cellSize) {
+        int n = stations.size();
+        this.longitudes = new double[n];
+        this.latitudes = new double[n];
+        double minLon = Double.POSITIVE_INFINITY;
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double maxAbsLat = 0;
+        for (int i = 0; i < n; i++) {
+            longitudes[i] = stations.longitude(i);
+            latitudes[i] = stations.latitude(i);
+            minLon = Math.min(minLon, longitudes[i]);
+            maxLon = Math.max(maxLon, longitudes[i]);
+            minLat = Math.min(minLat, latitudes[i]);
+            maxLat = Math.max(maxLat, latitudes[i]);
+            maxAbsLat = Math.max(maxAbsLat, Math.abs(latitudes[i]));
+        }
+        if (n == 0) {
+            minLon = maxLon = minLat = maxLat = 0;
+        }
+        this.minLongitude = minLon;
+        this.minLatitude = minLat;
+        this.metersPerLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(maxAbsLat));
+
+        double width = (maxLon - minLon) * metersPerLongitude;
+        double height = (maxLat - minLat) * METERS_PER_DEGREE;
+        if (Double.isNaN(cellSize)) {
+            cellSize = Math.max(MIN_CELL_SIZE,
+                    Math.sqrt(width * height * STATIONS_PER_CELL / Math.max(n, 1)));
+        }
+        this.cellSize = cellSize;
+        this.nx = (int) Math.min(MAX_CELLS, Math.floor(width / cellSize) + 1);
+        this.ny = (int) Math.min(MAX_CELLS, Math.floor(height / cellSize) + 1);
+        Preconditions.checkArgument((long) nx * ny <= MAX_CELLS);
+
+        // Comptage des gares de chaque cellule, puis répartition
+        int[] cells = new int[n];
+        int[] starts = new int[nx * ny + 1];
+        for (int i = 0; i < n; i++) {
+            cells[i] = cellY(latitudes[i]) * nx + cellX(longitudes[i]);
+            starts[cells[i] + 1] += 1;
+        }
+        for (int c = 0; c < nx * ny; c++) {
+            starts[c + 1] += starts[c];
+        }
+        int[] ids = new int[n];
+        int[] next = Arrays.copyOf(starts, nx * ny);
+        for (int i = 0; i < n; i++) {
+            ids[next[cells[i]]++] = i;
+        }
+        this.start = starts;
+        this.stationIds = ids;
+    }
+
+    /**
+     * Construit l'index spatial des gares données, dont la taille des cellules est choisie de
+     * manière à ce que chacune contienne en moyenne quelques gares.
+     *
+     * @param stations les gares
+     * @return l'index spatial des gares
+     */
+    public static StationGrid of(Stations stations) {
+        return new StationGrid(stations, Double.NaN);
+    }
+
+    /**
+     * Construit l'index spatial des gares données, dont les cellules ont la taille donnée.
+     *
+     * @param stations les gares
+     * @param cellSize la taille des cellules, en mètres
+     * @return l'index spatial des gares
+     * @throws IllegalArgumentException si la taille des cellules n'est pas strictement positive,
+     *                                  ou si elle est si petite que la grille aurait plus de
+     *                                  2^24 cellules
+     */
+    public static StationGrid of(Stations stations, double cellSize) {
+        Preconditions.checkArgument(cellSize > 0);
+        return new StationGrid(stations, cellSize);
+    }
+
+    /**
+     * Retourne la distance, en mètres, entre les deux positions données, le long de la surface
+     * de la Terre, supposée sphérique (formule de haversine).
+     *
+     * @param longitude1 la longitude de la première position, en degrés
+     * @param latitude1  la latitude de la première position, en degrés
+     * @param longitude2 la longitude de la seconde position, en degrés
+     * @param latitude2  la latitude de la seconde position, en degrés
+     * @return la distance entre les deux positions, en mètres
+     */
+    public static double distance(double longitude1, double latitude1,
+                                  double longitude2, double latitude2) {
+        double sinHalfDLat = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+        double sinHalfDLon = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinHalfDLat * sinHalfDLat + Math.cos(Math.toRadians(latitude1))
+                * Math.cos(Math.toRadians(latitude2)) * sinHalfDLon * sinHalfDLon;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Retourne le nombre de gares de l'index.
+     *
+     * @return le nombre de gares
+     */
+    public int size() {
+        return longitudes.length;
+    }
+
+    /**
+     * Retourne la distance, en mètres, entre la gare d'index donné et la position donnée.
+     *
+     * @param stationId l'index de la gare
+     * @param longitude la longitude de la position, en degrés
+     * @param latitude  la latitude de la position, en degrés
+     * @return la distance entre la gare et la position, en mètres
+     * @throws IndexOutOfBoundsException si l'index de la gare est invalide
+     */
+    public double distance(int stationId, double longitude, double latitude) {
+        return distance(longitudes[stationId], latitudes[stationId], longitude, latitude);
+    }
+
+    /**
+     * Retourne les index des gares situées à au plus la distance donnée de la position donnée,
+     * par ordre de distance croissante.
+     *
+     * @param longitude la longitude de la position, en degrés
+     * @param latitude  la latitude de la position, en degrés
+     * @param radius    la distance maximale, en mètres
+     * @return les index des gares situées dans le rayon donné, de la plus proche à la plus
+     * éloignée
+     * @throws IllegalArgumentException si le rayon est négatif
+     */
+    public int[] withinRadius(double longitude, double latitude, double radius) {
+        Preconditions.checkArgument(radius >= 0);
+        double margin = radius * PROJECTION_MARGIN;
+        double x = x(longitude);
+        double y = y(latitude);
+        int x0 = clamp(Math.floor((x - margin) / cellSize), nx);
+        int x1 = clamp(Math.floor((x + margin) / cellSize), nx);
+        int y0 = clamp(Math.floor((y - margin) / cellSize), ny);
+        int y1 = clamp(Math.floor((y + margin) / cellSize), ny);
+
+        long[] found = new long[8];
+        int count = 0;
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int i = start[cy * nx + x0]; i < start[cy * nx + x1 + 1]; i++) {
+                int stationId = stationIds[i];
+                double distance = distance(stationId, longitude, latitude);
+                if (distance <= radius) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, 2 * count);
+                    }
+                    found[count++] = pack(distance, stationId);
+                }
+            }
+        }
+        Arrays.sort(found, 0, count);
+        return unpack(found, count);
+    }
+
+    /**
+     * Retourne les index des k gares les plus proches de la position donnée, par ordre de
+     * distance croissante, ou ceux de toutes les gares s'il y en a moins de k.
+     *
+     * @param longitude la longitude de la position, en degrés
+     * @param latitude  la latitude de la position, en degrés
+     * @param k         le nombre de gares à retourner
+     * @return les index des gares les plus proches, de la plus proche à la plus éloignée
+     * @throws IllegalArgumentException si k est négatif
+     */
+    public int[] nearest(double longitude, double latitude, int k) {
+        Preconditions.checkArgument(k >= 0);
+        k = Math.min(k, size());
+        if (k == 0) {
+            return new int[0];
+        }
+        double x = x(longitude);
+        double y = y(latitude);
+        long qx = (long) Math.floor(x / cellSize);
+        long qy = (long) Math.floor(y / cellSize);
+        // Les anneaux de cellules entourant la position, de rayon inférieur à la distance
+        // séparant la position de la grille, ne contiennent aucune cellule de la grille
+        long firstRing = Math.max(Math.max(-qx, qx - (nx - 1)), Math.max(-qy, qy - (ny - 1)));
+        long lastRing = Math.max(Math.max(qx, nx - 1 - qx), Math.max(qy, ny - 1 - qy));
+
+        // Les k meilleures gares trouvées, triées par distance croissante
+        long[] best = new long[k];
+        int count = 0;
+        for (long ring = Math.max(0, firstRing); ring <= lastRing; ring++) {
+            // Toute gare hors des anneaux parcourus est au moins à cette distance
+            if (count == k && unpackDistance(best[k - 1]) * PROJECTION_MARGIN
+                    <= (ring - 1) * cellSize + Math.min(cellOffset(x, qx), cellOffset(y, qy))) {
+                break;
+            }
+            long cy0 = Math.max(0, qy - ring);
+            long cy1 = Math.min(ny - 1, qy + ring);
+            for (long cy = cy0; cy <= cy1; cy++) {
+                boolean fullRow = Math.abs(cy - qy) == ring;
+                long step = fullRow ? 1 : 2 * ring;
+                for (long cx = qx - ring; cx <= qx + ring; cx += Math.max(1, step)) {
+                    if (cx < 0 || cx >= nx) {
+                        continue;
+                    }
+                    int cell = (int) (cy * nx + cx);
+                    for (int i = start[cell]; i < start[cell + 1]; i++) {
+                        int stationId = stationIds[i];
+                        long packed = pack(distance(stationId, longitude, latitude), stationId);
+                        if (count < k) {
+                            count = insert(best, count, packed);
+                        } else if (packed < best[k - 1]) {
+                            insert(best, k - 1, packed);
+                        }
+                    }
+                }
+            }
+        }
+        return unpack(best, count);
+    }
+
+    /**
+     * Insère la valeur donnée dans les premiers éléments, triés, du tableau donné, et retourne
+     * leur nouveau nombre.
+     */
+    private static int insert(long[] sorted, int count, long value) {
+        int i = count;
+        while (i > 0 && sorted[i - 1] > value) {
+            sorted[i] = sorted[i - 1];
+            i -= 1;
+        }
+        sorted[i] = value;
+        return count + 1;
+    }
+
+    /**
+     * Retourne la distance séparant la coordonnée donnée, sur le plan, du bord le plus proche de
+     * sa cellule.
+     */
+    private double cellOffset(double coordinate, long cell) {
+        double offset = coordinate - cell * cellSize;
+        return Math.min(offset, cellSize - offset);
+    }
+
+    private static long pack(double distance, int stationId) {
+        return ((long) (distance * DECIMETERS_PER_METER) << Integer.SIZE) | stationId;
+    }
+
+    private static double unpackDistance(long packed) {
+        return (packed >>> Integer.SIZE) / DECIMETERS_PER_METER;
+    }
+
+    private static int[] unpack(long[] packed, int count) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = (int) packed[i];
+        }
+        return ids;
+    }
+
+    private double x(double longitude) {
+        return (longitude - minLongitude) * metersPerLongitude;
+    }
+
+    private double y(double latitude) {
+        return (latitude - minLatitude) * METERS_PER_DEGREE;
+    }
+
+    private int cellX(double longitude) {
+        return clamp(Math.floor(x(longitude) / cellSize), nx);
+    }
+
+    private int cellY(double latitude) {
+        return clamp(Math.floor(y(latitude) / cellSize), ny);
+    }
+
+    private static int clamp(double cell, int count) {
+        return (int) Math.max(0, Math.min(count - 1, cell));
+    }
+}
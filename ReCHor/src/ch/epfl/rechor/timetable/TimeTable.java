@@ -63,6 +63,21 @@ public interface TimeTable {
      */
     Connections connectionsFor(LocalDate date);
 
+    /**
+     * Retourne une clé identifiant les données de la date donnée : deux dates ayant des clés
+     * égales (au sens de {@code equals}) ont les mêmes courses et les mêmes liaisons. Les
+     * données d'une date, ainsi que ce qui en est calculé, peuvent ainsi être réutilisées pour
+     * toute autre date de même clé.
+     * <p>
+     * Par défaut, la clé est la date elle-même.
+     *
+     * @param date la date
+     * @return la clé des données de la date
+     */
+    default Object dayKey(LocalDate date) {
+        return date;
+    }
+
     /**
      * Vérifie si l'index d'arrêt correspond à une gare.
      *
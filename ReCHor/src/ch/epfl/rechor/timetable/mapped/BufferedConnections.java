@@ -4,7 +4,6 @@ import ch.epfl.rechor.timetable.Connections;
 import ch.epfl.rechor.Bits32_24_8;
 
 import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
 
 /**
  * Permet d'accéder à une table de liaisons représentée de manière aplatie.
@@ -19,14 +18,14 @@ import java.nio.IntBuffer;
 public final class BufferedConnections implements Connections {
 
     // Indices des champs dans la table principale des liaisons
-    private static final int DEP_STOP_ID = 0; //U16 Index de l'arrêt de départ
-    private static final int DEP_MINUTES = 1; //U16 Heure de départ, en minutes après minuit
-    private static final int ARR_STOP_ID = 2; //U16 Index de l'arrêt d'arrivée
-    private static final int ARR_MINUTES = 3; //U16 Heure d'arrivée, en minutes après minuit
-    private static final int TRIP_POS_ID = 4; //S32 Index de la course et position en son sein
+    static final int DEP_STOP_ID = 0; //U16 Index de l'arrêt de départ
+    static final int DEP_MINUTES = 1; //U16 Heure de départ, en minutes après minuit
+    static final int ARR_STOP_ID = 2; //U16 Index de l'arrêt d'arrivée
+    static final int ARR_MINUTES = 3; //U16 Heure d'arrivée, en minutes après minuit
+    static final int TRIP_POS_ID = 4; //S32 Index de la course et position en son sein
 
     // Structure d'une liaison (12 octets)
-    private static final Structure CONNECTION_STRUCTURE = new Structure(
+    static final Structure CONNECTION_STRUCTURE = new Structure(
             Structure.field(DEP_STOP_ID, Structure.FieldType.U16),
             Structure.field(DEP_MINUTES, Structure.FieldType.U16),
             Structure.field(ARR_STOP_ID, Structure.FieldType.U16),
@@ -34,10 +33,26 @@ public final class BufferedConnections implements Connections {
             Structure.field(TRIP_POS_ID, Structure.FieldType.S32)
     );
 
-    // StructuredBuffer pour la table principale des liaisons
-    private final StructuredBuffer structuredBuffer;
-    // IntBuffer pour accéder directement aux indices de la liaison suivante
-    private final IntBuffer nextBuffer;
+    // Structure de la table des liaisons suivantes (4 octets)
+    static final int NEXT_CONNECTION_ID = 0; //S32 Index de la liaison suivante dans la course
+    static final Structure SUCC_STRUCTURE = new Structure(
+            Structure.field(NEXT_CONNECTION_ID, Structure.FieldType.S32)
+    );
+
+    // Structure du résumé des dernières arrivées, une entrée par gare (2 octets)
+    static final int LAST_ARR_MINUTES = 0; //U16 Dernière heure d'arrivée à la gare
+    static final Structure LAST_ARRIVAL_STRUCTURE = new Structure(
+            Structure.field(LAST_ARR_MINUTES, Structure.FieldType.U16)
+    );
+    // Valeur du résumé pour une gare à laquelle aucune liaison n'arrive
+    static final int NO_ARRIVAL = 0xFFFF;
+
+    // Tableau structuré pour la table principale des liaisons
+    private final StructuredData structuredBuffer;
+    // Tableau structuré pour les indices de la liaison suivante
+    private final StructuredData nextBuffer;
+    // Tableau structuré pour le résumé des dernières arrivées par gare, ou null s'il est absent
+    private final StructuredData lastArrivalBuffer;
 
     /**
      * Construit une instance de {@code BufferedConnections}.
@@ -47,8 +62,42 @@ public final class BufferedConnections implements Connections {
      *                   des liaisons suivantes.
      */
     public BufferedConnections(ByteBuffer buffer, ByteBuffer succBuffer) {
-        this.structuredBuffer = new StructuredBuffer(CONNECTION_STRUCTURE, buffer);
-        this.nextBuffer = succBuffer.asIntBuffer();
+        this(buffer, succBuffer, null);
+    }
+
+    /**
+     * Construit une instance de {@code BufferedConnections} disposant d'un résumé précalculé
+     * de la dernière heure d'arrivée à chaque gare, tel qu'écrit par {@link TimeTablePreprocessor}.
+     *
+     * @param buffer            le {@code ByteBuffer} contenant les données aplaties des liaisons.
+     * @param succBuffer        le {@code ByteBuffer} contenant uniquement les indices
+     *                          des liaisons suivantes.
+     * @param lastArrivalBuffer le {@code ByteBuffer} contenant, pour chaque gare, la dernière
+     *                          heure d'arrivée (U16, 0xFFFF si aucune), ou null s'il est absent.
+     */
+    public BufferedConnections(ByteBuffer buffer, ByteBuffer succBuffer,
+                               ByteBuffer lastArrivalBuffer) {
+        this(StructuredData.of(CONNECTION_STRUCTURE, buffer),
+                StructuredData.of(SUCC_STRUCTURE, succBuffer),
+                lastArrivalBuffer == null
+                        ? null
+                        : StructuredData.of(LAST_ARRIVAL_STRUCTURE, lastArrivalBuffer));
+    }
+
+    /**
+     * Construit une instance de {@code BufferedConnections} à partir de données structurées,
+     * quel que soit le format du fichier dont elles proviennent.
+     *
+     * @param data            les liaisons, structurées selon {@code CONNECTION_STRUCTURE}
+     * @param succData        les liaisons suivantes, structurées selon {@code SUCC_STRUCTURE}
+     * @param lastArrivalData le résumé des dernières arrivées, structuré selon
+     *                        {@code LAST_ARRIVAL_STRUCTURE}, ou null s'il est absent
+     */
+    BufferedConnections(StructuredData data, StructuredData succData,
+                        StructuredData lastArrivalData) {
+        this.structuredBuffer = data;
+        this.nextBuffer = succData;
+        this.lastArrivalBuffer = lastArrivalData;
     }
 
     /**
@@ -127,7 +176,24 @@ public final class BufferedConnections implements Connections {
      */
     @Override
     public int nextConnectionId(int id) {
-        return nextBuffer.get(id);
+        return nextBuffer.getS32(NEXT_CONNECTION_ID, id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * En l'absence de résumé précalculé, retourne Integer.MAX_VALUE.
+     *
+     * @param stationId l'index de la gare
+     * @return la dernière heure d'arrivée à la gare, ou -1 si aucune liaison n'y arrive
+     */
+    @Override
+    public int lastArrMinsAt(int stationId) {
+        if (lastArrivalBuffer == null) {
+            return Integer.MAX_VALUE;
+        }
+        int lastArrMins = lastArrivalBuffer.getU16(LAST_ARR_MINUTES, stationId);
+        return lastArrMins == NO_ARRIVAL ? -1 : lastArrMins;
     }
 
     /**
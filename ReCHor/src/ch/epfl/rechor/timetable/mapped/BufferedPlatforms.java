@@ -23,13 +23,13 @@ public final class BufferedPlatforms implements Platforms {
     private static final int NAME_ID = 0; //U16, Index de chaîne du nom de la voie/quai
     private static final int STATION_ID = 1; //U16, Index de la gare parente
 
-    private static final Structure PLATFORM_STRUCTURE = new Structure(
+    static final Structure PLATFORM_STRUCTURE = new Structure(
             Structure.field(NAME_ID, Structure.FieldType.U16),
             Structure.field(STATION_ID, Structure.FieldType.U16)
     );
 
     private final List<String> stringTable;
-    private final StructuredBuffer structuredBuffer;
+    private final StructuredData structuredBuffer;
 
     /**
      * Construit une instance d'accès aux voies/quais.
@@ -38,8 +38,19 @@ public final class BufferedPlatforms implements Platforms {
      * @param buffer      tampon contenant les données aplaties
      */
     public BufferedPlatforms(List<String> stringTable, ByteBuffer buffer) {
+        this(stringTable, StructuredData.of(PLATFORM_STRUCTURE, buffer));
+    }
+
+    /**
+     * Construit une instance d'accès aux voies/quais à partir de données structurées,
+     * quel que soit le format du fichier dont elles proviennent.
+     *
+     * @param stringTable table des chaînes de caractères
+     * @param data        les données structurées selon {@code PLATFORM_STRUCTURE}
+     */
+    BufferedPlatforms(List<String> stringTable, StructuredData data) {
         this.stringTable = stringTable;
-        this.structuredBuffer = new StructuredBuffer(PLATFORM_STRUCTURE, buffer);
+        this.structuredBuffer = data;
     }
 
     /**
@@ -22,13 +22,13 @@ public final class BufferedRoutes implements Routes {
     private static final int KIND = 1; // U8 type de véhicule desservant la ligne
 
     // Définition de la structure d'une ligne (route) aplatie
-    private static final Structure ROUTE_STRUCTURE = new Structure(
+    static final Structure ROUTE_STRUCTURE = new Structure(
             Structure.field(NAME_ID, Structure.FieldType.U16),
             Structure.field(KIND, Structure.FieldType.U8)
     );
 
     private final List<String> stringTable;
-    private final StructuredBuffer structuredBuffer;
+    private final StructuredData structuredBuffer;
 
     /**
      * Construit une instance de {@code BufferedRoutes}.
@@ -37,8 +37,19 @@ public final class BufferedRoutes implements Routes {
      * @param buffer      le {@code ByteBuffer} contenant les données aplaties des lignes.
      */
     public BufferedRoutes(List<String> stringTable, ByteBuffer buffer) {
+        this(stringTable, StructuredData.of(ROUTE_STRUCTURE, buffer));
+    }
+
+    /**
+     * Construit une instance d'accès aux lignes à partir de données structurées,
+     * quel que soit le format du fichier dont elles proviennent.
+     *
+     * @param stringTable table des chaînes de caractères
+     * @param data        les données structurées selon {@code ROUTE_STRUCTURE}
+     */
+    BufferedRoutes(List<String> stringTable, StructuredData data) {
         this.stringTable = stringTable;
-        this.structuredBuffer = new StructuredBuffer(ROUTE_STRUCTURE, buffer);
+        this.structuredBuffer = data;
     }
 
     /**
@@ -23,13 +23,13 @@ public final class BufferedStationAliases implements StationAliases {
     private static final int ALIAS_ID = 0; //U16 Index de chaîne du nom alternatif
     private static final int STATION_NAME_ID = 1; //U16 Index de chaîne du nom de la gare
 
-    private static final Structure ALIAS_STRUCTURE = new Structure(
+    static final Structure ALIAS_STRUCTURE = new Structure(
             Structure.field(ALIAS_ID, Structure.FieldType.U16),
             Structure.field(STATION_NAME_ID, Structure.FieldType.U16)
     );
 
     private final List<String> stringTable;
-    private final StructuredBuffer structuredBuffer;
+    private final StructuredData structuredBuffer;
 
     /**
      * Construit une instance d'accès aux noms alternatifs des gares.
@@ -38,8 +38,19 @@ public final class BufferedStationAliases implements StationAliases {
      * @param buffer      tampon contenant les données aplaties
      */
     public BufferedStationAliases(List<String> stringTable, ByteBuffer buffer) {
+        this(stringTable, StructuredData.of(ALIAS_STRUCTURE, buffer));
+    }
+
+    /**
+     * Construit une instance d'accès aux noms alternatifs à partir de données structurées,
+     * quel que soit le format du fichier dont elles proviennent.
+     *
+     * @param stringTable table des chaînes de caractères
+     * @param data        les données structurées selon {@code ALIAS_STRUCTURE}
+     */
+    BufferedStationAliases(List<String> stringTable, StructuredData data) {
         this.stringTable = stringTable;
-        this.structuredBuffer = new StructuredBuffer(ALIAS_STRUCTURE, buffer);
+        this.structuredBuffer = data;
     }
 
     /**
@@ -26,7 +26,7 @@ public final class BufferedStations implements Stations {
     private static final int LON = 1; //S32 Longitude de la gare
     private static final int LAT = 2; //S32 Latitude de la gare
 
-    private static final Structure STATION_STRUCTURE = new Structure(
+    static final Structure STATION_STRUCTURE = new Structure(
             Structure.field(NAME_ID, Structure.FieldType.U16),
             Structure.field(LON, Structure.FieldType.S32),
             Structure.field(LAT, Structure.FieldType.S32)
@@ -36,7 +36,7 @@ public final class BufferedStations implements Stations {
     private static final double UNIT_TO_DEGREES = Math.scalb(360.0, -32);
 
     private final List<String> stringTable;
-    private final StructuredBuffer structuredBuffer;
+    private final StructuredData structuredBuffer;
 
     /**
      * Construit une instance d'accès aux gares aplaties.
@@ -45,8 +45,19 @@ public final class BufferedStations implements Stations {
      * @param buffer      tampon contenant les données aplaties des gares
      */
     public BufferedStations(List<String> stringTable, ByteBuffer buffer) {
+        this(stringTable, StructuredData.of(STATION_STRUCTURE, buffer));
+    }
+
+    /**
+     * Construit une instance d'accès aux gares à partir de données structurées,
+     * quel que soit le format du fichier dont elles proviennent.
+     *
+     * @param stringTable table des chaînes de caractères
+     * @param data        les données structurées selon {@code STATION_STRUCTURE}
+     */
+    BufferedStations(List<String> stringTable, StructuredData data) {
         this.stringTable = stringTable;
-        this.structuredBuffer = new StructuredBuffer(STATION_STRUCTURE, buffer);
+        this.structuredBuffer = data;
     }
 
     /**
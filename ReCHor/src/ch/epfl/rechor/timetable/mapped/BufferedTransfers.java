@@ -20,19 +20,19 @@ import java.util.NoSuchElementException;
 public final class BufferedTransfers implements Transfers {
 
     //Indices des champs dans la table principale des changements
-    private static final int DEP_STATION_ID = 0; // U16 index de la gare de départ
-    private static final int ARR_STATION_ID = 1; // U16 index de la gare d'arrivée
-    private static final int TRANSFER_MINUTES = 2; // U8 durée du changement
+    static final int DEP_STATION_ID = 0; // U16 index de la gare de départ
+    static final int ARR_STATION_ID = 1; // U16 index de la gare d'arrivée
+    static final int TRANSFER_MINUTES = 2; // U8 durée du changement
 
     // Structure d'un changement (5 octets)
-    private static final Structure TRANSFER_STRUCTURE = new Structure(
+    static final Structure TRANSFER_STRUCTURE = new Structure(
             Structure.field(DEP_STATION_ID, Structure.FieldType.U16),
             Structure.field(ARR_STATION_ID, Structure.FieldType.U16),
             Structure.field(TRANSFER_MINUTES, Structure.FieldType.U8)
     );
 
-    // StructuredBuffer pour accéder aux données des changements
-    private final StructuredBuffer structuredBuffer;
+    // Tableau structuré pour accéder aux données des changements
+    private final StructuredData structuredBuffer;
     // Tableau pré-calculé associant, pour chaque gare d'arrivée,
     // l'intervalle empaqueté des index des changements
     private final int[] arrivingAtTable;
@@ -41,19 +41,25 @@ public final class BufferedTransfers implements Transfers {
      * Construit une instance de {@code BufferedTransfers} à partir d'un {@code ByteBuffer}
      * contenant les données aplaties des changements.
      * <p>
-     * Le constructeur effectue deux passes sur les données :
-     * <ul>
-     *   <li>La première passe détermine le maximum d'index de gare d'arrivée pour dimensionner
-     *   le tableau.</li>
-     *   <li>La deuxième passe regroupe les enregistrements par gare d'arrivée et stocke,
-     *   pour chaque gare, l'intervalle empaqueté des index des changements correspondants.</li>
-     * </ul>
+     * Le constructeur effectue une seule passe sur les données, qui regroupe les enregistrements
+     * par gare d'arrivée et stocke, pour chaque gare, l'intervalle empaqueté des index des
+     * changements correspondants.
      * </p>
      *
      * @param buffer le {@code ByteBuffer} contenant les données aplaties des changements.
      */
     public BufferedTransfers(ByteBuffer buffer) {
-        this.structuredBuffer = new StructuredBuffer(TRANSFER_STRUCTURE, buffer);
+        this(StructuredData.of(TRANSFER_STRUCTURE, buffer));
+    }
+
+    /**
+     * Construit une instance d'accès aux changements à partir de données structurées,
+     * quel que soit le format du fichier dont elles proviennent.
+     *
+     * @param data les données structurées selon {@code TRANSFER_STRUCTURE}
+     */
+    BufferedTransfers(StructuredData data) {
+        this.structuredBuffer = data;
         this.arrivingAtTable = buildArrivingAtTable();
     }
 
@@ -66,32 +72,31 @@ public final class BufferedTransfers implements Transfers {
      */
     private int[] buildArrivingAtTable() {
         int numChanges = structuredBuffer.size();
+        // Décodage en bloc de la colonne des gares d'arrivée
+        int[] arrStations = structuredBuffer.column(ARR_STATION_ID);
 
-        // Déterminer le maximum d'index de gare d'arrivée pour dimensionner le tableau
-        int maxArrStation = -1;
-        for (int i = 0; i < numChanges; i++) {
-            int arrStation = structuredBuffer.getU16(ARR_STATION_ID, i);
-            if (arrStation > maxArrStation) {
-                maxArrStation = arrStation;
-            }
-        }
-
-        // Créer le tableau pour couvrir tous les indices de gare (de 0 à maxArrStation inclus)
-        int[] table = new int[maxArrStation + 1];
+        // Les changements étant triés par gare d'arrivée, la dernière a le plus grand index,
+        // ce qui permet de dimensionner le tableau sans parcourir les données une première fois
+        int[] table = new int[numChanges == 0 ? 0 : arrStations[numChanges - 1] + 1];
         // Initialiser chaque entrée avec un intervalle vide (convention : PackedRange.pack(0, 0))
         Arrays.fill(table, PackedRange.pack(0, 0));
 
-        // Parcourir le buffer 2 fois et regrouper les enregistrements par gare d'arrivée
+        // Parcourir le buffer une fois et regrouper les enregistrements par gare d'arrivée
         int i = 0;
         while (i < numChanges) {
-            int currentArrStation = structuredBuffer.getU16(ARR_STATION_ID, i);
+            int currentArrStation = arrStations[i];
             int startIndex = i;
             // Avancer tant que l'index de la gare d'arrivée reste le même
-            while (i < numChanges && structuredBuffer.getU16(ARR_STATION_ID, i)
-                    == currentArrStation) {
+            while (i < numChanges && arrStations[i] == currentArrStation) {
                 i++;
             }
             int endIndex = i; // Intervalle [startIndex, endIndex)
+            if (currentArrStation >= table.length) {
+                // Données non triées : agrandir le tableau pour couvrir cette gare
+                int oldLength = table.length;
+                table = Arrays.copyOf(table, currentArrStation + 1);
+                Arrays.fill(table, oldLength, table.length, PackedRange.pack(0, 0));
+            }
             table[currentArrStation] = PackedRange.pack(startIndex, endIndex);
         }
         return table;
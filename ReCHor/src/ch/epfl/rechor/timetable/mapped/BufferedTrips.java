@@ -22,13 +22,13 @@ public final class BufferedTrips implements Trips {
     private static final int DESTINATION_ID = 1; //U16 index du nom de la destination.
 
     // Structure d'un enregistrement de course
-    private static final Structure TRIP_STRUCTURE = new Structure(
+    static final Structure TRIP_STRUCTURE = new Structure(
             Structure.field(ROUTE_ID, Structure.FieldType.U16),
             Structure.field(DESTINATION_ID, Structure.FieldType.U16)
     );
 
     private final List<String> stringTable;
-    private final StructuredBuffer structuredBuffer;
+    private final StructuredData structuredBuffer;
 
     /**
      * Construit une instance de {@code BufferedTrips}.
@@ -37,8 +37,19 @@ public final class BufferedTrips implements Trips {
      * @param buffer      le {@code ByteBuffer} contenant les données aplaties des courses.
      */
     public BufferedTrips(List<String> stringTable, ByteBuffer buffer) {
+        this(stringTable, StructuredData.of(TRIP_STRUCTURE, buffer));
+    }
+
+    /**
+     * Construit une instance d'accès aux courses à partir de données structurées,
+     * quel que soit le format du fichier dont elles proviennent.
+     *
+     * @param stringTable table des chaînes de caractères
+     * @param data        les données structurées selon {@code TRIP_STRUCTURE}
+     */
+    BufferedTrips(List<String> stringTable, StructuredData data) {
         this.stringTable = stringTable;
-        this.structuredBuffer = new StructuredBuffer(TRIP_STRUCTURE, buffer);
+        this.structuredBuffer = data;
     }
 
     /**
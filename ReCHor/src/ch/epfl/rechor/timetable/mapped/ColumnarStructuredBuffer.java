@@ -0,0 +1,263 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Représente un tableau structuré stocké au format v2 des fichiers horaires, qui range les
+ * données colonne par colonne, dans l'ordre des octets de la machine qui les a écrites.
+ * <p>
+ * Un fichier v2 commence par un en-tête, dont les entiers sont toujours gros-boutistes :
+ * <ul>
+ *   <li>le nombre magique {@code "RCH2"} (4 octets) ;</li>
+ *   <li>le numéro de version, 2 (U8) ;</li>
+ *   <li>l'ordre des octets des colonnes, 0 pour gros-boutiste et 1 pour petit-boutiste (U8) ;</li>
+ *   <li>le nombre de champs (U16) ;</li>
+ *   <li>le nombre d'éléments (S32) ;</li>
+ *   <li>le type de chaque champ, sous la forme de l'ordinal de son
+ *   {@link Structure.FieldType} (U8).</li>
+ * </ul>
+ * L'en-tête est suivi d'une colonne par champ, contenant la valeur de ce champ pour chacun des
+ * éléments. Chaque colonne commence à une position multiple de 8, de sorte que toutes les
+ * lectures sont alignées et, lorsque l'ordre des octets est celui de la machine, ne nécessitent
+ * aucune permutation.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class ColumnarStructuredBuffer implements StructuredData {
+
+    /**
+     * Extension des fichiers au format v2, qui remplace l'extension « .bin » du format d'origine.
+     */
+    public static final String FILE_EXTENSION = ".v2";
+
+    private static final String V1_FILE_EXTENSION = ".bin";
+    private static final int MAGIC = 0x52434832; // "RCH2"
+    private static final int VERSION = 2;
+    private static final int BIG_ENDIAN = 0;
+    private static final int LITTLE_ENDIAN = 1;
+    // Positions des informations dans l'en-tête
+    private static final int VERSION_OFFSET = 4;
+    private static final int BYTE_ORDER_OFFSET = 5;
+    private static final int FIELD_COUNT_OFFSET = 6;
+    private static final int ELEMENT_COUNT_OFFSET = 8;
+    private static final int FIELD_TYPES_OFFSET = 12;
+    // Alignement du début de chaque colonne
+    private static final int ALIGNMENT = 8;
+
+    private final Structure structure;
+    private final int elementCount;
+    // Colonnes des champs, seule celle correspondant au type du champ n'est pas nulle
+    private final ByteBuffer[] byteColumns;
+    private final ShortBuffer[] shortColumns;
+    private final IntBuffer[] intColumns;
+
+    /**
+     * Construit un tableau structuré à partir du contenu d'un fichier au format v2.
+     *
+     * @param structure la structure attendue des éléments
+     * @param file      le contenu du fichier
+     * @throws IllegalArgumentException si le contenu n'est pas au format v2, ou si ses champs
+     *                                  ne correspondent pas à ceux de la structure
+     */
+    public ColumnarStructuredBuffer(Structure structure, ByteBuffer file) {
+        ByteBuffer header = file.duplicate().order(ByteOrder.BIG_ENDIAN);
+        Preconditions.checkArgument(header.capacity() >= FIELD_TYPES_OFFSET
+                && header.getInt(0) == MAGIC
+                && header.get(VERSION_OFFSET) == VERSION);
+        int byteOrderCode = header.get(BYTE_ORDER_OFFSET);
+        Preconditions.checkArgument(byteOrderCode == BIG_ENDIAN || byteOrderCode == LITTLE_ENDIAN);
+        ByteOrder order = byteOrderCode == BIG_ENDIAN
+                ? ByteOrder.BIG_ENDIAN
+                : ByteOrder.LITTLE_ENDIAN;
+
+        int fieldCount = Short.toUnsignedInt(header.getShort(FIELD_COUNT_OFFSET));
+        Preconditions.checkArgument(fieldCount == structure.fieldCount());
+        int count = header.getInt(ELEMENT_COUNT_OFFSET);
+        Preconditions.checkArgument(count >= 0);
+
+        this.structure = structure;
+        this.elementCount = count;
+        this.byteColumns = new ByteBuffer[fieldCount];
+        this.shortColumns = new ShortBuffer[fieldCount];
+        this.intColumns = new IntBuffer[fieldCount];
+
+        int offset = align(FIELD_TYPES_OFFSET + fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            Structure.FieldType type = structure.fieldType(i);
+            Preconditions.checkArgument(header.get(FIELD_TYPES_OFFSET + i) == type.ordinal());
+            int length = count * size(type);
+            Preconditions.checkArgument(offset + length <= file.capacity());
+
+            ByteBuffer column = file.slice(offset, length).order(order);
+            switch (type) {
+                case U8 -> byteColumns[i] = column;
+                case U16 -> shortColumns[i] = column.asShortBuffer();
+                case S32 -> intColumns[i] = column.asIntBuffer();
+            }
+            offset = align(offset + length);
+        }
+    }
+
+    /**
+     * Encode le tableau structuré donné au format v2, avec l'ordre des octets donné pour les
+     * colonnes.
+     *
+     * @param data  le tableau structuré à encoder
+     * @param order l'ordre des octets des colonnes
+     * @return un tampon contenant l'intégralité du fichier v2
+     */
+    public static ByteBuffer encode(StructuredData data, ByteOrder order) {
+        Structure structure = data.structure();
+        int fieldCount = structure.fieldCount();
+        int count = data.size();
+
+        int totalSize = align(FIELD_TYPES_OFFSET + fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            totalSize = align(totalSize + count * size(structure.fieldType(i)));
+        }
+
+        ByteBuffer file = ByteBuffer.allocate(totalSize);
+        file.putInt(0, MAGIC)
+                .put(VERSION_OFFSET, (byte) VERSION)
+                .put(BYTE_ORDER_OFFSET, (byte) (order == ByteOrder.BIG_ENDIAN
+                        ? BIG_ENDIAN
+                        : LITTLE_ENDIAN))
+                .putShort(FIELD_COUNT_OFFSET, (short) fieldCount)
+                .putInt(ELEMENT_COUNT_OFFSET, count);
+
+        int offset = align(FIELD_TYPES_OFFSET + fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            Structure.FieldType type = structure.fieldType(i);
+            file.put(FIELD_TYPES_OFFSET + i, (byte) type.ordinal());
+
+            ByteBuffer column = file.slice(offset, count * size(type)).order(order);
+            int[] values = data.column(i);
+            switch (type) {
+                case U8 -> {
+                    for (int j = 0; j < count; j++) {
+                        column.put(j, (byte) values[j]);
+                    }
+                }
+                case U16 -> {
+                    ShortBuffer shorts = column.asShortBuffer();
+                    for (int j = 0; j < count; j++) {
+                        shorts.put(j, (short) values[j]);
+                    }
+                }
+                case S32 -> column.asIntBuffer().put(0, values);
+            }
+            offset = align(offset + count * size(type));
+        }
+        return file;
+    }
+
+    /**
+     * Retourne le nom du fichier au format v2 correspondant au fichier donné du format
+     * d'origine, par exemple « stations.v2 » pour « stations.bin ».
+     *
+     * @param v1FileName le nom du fichier au format d'origine
+     * @return le nom du fichier au format v2
+     */
+    public static String fileName(String v1FileName) {
+        String baseName = v1FileName.endsWith(V1_FILE_EXTENSION)
+                ? v1FileName.substring(0, v1FileName.length() - V1_FILE_EXTENSION.length())
+                : v1FileName;
+        return baseName + FILE_EXTENSION;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return la structure des éléments
+     */
+    @Override
+    public Structure structure() {
+        return structure;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return le nombre d'éléments
+     */
+    @Override
+    public int size() {
+        return elementCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param fieldIndex   l'indice du champ
+     * @param elementIndex l'indice de l'élément
+     * @return la valeur U8 en entier positif
+     */
+    @Override
+    public int getU8(int fieldIndex, int elementIndex) {
+        return Byte.toUnsignedInt(byteColumns[fieldIndex].get(elementIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param fieldIndex   l'indice du champ
+     * @param elementIndex l'indice de l'élément
+     * @return la valeur U16 en entier positif
+     */
+    @Override
+    public int getU16(int fieldIndex, int elementIndex) {
+        return Short.toUnsignedInt(shortColumns[fieldIndex].get(elementIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param fieldIndex   l'indice du champ
+     * @param elementIndex l'indice de l'élément
+     * @return la valeur S32
+     */
+    @Override
+    public int getS32(int fieldIndex, int elementIndex) {
+        return intColumns[fieldIndex].get(elementIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Les colonnes S32 sont copiées en bloc.
+     */
+    @Override
+    public int[] column(int fieldIndex) {
+        if (structure.fieldType(fieldIndex) == Structure.FieldType.S32) {
+            int[] column = new int[elementCount];
+            intColumns[fieldIndex].get(0, column);
+            return column;
+        }
+        return StructuredData.super.column(fieldIndex);
+    }
+
+    /**
+     * Retourne la taille, en octets, d'une valeur du type donné.
+     */
+    private static int size(Structure.FieldType type) {
+        return switch (type) {
+            case U8 -> Byte.BYTES;
+            case U16 -> Short.BYTES;
+            case S32 -> Integer.BYTES;
+        };
+    }
+
+    /**
+     * Arrondit la position donnée au multiple de l'alignement supérieur ou égal.
+     */
+    private static int align(int offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+}
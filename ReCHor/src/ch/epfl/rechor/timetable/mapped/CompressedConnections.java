@@ -0,0 +1,417 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.Preconditions;
+import ch.epfl.rechor.timetable.Connections;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Permet d'accéder à une table de liaisons stockée au format compressé, qui remplace à la fois
+ * le fichier des liaisons et celui des liaisons suivantes.
+ * <p>
+ * Le fichier commence par un en-tête gros-boutiste, composé du nombre magique {@code "RCC1"},
+ * du nombre de liaisons, du nombre de liaisons par bloc (une puissance de deux) et du nombre de
+ * blocs (S32). Il est suivi de l'index des blocs, donnant la position de chacun d'eux dans le
+ * fichier (S32), puis des blocs eux-mêmes. Dans un bloc, chaque liaison est représentée par :
+ * <ul>
+ *   <li>son heure de départ, absolue pour la première liaison du bloc, et sinon sous la forme
+ *   de sa différence avec celle de la liaison précédente (varint zigzag) ;</li>
+ *   <li>l'index de son arrêt de départ puis celui de son arrêt d'arrivée (U16) ;</li>
+ *   <li>sa durée, soit la différence entre ses heures d'arrivée et de départ (varint zigzag) ;</li>
+ *   <li>l'index de sa course (varint) et sa position dans celle-ci (U8) ;</li>
+ *   <li>la différence entre son index et celui de la liaison suivante (varint zigzag).</li>
+ * </ul>
+ * Les liaisons étant triées par heure de départ, la plupart de ces différences tiennent sur un
+ * seul octet.
+ * </p>
+ * <p>
+ * Chaque accès décode intégralement le bloc contenant la liaison demandée dans des tableaux
+ * réutilisés, propres à chaque fil d'exécution, de sorte que le parcours séquentiel des liaisons
+ * ne décode chaque bloc qu'une fois. Une même instance peut être utilisée simultanément par
+ * plusieurs fils d'exécution.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class CompressedConnections implements Connections {
+
+    /**
+     * Nombre par défaut de liaisons par bloc.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+
+    private static final int MAGIC = 0x52434331; // "RCC1"
+    // Positions des informations dans l'en-tête
+    private static final int COUNT_OFFSET = 4;
+    private static final int BLOCK_SIZE_OFFSET = 8;
+    private static final int BLOCK_COUNT_OFFSET = 12;
+    private static final int BLOCK_INDEX_OFFSET = 16;
+    // Masques et décalages du codage varint
+    private static final int VARINT_PAYLOAD_BITS = 7;
+    private static final int VARINT_PAYLOAD_MASK = 0x7F;
+    private static final int VARINT_CONTINUATION = 0x80;
+    private static final int U8_MASK = 0xFF;
+    private static final int U16_MASK = 0xFFFF;
+    private static final int MAX_BLOCK_SIZE = 1 << 16;
+
+    /**
+     * Liaisons d'un bloc décodées, réutilisées d'un bloc à l'autre.
+     */
+    private static final class Block {
+        // Index du bloc décodé, ou -1 si aucun bloc n'a encore été décodé
+        private int index = -1;
+        // Position de décodage dans le fichier
+        private int position;
+        private final int[] depStopIds;
+        private final int[] depMins;
+        private final int[] arrStopIds;
+        private final int[] arrMins;
+        private final int[] tripIds;
+        private final int[] tripPos;
+        private final int[] nextIds;
+
+        private Block(int blockSize) {
+            this.depStopIds = new int[blockSize];
+            this.depMins = new int[blockSize];
+            this.arrStopIds = new int[blockSize];
+            this.arrMins = new int[blockSize];
+            this.tripIds = new int[blockSize];
+            this.tripPos = new int[blockSize];
+            this.nextIds = new int[blockSize];
+        }
+    }
+
+    private final ByteBuffer data;
+    private final int size;
+    private final int blockShift;
+    private final int blockMask;
+    // Résumé des dernières arrivées par gare, ou null s'il est absent
+    private final StructuredData lastArrivalData;
+    private final ThreadLocal<Block> blocks;
+
+    /**
+     * Construit une table de liaisons à partir du contenu d'un fichier au format compressé.
+     *
+     * @param data            le contenu du fichier
+     * @param lastArrivalData le résumé des dernières arrivées, structuré selon
+     *                        {@code BufferedConnections.LAST_ARRIVAL_STRUCTURE}, ou null s'il
+     *                        est absent
+     * @throws IllegalArgumentException si le contenu n'est pas au format compressé
+     */
+    CompressedConnections(ByteBuffer data, StructuredData lastArrivalData) {
+        Preconditions.checkArgument(data.capacity() >= BLOCK_INDEX_OFFSET
+                && data.getInt(0) == MAGIC);
+        int count = data.getInt(COUNT_OFFSET);
+        int blockSize = data.getInt(BLOCK_SIZE_OFFSET);
+        int blockCount = data.getInt(BLOCK_COUNT_OFFSET);
+        Preconditions.checkArgument(count >= 0
+                && blockSize > 0 && blockSize <= MAX_BLOCK_SIZE && Integer.bitCount(blockSize) == 1
+                && blockCount == (count + blockSize - 1) / blockSize
+                && BLOCK_INDEX_OFFSET + (long) blockCount * Integer.BYTES <= data.capacity());
+
+        this.data = data;
+        this.size = count;
+        this.blockShift = Integer.numberOfTrailingZeros(blockSize);
+        this.blockMask = blockSize - 1;
+        this.lastArrivalData = lastArrivalData;
+        this.blocks = ThreadLocal.withInitial(() -> new Block(blockSize));
+    }
+
+    /**
+     * Construit une table de liaisons à partir du contenu d'un fichier au format compressé et,
+     * s'il existe, de celui du résumé des dernières arrivées écrit par
+     * {@link TimeTablePreprocessor}.
+     *
+     * @param data              le contenu du fichier au format compressé
+     * @param lastArrivalBuffer le contenu du résumé des dernières arrivées, ou null s'il est
+     *                          absent
+     * @throws IllegalArgumentException si le contenu n'est pas au format compressé
+     */
+    public CompressedConnections(ByteBuffer data, ByteBuffer lastArrivalBuffer) {
+        this(data, lastArrivalBuffer == null
+                ? null
+                : StructuredData.of(BufferedConnections.LAST_ARRIVAL_STRUCTURE, lastArrivalBuffer));
+    }
+
+    /**
+     * Encode les liaisons données au format compressé.
+     *
+     * @param connections les liaisons à encoder
+     * @param blockSize   le nombre de liaisons par bloc
+     * @return un tampon contenant l'intégralité du fichier au format compressé
+     * @throws IllegalArgumentException si le nombre de liaisons par bloc n'est pas une puissance
+     *                                  de deux comprise entre 1 et 2^16
+     */
+    public static ByteBuffer encode(Connections connections, int blockSize) {
+        Preconditions.checkArgument(blockSize > 0 && blockSize <= MAX_BLOCK_SIZE
+                && Integer.bitCount(blockSize) == 1);
+        int count = connections.size();
+        int blockCount = (count + blockSize - 1) / blockSize;
+
+        ByteSink sink = new ByteSink(BLOCK_INDEX_OFFSET + blockCount * Integer.BYTES
+                + count * Integer.BYTES * 3);
+        sink.putInt(MAGIC);
+        sink.putInt(count);
+        sink.putInt(blockSize);
+        sink.putInt(blockCount);
+        int indexPosition = sink.size();
+        sink.skip(blockCount * Integer.BYTES);
+
+        for (int block = 0; block < blockCount; block++) {
+            sink.putInt(indexPosition + block * Integer.BYTES, sink.size());
+            int first = block * blockSize;
+            int end = Math.min(first + blockSize, count);
+            int previousDepMins = 0;
+            for (int id = first; id < end; id++) {
+                int depMins = connections.depMins(id);
+                sink.putVarint(id == first
+                        ? zigzag(depMins)
+                        : zigzag(previousDepMins - depMins));
+                previousDepMins = depMins;
+                sink.putU16(connections.depStopId(id));
+                sink.putU16(connections.arrStopId(id));
+                sink.putVarint(zigzag(connections.arrMins(id) - depMins));
+                sink.putVarint(connections.tripId(id));
+                sink.putU8(connections.tripPos(id));
+                sink.putVarint(zigzag(id - connections.nextConnectionId(id)));
+            }
+        }
+        return sink.toByteBuffer();
+    }
+
+    /**
+     * Retourne le bloc décodé contenant la liaison d'index donné, en le décodant si le dernier
+     * bloc décodé par le fil d'exécution courant est un autre bloc.
+     */
+    private Block block(int id) {
+        Objects.checkIndex(id, size);
+        Block block = blocks.get();
+        int blockIndex = id >>> blockShift;
+        if (block.index != blockIndex) {
+            decode(block, blockIndex);
+        }
+        return block;
+    }
+
+    /**
+     * Décode le bloc d'index donné dans les tableaux du bloc donné.
+     */
+    private void decode(Block block, int blockIndex) {
+        block.position = data.getInt(BLOCK_INDEX_OFFSET + blockIndex * Integer.BYTES);
+        int first = blockIndex << blockShift;
+        int length = Math.min(blockMask + 1, size - first);
+        int depMins = 0;
+        for (int i = 0; i < length; i++) {
+            int depDelta = unzigzag(readVarint(block));
+            depMins = i == 0 ? depDelta : depMins - depDelta;
+            block.depMins[i] = depMins;
+            block.depStopIds[i] = data.getShort(block.position) & U16_MASK;
+            block.arrStopIds[i] = data.getShort(block.position + Short.BYTES) & U16_MASK;
+            block.position += 2 * Short.BYTES;
+            block.arrMins[i] = depMins + unzigzag(readVarint(block));
+            block.tripIds[i] = readVarint(block);
+            block.tripPos[i] = data.get(block.position++) & U8_MASK;
+            block.nextIds[i] = first + i - unzigzag(readVarint(block));
+        }
+        block.index = blockIndex;
+    }
+
+    /**
+     * Lit l'entier codé en varint à la position de décodage du bloc donné, et avance celle-ci.
+     */
+    private int readVarint(Block block) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = data.get(block.position++);
+            value |= (b & VARINT_PAYLOAD_MASK) << shift;
+            shift += VARINT_PAYLOAD_BITS;
+        } while ((b & VARINT_CONTINUATION) != 0);
+        return value;
+    }
+
+    /**
+     * Associe à un entier signé un entier positif, les petites valeurs absolues donnant des
+     * petits entiers.
+     */
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Inverse de {@link #zigzag(int)}.
+     */
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'index de l'arrêt de départ
+     */
+    @Override
+    public int depStopId(int id) {
+        return block(id).depStopIds[id & blockMask];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'heure de départ en minutes après minuit
+     */
+    @Override
+    public int depMins(int id) {
+        return block(id).depMins[id & blockMask];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'index de l'arrêt d'arrivée
+     */
+    @Override
+    public int arrStopId(int id) {
+        return block(id).arrStopIds[id & blockMask];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'heure d'arrivée en minutes après minuit
+     */
+    @Override
+    public int arrMins(int id) {
+        return block(id).arrMins[id & blockMask];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'index de la course
+     */
+    @Override
+    public int tripId(int id) {
+        return block(id).tripIds[id & blockMask];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return la position de la liaison dans la course
+     */
+    @Override
+    public int tripPos(int id) {
+        return block(id).tripPos[id & blockMask];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id l'index de la liaison
+     * @return l'index de la liaison suivante dans la course
+     */
+    @Override
+    public int nextConnectionId(int id) {
+        return block(id).nextIds[id & blockMask];
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * En l'absence de résumé précalculé, retourne Integer.MAX_VALUE.
+     *
+     * @param stationId l'index de la gare
+     * @return la dernière heure d'arrivée à la gare, ou -1 si aucune liaison n'y arrive
+     */
+    @Override
+    public int lastArrMinsAt(int stationId) {
+        if (lastArrivalData == null) {
+            return Integer.MAX_VALUE;
+        }
+        int lastArrMins = lastArrivalData.getU16(BufferedConnections.LAST_ARR_MINUTES, stationId);
+        return lastArrMins == BufferedConnections.NO_ARRIVAL ? -1 : lastArrMins;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return le nombre de liaisons
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Tableau d'octets extensible dans lequel le fichier compressé est écrit.
+     */
+    private static final class ByteSink {
+        private byte[] bytes;
+        private int size;
+
+        private ByteSink(int initialCapacity) {
+            this.bytes = new byte[Math.max(initialCapacity, 1)];
+        }
+
+        private void ensureCapacity(int additional) {
+            if (size + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+            }
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private void skip(int count) {
+            ensureCapacity(count);
+            size += count;
+        }
+
+        private void putU8(int value) {
+            Preconditions.checkArgument((value & ~U8_MASK) == 0);
+            ensureCapacity(Byte.BYTES);
+            bytes[size++] = (byte) value;
+        }
+
+        private void putU16(int value) {
+            Preconditions.checkArgument((value & ~U16_MASK) == 0);
+            ensureCapacity(Short.BYTES);
+            bytes[size++] = (byte) (value >>> Byte.SIZE);
+            bytes[size++] = (byte) value;
+        }
+
+        private void putInt(int value) {
+            skip(Integer.BYTES);
+            putInt(size - Integer.BYTES, value);
+        }
+
+        private void putInt(int position, int value) {
+            ByteBuffer.wrap(bytes).putInt(position, value);
+        }
+
+        private void putVarint(int value) {
+            ensureCapacity(Integer.BYTES + 1);
+            while ((value & ~VARINT_PAYLOAD_MASK) != 0) {
+                bytes[size++] = (byte) ((value & VARINT_PAYLOAD_MASK) | VARINT_CONTINUATION);
+                value >>>= VARINT_PAYLOAD_BITS;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(Arrays.copyOf(bytes, size));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.timetable.TimeTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Outil hors ligne écrivant, pour chaque jour d'un dossier horaire, ses liaisons au format
+ * compressé décrit par {@link CompressedConnections}, à côté des fichiers existants.
+ * <p>
+ * {@link FileTimeTable} et {@link PackedTimeTable} préfèrent ensuite ce format. Sur demande,
+ * l'outil supprime les fichiers des liaisons et des liaisons suivantes qu'il remplace, aux
+ * formats d'origine et v2.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class ConnectionsCompressor {
+
+    private static final String REMOVE_ORIGINALS_OPTION = "--remove-originals";
+    // Fichiers remplacés par les liaisons compressées
+    private static final List<String> REPLACED_FILES = List.of(
+            FileTimeTable.PATH_CONNECTIONS,
+            FileTimeTable.PATH_CONNECTIONS_SUC);
+
+    /**
+     * Constructeur privé pour que la classe soit non instanciable.
+     */
+    private ConnectionsCompressor() {}
+
+    /**
+     * Point d'entrée de l'outil. Les arguments sont le dossier horaire, suivi éventuellement de
+     * l'option {@code --remove-originals}.
+     *
+     * @param args les arguments de la ligne de commande
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2
+                || (args.length == 2 && !args[1].equals(REMOVE_ORIGINALS_OPTION))) {
+            System.err.println("Usage: ConnectionsCompressor <directory> ["
+                    + REMOVE_ORIGINALS_OPTION + "]");
+            System.exit(1);
+        }
+        compress(Path.of(args[0]), CompressedConnections.DEFAULT_BLOCK_SIZE, args.length == 2);
+    }
+
+    /**
+     * Écrit les liaisons de chaque jour du dossier horaire donné au format compressé.
+     *
+     * @param directory       le dossier horaire
+     * @param blockSize       le nombre de liaisons par bloc, une puissance de deux
+     * @param removeOriginals vrai si et seulement si les fichiers remplacés par les liaisons
+     *                        compressées doivent être supprimés
+     * @throws IOException              en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException si le nombre de liaisons par bloc est invalide
+     */
+    public static void compress(Path directory, int blockSize, boolean removeOriginals)
+            throws IOException {
+        TimeTable timeTable = FileTimeTable.in(directory);
+        for (LocalDate date : FileTimeTable.dates(directory)) {
+            Path dayDirectory = directory.resolve(date.toString());
+            ByteBuffer compressed =
+                    CompressedConnections.encode(timeTable.connectionsFor(date), blockSize);
+            Files.write(dayDirectory.resolve(FileTimeTable.PATH_COMPRESSED_CONNECTIONS),
+                    compressed.array());
+
+            if (removeOriginals) {
+                for (String file : REPLACED_FILES) {
+                    Files.deleteIfExists(dayDirectory.resolve(file));
+                    Files.deleteIfExists(dayDirectory.resolve(
+                            ColumnarStructuredBuffer.fileName(file)));
+                }
+            }
+        }
+    }
+}
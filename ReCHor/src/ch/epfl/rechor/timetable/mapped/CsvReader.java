@@ -0,0 +1,173 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lecteur séquentiel d'un fichier CSV dont la première ligne contient le nom des colonnes, tel
+ * que les fichiers d'un horaire GTFS. Une seule ligne est conservée en mémoire à la fois.
+ * <p>
+ * Les champs peuvent être entourés de guillemets, auquel cas ils peuvent contenir des virgules,
+ * des guillemets doublés et des retours à la ligne. Le fichier est encodé en UTF-8, et son
+ * éventuelle marque d'ordre des octets est ignorée.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+final class CsvReader implements Closeable {
+
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final Path file;
+    private final BufferedReader reader;
+    private final List<String> header;
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    private int lineNumber = 0;
+
+    /**
+     * Ouvre le fichier CSV donné et en lit la ligne d'en-tête.
+     *
+     * @param file le chemin du fichier
+     * @throws IOException en cas d'erreur d'entrée/sortie, ou si le fichier est vide
+     */
+    CsvReader(Path file) throws IOException {
+        this.file = file;
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        try {
+            if (!next()) {
+                throw new IOException("Empty CSV file: " + file);
+            }
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+        if (!fields.isEmpty() && fields.getFirst().indexOf(BYTE_ORDER_MARK) == 0) {
+            fields.set(0, fields.getFirst().substring(1));
+        }
+        this.header = fields.stream().map(String::strip).toList();
+    }
+
+    /**
+     * Retourne l'index de la colonne de nom donné, ou -1 si le fichier n'a pas de telle colonne.
+     *
+     * @param name le nom de la colonne
+     * @return l'index de la colonne, ou -1
+     */
+    int column(String name) {
+        return header.indexOf(name);
+    }
+
+    /**
+     * Retourne l'index de la colonne de nom donné, qui doit exister.
+     *
+     * @param name le nom de la colonne
+     * @return l'index de la colonne
+     * @throws IOException si le fichier n'a pas de telle colonne
+     */
+    int requiredColumn(String name) throws IOException {
+        int column = column(name);
+        if (column < 0) {
+            throw new IOException("Missing column " + name + " in " + file);
+        }
+        return column;
+    }
+
+    /**
+     * Lit la ligne suivante du fichier, les lignes vides étant ignorées.
+     *
+     * @return vrai si et seulement si une ligne a été lue, faux à la fin du fichier
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    boolean next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return false;
+            }
+            lineNumber += 1;
+        } while (line.isEmpty());
+
+        fields.clear();
+        field.setLength(0);
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) {
+                    break;
+                }
+                // Champ entre guillemets contenant un retour à la ligne
+                line = reader.readLine();
+                if (line == null) {
+                    throw invalid("unterminated quoted field");
+                }
+                lineNumber += 1;
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c != QUOTE) {
+                    field.append(c);
+                } else if (i < line.length() && line.charAt(i) == QUOTE) {
+                    field.append(QUOTE);
+                    i += 1;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == QUOTE) {
+                quoted = true;
+            } else if (c == SEPARATOR) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return true;
+    }
+
+    /**
+     * Retourne le champ de la ligne courante situé dans la colonne d'index donné, qui est vide
+     * si la ligne est trop courte ou si la colonne n'existe pas.
+     *
+     * @param column l'index de la colonne, ou -1
+     * @return le champ, sans les espaces qui l'entourent
+     */
+    String get(int column) {
+        return column >= 0 && column < fields.size() ? fields.get(column).strip() : "";
+    }
+
+    /**
+     * Retourne une exception signalant que la ligne courante est invalide.
+     *
+     * @param reason la raison pour laquelle la ligne est invalide
+     * @return l'exception, dont le message indique le fichier et le numéro de la ligne
+     */
+    IOException invalid(String reason) {
+        return new IOException("Invalid line %d in %s: %s".formatted(lineNumber, file, reason));
+    }
+
+    /**
+     * Ferme le fichier.
+     *
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -1,17 +1,24 @@
 package ch.epfl.rechor.timetable.mapped;
 
+import ch.epfl.rechor.PhaseTimer;
 import ch.epfl.rechor.timetable.*;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * Enregistrement qui permet d'obtenir les tableaux d'octets stockés dans des fichiers,
@@ -33,53 +40,215 @@ public record FileTimeTable(Path directory, List<String> stringTable, Stations s
         implements TimeTable {
 
     // Constantes de chemin de fichier
-    private static final String PATH_PLATFORMS = "platforms.bin";
-    private static final String PATH_ROUTES = "routes.bin";
-    private static final String PATH_ALIASES = "station-aliases.bin";
-    private static final String PATH_STATIONS = "stations.bin";
-    private static final String PATH_TRANSFERS = "transfers.bin";
-    private static final String PATH_FILE = "strings.txt";
-    private static final String PATH_CONNECTIONS = "connections.bin";
-    private static final String PATH_CONNECTIONS_SUC = "connections-succ.bin";
-    private static final String PATH_TRIPS = "trips.bin";
+    static final String PATH_PLATFORMS = "platforms.bin";
+    static final String PATH_ROUTES = "routes.bin";
+    static final String PATH_ALIASES = "station-aliases.bin";
+    static final String PATH_STATIONS = "stations.bin";
+    static final String PATH_TRANSFERS = "transfers.bin";
+    static final String PATH_FILE = "strings.txt";
+    static final String PATH_CONNECTIONS = "connections.bin";
+    static final String PATH_CONNECTIONS_SUC = "connections-succ.bin";
+    static final String PATH_TRIPS = "trips.bin";
+    // Résumé facultatif des dernières arrivées par gare, écrit par TimeTablePreprocessor
+    static final String PATH_LAST_ARRIVALS = "last-arrivals.bin";
+    // Liaisons compressées facultatives, écrites par ConnectionsCompressor
+    static final String PATH_COMPRESSED_CONNECTIONS = "connections.rcc";
 
     /**
      * Crée une instance de FileTimeTable à partir du répertoire contenant les fichiers horaires.
+     * Chaque fichier peut être au format d'origine ou au format v2 écrit par
+     * {@link TimeTableConverter}, qui est alors préféré.
      *
      * @param directory le chemin vers le dossier contenant les fichiers
      * @return une nouvelle instance de FileTimeTable
      * @throws IOException en cas d'erreur d'entrée/sortie
      */
     public static TimeTable in(Path directory) throws IOException {
-        // Chargement de la table de chaînes
-        Path strings = directory.resolve(PATH_FILE);
-        Charset charset = StandardCharsets.ISO_8859_1;
-        List<String> list = List.copyOf(Files.readAllLines(strings, charset));
+        return in(directory, Runnable::run, new PhaseTimer());
+    }
+
+    /**
+     * Crée une instance de FileTimeTable à partir du répertoire contenant les fichiers horaires,
+     * en chargeant et en indexant simultanément les différents fichiers à l'aide de l'exécuteur
+     * donné. Seuls les fichiers qui utilisent la table des chaînes attendent qu'elle soit prête.
+     * La durée du chargement de chaque fichier est enregistrée par le chronomètre donné.
+     *
+     * @param directory le chemin vers le dossier contenant les fichiers
+     * @param executor  l'exécuteur chargé du chargement des fichiers
+     * @param timer     le chronomètre enregistrant la durée du chargement de chaque fichier
+     * @return une nouvelle instance de FileTimeTable
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static TimeTable in(Path directory, Executor executor, PhaseTimer timer)
+            throws IOException {
+        // Chargement de la table de chaînes, décodées à la demande
+        CompletableFuture<List<String>> list = load(executor, timer, PATH_FILE,
+                () -> new MappedStringTable(bufferExtractor(directory, PATH_FILE)));
 
         // Chargement des plateformes
-        ByteBuffer platformByteBuffer = bufferExtractor(directory, PATH_PLATFORMS);
-        BufferedPlatforms bufferedPlatforms = new BufferedPlatforms(list, platformByteBuffer);
+        CompletableFuture<BufferedPlatforms> bufferedPlatforms = list.thenCompose(strings ->
+                load(executor, timer, PATH_PLATFORMS, () -> new BufferedPlatforms(strings,
+                        structuredData(directory, PATH_PLATFORMS,
+                                BufferedPlatforms.PLATFORM_STRUCTURE))));
 
         // Chargement des lignes
-        ByteBuffer routesByteBuffer = bufferExtractor(directory, PATH_ROUTES);
-        BufferedRoutes bufferedRoutes = new BufferedRoutes(list, routesByteBuffer);
+        CompletableFuture<BufferedRoutes> bufferedRoutes = list.thenCompose(strings ->
+                load(executor, timer, PATH_ROUTES, () -> new BufferedRoutes(strings,
+                        structuredData(directory, PATH_ROUTES, BufferedRoutes.ROUTE_STRUCTURE))));
 
         // Chargement des alias de gares
-        ByteBuffer aliasesByteBuffer = bufferExtractor(directory, PATH_ALIASES);
-        BufferedStationAliases bufferedAliases = new BufferedStationAliases(list,
-                aliasesByteBuffer);
+        CompletableFuture<BufferedStationAliases> bufferedAliases = list.thenCompose(strings ->
+                load(executor, timer, PATH_ALIASES, () -> new BufferedStationAliases(strings,
+                        structuredData(directory, PATH_ALIASES,
+                                BufferedStationAliases.ALIAS_STRUCTURE))));
 
         // Chargement des gares
-        ByteBuffer stationsByteBuffer = bufferExtractor(directory, PATH_STATIONS);
-        BufferedStations bufferedStations = new BufferedStations(list, stationsByteBuffer);
+        CompletableFuture<BufferedStations> bufferedStations = list.thenCompose(strings ->
+                load(executor, timer, PATH_STATIONS, () -> new BufferedStations(strings,
+                        structuredData(directory, PATH_STATIONS,
+                                BufferedStations.STATION_STRUCTURE))));
 
-        // Chargement des correspondances
-        ByteBuffer transfersByteBuffer = bufferExtractor(directory, PATH_TRANSFERS);
-        BufferedTransfers bufferedTransfers = new BufferedTransfers(transfersByteBuffer);
+        // Chargement des correspondances, indépendant de la table des chaînes
+        CompletableFuture<BufferedTransfers> bufferedTransfers = load(executor, timer,
+                PATH_TRANSFERS, () -> new BufferedTransfers(structuredData(directory,
+                        PATH_TRANSFERS, BufferedTransfers.TRANSFER_STRUCTURE)));
 
         // Création et retour de l'instance complète
-        return new FileTimeTable(directory, list, bufferedStations, bufferedAliases,
-                bufferedPlatforms, bufferedRoutes, bufferedTransfers);
+        return new FileTimeTable(directory, join(list), join(bufferedStations),
+                join(bufferedAliases), join(bufferedPlatforms), join(bufferedRoutes),
+                join(bufferedTransfers));
+    }
+
+    /**
+     * Lance le chargement d'un fichier à l'aide de l'exécuteur donné, en enregistrant sa durée.
+     *
+     * @param executor l'exécuteur chargé du chargement
+     * @param timer    le chronomètre enregistrant la durée du chargement
+     * @param phase    le nom de la phase de chargement
+     * @param loader   le chargement à effectuer
+     * @return le résultat futur du chargement
+     */
+    private static <T> CompletableFuture<T> load(Executor executor, PhaseTimer timer,
+                                                 String phase,
+                                                 PhaseTimer.Phase<T, IOException> loader) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return timer.time(phase, loader);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Attend et retourne le résultat du chargement donné.
+     *
+     * @param future le résultat futur du chargement
+     * @return le résultat du chargement
+     * @throws IOException si le chargement a échoué en raison d'une erreur d'entrée/sortie
+     */
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Charge en mémoire les liaisons de la date donnée, afin que leur premier parcours ne
+     * provoque pas de lecture sur le disque. Les fichiers sont projetés puis chargés à l'aide de
+     * {@link MappedByteBuffer#load()}, ce qui place leur contenu dans le cache de pages du
+     * système ; les projections ultérieures de ces fichiers en profitent. Ne fait rien si la date
+     * est absente du dossier horaire.
+     *
+     * @param directory le chemin du dossier horaire
+     * @param date      la date dont les liaisons doivent être chargées
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void prefault(Path directory, LocalDate date) throws IOException {
+        Path dateDir = directory.resolve(date.toString());
+        for (String path : List.of(PATH_CONNECTIONS, PATH_CONNECTIONS_SUC,
+                PATH_COMPRESSED_CONNECTIONS, PATH_LAST_ARRIVALS)) {
+            String v2Path = ColumnarStructuredBuffer.fileName(path);
+            String existing = Files.exists(file(dateDir, v2Path)) ? v2Path : path;
+            if (Files.exists(file(dateDir, existing))) {
+                bufferExtractor(dateDir, existing).load();
+            }
+        }
+    }
+
+    /**
+     * Retourne, par ordre croissant, les dates dont les données se trouvent dans le dossier
+     * horaire donné, c'est-à-dire celles dont le nom est celui d'un de ses sous-dossiers.
+     *
+     * @param directory le chemin du dossier horaire
+     * @return la liste triée des dates
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    static List<LocalDate> dates(Path directory) throws IOException {
+        List<LocalDate> dates = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory,
+                Files::isDirectory)) {
+            for (Path entry : entries) {
+                try {
+                    dates.add(LocalDate.parse(entry.getFileName().toString()));
+                } catch (DateTimeParseException e) {
+                    // Ce dossier ne contient pas les données d'un jour, il est ignoré
+                }
+            }
+        }
+        dates.sort(Comparator.naturalOrder());
+        return dates;
+    }
+
+    /**
+     * Retourne les données structurées du fichier indiqué, en chargeant sa version au format v2
+     * ({@link ColumnarStructuredBuffer}) si elle existe, et le fichier au format d'origine sinon.
+     *
+     * @param directory le chemin du répertoire contenant le fichier
+     * @param path      le nom du fichier au format d'origine
+     * @param structure la structure des éléments du fichier
+     * @return les données structurées du fichier
+     * @throws IOException si une erreur d'entrée/sortie se produit
+     *                     lors de l'ouverture du fichier ou du mapping
+     */
+    private static StructuredData structuredData(Path directory, String path, Structure structure)
+            throws IOException {
+        String v2Path = ColumnarStructuredBuffer.fileName(path);
+        return Files.exists(file(directory, v2Path))
+                ? new ColumnarStructuredBuffer(structure, bufferExtractor(directory, v2Path))
+                : StructuredData.of(structure, bufferExtractor(directory, path));
+    }
+
+    /**
+     * Indique si le fichier indiqué existe, au format v2 ou au format d'origine.
+     *
+     * @param directory le chemin du répertoire contenant le fichier
+     * @param path      le nom du fichier au format d'origine
+     * @return vrai si et seulement si l'une des versions du fichier existe
+     * @throws IOException en cas d'erreur de lecture du manifeste
+     */
+    private static boolean exists(Path directory, String path) throws IOException {
+        return Files.exists(file(directory, path))
+                || Files.exists(file(directory, ColumnarStructuredBuffer.fileName(path)));
+    }
+
+    /**
+     * Retourne le chemin du fichier indiqué, qui peut être stocké dans le répertoire lui-même
+     * ou, si le répertoire a été dédupliqué par {@link TimeTableDeduplicator}, être désigné par
+     * son manifeste.
+     *
+     * @param directory le chemin du répertoire contenant le fichier
+     * @param path      le nom du fichier
+     * @return le chemin du fichier
+     * @throws IOException en cas d'erreur de lecture du manifeste
+     */
+    private static Path file(Path directory, String path) throws IOException {
+        return TimeTableDeduplicator.resolve(directory, path);
     }
 
     /**
@@ -92,12 +261,46 @@ public record FileTimeTable(Path directory, List<String> stringTable, Stations s
      * @throws IOException si une erreur d'entrée/sortie se produit
      *                     lors de l'ouverture du fichier ou du mapping
      */
-    private static ByteBuffer bufferExtractor(Path directory, String path) throws IOException {
-        try (FileChannel s = FileChannel.open(directory.resolve(path))) {
+    private static MappedByteBuffer bufferExtractor(Path directory, String path)
+            throws IOException {
+        try (FileChannel s = FileChannel.open(file(directory, path))) {
             return s.map(FileChannel.MapMode.READ_ONLY, 0, s.size());
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Si le dossier du jour a été dédupliqué par {@link TimeTableDeduplicator} et ne contient
+     * aucun autre fichier que son manifeste, la clé est le manifeste lui-même, de sorte que tous
+     * les jours dont les fichiers ont le même contenu ont la même clé. Sinon, la clé est la date.
+     *
+     * @param date la date
+     * @return la clé des données de la date
+     * @throws UncheckedIOException en cas d'erreur de lecture du dossier du jour
+     */
+    @Override
+    public Object dayKey(LocalDate date) {
+        Path dateDir = directory.resolve(date.toString());
+        try {
+            Map<String, String> manifest = TimeTableDeduplicator.manifest(dateDir);
+            if (manifest.isEmpty()) {
+                return date;
+            }
+            // Un fichier présent dans le dossier du jour a la priorité sur le manifeste
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dateDir,
+                    file -> !file.getFileName().toString()
+                            .equals(TimeTableDeduplicator.MANIFEST))) {
+                if (files.iterator().hasNext()) {
+                    return date;
+                }
+            }
+            return Map.copyOf(manifest);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -109,8 +312,8 @@ public record FileTimeTable(Path directory, List<String> stringTable, Stations s
     public Trips tripsFor(LocalDate date) {
         try {
             Path dateDir = directory.resolve(date.toString());
-            ByteBuffer tripsByteBuffer = bufferExtractor(dateDir, PATH_TRIPS);
-            return new BufferedTrips(stringTable, tripsByteBuffer);
+            return new BufferedTrips(stringTable,
+                    structuredData(dateDir, PATH_TRIPS, BufferedTrips.TRIP_STRUCTURE));
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -118,6 +321,9 @@ public record FileTimeTable(Path directory, List<String> stringTable, Stations s
 
     /**
      * {@inheritDoc}
+     * <p>
+     * Les liaisons au format compressé ({@link CompressedConnections}) sont préférées si elles
+     * existent.
      *
      * @param date la date du voyage
      * @return une instance de {@code Connections} correspondant aux liaisons de la date
@@ -127,9 +333,19 @@ public record FileTimeTable(Path directory, List<String> stringTable, Stations s
     public Connections connectionsFor(LocalDate date) {
         try {
             Path dateDir = directory.resolve(date.toString());
-            ByteBuffer connectionsByteBuffer = bufferExtractor(dateDir, PATH_CONNECTIONS);
-            ByteBuffer connectionsSuccByteBuffer = bufferExtractor(dateDir, PATH_CONNECTIONS_SUC);
-            return new BufferedConnections(connectionsByteBuffer, connectionsSuccByteBuffer);
+            StructuredData lastArrivals = exists(dateDir, PATH_LAST_ARRIVALS)
+                    ? structuredData(dateDir, PATH_LAST_ARRIVALS,
+                    BufferedConnections.LAST_ARRIVAL_STRUCTURE)
+                    : null;
+            if (Files.exists(file(dateDir, PATH_COMPRESSED_CONNECTIONS))) {
+                return new CompressedConnections(
+                        bufferExtractor(dateDir, PATH_COMPRESSED_CONNECTIONS), lastArrivals);
+            }
+            StructuredData connections = structuredData(dateDir, PATH_CONNECTIONS,
+                    BufferedConnections.CONNECTION_STRUCTURE);
+            StructuredData connectionsSucc = structuredData(dateDir, PATH_CONNECTIONS_SUC,
+                    BufferedConnections.SUCC_STRUCTURE);
+            return new BufferedConnections(connections, connectionsSucc, lastArrivals);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -0,0 +1,1008 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.Bits32_24_8;
+import ch.epfl.rechor.Preconditions;
+import ch.epfl.rechor.journey.Vehicle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Outil hors ligne important un horaire au format GTFS et l'écrivant dans un dossier horaire,
+ * tel que chargé par {@link FileTimeTable}.
+ * <p>
+ * Les fichiers GTFS sont lus séquentiellement, une ligne à la fois. Seuls les arrêts, les lignes,
+ * les services et les courses sont conservés en mémoire ; les horaires de passage
+ * ({@code stop_times.txt}), de loin le plus gros fichier, sont triés par course au moyen d'un tri
+ * externe : ils sont découpés en tronçons triés écrits sur le disque, puis fusionnés. La fusion
+ * produit les liaisons de toutes les courses, écrites dans un fichier temporaire, à partir duquel
+ * les fichiers de chaque jour sont générés en parallèle, chaque jour ne retenant que les
+ * liaisons des courses circulant ce jour-là. La mémoire utilisée dépend donc de la taille des
+ * tronçons et du nombre de jours générés simultanément, qui est borné par l'exécuteur, mais pas
+ * du nombre d'horaires de passage.
+ * </p>
+ * <p>
+ * Les arrêts GTFS sans arrêt parent, ou de type « station », deviennent les gares de l'horaire,
+ * et ceux ayant un arrêt parent en deviennent les voies ou quais, nommés d'après leur champ
+ * {@code platform_code}. Un changement de {@value #DEFAULT_TRANSFER_MINUTES} minutes est ajouté
+ * au sein de chaque gare pour laquelle le fichier {@code transfers.txt} n'en définit pas. Le
+ * format GTFS n'ayant pas de notion d'alias, la table des alias est vide.
+ * </p>
+ * <p>
+ * Le format de l'horaire impose certaines limites : au plus 65536 chaînes, gares et voies, au
+ * plus 2^24 courses par jour, et au plus 256 liaisons par course.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class GtfsImporter {
+
+    /**
+     * Nombre d'horaires de passage par tronçon du tri externe, par défaut.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+    /**
+     * Durée, en minutes, des changements ajoutés au sein des gares.
+     */
+    public static final int DEFAULT_TRANSFER_MINUTES = 2;
+
+    // Fichiers GTFS
+    private static final String STOPS = "stops.txt";
+    private static final String ROUTES = "routes.txt";
+    private static final String TRIPS = "trips.txt";
+    private static final String STOP_TIMES = "stop_times.txt";
+    private static final String CALENDAR = "calendar.txt";
+    private static final String CALENDAR_DATES = "calendar_dates.txt";
+    private static final String TRANSFERS = "transfers.txt";
+
+    private static final DateTimeFormatter GTFS_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String TEMPORARY_PREFIX = ".gtfs-import";
+    // Types d'arrêts GTFS
+    private static final int STOP_LOCATION = 0;
+    private static final int STATION_LOCATION = 1;
+    // Types de changements GTFS impossibles ou sans descente du véhicule
+    private static final int FIRST_IGNORED_TRANSFER_TYPE = 3;
+    private static final int ADDED_CALENDAR_DATE = 1;
+    private static final int REMOVED_CALENDAR_DATE = 2;
+    private static final int MAX_U8 = 0xFF;
+    private static final int MAX_U16 = 0xFFFF;
+    private static final int MAX_TRIP_CONNECTIONS = 1 << 8;
+    private static final int SECONDS_PER_MINUTE = 60;
+
+    // Liaison d'une course, de taille fixe, dans le fichier des liaisons de toutes les courses
+    private static final int TEMPLATE_SIZE = 16;
+    private static final int TEMPLATE_TRIP = 0; // S32 index GTFS de la course
+    private static final int TEMPLATE_DEP_STOP = 4; // U16 arrêt de départ
+    private static final int TEMPLATE_DEP_MINS = 6; // U16 heure de départ
+    private static final int TEMPLATE_ARR_STOP = 8; // U16 arrêt d'arrivée
+    private static final int TEMPLATE_ARR_MINS = 10; // U16 heure d'arrivée
+    private static final int TEMPLATE_POS = 12; // U16 position dans la course
+
+    /**
+     * Tableau d'entiers de taille variable.
+     */
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[Objects.checkIndex(index, size)];
+        }
+
+        void set(int index, int value) {
+            values[Objects.checkIndex(index, size)] = value;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Les données de l'horaire conservées en mémoire pendant l'importation.
+     */
+    private static final class Feed {
+        // Table des chaînes, dans l'ordre de leur ajout
+        final Map<String, Integer> strings = new LinkedHashMap<>();
+        // Index des arrêts (gares puis voies) et gare de chaque arrêt
+        final Map<String, Integer> stopIds = new HashMap<>();
+        final IntList stationOfStop = new IntList();
+        final IntList stationNames = new IntList();
+        final Map<String, Integer> routeIds = new HashMap<>();
+        final Map<String, Integer> serviceIds = new HashMap<>();
+        final List<BitSet> services = new ArrayList<>();
+        // Index GTFS des courses, et leur ligne, service et destination (-1 si inconnue)
+        final Map<String, Integer> tripIds = new HashMap<>();
+        final IntList tripRoutes = new IntList();
+        final IntList tripServices = new IntList();
+        final IntList tripDestinations = new IntList();
+        LocalDate from;
+        LocalDate to;
+
+        int string(String value) {
+            // Une chaîne occupe une ligne du fichier des chaînes
+            return strings.computeIfAbsent(value.replace('\n', ' ').replace('\r', ' '),
+                    s -> strings.size());
+        }
+
+        int stationCount() {
+            return stationNames.size();
+        }
+
+        int dayCount() {
+            return (int) ChronoUnit.DAYS.between(from, to) + 1;
+        }
+    }
+
+    /**
+     * Lecteur d'un tronçon trié d'horaires de passage, positionné sur l'un d'eux.
+     */
+    private static final class ChunkReader implements Closeable {
+        private final DataInputStream in;
+        int trip;
+        int sequence;
+        int stop;
+        int arrMins;
+        int depMins;
+
+        ChunkReader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                trip = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            sequence = in.readInt();
+            stop = in.readInt();
+            arrMins = in.readInt();
+            depMins = in.readInt();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Constructeur privé pour que la classe soit non instanciable.
+     */
+    private GtfsImporter() {}
+
+    /**
+     * Point d'entrée de l'outil. Les arguments sont le dossier contenant les fichiers GTFS, le
+     * dossier horaire destination et, facultativement, la première et la dernière date à
+     * importer, au format ISO ; par défaut, toutes les dates du calendrier sont importées.
+     *
+     * @param args les arguments de la ligne de commande
+     * @throws IOException en cas d'erreur d'entrée/sortie ou de fichier GTFS invalide
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 4) {
+            System.err.println("Usage: GtfsImporter <gtfs> <destination> [<from> <to>]");
+            System.exit(1);
+        }
+        Path gtfs = Path.of(args[0]);
+        Path destination = Path.of(args[1]);
+        // Un fil par processeur, chacun générant un jour à la fois, borne la mémoire utilisée
+        ExecutorService executor =
+                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            if (args.length == 2) {
+                importFeed(gtfs, destination, executor);
+            } else {
+                importFeed(gtfs, destination, LocalDate.parse(args[2]),
+                        LocalDate.parse(args[3]), executor);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Importe toutes les dates du calendrier de l'horaire GTFS du dossier donné, et les écrit
+     * dans le dossier horaire destination, qui est créé s'il n'existe pas.
+     *
+     * @param gtfs        le dossier contenant les fichiers GTFS
+     * @param destination le dossier horaire destination
+     * @param executor    l'exécuteur chargé de générer les fichiers des jours, dont le nombre de
+     *                    fils borne celui des jours générés simultanément
+     * @throws IOException en cas d'erreur d'entrée/sortie ou de fichier GTFS invalide
+     */
+    public static void importFeed(Path gtfs, Path destination, Executor executor)
+            throws IOException {
+        importFeed(gtfs, destination, null, null, executor, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Importe les dates données de l'horaire GTFS du dossier donné, et les écrit dans le dossier
+     * horaire destination, qui est créé s'il n'existe pas.
+     *
+     * @param gtfs        le dossier contenant les fichiers GTFS
+     * @param destination le dossier horaire destination
+     * @param from        la première date à importer
+     * @param to          la dernière date à importer
+     * @param executor    l'exécuteur chargé de générer les fichiers des jours, dont le nombre de
+     *                    fils borne celui des jours générés simultanément
+     * @throws IOException              en cas d'erreur d'entrée/sortie ou de fichier GTFS
+     *                                  invalide
+     * @throws IllegalArgumentException si la dernière date précède la première
+     */
+    public static void importFeed(Path gtfs, Path destination, LocalDate from, LocalDate to,
+                                  Executor executor) throws IOException {
+        Preconditions.checkArgument(!to.isBefore(from));
+        importFeed(gtfs, destination, from, to, executor, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Importe l'horaire GTFS, les dates à importer étant toutes celles du calendrier si elles
+     * sont nulles, en triant les horaires de passage par tronçons de la taille donnée.
+     */
+    static void importFeed(Path gtfs, Path destination, LocalDate from, LocalDate to,
+                           Executor executor, int chunkSize) throws IOException {
+        Preconditions.checkArgument(chunkSize > 0);
+        Files.createDirectories(destination);
+        Feed feed = new Feed();
+        feed.from = from;
+        feed.to = to;
+
+        readStops(gtfs.resolve(STOPS), feed, destination);
+        readRoutes(gtfs.resolve(ROUTES), feed, destination);
+        readServices(gtfs, feed);
+        readTrips(gtfs.resolve(TRIPS), feed);
+        writeTransfers(gtfs.resolve(TRANSFERS), feed, destination);
+
+        Path temporary = Files.createTempDirectory(destination, TEMPORARY_PREFIX);
+        try {
+            List<Path> chunks = sortStopTimes(gtfs.resolve(STOP_TIMES), feed, temporary,
+                    chunkSize);
+            Path templates = temporary.resolve("templates.bin");
+            mergeStopTimes(chunks, feed, templates);
+            // Les destinations des courses sont connues une fois les horaires fusionnés
+            writeStrings(feed, destination.resolve(FileTimeTable.PATH_FILE));
+            writeDays(feed, templates, destination, executor);
+        } finally {
+            deleteRecursively(temporary);
+        }
+    }
+
+    /**
+     * Lit les arrêts et écrit les gares, les voies et la table (vide) des alias.
+     */
+    private static void readStops(Path file, Feed feed, Path destination) throws IOException {
+        // Arrêts ayant un arrêt parent : identifiant, parent, nom, voie, longitude et latitude
+        List<String[]> children = new ArrayList<>();
+        List<double[]> stationCoordinates = new ArrayList<>();
+        Map<String, Integer> stationIds = new HashMap<>();
+
+        try (CsvReader csv = new CsvReader(file)) {
+            int id = csv.requiredColumn("stop_id");
+            int name = csv.requiredColumn("stop_name");
+            int lat = csv.requiredColumn("stop_lat");
+            int lon = csv.requiredColumn("stop_lon");
+            int locationType = csv.column("location_type");
+            int parent = csv.column("parent_station");
+            int platformCode = csv.column("platform_code");
+            while (csv.next()) {
+                int type = parseInt(csv, locationType, STOP_LOCATION);
+                if (type == STATION_LOCATION
+                        || (type == STOP_LOCATION && csv.get(parent).isEmpty())) {
+                    stationIds.put(csv.get(id), feed.stationCount());
+                    feed.stationNames.add(feed.string(csv.get(name)));
+                    stationCoordinates.add(new double[]{
+                            parseDouble(csv, lon), parseDouble(csv, lat)});
+                } else if (type == STOP_LOCATION) {
+                    children.add(new String[]{csv.get(id), csv.get(parent), csv.get(name),
+                            csv.get(platformCode), csv.get(lon), csv.get(lat)});
+                }
+                // Les entrées, nœuds et zones d'embarquement ne sont pas des arrêts desservis
+            }
+        }
+
+        // Un arrêt dont le parent est inconnu devient une gare
+        List<String[]> platforms = new ArrayList<>();
+        for (String[] child : children) {
+            if (stationIds.containsKey(child[1])) {
+                platforms.add(child);
+            } else {
+                stationIds.put(child[0], feed.stationCount());
+                feed.stationNames.add(feed.string(child[2]));
+                stationCoordinates.add(new double[]{
+                        Double.parseDouble(child[4]), Double.parseDouble(child[5])});
+            }
+        }
+
+        int nStations = feed.stationCount();
+        if (nStations + platforms.size() > MAX_U16 + 1) {
+            throw new IOException("Too many stops in " + file);
+        }
+        StructuredBufferWriter stations =
+                new StructuredBufferWriter(BufferedStations.STATION_STRUCTURE, nStations);
+        for (int i = 0; i < nStations; i++) {
+            stations.setU16(0, i, feed.stationNames.get(i));
+            stations.setS32(1, i, toUnits(stationCoordinates.get(i)[0]));
+            stations.setS32(2, i, toUnits(stationCoordinates.get(i)[1]));
+            feed.stationOfStop.add(i);
+        }
+        stationIds.forEach(feed.stopIds::put);
+
+        StructuredBufferWriter platformWriter =
+                new StructuredBufferWriter(BufferedPlatforms.PLATFORM_STRUCTURE, platforms.size());
+        for (int i = 0; i < platforms.size(); i++) {
+            String[] platform = platforms.get(i);
+            int stationId = stationIds.get(platform[1]);
+            platformWriter.setU16(0, i, feed.string(platform[3]));
+            platformWriter.setU16(1, i, stationId);
+            feed.stopIds.put(platform[0], nStations + i);
+            feed.stationOfStop.add(stationId);
+        }
+
+        stations.writeTo(destination.resolve(FileTimeTable.PATH_STATIONS));
+        platformWriter.writeTo(destination.resolve(FileTimeTable.PATH_PLATFORMS));
+        new StructuredBufferWriter(BufferedStationAliases.ALIAS_STRUCTURE, 0)
+                .writeTo(destination.resolve(FileTimeTable.PATH_ALIASES));
+    }
+
+    /**
+     * Lit et écrit les lignes.
+     */
+    private static void readRoutes(Path file, Feed feed, Path destination) throws IOException {
+        List<int[]> routes = new ArrayList<>();
+        try (CsvReader csv = new CsvReader(file)) {
+            int id = csv.requiredColumn("route_id");
+            int shortName = csv.column("route_short_name");
+            int longName = csv.column("route_long_name");
+            int type = csv.requiredColumn("route_type");
+            while (csv.next()) {
+                String name = csv.get(shortName).isEmpty() ? csv.get(longName) : csv.get(shortName);
+                feed.routeIds.put(csv.get(id), routes.size());
+                routes.add(new int[]{feed.string(name),
+                        vehicle(parseInt(csv, type, -1)).ordinal()});
+            }
+        }
+
+        StructuredBufferWriter writer =
+                new StructuredBufferWriter(BufferedRoutes.ROUTE_STRUCTURE, routes.size());
+        for (int i = 0; i < routes.size(); i++) {
+            writer.setU16(0, i, routes.get(i)[0]);
+            writer.setU8(1, i, routes.get(i)[1]);
+        }
+        writer.writeTo(destination.resolve(FileTimeTable.PATH_ROUTES));
+    }
+
+    /**
+     * Retourne le véhicule correspondant au type de ligne GTFS donné, de base ou étendu.
+     */
+    private static Vehicle vehicle(int routeType) {
+        return switch (routeType) {
+            case 0, 5 -> Vehicle.TRAM;
+            case 1 -> Vehicle.METRO;
+            case 2, 12 -> Vehicle.TRAIN;
+            case 4 -> Vehicle.FERRY;
+            case 6 -> Vehicle.AERIAL_LIFT;
+            case 7 -> Vehicle.FUNICULAR;
+            default -> switch (routeType / 100) {
+                case 1, 3 -> Vehicle.TRAIN;
+                case 4 -> Vehicle.METRO;
+                case 9 -> Vehicle.TRAM;
+                case 10, 12 -> Vehicle.FERRY;
+                case 13 -> Vehicle.AERIAL_LIFT;
+                case 14 -> Vehicle.FUNICULAR;
+                default -> Vehicle.BUS;
+            };
+        };
+    }
+
+    /**
+     * Lit le calendrier et ses exceptions, détermine si nécessaire les dates à importer, puis
+     * calcule les jours de circulation de chaque service.
+     */
+    private static void readServices(Path gtfs, Feed feed) throws IOException {
+        // Services réguliers : jours de la semaine, puis première et dernière date
+        Map<String, LocalDate[]> periods = new LinkedHashMap<>();
+        Map<String, BitSet> weekDays = new HashMap<>();
+        Path calendar = gtfs.resolve(CALENDAR);
+        if (Files.exists(calendar)) {
+            try (CsvReader csv = new CsvReader(calendar)) {
+                int id = csv.requiredColumn("service_id");
+                int[] days = new int[DayOfWeek.values().length];
+                for (DayOfWeek day : DayOfWeek.values()) {
+                    days[day.ordinal()] = csv.requiredColumn(day.name().toLowerCase());
+                }
+                int start = csv.requiredColumn("start_date");
+                int end = csv.requiredColumn("end_date");
+                while (csv.next()) {
+                    BitSet serviceDays = new BitSet();
+                    for (DayOfWeek day : DayOfWeek.values()) {
+                        serviceDays.set(day.ordinal(), parseInt(csv, days[day.ordinal()], 0) == 1);
+                    }
+                    periods.put(csv.get(id),
+                            new LocalDate[]{parseDate(csv, start), parseDate(csv, end)});
+                    weekDays.put(csv.get(id), serviceDays);
+                }
+            }
+        }
+
+        // Exceptions : service, date et ajout ou suppression
+        List<String> exceptionServices = new ArrayList<>();
+        List<LocalDate> exceptionDates = new ArrayList<>();
+        BitSet added = new BitSet();
+        Path calendarDates = gtfs.resolve(CALENDAR_DATES);
+        if (Files.exists(calendarDates)) {
+            try (CsvReader csv = new CsvReader(calendarDates)) {
+                int id = csv.requiredColumn("service_id");
+                int date = csv.requiredColumn("date");
+                int type = csv.requiredColumn("exception_type");
+                while (csv.next()) {
+                    int exceptionType = parseInt(csv, type, 0);
+                    if (exceptionType != ADDED_CALENDAR_DATE
+                            && exceptionType != REMOVED_CALENDAR_DATE) {
+                        throw csv.invalid("unknown exception type");
+                    }
+                    added.set(exceptionDates.size(), exceptionType == ADDED_CALENDAR_DATE);
+                    exceptionServices.add(csv.get(id));
+                    exceptionDates.add(parseDate(csv, date));
+                }
+            }
+        }
+
+        if (feed.from == null) {
+            for (LocalDate[] period : periods.values()) {
+                extendRange(feed, period[0], period[1]);
+            }
+            for (int i = 0; i < exceptionDates.size(); i++) {
+                if (added.get(i)) {
+                    extendRange(feed, exceptionDates.get(i), exceptionDates.get(i));
+                }
+            }
+            if (feed.from == null) {
+                throw new IOException("Empty calendar in " + gtfs);
+            }
+        }
+
+        for (Map.Entry<String, LocalDate[]> period : periods.entrySet()) {
+            BitSet days = service(feed, period.getKey());
+            BitSet serviceWeekDays = weekDays.get(period.getKey());
+            LocalDate first = max(period.getValue()[0], feed.from);
+            LocalDate last = min(period.getValue()[1], feed.to);
+            for (LocalDate date = first; !date.isAfter(last); date = date.plusDays(1)) {
+                if (serviceWeekDays.get(date.getDayOfWeek().ordinal())) {
+                    days.set(dayOffset(feed, date));
+                }
+            }
+        }
+        for (int i = 0; i < exceptionDates.size(); i++) {
+            LocalDate date = exceptionDates.get(i);
+            if (!date.isBefore(feed.from) && !date.isAfter(feed.to)) {
+                service(feed, exceptionServices.get(i)).set(dayOffset(feed, date), added.get(i));
+            }
+        }
+    }
+
+    /**
+     * Retourne les jours de circulation du service d'identifiant donné, en l'ajoutant s'il est
+     * inconnu.
+     */
+    private static BitSet service(Feed feed, String id) {
+        int serviceId = feed.serviceIds.computeIfAbsent(id, s -> feed.services.size());
+        if (serviceId == feed.services.size()) {
+            feed.services.add(new BitSet(feed.dayCount()));
+        }
+        return feed.services.get(serviceId);
+    }
+
+    /**
+     * Étend l'intervalle des dates à importer de manière à ce qu'il contienne les dates données.
+     */
+    private static void extendRange(Feed feed, LocalDate first, LocalDate last) {
+        feed.from = feed.from == null ? first : min(feed.from, first);
+        feed.to = feed.to == null ? last : max(feed.to, last);
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static int dayOffset(Feed feed, LocalDate date) {
+        return (int) ChronoUnit.DAYS.between(feed.from, date);
+    }
+
+    /**
+     * Lit les courses, leur ligne, leur service et leur destination.
+     */
+    private static void readTrips(Path file, Feed feed) throws IOException {
+        try (CsvReader csv = new CsvReader(file)) {
+            int id = csv.requiredColumn("trip_id");
+            int route = csv.requiredColumn("route_id");
+            int service = csv.requiredColumn("service_id");
+            int headsign = csv.column("trip_headsign");
+            while (csv.next()) {
+                Integer routeId = feed.routeIds.get(csv.get(route));
+                if (routeId == null) {
+                    throw csv.invalid("unknown route " + csv.get(route));
+                }
+                feed.tripIds.put(csv.get(id), feed.tripRoutes.size());
+                feed.tripRoutes.add(routeId);
+                // Un service absent du calendrier ne circule jamais
+                feed.tripServices.add(feed.serviceIds.getOrDefault(csv.get(service), -1));
+                feed.tripDestinations.add(
+                        csv.get(headsign).isEmpty() ? -1 : feed.string(csv.get(headsign)));
+            }
+        }
+    }
+
+    /**
+     * Lit les horaires de passage par tronçons de la taille donnée, trie chaque tronçon par
+     * course et numéro d'ordre, et l'écrit dans un fichier du dossier temporaire donné.
+     *
+     * @return les fichiers des tronçons triés
+     */
+    private static List<Path> sortStopTimes(Path file, Feed feed, Path temporary, int chunkSize)
+            throws IOException {
+        List<Path> chunks = new ArrayList<>();
+        // Horaires de passage du tronçon : course, numéro d'ordre, arrêt, arrivée et départ
+        int[][] chunk = new int[5][Math.min(chunkSize, DEFAULT_CHUNK_SIZE)];
+        int size = 0;
+        try (CsvReader csv = new CsvReader(file)) {
+            int trip = csv.requiredColumn("trip_id");
+            int arrival = csv.requiredColumn("arrival_time");
+            int departure = csv.requiredColumn("departure_time");
+            int stop = csv.requiredColumn("stop_id");
+            int sequence = csv.requiredColumn("stop_sequence");
+            while (csv.next()) {
+                Integer tripId = feed.tripIds.get(csv.get(trip));
+                Integer stopId = feed.stopIds.get(csv.get(stop));
+                if (tripId == null || stopId == null) {
+                    throw csv.invalid("unknown trip or stop");
+                }
+                // Un horaire incomplet prend l'heure connue, un horaire vide est ignoré
+                String arrTime = csv.get(arrival);
+                String depTime = csv.get(departure);
+                if (arrTime.isEmpty() && depTime.isEmpty()) {
+                    continue;
+                }
+                if (size == chunk[0].length) {
+                    if (size == chunkSize) {
+                        chunks.add(writeChunk(chunk, size, temporary, chunks.size()));
+                        size = 0;
+                    } else {
+                        for (int i = 0; i < chunk.length; i++) {
+                            chunk[i] = Arrays.copyOf(chunk[i], Math.min(2 * size, chunkSize));
+                        }
+                    }
+                }
+                chunk[0][size] = tripId;
+                chunk[1][size] = parseInt(csv, sequence, 0);
+                chunk[2][size] = stopId;
+                chunk[3][size] = minutes(csv, arrTime.isEmpty() ? depTime : arrTime);
+                chunk[4][size] = minutes(csv, depTime.isEmpty() ? arrTime : depTime);
+                size += 1;
+            }
+        }
+        if (size > 0) {
+            chunks.add(writeChunk(chunk, size, temporary, chunks.size()));
+        }
+        return chunks;
+    }
+
+    /**
+     * Trie les premiers horaires de passage du tronçon donné et les écrit dans un fichier.
+     */
+    private static Path writeChunk(int[][] chunk, int size, Path temporary, int index)
+            throws IOException {
+        Integer[] order = new Integer[size];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> chunk[0][i])
+                .thenComparingInt(i -> chunk[1][i]));
+
+        Path file = temporary.resolve("stop-times-" + index + ".bin");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (int i : order) {
+                for (int[] column : chunk) {
+                    out.writeInt(column[i]);
+                }
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Fusionne les tronçons triés d'horaires de passage et écrit, course par course, les
+     * liaisons entre leurs arrêts successifs dans le fichier donné. La destination des courses
+     * qui n'en ont pas est le nom de la gare de leur dernier arrêt.
+     */
+    private static void mergeStopTimes(List<Path> chunks, Feed feed, Path templates)
+            throws IOException {
+        PriorityQueue<ChunkReader> queue = new PriorityQueue<>(Comparator
+                .<ChunkReader>comparingInt(r -> r.trip)
+                .thenComparingInt(r -> r.sequence));
+        List<ChunkReader> readers = new ArrayList<>();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(templates)))) {
+            for (Path chunk : chunks) {
+                ChunkReader reader = new ChunkReader(chunk);
+                readers.add(reader);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+
+            int currentTrip = -1;
+            int pos = 0;
+            int previousStop = 0;
+            int previousDepMins = 0;
+            while (!queue.isEmpty()) {
+                ChunkReader reader = queue.poll();
+                if (reader.trip == currentTrip) {
+                    if (pos == MAX_TRIP_CONNECTIONS) {
+                        throw new IOException("Too many stops in trip " + currentTrip);
+                    }
+                    out.writeInt(currentTrip);
+                    out.writeShort(previousStop);
+                    out.writeShort(previousDepMins);
+                    out.writeShort(reader.stop);
+                    out.writeShort(reader.arrMins);
+                    out.writeShort(pos);
+                    out.writeShort(0);
+                    pos += 1;
+                } else {
+                    setDestination(feed, currentTrip, previousStop);
+                    currentTrip = reader.trip;
+                    pos = 0;
+                }
+                previousStop = reader.stop;
+                previousDepMins = reader.depMins;
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+            setDestination(feed, currentTrip, previousStop);
+        } finally {
+            for (ChunkReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private static void setDestination(Feed feed, int trip, int lastStop) {
+        if (trip >= 0 && feed.tripDestinations.get(trip) < 0) {
+            feed.tripDestinations.set(trip,
+                    feed.stationNames.get(feed.stationOfStop.get(lastStop)));
+        }
+    }
+
+    /**
+     * Génère en parallèle les fichiers de chaque jour à partir des liaisons de toutes les
+     * courses.
+     */
+    private static void writeDays(Feed feed, Path templateFile, Path destination,
+                                  Executor executor) throws IOException {
+        ByteBuffer templates;
+        try (FileChannel channel = FileChannel.open(templateFile)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Too many stop times: " + channel.size() / TEMPLATE_SIZE);
+            }
+            templates = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        List<CompletableFuture<Void>> days = new ArrayList<>();
+        for (int day = 0; day < feed.dayCount(); day++) {
+            int dayOffset = day;
+            days.add(CompletableFuture.runAsync(() -> {
+                try {
+                    Path dayDirectory = Files.createDirectories(
+                            destination.resolve(feed.from.plusDays(dayOffset).toString()));
+                    writeDay(feed, templates, dayOffset, dayDirectory);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(days.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Écrit les courses, les liaisons, les index des liaisons suivantes et le résumé des
+     * dernières arrivées par gare du jour donné. Les liaisons sont triées par heure de départ
+     * décroissante, puis par heure d'arrivée décroissante, puis par course et par position
+     * décroissante. Ce dernier critère garantit que, parmi des liaisons consécutives d'une même
+     * course partant et arrivant à la même minute, la plus tardive est parcourue la première par
+     * le routeur, qui connaît ainsi la suite de la course lorsqu'il traite les précédentes.
+     */
+    private static void writeDay(Feed feed, ByteBuffer templates, int dayOffset,
+                                 Path dayDirectory) throws IOException {
+        int nTemplates = templates.capacity() / TEMPLATE_SIZE;
+
+        // Sélection des liaisons des courses circulant ce jour-là, qui sont numérotées dans
+        // l'ordre de leur index GTFS ; les liaisons d'une course sont consécutives
+        IntList selected = new IntList();
+        IntList selectedTrips = new IntList();
+        IntList dayTrips = new IntList();
+        int previousTrip = -1;
+        boolean active = false;
+        for (int t = 0; t < nTemplates; t++) {
+            int trip = templates.getInt(t * TEMPLATE_SIZE + TEMPLATE_TRIP);
+            if (trip != previousTrip) {
+                previousTrip = trip;
+                int service = feed.tripServices.get(trip);
+                active = service >= 0 && feed.services.get(service).get(dayOffset);
+                if (active) {
+                    dayTrips.add(trip);
+                }
+            }
+            if (active) {
+                selected.add(t);
+                selectedTrips.add(dayTrips.size() - 1);
+            }
+        }
+
+        int nConnections = selected.size();
+        // Index symétrique de chaque liaison au sein de celles de sa course, qui sont
+        // consécutives : les liaisons d'une course y sont rangées par position décroissante, et
+        // les courses restent dans leur ordre. L'application est sa propre inverse.
+        int[] mirrored = new int[nConnections];
+        int tripStart = 0;
+        for (int i = 1; i <= nConnections; i++) {
+            if (i == nConnections || selectedTrips.get(i) != selectedTrips.get(tripStart)) {
+                for (int j = tripStart; j < i; j++) {
+                    mirrored[j] = tripStart + i - 1 - j;
+                }
+                tripStart = i;
+            }
+        }
+        long[] order = new long[nConnections];
+        for (int i = 0; i < nConnections; i++) {
+            int offset = selected.get(i) * TEMPLATE_SIZE;
+            int depMins = templates.getChar(offset + TEMPLATE_DEP_MINS);
+            int arrMins = templates.getChar(offset + TEMPLATE_ARR_MINS);
+            order[i] = ((long) (MAX_U16 - depMins) << 48) | ((long) (MAX_U16 - arrMins) << 32)
+                    | mirrored[i];
+        }
+        Arrays.sort(order);
+        int[] newIds = new int[nConnections];
+        for (int newId = 0; newId < nConnections; newId++) {
+            newIds[mirrored[(int) order[newId]]] = newId;
+        }
+
+        StructuredBufferWriter connections =
+                new StructuredBufferWriter(BufferedConnections.CONNECTION_STRUCTURE, nConnections);
+        StructuredBufferWriter succ =
+                new StructuredBufferWriter(BufferedConnections.SUCC_STRUCTURE, nConnections);
+        int[] lastArrMins = new int[feed.stationCount()];
+        Arrays.fill(lastArrMins, -1);
+        for (int newId = 0; newId < nConnections; newId++) {
+            int i = mirrored[(int) order[newId]];
+            int t = selected.get(i);
+            int offset = t * TEMPLATE_SIZE;
+            int pos = templates.getChar(offset + TEMPLATE_POS);
+            int arrStop = templates.getChar(offset + TEMPLATE_ARR_STOP);
+            int arrMins = templates.getChar(offset + TEMPLATE_ARR_MINS);
+            connections.setU16(BufferedConnections.DEP_STOP_ID, newId,
+                    templates.getChar(offset + TEMPLATE_DEP_STOP));
+            connections.setU16(BufferedConnections.DEP_MINUTES, newId,
+                    templates.getChar(offset + TEMPLATE_DEP_MINS));
+            connections.setU16(BufferedConnections.ARR_STOP_ID, newId, arrStop);
+            connections.setU16(BufferedConnections.ARR_MINUTES, newId, arrMins);
+            connections.setS32(BufferedConnections.TRIP_POS_ID, newId,
+                    Bits32_24_8.pack(selectedTrips.get(i), pos));
+
+            // La liaison suivant la dernière d'une course est la première de cette course
+            boolean last = t + 1 == nTemplates
+                    || templates.getInt(offset + TEMPLATE_SIZE + TEMPLATE_TRIP)
+                    != templates.getInt(offset + TEMPLATE_TRIP);
+            succ.setS32(BufferedConnections.NEXT_CONNECTION_ID, newId,
+                    newIds[last ? i - pos : i + 1]);
+
+            int arrStationId = feed.stationOfStop.get(arrStop);
+            lastArrMins[arrStationId] = Math.max(lastArrMins[arrStationId], arrMins);
+        }
+
+        StructuredBufferWriter trips =
+                new StructuredBufferWriter(BufferedTrips.TRIP_STRUCTURE, dayTrips.size());
+        for (int i = 0; i < dayTrips.size(); i++) {
+            trips.setU16(0, i, feed.tripRoutes.get(dayTrips.get(i)));
+            trips.setU16(1, i, feed.tripDestinations.get(dayTrips.get(i)));
+        }
+        StructuredBufferWriter lastArrivals = new StructuredBufferWriter(
+                BufferedConnections.LAST_ARRIVAL_STRUCTURE, lastArrMins.length);
+        for (int stationId = 0; stationId < lastArrMins.length; stationId++) {
+            lastArrivals.setU16(BufferedConnections.LAST_ARR_MINUTES, stationId,
+                    lastArrMins[stationId] < 0
+                            ? BufferedConnections.NO_ARRIVAL
+                            : lastArrMins[stationId]);
+        }
+
+        trips.writeTo(dayDirectory.resolve(FileTimeTable.PATH_TRIPS));
+        connections.writeTo(dayDirectory.resolve(FileTimeTable.PATH_CONNECTIONS));
+        succ.writeTo(dayDirectory.resolve(FileTimeTable.PATH_CONNECTIONS_SUC));
+        lastArrivals.writeTo(dayDirectory.resolve(FileTimeTable.PATH_LAST_ARRIVALS));
+    }
+
+    /**
+     * Lit les changements, s'ils existent, et les écrit entre les gares des arrêts concernés,
+     * triés par gare d'arrivée. Lorsque plusieurs changements relient les mêmes gares, le plus
+     * long est retenu, et un changement est ajouté au sein des gares qui n'en ont pas.
+     */
+    private static void writeTransfers(Path file, Feed feed, Path destination)
+            throws IOException {
+        // Durée des changements, par gare d'arrivée puis de départ
+        TreeMap<Long, Integer> transfers = new TreeMap<>();
+        if (Files.exists(file)) {
+            try (CsvReader csv = new CsvReader(file)) {
+                int from = csv.requiredColumn("from_stop_id");
+                int to = csv.requiredColumn("to_stop_id");
+                int type = csv.column("transfer_type");
+                int minTime = csv.column("min_transfer_time");
+                while (csv.next()) {
+                    if (parseInt(csv, type, 0) >= FIRST_IGNORED_TRANSFER_TYPE) {
+                        continue;
+                    }
+                    Integer fromStop = feed.stopIds.get(csv.get(from));
+                    Integer toStop = feed.stopIds.get(csv.get(to));
+                    if (fromStop == null || toStop == null) {
+                        throw csv.invalid("unknown stop");
+                    }
+                    int seconds = parseInt(csv, minTime,
+                            DEFAULT_TRANSFER_MINUTES * SECONDS_PER_MINUTE);
+                    int minutes = Math.min(MAX_U8,
+                            (seconds + SECONDS_PER_MINUTE - 1) / SECONDS_PER_MINUTE);
+                    transfers.merge(transferKey(feed.stationOfStop.get(fromStop),
+                            feed.stationOfStop.get(toStop)), minutes, Math::max);
+                }
+            }
+        }
+        for (int stationId = 0; stationId < feed.stationCount(); stationId++) {
+            transfers.putIfAbsent(transferKey(stationId, stationId), DEFAULT_TRANSFER_MINUTES);
+        }
+
+        StructuredBufferWriter writer =
+                new StructuredBufferWriter(BufferedTransfers.TRANSFER_STRUCTURE, transfers.size());
+        int i = 0;
+        for (Map.Entry<Long, Integer> transfer : transfers.entrySet()) {
+            writer.setU16(BufferedTransfers.DEP_STATION_ID, i, (int) (long) transfer.getKey());
+            writer.setU16(BufferedTransfers.ARR_STATION_ID, i,
+                    (int) (transfer.getKey() >>> Integer.SIZE));
+            writer.setU8(BufferedTransfers.TRANSFER_MINUTES, i, transfer.getValue());
+            i += 1;
+        }
+        writer.writeTo(destination.resolve(FileTimeTable.PATH_TRANSFERS));
+    }
+
+    private static long transferKey(int depStationId, int arrStationId) {
+        return ((long) arrStationId << Integer.SIZE) | depStationId;
+    }
+
+    /**
+     * Écrit la table des chaînes, les caractères non représentables en ISO-8859-1 étant
+     * remplacés par un point d'interrogation.
+     */
+    private static void writeStrings(Feed feed, Path file) throws IOException {
+        if (feed.strings.size() > MAX_U16 + 1) {
+            throw new IOException("Too many strings: " + feed.strings.size());
+        }
+        Files.write(file, String.join("\n", feed.strings.keySet())
+                .getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Convertit des degrés en l'unité des coordonnées des gares, 2^32 unités valant 360°.
+     */
+    private static int toUnits(double degrees) {
+        return (int) Math.round(Math.scalb(degrees / 360.0, Integer.SIZE));
+    }
+
+    /**
+     * Retourne l'entier de la colonne donnée de la ligne courante, ou la valeur par défaut
+     * donnée si le champ est vide.
+     */
+    private static int parseInt(CsvReader csv, int column, int defaultValue) throws IOException {
+        String value = csv.get(column);
+        try {
+            return value.isEmpty() ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw csv.invalid("invalid integer " + value);
+        }
+    }
+
+    private static double parseDouble(CsvReader csv, int column) throws IOException {
+        try {
+            return Double.parseDouble(csv.get(column));
+        } catch (NumberFormatException e) {
+            throw csv.invalid("invalid number " + csv.get(column));
+        }
+    }
+
+    private static LocalDate parseDate(CsvReader csv, int column) throws IOException {
+        try {
+            return LocalDate.parse(csv.get(column), GTFS_DATE);
+        } catch (DateTimeParseException e) {
+            throw csv.invalid("invalid date " + csv.get(column));
+        }
+    }
+
+    /**
+     * Retourne le nombre de minutes après minuit de l'heure GTFS donnée, de la forme
+     * {@code H:MM:SS}, dont les secondes sont ignorées et dont les heures peuvent dépasser 24.
+     */
+    private static int minutes(CsvReader csv, String time) throws IOException {
+        int firstColon = time.indexOf(':');
+        int secondColon = time.indexOf(':', firstColon + 1);
+        try {
+            int minutes = Integer.parseInt(time, 0, firstColon, 10) * 60
+                    + Integer.parseInt(time, firstColon + 1, secondColon, 10);
+            Preconditions.checkArgument(minutes <= MAX_U16);
+            return minutes;
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw csv.invalid("invalid time " + time);
+        }
+    }
+
+    /**
+     * Supprime le dossier donné et son contenu.
+     */
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,176 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Table des chaînes de caractères d'un horaire, lue directement dans le contenu projeté en
+ * mémoire du fichier « strings.txt », encodé en ISO-8859-1 à raison d'une chaîne par ligne.
+ * <p>
+ * Seule la position du début de chaque ligne est calculée à la construction ; les chaînes sont
+ * décodées à la demande, lors de leur premier accès. Un cache facultatif, de taille bornée,
+ * conserve les chaînes décodées récemment : chaque chaîne y occupe une case déterminée par son
+ * index, et remplace celle qui s'y trouvait. Les entrées du cache étant immuables, la table
+ * peut être partagée entre plusieurs fils d'exécution.
+ * </p>
+ * <p>
+ * Les lignes sont découpées comme le fait {@link java.nio.file.Files#readAllLines}, de sorte que
+ * cette table est égale à la liste retournée par cette méthode pour le même fichier.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class MappedStringTable extends AbstractList<String> implements RandomAccess {
+
+    /**
+     * Taille par défaut du cache des chaînes décodées.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    /**
+     * Une chaîne décodée et son index, placée dans le cache.
+     *
+     * @param index l'index de la chaîne
+     * @param value la chaîne
+     */
+    private record Entry(int index, String value) {}
+
+    private final ByteBuffer content;
+    // Position du début de chaque ligne, suivie de la taille du contenu
+    private final int[] lineStarts;
+    // Cache des chaînes décodées, ou null s'il est désactivé
+    private final Entry[] cache;
+    private final int cacheMask;
+
+    /**
+     * Construit une table des chaînes à partir du contenu du fichier des chaînes.
+     *
+     * @param content   le contenu du fichier, encodé en ISO-8859-1
+     * @param cacheSize la taille du cache des chaînes décodées, arrondie à la puissance de deux
+     *                  supérieure ou égale, ou 0 pour n'utiliser aucun cache
+     * @throws IllegalArgumentException si la taille du cache est négative ou supérieure à 2^30
+     */
+    public MappedStringTable(ByteBuffer content, int cacheSize) {
+        Preconditions.checkArgument(cacheSize >= 0 && cacheSize <= 1 << 30);
+        this.content = content;
+        this.lineStarts = lineStarts(content);
+        if (cacheSize == 0) {
+            this.cache = null;
+            this.cacheMask = 0;
+        } else {
+            int capacity = cacheSize == 1 ? 1 : Integer.highestOneBit(cacheSize - 1) << 1;
+            this.cache = new Entry[capacity];
+            this.cacheMask = capacity - 1;
+        }
+    }
+
+    /**
+     * Construit une table des chaînes à partir du contenu du fichier des chaînes, avec un cache
+     * de taille {@value #DEFAULT_CACHE_SIZE}.
+     *
+     * @param content le contenu du fichier, encodé en ISO-8859-1
+     */
+    public MappedStringTable(ByteBuffer content) {
+        this(content, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Calcule la position du début de chaque ligne du contenu donné, suivie de la taille du
+     * contenu. Comme pour {@link java.nio.file.Files#readAllLines}, une ligne se termine par
+     * « \n », « \r » ou « \r\n », et le contenu ne se terminant pas par une fin de ligne forme
+     * une dernière ligne.
+     */
+    private static int[] lineStarts(ByteBuffer content) {
+        int size = content.capacity();
+        int lineCount = 0;
+        for (int i = 0; i < size; i = nextLineStart(content, i)) {
+            lineCount += 1;
+        }
+
+        int[] lineStarts = new int[lineCount + 1];
+        int line = 0;
+        for (int i = 0; i < size; i = nextLineStart(content, i)) {
+            lineStarts[line++] = i;
+        }
+        lineStarts[lineCount] = size;
+        return lineStarts;
+    }
+
+    /**
+     * Retourne la position du début de la ligne suivant celle commençant à la position donnée.
+     */
+    private static int nextLineStart(ByteBuffer content, int lineStart) {
+        int size = content.capacity();
+        int i = lineStart;
+        while (i < size) {
+            byte b = content.get(i);
+            if (b == LINE_FEED) {
+                return i + 1;
+            }
+            if (b == CARRIAGE_RETURN) {
+                return i + 1 < size && content.get(i + 1) == LINE_FEED ? i + 2 : i + 1;
+            }
+            i += 1;
+        }
+        return size;
+    }
+
+    /**
+     * Décode la chaîne d'index donné.
+     */
+    private String decode(int index) {
+        int start = lineStarts[index];
+        int end = lineStarts[index + 1];
+        // Retire la fin de ligne, qui comporte au plus un « \r » suivi d'au plus un « \n »
+        if (end > start && content.get(end - 1) == LINE_FEED) {
+            end -= 1;
+        }
+        if (end > start && content.get(end - 1) == CARRIAGE_RETURN) {
+            end -= 1;
+        }
+        byte[] bytes = new byte[end - start];
+        content.get(start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Retourne la chaîne d'index donné, en la décodant si elle ne se trouve pas dans le cache.
+     *
+     * @param index l'index de la chaîne
+     * @return la chaîne d'index donné
+     * @throws IndexOutOfBoundsException si l'index est invalide
+     */
+    @Override
+    public String get(int index) {
+        Objects.checkIndex(index, size());
+        if (cache == null) {
+            return decode(index);
+        }
+        Entry entry = cache[index & cacheMask];
+        if (entry != null && entry.index() == index) {
+            return entry.value();
+        }
+        String value = decode(index);
+        cache[index & cacheMask] = new Entry(index, value);
+        return value;
+    }
+
+    /**
+     * Retourne le nombre de chaînes de la table.
+     *
+     * @return le nombre de chaînes
+     */
+    @Override
+    public int size() {
+        return lineStarts.length - 1;
+    }
+}
@@ -0,0 +1,410 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.Preconditions;
+import ch.epfl.rechor.timetable.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * Horaire stocké dans un unique fichier conteneur, écrit par {@link TimeTablePacker}, et projeté
+ * en mémoire en une seule fois.
+ * <p>
+ * Le conteneur commence par un en-tête gros-boutiste :
+ * <ul>
+ *   <li>le nombre magique {@code "RCHP"} (4 octets) ;</li>
+ *   <li>le numéro de version, 1 (U16) ;</li>
+ *   <li>deux octets réservés, nuls ;</li>
+ *   <li>le nombre de sections (S32).</li>
+ * </ul>
+ * Il est suivi de la table des sections, dont chaque entrée, de {@value #ENTRY_SIZE} octets,
+ * contient le nom de la section (ISO-8859-1, complété par des octets nuls), sa position et sa
+ * longueur dans le conteneur (entiers de 64 bits) ainsi que la somme de contrôle CRC-32 de son
+ * contenu. Chaque section contient l'un des fichiers d'un dossier horaire, au format d'origine
+ * ou au format v2, et porte son chemin relatif : « strings.txt », « stations.bin »,
+ * « 2025-04-01/connections.v2 », etc. Toutes les sections commencent à une position multiple
+ * de 8, ce qui préserve l'alignement des fichiers au format v2.
+ * </p>
+ * <p>
+ * Les sommes de contrôle ne sont vérifiées que par {@link #verify()}, afin que l'ouverture du
+ * conteneur ne lise pas l'intégralité de son contenu.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class PackedTimeTable implements TimeTable {
+
+    static final int MAGIC = 0x52434850; // "RCHP"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 12;
+    static final int NAME_SIZE = 48;
+    static final int ENTRY_SIZE = 72;
+    static final int ALIGNMENT = 8;
+    // Positions des informations dans l'en-tête et dans une entrée de la table des sections
+    static final int VERSION_OFFSET = 4;
+    static final int SECTION_COUNT_OFFSET = 8;
+    static final int OFFSET_OFFSET = NAME_SIZE;
+    static final int LENGTH_OFFSET = NAME_SIZE + Long.BYTES;
+    static final int CHECKSUM_OFFSET = NAME_SIZE + 2 * Long.BYTES;
+    // Séparateur entre le dossier d'une date et le nom d'un fichier dans le nom des sections
+    static final char DATE_SEPARATOR = '/';
+
+    /**
+     * Une section du conteneur.
+     *
+     * @param offset   la position de la section dans le conteneur
+     * @param length   la longueur de la section, en octets
+     * @param checksum la somme de contrôle CRC-32 du contenu de la section
+     */
+    private record Section(long offset, long length, int checksum) {}
+
+    private final Path file;
+    // Contenu intégral du conteneur, ou null s'il est trop grand pour être projeté d'un bloc
+    private final MappedByteBuffer container;
+    private final Map<String, Section> sections;
+    private final List<String> stringTable;
+    private final Stations stations;
+    private final StationAliases stationAliases;
+    private final Platforms platforms;
+    private final Routes routes;
+    private final Transfers transfers;
+
+    /**
+     * Construit l'horaire à partir du conteneur et de sa table des sections, en chargeant les
+     * sections indépendantes de la date.
+     */
+    private PackedTimeTable(Path file, MappedByteBuffer container, Map<String, Section> sections)
+            throws IOException {
+        this.file = file;
+        this.container = container;
+        this.sections = sections;
+
+        this.stringTable = new MappedStringTable(section(FileTimeTable.PATH_FILE));
+
+        this.platforms = new BufferedPlatforms(stringTable,
+                structuredData("", FileTimeTable.PATH_PLATFORMS,
+                        BufferedPlatforms.PLATFORM_STRUCTURE));
+        this.routes = new BufferedRoutes(stringTable,
+                structuredData("", FileTimeTable.PATH_ROUTES, BufferedRoutes.ROUTE_STRUCTURE));
+        this.stationAliases = new BufferedStationAliases(stringTable,
+                structuredData("", FileTimeTable.PATH_ALIASES,
+                        BufferedStationAliases.ALIAS_STRUCTURE));
+        this.stations = new BufferedStations(stringTable,
+                structuredData("", FileTimeTable.PATH_STATIONS,
+                        BufferedStations.STATION_STRUCTURE));
+        this.transfers = new BufferedTransfers(
+                structuredData("", FileTimeTable.PATH_TRANSFERS,
+                        BufferedTransfers.TRANSFER_STRUCTURE));
+    }
+
+    /**
+     * Ouvre le conteneur horaire donné, en le projetant en mémoire en une seule fois.
+     *
+     * @param file le chemin du conteneur
+     * @return l'horaire stocké dans le conteneur
+     * @throws IOException en cas d'erreur d'entrée/sortie, ou si le fichier n'est pas un
+     *                     conteneur horaire valide
+     */
+    public static PackedTimeTable in(Path file) throws IOException {
+        MappedByteBuffer container;
+        ByteBuffer header;
+        long size;
+        try (FileChannel channel = FileChannel.open(file)) {
+            size = channel.size();
+            if (size <= Integer.MAX_VALUE) {
+                container = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                header = container;
+            } else {
+                // Un ByteBuffer ne peut dépasser 2 Go : seule la table des sections est projetée
+                container = null;
+                header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        Math.min(size, Integer.MAX_VALUE));
+            }
+        }
+
+        if (header.capacity() < HEADER_SIZE || header.getInt(0) != MAGIC
+                || Short.toUnsignedInt(header.getShort(VERSION_OFFSET)) != VERSION) {
+            throw new IOException("Not a timetable container: " + file);
+        }
+        int sectionCount = header.getInt(SECTION_COUNT_OFFSET);
+        if (sectionCount < 0 || HEADER_SIZE + (long) sectionCount * ENTRY_SIZE
+                > header.capacity()) {
+            throw new IOException("Invalid section table: " + file);
+        }
+
+        Map<String, Section> sections = new HashMap<>();
+        byte[] name = new byte[NAME_SIZE];
+        for (int i = 0; i < sectionCount; i++) {
+            int entry = HEADER_SIZE + i * ENTRY_SIZE;
+            header.get(entry, name);
+            int nameLength = 0;
+            while (nameLength < NAME_SIZE && name[nameLength] != 0) {
+                nameLength += 1;
+            }
+            String sectionName = new String(name, 0, nameLength, StandardCharsets.ISO_8859_1);
+            long offset = header.getLong(entry + OFFSET_OFFSET);
+            long length = header.getLong(entry + LENGTH_OFFSET);
+            // Une section doit tenir dans le fichier et dans un ByteBuffer
+            if (offset < 0 || length < 0 || length > Integer.MAX_VALUE
+                    || offset > size - length) {
+                throw new IOException("Invalid section " + sectionName + ": " + file);
+            }
+            sections.put(sectionName,
+                    new Section(offset, length, header.getInt(entry + CHECKSUM_OFFSET)));
+        }
+        return new PackedTimeTable(file, container, Map.copyOf(sections));
+    }
+
+    /**
+     * Retourne le nom de la section contenant le fichier donné d'une date.
+     *
+     * @param date     la date, ou null pour un fichier indépendant de la date
+     * @param fileName le nom du fichier
+     * @return le nom de la section
+     */
+    static String sectionName(LocalDate date, String fileName) {
+        return date == null ? fileName : date.toString() + DATE_SEPARATOR + fileName;
+    }
+
+    /**
+     * Retourne, par ordre croissant, les dates dont les données sont présentes dans le
+     * conteneur.
+     *
+     * @return la liste triée des dates
+     */
+    public List<LocalDate> dates() {
+        TreeSet<LocalDate> dates = new TreeSet<>();
+        for (String name : sections.keySet()) {
+            int separator = name.indexOf(DATE_SEPARATOR);
+            if (separator >= 0) {
+                try {
+                    dates.add(LocalDate.parse(name.substring(0, separator)));
+                } catch (DateTimeParseException e) {
+                    // Section n'appartenant pas à une date, ignorée
+                }
+            }
+        }
+        return new ArrayList<>(dates);
+    }
+
+    /**
+     * Vérifie la somme de contrôle de toutes les sections du conteneur.
+     *
+     * @throws IOException si le contenu d'une section ne correspond pas à sa somme de contrôle,
+     *                     ou en cas d'erreur d'entrée/sortie
+     */
+    public void verify() throws IOException {
+        for (Map.Entry<String, Section> section : sections.entrySet()) {
+            CRC32 crc = new CRC32();
+            crc.update(section(section.getKey()));
+            if ((int) crc.getValue() != section.getValue().checksum()) {
+                throw new IOException("Checksum mismatch for section " + section.getKey());
+            }
+        }
+    }
+
+    /**
+     * Charge en mémoire les sections de la date donnée, à l'aide de
+     * {@link MappedByteBuffer#load()}, afin que le premier parcours de ses liaisons ne provoque
+     * pas de lecture sur le disque. Ne fait rien si la date est absente du conteneur.
+     *
+     * @param date la date dont les sections doivent être chargées
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public void prefault(LocalDate date) throws IOException {
+        String prefix = sectionName(date, "");
+        for (String name : sections.keySet()) {
+            if (name.startsWith(prefix)) {
+                sectionOrNull(name).load();
+            }
+        }
+    }
+
+    /**
+     * Retourne le contenu de la section de nom donné, ou null si elle n'existe pas.
+     */
+    private MappedByteBuffer sectionOrNull(String name) throws IOException {
+        Section section = sections.get(name);
+        if (section == null) {
+            return null;
+        }
+        if (container != null) {
+            return container.slice((int) section.offset(), (int) section.length());
+        }
+        try (FileChannel channel = FileChannel.open(file)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, section.offset(),
+                    section.length());
+        }
+    }
+
+    /**
+     * Retourne le contenu de la section de nom donné.
+     *
+     * @throws IOException si la section n'existe pas
+     */
+    private ByteBuffer section(String name) throws IOException {
+        ByteBuffer section = sectionOrNull(name);
+        if (section == null) {
+            throw new IOException("Missing section " + name + " in " + file);
+        }
+        return section;
+    }
+
+    /**
+     * Retourne les données structurées du fichier donné, en utilisant sa version au format v2
+     * si le conteneur en contient une.
+     *
+     * @param prefix    le préfixe du nom des sections (vide, ou la date suivie du séparateur)
+     * @param fileName  le nom du fichier au format d'origine
+     * @param structure la structure des éléments du fichier
+     * @return les données structurées, ou null si aucune des versions n'est présente
+     */
+    private StructuredData structuredDataOrNull(String prefix, String fileName,
+                                                Structure structure) throws IOException {
+        ByteBuffer v2 = sectionOrNull(prefix + ColumnarStructuredBuffer.fileName(fileName));
+        if (v2 != null) {
+            return new ColumnarStructuredBuffer(structure, v2);
+        }
+        ByteBuffer v1 = sectionOrNull(prefix + fileName);
+        return v1 == null ? null : StructuredData.of(structure, v1);
+    }
+
+    /**
+     * Retourne les données structurées du fichier donné, qui doit être présent dans le conteneur.
+     */
+    private StructuredData structuredData(String prefix, String fileName, Structure structure)
+            throws IOException {
+        StructuredData data = structuredDataOrNull(prefix, fileName, structure);
+        if (data == null) {
+            throw new IOException("Missing section " + prefix + fileName + " in " + file);
+        }
+        return data;
+    }
+
+    /**
+     * Retourne la table des chaînes de caractères de l'horaire.
+     *
+     * @return la table des chaînes
+     */
+    public List<String> stringTable() {
+        return stringTable;
+    }
+
+    /**
+     * Retourne les gares de l'horaire.
+     * Vue sur la section correspondante du conteneur, créée à son ouverture.
+     */
+    @Override
+    public Stations stations() {
+        return stations;
+    }
+
+    /**
+     * Retourne les alias des gares.
+     * Vue sur la section correspondante du conteneur, créée à son ouverture.
+     */
+    @Override
+    public StationAliases stationAliases() {
+        return stationAliases;
+    }
+
+    /**
+     * Retourne les voies et quais de l'horaire.
+     * Vue sur la section correspondante du conteneur, créée à son ouverture.
+     */
+    @Override
+    public Platforms platforms() {
+        return platforms;
+    }
+
+    /**
+     * Retourne les lignes de transport public.
+     * Vue sur la section correspondante du conteneur, créée à son ouverture.
+     */
+    @Override
+    public Routes routes() {
+        return routes;
+    }
+
+    /**
+     * Retourne les changements (transfers) de l'horaire.
+     * Vue sur la section correspondante du conteneur, créée à son ouverture.
+     */
+    @Override
+    public Transfers transfers() {
+        return transfers;
+    }
+
+    /**
+     * Retourne les courses actives pour la date donnée, lues dans la section de ce jour.
+     *
+     * @param date la date du voyage
+     * @return une instance de {@code Trips} correspondant aux courses de la date
+     * @throws UncheckedIOException si la date est absente du conteneur
+     */
+    @Override
+    public Trips tripsFor(LocalDate date) {
+        try {
+            return new BufferedTrips(stringTable, structuredData(sectionName(date, ""),
+                    FileTimeTable.PATH_TRIPS, BufferedTrips.TRIP_STRUCTURE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Retourne les liaisons actives pour la date donnée, lues dans la section de ce jour. Les
+     * liaisons au format compressé ({@link CompressedConnections}) sont préférées si elles
+     * existent.
+     *
+     * @param date la date du voyage
+     * @return une instance de {@code Connections} correspondant aux liaisons de la date
+     * @throws UncheckedIOException si la date est absente du conteneur
+     */
+    @Override
+    public Connections connectionsFor(LocalDate date) {
+        try {
+            String prefix = sectionName(date, "");
+            StructuredData lastArrivals = structuredDataOrNull(prefix,
+                    FileTimeTable.PATH_LAST_ARRIVALS, BufferedConnections.LAST_ARRIVAL_STRUCTURE);
+            ByteBuffer compressed =
+                    sectionOrNull(prefix + FileTimeTable.PATH_COMPRESSED_CONNECTIONS);
+            if (compressed != null) {
+                return new CompressedConnections(compressed, lastArrivals);
+            }
+            return new BufferedConnections(
+                    structuredData(prefix, FileTimeTable.PATH_CONNECTIONS,
+                            BufferedConnections.CONNECTION_STRUCTURE),
+                    structuredData(prefix, FileTimeTable.PATH_CONNECTIONS_SUC,
+                            BufferedConnections.SUCC_STRUCTURE),
+                    lastArrivals);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Vérifie qu'un nom de section peut être stocké dans la table des sections.
+     *
+     * @param name le nom de la section
+     * @throws IllegalArgumentException si le nom est trop long ou contient un caractère nul
+     */
+    static void checkSectionName(String name) {
+        Preconditions.checkArgument(!name.isEmpty() && name.indexOf('\0') < 0
+                && name.getBytes(StandardCharsets.ISO_8859_1).length <= NAME_SIZE);
+    }
+}
@@ -116,6 +116,26 @@ public final class Structure {
         return totalSize;
     }
 
+    /**
+     * Retourne le nombre de champs de la structure.
+     *
+     * @return le nombre de champs
+     */
+    public int fieldCount() {
+        return fields.length;
+    }
+
+    /**
+     * Retourne le type du champ d'indice donné.
+     *
+     * @param fieldIndex l'indice du champ
+     * @return le type du champ
+     * @throws IndexOutOfBoundsException si l'indice du champ est invalide
+     */
+    public FieldType fieldType(int fieldIndex) {
+        return fields[fieldIndex].type();
+    }
+
     /**
      * Calcule l'offset dans le tableau d'octets pour un champ donné d'un élément donné.
      *
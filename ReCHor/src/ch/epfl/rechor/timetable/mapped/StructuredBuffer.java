@@ -6,12 +6,13 @@ import ch.epfl.rechor.Preconditions;
 
 /**
  * Représente un tableau d'octets structuré selon une Structure.
- * Permet d'accéder aux champs (U8, U16, S32) stockés dans un ByteBuffer.
+ * Permet d'accéder aux champs (U8, U16, S32) stockés dans un ByteBuffer, au moyen de ses
+ * méthodes d'accès absolues.
  *
  * @author Antoine Lepin (390950)
  * @author Darius Giannoli (380759)
  */
-public final class StructuredBuffer {
+public final class StructuredBuffer implements StructuredData {
 
     private final Structure structure;
     private final ByteBuffer buffer;
@@ -32,11 +33,22 @@ public final class StructuredBuffer {
         this.elementCount = buffer.capacity() / structure.totalSize();
     }
 
+    /**
+     * Retourne la structure des éléments.
+     *
+     * @return la structure des éléments
+     */
+    @Override
+    public Structure structure() {
+        return structure;
+    }
+
     /**
      * Retourne le nombre d'éléments présents dans le buffer.
      *
      * @return le nombre d'éléments
      */
+    @Override
     public int size() {
         return elementCount;
     }
@@ -48,6 +60,7 @@ public final class StructuredBuffer {
      * @param elementIndex l'indice de l'élément
      * @return la valeur U8 en entier positif
      */
+    @Override
     public int getU8(int fieldIndex, int elementIndex) {
         int offset = structure.offset(fieldIndex, elementIndex);
         byte b = buffer.get(offset);
@@ -62,6 +75,7 @@ public final class StructuredBuffer {
      * @param elementIndex l'indice de l'élément
      * @return la valeur U16 en entier positif
      */
+    @Override
     public int getU16(int fieldIndex, int elementIndex) {
         int offset = structure.offset(fieldIndex, elementIndex);
         short s = buffer.getShort(offset);
@@ -75,6 +89,7 @@ public final class StructuredBuffer {
      * @param elementIndex l'indice de l'élément
      * @return la valeur S32
      */
+    @Override
     public int getS32(int fieldIndex, int elementIndex) {
         int offset = structure.offset(fieldIndex, elementIndex);
         return buffer.getInt(offset);
@@ -0,0 +1,105 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.Preconditions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Permet de construire un tableau d'octets structuré selon une Structure, puis de l'écrire dans
+ * un fichier. C'est la contrepartie en écriture de {@link StructuredBuffer} : un fichier écrit
+ * par cette classe peut être relu par un StructuredBuffer de même structure.
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class StructuredBufferWriter {
+
+    private static final int MAX_U8 = 0xFF;
+    private static final int MAX_U16 = 0xFFFF;
+
+    private final Structure structure;
+    private final ByteBuffer buffer;
+    private final int elementCount;
+
+    /**
+     * Construit un tableau structuré de la taille donnée, dont tous les octets valent 0.
+     *
+     * @param structure    la structure des éléments
+     * @param elementCount le nombre d'éléments
+     * @throws IllegalArgumentException si le nombre d'éléments est négatif
+     */
+    public StructuredBufferWriter(Structure structure, int elementCount) {
+        Preconditions.checkArgument(elementCount >= 0);
+        this.structure = structure;
+        this.elementCount = elementCount;
+        this.buffer = ByteBuffer.allocate(elementCount * structure.totalSize());
+    }
+
+    /**
+     * Retourne le nombre d'éléments du tableau.
+     *
+     * @return le nombre d'éléments
+     */
+    public int size() {
+        return elementCount;
+    }
+
+    /**
+     * Écrit un entier non signé sur 8 bits.
+     *
+     * @param fieldIndex   l'indice du champ
+     * @param elementIndex l'indice de l'élément
+     * @param value        la valeur, comprise entre 0 et 255
+     * @throws IllegalArgumentException si la valeur ne tient pas sur 8 bits non signés
+     */
+    public void setU8(int fieldIndex, int elementIndex, int value) {
+        Preconditions.checkArgument(value >= 0 && value <= MAX_U8);
+        buffer.put(structure.offset(fieldIndex, elementIndex), (byte) value);
+    }
+
+    /**
+     * Écrit un entier non signé sur 16 bits.
+     *
+     * @param fieldIndex   l'indice du champ
+     * @param elementIndex l'indice de l'élément
+     * @param value        la valeur, comprise entre 0 et 65535
+     * @throws IllegalArgumentException si la valeur ne tient pas sur 16 bits non signés
+     */
+    public void setU16(int fieldIndex, int elementIndex, int value) {
+        Preconditions.checkArgument(value >= 0 && value <= MAX_U16);
+        buffer.putShort(structure.offset(fieldIndex, elementIndex), (short) value);
+    }
+
+    /**
+     * Écrit un entier signé sur 32 bits.
+     *
+     * @param fieldIndex   l'indice du champ
+     * @param elementIndex l'indice de l'élément
+     * @param value        la valeur
+     */
+    public void setS32(int fieldIndex, int elementIndex, int value) {
+        buffer.putInt(structure.offset(fieldIndex, elementIndex), value);
+    }
+
+    /**
+     * Retourne une vue en lecture seule du contenu du tableau, positionnée au début.
+     *
+     * @return le contenu du tableau
+     */
+    public ByteBuffer buffer() {
+        return buffer.asReadOnlyBuffer().clear();
+    }
+
+    /**
+     * Écrit le contenu du tableau dans le fichier donné, en le remplaçant s'il existe.
+     *
+     * @param file le chemin du fichier
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public void writeTo(Path file) throws IOException {
+        Files.write(file, buffer.array());
+    }
+}
@@ -0,0 +1,154 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * Représente un tableau de données aplaties structuré selon une Structure, dont les champs
+ * (U8, U16, S32) sont accessibles individuellement ou colonne par colonne.
+ * <p>
+ * Deux implémentations existent : {@link StructuredBuffer}, qui accède aux champs au moyen des
+ * méthodes de {@link ByteBuffer}, et {@link VarHandleStructuredBuffer}, qui y accède au moyen de
+ * {@link java.lang.invoke.VarHandle}. La méthode {@link #of(Structure, ByteBuffer)}, utilisée par
+ * toutes les classes Buffered*, choisit l'implémentation en fonction de la propriété système
+ * {@value #IMPLEMENTATION_PROPERTY}.
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public interface StructuredData {
+
+    /**
+     * Nom de la propriété système choisissant l'implémentation retournée par
+     * {@link #of(Structure, ByteBuffer)} : {@value #BYTE_BUFFER_IMPLEMENTATION} pour
+     * StructuredBuffer, toute autre valeur (ou son absence) pour VarHandleStructuredBuffer.
+     */
+    String IMPLEMENTATION_PROPERTY = "rechor.structuredData";
+
+    /**
+     * Valeur de la propriété système choisissant l'implémentation StructuredBuffer.
+     */
+    String BYTE_BUFFER_IMPLEMENTATION = "bytebuffer";
+
+    /**
+     * Construit un tableau structuré à partir d'une structure et d'un ByteBuffer, avec
+     * l'implémentation choisie par la propriété système {@value #IMPLEMENTATION_PROPERTY}.
+     *
+     * @param structure la structure des éléments
+     * @param buffer    le tampon contenant les données aplaties
+     * @return le tableau structuré
+     * @throws IllegalArgumentException si la capacité du buffer n'est pas un multiple
+     *                                  de la taille totale de la structure
+     */
+    static StructuredData of(Structure structure, ByteBuffer buffer) {
+        return BYTE_BUFFER_IMPLEMENTATION.equals(System.getProperty(IMPLEMENTATION_PROPERTY))
+                ? new StructuredBuffer(structure, buffer)
+                : new VarHandleStructuredBuffer(structure, buffer);
+    }
+
+    /**
+     * Retourne la structure des éléments.
+     *
+     * @return la structure des éléments
+     */
+    Structure structure();
+
+    /**
+     * Retourne le nombre d'éléments présents dans le tableau.
+     *
+     * @return le nombre d'éléments
+     */
+    int size();
+
+    /**
+     * Accède à un entier non signé sur 8 bits.
+     *
+     * @param fieldIndex   l'indice du champ
+     * @param elementIndex l'indice de l'élément
+     * @return la valeur U8 en entier positif
+     * @throws IndexOutOfBoundsException si l'un des indices est invalide
+     */
+    int getU8(int fieldIndex, int elementIndex);
+
+    /**
+     * Accède à un entier non signé sur 16 bits.
+     *
+     * @param fieldIndex   l'indice du champ
+     * @param elementIndex l'indice de l'élément
+     * @return la valeur U16 en entier positif
+     * @throws IndexOutOfBoundsException si l'un des indices est invalide
+     */
+    int getU16(int fieldIndex, int elementIndex);
+
+    /**
+     * Accède à un entier signé sur 32 bits.
+     *
+     * @param fieldIndex   l'indice du champ
+     * @param elementIndex l'indice de l'élément
+     * @return la valeur S32
+     * @throws IndexOutOfBoundsException si l'un des indices est invalide
+     */
+    int getS32(int fieldIndex, int elementIndex);
+
+    /**
+     * Accède à la valeur d'un champ, quel que soit son type.
+     *
+     * @param fieldIndex   l'indice du champ
+     * @param elementIndex l'indice de l'élément
+     * @return la valeur du champ
+     * @throws IndexOutOfBoundsException si l'un des indices est invalide
+     */
+    default int get(int fieldIndex, int elementIndex) {
+        return switch (structure().fieldType(fieldIndex)) {
+            case U8 -> getU8(fieldIndex, elementIndex);
+            case U16 -> getU16(fieldIndex, elementIndex);
+            case S32 -> getS32(fieldIndex, elementIndex);
+        };
+    }
+
+    /**
+     * Décode l'intégralité d'une colonne, c'est-à-dire la valeur du champ donné pour chacun des
+     * éléments, dans un tableau d'entiers.
+     *
+     * @param fieldIndex l'indice du champ
+     * @return un tableau contenant la valeur du champ pour chaque élément, par ordre d'index
+     * @throws IndexOutOfBoundsException si l'indice du champ est invalide
+     */
+    default int[] column(int fieldIndex) {
+        int[] column = new int[size()];
+        switch (structure().fieldType(fieldIndex)) {
+            case U8 -> {
+                for (int i = 0; i < column.length; i++) {
+                    column[i] = getU8(fieldIndex, i);
+                }
+            }
+            case U16 -> {
+                for (int i = 0; i < column.length; i++) {
+                    column[i] = getU16(fieldIndex, i);
+                }
+            }
+            case S32 -> {
+                for (int i = 0; i < column.length; i++) {
+                    column[i] = getS32(fieldIndex, i);
+                }
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Retourne un flot des valeurs du champ donné pour chacun des éléments, par ordre d'index.
+     * Contrairement à {@link #column(int)}, les valeurs sont décodées au fur et à mesure.
+     *
+     * @param fieldIndex l'indice du champ
+     * @return le flot des valeurs de la colonne
+     * @throws IndexOutOfBoundsException si l'indice du champ est invalide
+     */
+    default IntStream columnStream(int fieldIndex) {
+        return switch (structure().fieldType(fieldIndex)) {
+            case U8 -> IntStream.range(0, size()).map(i -> getU8(fieldIndex, i));
+            case U16 -> IntStream.range(0, size()).map(i -> getU16(fieldIndex, i));
+            case S32 -> IntStream.range(0, size()).map(i -> getS32(fieldIndex, i));
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Outil de conversion hors ligne d'un horaire aplati au format d'origine vers le format v2
+ * décrit par {@link ColumnarStructuredBuffer}, dont les colonnes sont alignées et stockées dans
+ * l'ordre des octets de la machine.
+ * <p>
+ * Le dossier produit contient la même table des chaînes et un fichier « .v2 » pour chaque
+ * fichier « .bin » du dossier d'origine. {@link FileTimeTable#in(Path)} le charge comme un
+ * horaire au format d'origine.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class TimeTableConverter {
+
+    // Fichiers indépendants de la date et structure de leurs éléments
+    private static final Map<String, Structure> TIMETABLE_FILES = Map.of(
+            FileTimeTable.PATH_PLATFORMS, BufferedPlatforms.PLATFORM_STRUCTURE,
+            FileTimeTable.PATH_ROUTES, BufferedRoutes.ROUTE_STRUCTURE,
+            FileTimeTable.PATH_ALIASES, BufferedStationAliases.ALIAS_STRUCTURE,
+            FileTimeTable.PATH_STATIONS, BufferedStations.STATION_STRUCTURE,
+            FileTimeTable.PATH_TRANSFERS, BufferedTransfers.TRANSFER_STRUCTURE);
+    // Fichiers propres à chaque jour et structure de leurs éléments
+    private static final Map<String, Structure> DAY_FILES = Map.of(
+            FileTimeTable.PATH_TRIPS, BufferedTrips.TRIP_STRUCTURE,
+            FileTimeTable.PATH_CONNECTIONS, BufferedConnections.CONNECTION_STRUCTURE,
+            FileTimeTable.PATH_CONNECTIONS_SUC, BufferedConnections.SUCC_STRUCTURE,
+            FileTimeTable.PATH_LAST_ARRIVALS, BufferedConnections.LAST_ARRIVAL_STRUCTURE);
+
+    /**
+     * Constructeur privé pour que la classe soit non instanciable.
+     */
+    private TimeTableConverter() {}
+
+    /**
+     * Point d'entrée de l'outil. Les arguments sont le dossier horaire source, au format
+     * d'origine, et le dossier destination.
+     *
+     * @param args les arguments de la ligne de commande
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: TimeTableConverter <source> <destination>");
+            System.exit(1);
+        }
+        convert(Path.of(args[0]), Path.of(args[1]), ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Convertit l'horaire du dossier source au format v2 et écrit le résultat dans le dossier
+     * destination, qui est créé s'il n'existe pas. Les fichiers facultatifs absents du dossier
+     * source sont ignorés.
+     *
+     * @param source      le dossier horaire source, au format d'origine
+     * @param destination le dossier dans lequel écrire l'horaire converti
+     * @param order       l'ordre des octets des colonnes, en principe celui de la machine
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void convert(Path source, Path destination, ByteOrder order)
+            throws IOException {
+        Files.createDirectories(destination);
+        Files.copy(source.resolve(FileTimeTable.PATH_FILE),
+                destination.resolve(FileTimeTable.PATH_FILE), StandardCopyOption.REPLACE_EXISTING);
+        convertFiles(TIMETABLE_FILES, source, destination, order);
+
+        for (LocalDate date : FileTimeTable.dates(source)) {
+            Path dayDestination = destination.resolve(date.toString());
+            Files.createDirectories(dayDestination);
+            convertFiles(DAY_FILES, source.resolve(date.toString()), dayDestination, order);
+        }
+    }
+
+    /**
+     * Convertit au format v2 ceux des fichiers donnés qui existent dans le dossier source.
+     */
+    private static void convertFiles(Map<String, Structure> files, Path source,
+                                     Path destination, ByteOrder order) throws IOException {
+        for (Map.Entry<String, Structure> file : files.entrySet()) {
+            Path sourceFile = TimeTableDeduplicator.resolve(source, file.getKey());
+            if (!Files.exists(sourceFile)) {
+                continue;
+            }
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(sourceFile)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            StructuredData data = StructuredData.of(file.getValue(), buffer);
+            ByteBuffer converted = ColumnarStructuredBuffer.encode(data, order);
+            Files.write(destination.resolve(ColumnarStructuredBuffer.fileName(file.getKey())),
+                    converted.array());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outil hors ligne dédupliquant les fichiers des jours d'un dossier horaire, ainsi que les
+ * méthodes permettant de lire un dossier dédupliqué.
+ * <p>
+ * Dans un dossier dédupliqué, le contenu des fichiers des jours est stocké une seule fois dans
+ * le sous-dossier {@value #BLOB_DIRECTORY}, dans un fichier nommé d'après son empreinte SHA-256
+ * en hexadécimal. Le dossier de chaque jour ne contient plus que le manifeste
+ * {@value #MANIFEST}, qui associe à chacun de ses fichiers l'empreinte de son contenu, à
+ * raison d'une ligne par fichier, au format de l'outil {@code sha256sum}. Les jours dont les
+ * données sont identiques, comme la plupart des jours ouvrables, partagent donc les mêmes
+ * fichiers.
+ * </p>
+ * <p>
+ * Un fichier présent dans le dossier d'un jour a la priorité sur celui indiqué par le
+ * manifeste, ce qui permet d'ajouter des fichiers (liaisons compressées, par exemple) à un
+ * dossier dédupliqué.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class TimeTableDeduplicator {
+
+    /**
+     * Nom du sous-dossier contenant le contenu des fichiers dédupliqués.
+     */
+    public static final String BLOB_DIRECTORY = "blobs";
+    /**
+     * Nom du manifeste d'un jour.
+     */
+    public static final String MANIFEST = "manifest.sha256";
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    // Séparateur entre l'empreinte et le nom du fichier dans le manifeste
+    private static final String MANIFEST_SEPARATOR = "  ";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * Constructeur privé pour que la classe soit non instanciable.
+     */
+    private TimeTableDeduplicator() {}
+
+    /**
+     * Point d'entrée de l'outil. L'argument est le dossier horaire à dédupliquer.
+     *
+     * @param args les arguments de la ligne de commande
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: TimeTableDeduplicator <directory>");
+            System.exit(1);
+        }
+        long saved = deduplicate(Path.of(args[0]));
+        System.out.printf("%d bytes saved%n", saved);
+    }
+
+    /**
+     * Déduplique les fichiers des jours du dossier horaire donné : le contenu de chaque fichier
+     * est copié dans le sous-dossier {@value #BLOB_DIRECTORY} sous le nom de son empreinte, s'il
+     * ne s'y trouve pas déjà, puis le fichier est ajouté au manifeste de son jour et supprimé.
+     * Les jours déjà dédupliqués sont complétés par les fichiers ajoutés depuis.
+     *
+     * @param directory le dossier horaire
+     * @return le nombre d'octets économisés
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static long deduplicate(Path directory) throws IOException {
+        Path blobs = Files.createDirectories(directory.resolve(BLOB_DIRECTORY));
+        long saved = 0;
+        for (LocalDate date : FileTimeTable.dates(directory)) {
+            Path day = directory.resolve(date.toString());
+            Map<String, String> manifest = new TreeMap<>(manifest(day));
+            List<Path> stored = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(day,
+                    file -> Files.isRegularFile(file)
+                            && !file.getFileName().toString().startsWith(MANIFEST))) {
+                for (Path file : files) {
+                    String hash = hash(file);
+                    Path blob = blobs.resolve(hash);
+                    if (Files.exists(blob)) {
+                        saved += Files.size(file);
+                    } else {
+                        // Copie atomique, afin qu'un contenu incomplet ne soit jamais référencé
+                        Path temporary = blobs.resolve(hash + TEMPORARY_SUFFIX);
+                        Files.copy(file, temporary, StandardCopyOption.REPLACE_EXISTING);
+                        Files.move(temporary, blob, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    manifest.put(file.getFileName().toString(), hash);
+                    stored.add(file);
+                }
+            }
+            // Les fichiers ne sont supprimés qu'une fois référencés par le manifeste
+            writeManifest(day, manifest);
+            for (Path file : stored) {
+                Files.delete(file);
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Retourne le chemin du fichier de nom donné d'un dossier, qui est soit le fichier lui-même
+     * s'il existe, soit celui indiqué par le manifeste du dossier. Si aucun des deux n'existe,
+     * le chemin du fichier dans le dossier est retourné.
+     *
+     * @param directory le dossier, en principe celui d'un jour
+     * @param name      le nom du fichier
+     * @return le chemin du fichier
+     * @throws IOException en cas d'erreur de lecture du manifeste
+     */
+    static Path resolve(Path directory, String name) throws IOException {
+        Path file = directory.resolve(name);
+        if (Files.exists(file)) {
+            return file;
+        }
+        String hash = manifest(directory).get(name);
+        return hash == null ? file : blobPath(directory, hash);
+    }
+
+    /**
+     * Retourne le manifeste du dossier donné, qui associe à chaque nom de fichier l'empreinte de
+     * son contenu, ou une table vide si le dossier n'a pas de manifeste.
+     *
+     * @param directory le dossier
+     * @return le manifeste du dossier
+     * @throws IOException en cas d'erreur de lecture du manifeste
+     */
+    static Map<String, String> manifest(Path directory) throws IOException {
+        Path manifestFile = directory.resolve(MANIFEST);
+        if (!Files.exists(manifestFile)) {
+            return Map.of();
+        }
+        Map<String, String> manifest = new TreeMap<>();
+        for (String line : Files.readAllLines(manifestFile, StandardCharsets.ISO_8859_1)) {
+            int separator = line.indexOf(MANIFEST_SEPARATOR);
+            if (separator < 0) {
+                throw new IOException("Invalid manifest line in " + manifestFile + ": " + line);
+            }
+            manifest.put(line.substring(separator + MANIFEST_SEPARATOR.length()),
+                    line.substring(0, separator));
+        }
+        return manifest;
+    }
+
+    /**
+     * Retourne le chemin du contenu d'empreinte donnée, pour le dossier d'un jour.
+     */
+    private static Path blobPath(Path dayDirectory, String hash) {
+        return dayDirectory.resolveSibling(BLOB_DIRECTORY).resolve(hash);
+    }
+
+    /**
+     * Écrit le manifeste donné dans le dossier donné.
+     */
+    private static void writeManifest(Path directory, Map<String, String> manifest)
+            throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> entry : manifest.entrySet()) {
+            content.append(entry.getValue())
+                    .append(MANIFEST_SEPARATOR)
+                    .append(entry.getKey())
+                    .append('\n');
+        }
+        Path temporary = directory.resolve(MANIFEST + TEMPORARY_SUFFIX);
+        Files.writeString(temporary, content, StandardCharsets.ISO_8859_1);
+        Files.move(temporary, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Retourne l'empreinte SHA-256 du contenu du fichier donné, en hexadécimal.
+     */
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Toute plateforme Java doit fournir SHA-256
+            throw new AssertionError(e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,158 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Outil hors ligne regroupant un dossier horaire, au format d'origine ou v2, dans un unique
+ * conteneur lisible par {@link PackedTimeTable}.
+ * <p>
+ * Le conteneur comporte une section par fichier du dossier : la table des chaînes, les fichiers
+ * indépendants de la date, puis les fichiers de chacune des dates, dans l'ordre chronologique.
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class TimeTablePacker {
+
+    // Fichiers indépendants de la date
+    private static final List<String> TIMETABLE_FILES = List.of(
+            FileTimeTable.PATH_STATIONS,
+            FileTimeTable.PATH_ALIASES,
+            FileTimeTable.PATH_PLATFORMS,
+            FileTimeTable.PATH_ROUTES,
+            FileTimeTable.PATH_TRANSFERS);
+    // Fichiers propres à chaque jour
+    private static final List<String> DAY_FILES = List.of(
+            FileTimeTable.PATH_TRIPS,
+            FileTimeTable.PATH_CONNECTIONS,
+            FileTimeTable.PATH_CONNECTIONS_SUC,
+            FileTimeTable.PATH_COMPRESSED_CONNECTIONS,
+            FileTimeTable.PATH_LAST_ARRIVALS);
+
+    /**
+     * Un fichier à placer dans le conteneur.
+     *
+     * @param name le nom de la section
+     * @param path le chemin du fichier
+     */
+    private record Input(String name, Path path) {}
+
+    /**
+     * Constructeur privé pour que la classe soit non instanciable.
+     */
+    private TimeTablePacker() {}
+
+    /**
+     * Point d'entrée de l'outil. Les arguments sont le dossier horaire source et le chemin du
+     * conteneur à écrire.
+     *
+     * @param args les arguments de la ligne de commande
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: TimeTablePacker <source> <container>");
+            System.exit(1);
+        }
+        pack(Path.of(args[0]), Path.of(args[1]));
+    }
+
+    /**
+     * Regroupe l'horaire du dossier source dans le conteneur donné, qui est remplacé s'il
+     * existe, puis vérifie les sommes de contrôle du conteneur écrit. Pour chaque fichier, les
+     * versions au format d'origine et au format v2 sont toutes deux reprises si elles existent ;
+     * les fichiers facultatifs absents sont ignorés.
+     *
+     * @param source    le dossier horaire source
+     * @param container le chemin du conteneur à écrire
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void pack(Path source, Path container) throws IOException {
+        List<Input> inputs = new ArrayList<>();
+        inputs.add(new Input(FileTimeTable.PATH_FILE, source.resolve(FileTimeTable.PATH_FILE)));
+        addFiles(inputs, TIMETABLE_FILES, null, source);
+        for (LocalDate date : FileTimeTable.dates(source)) {
+            addFiles(inputs, DAY_FILES, date, source.resolve(date.toString()));
+        }
+
+        int sectionCount = inputs.size();
+        ByteBuffer header = ByteBuffer.allocate((int) align(
+                PackedTimeTable.HEADER_SIZE + (long) sectionCount * PackedTimeTable.ENTRY_SIZE));
+        header.putInt(0, PackedTimeTable.MAGIC)
+                .putShort(PackedTimeTable.VERSION_OFFSET, (short) PackedTimeTable.VERSION)
+                .putInt(PackedTimeTable.SECTION_COUNT_OFFSET, sectionCount);
+
+        try (FileChannel channel = FileChannel.open(container, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long offset = header.capacity();
+            for (int i = 0; i < sectionCount; i++) {
+                Input input = inputs.get(i);
+                ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(input.path()));
+                CRC32 crc = new CRC32();
+                crc.update(content.duplicate());
+
+                int entry = PackedTimeTable.HEADER_SIZE + i * PackedTimeTable.ENTRY_SIZE;
+                header.put(entry, input.name().getBytes(StandardCharsets.ISO_8859_1))
+                        .putLong(entry + PackedTimeTable.OFFSET_OFFSET, offset)
+                        .putLong(entry + PackedTimeTable.LENGTH_OFFSET, content.capacity())
+                        .putInt(entry + PackedTimeTable.CHECKSUM_OFFSET, (int) crc.getValue());
+
+                writeFully(channel, content, offset);
+                offset = align(offset + content.capacity());
+            }
+            // Le remplissage final garantit que la taille du fichier est un multiple de 8
+            writeFully(channel, ByteBuffer.allocate((int) (offset - channel.size())),
+                    channel.size());
+            writeFully(channel, header, 0);
+        }
+
+        PackedTimeTable.in(container).verify();
+    }
+
+    /**
+     * Ajoute aux fichiers à placer dans le conteneur ceux des fichiers donnés, au format d'origine
+     * et au format v2, qui existent dans le dossier donné, éventuellement dédupliqué.
+     */
+    private static void addFiles(List<Input> inputs, List<String> fileNames, LocalDate date,
+                                 Path directory) throws IOException {
+        for (String fileName : fileNames) {
+            for (String name : List.of(fileName, ColumnarStructuredBuffer.fileName(fileName))) {
+                Path path = TimeTableDeduplicator.resolve(directory, name);
+                if (Files.exists(path)) {
+                    String sectionName = PackedTimeTable.sectionName(date, name);
+                    PackedTimeTable.checkSectionName(sectionName);
+                    inputs.add(new Input(sectionName, path));
+                }
+            }
+        }
+    }
+
+    /**
+     * Écrit l'intégralité du contenu du tampon donné à la position donnée du fichier.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Arrondit la position donnée au multiple de l'alignement supérieur ou égal.
+     */
+    private static long align(long offset) {
+        return (offset + PackedTimeTable.ALIGNMENT - 1)
+                / PackedTimeTable.ALIGNMENT * PackedTimeTable.ALIGNMENT;
+    }
+}
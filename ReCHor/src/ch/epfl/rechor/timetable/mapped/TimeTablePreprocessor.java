@@ -0,0 +1,403 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.Bits32_24_8;
+import ch.epfl.rechor.PackedRange;
+import ch.epfl.rechor.Preconditions;
+import ch.epfl.rechor.timetable.Connections;
+import ch.epfl.rechor.timetable.StationGrid;
+import ch.epfl.rechor.timetable.Stations;
+import ch.epfl.rechor.timetable.TimeTable;
+import ch.epfl.rechor.timetable.Transfers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Outil de prétraitement hors ligne d'un horaire aplati.
+ * <p>
+ * Lit un dossier horaire (tel que chargé par {@link FileTimeTable}) et écrit dans un autre dossier
+ * un horaire équivalent, que {@link FileTimeTable#in(Path)} charge comme d'habitude :
+ * <ul>
+ *   <li>les liaisons de chaque jour sont triées à nouveau : toujours par heure de départ
+ *   décroissante, puis par heure d'arrivée décroissante, puis par course et par position
+ *   décroissante dans la course, de manière à ce que les liaisons de durée nulle d'une même
+ *   course restent parcourues par le routeur après celles qui les prolongent, et que les
+ *   liaisons d'une même course parcourues successivement accèdent à la même frontière ;</li>
+ *   <li>un résumé de la dernière heure d'arrivée à chaque gare est écrit pour chaque jour, ce
+ *   qui permet au routeur de sauter les liaisons partant trop tard pour atteindre la
+ *   destination ;</li>
+ *   <li>facultativement, des changements à pied sont ajoutés entre les gares distinctes situées à
+ *   au plus une distance donnée l'une de l'autre, leur durée étant celle du trajet à vol d'oiseau
+ *   à la vitesse de marche ; les changements existants sont conservés tels quels ;</li>
+ *   <li>facultativement, les changements sont remplacés par leur fermeture transitive : deux gares
+ *   reliées par une suite de changements le sont alors directement, tant que la durée totale ne
+ *   dépasse pas celle du plus long changement d'origine.</li>
+ * </ul>
+ * </p>
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class TimeTablePreprocessor {
+
+    // Fichiers indépendants de la date, recopiés tels quels
+    private static final List<String> COPIED_FILES = List.of(FileTimeTable.PATH_FILE,
+            FileTimeTable.PATH_PLATFORMS, FileTimeTable.PATH_ROUTES, FileTimeTable.PATH_ALIASES,
+            FileTimeTable.PATH_STATIONS);
+    // Option de la ligne de commande demandant la fermeture transitive des changements
+    private static final String CLOSE_TRANSFERS_OPTION = "--close-transfers";
+    // Option de la ligne de commande demandant l'ajout des changements à pied, suivie du rayon
+    private static final String WALKING_TRANSFERS_OPTION = "--walking-transfers=";
+    // Vitesse de marche, en mètres par seconde, volontairement basse car les trajets à pied sont
+    // plus longs que la distance à vol d'oiseau
+    static final double WALKING_SPEED = 1.1;
+    private static final int SECONDS_PER_MINUTE = 60;
+    // Durée maximale d'un changement, imposée par son stockage sur 8 bits
+    private static final int MAX_TRANSFER_MINUTES = 0xFF;
+
+    /**
+     * Constructeur privé pour que la classe soit non instanciable.
+     */
+    private TimeTablePreprocessor() {}
+
+    /**
+     * Point d'entrée de l'outil. Les arguments sont le dossier horaire source, le dossier
+     * destination et, facultativement, les options {@code --walking-transfers=<mètres>} et
+     * {@code --close-transfers}.
+     *
+     * @param args les arguments de la ligne de commande
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        boolean closeTransfers = false;
+        double walkingRadius = 0;
+        boolean valid = args.length >= 2;
+        for (int i = 2; i < args.length && valid; i++) {
+            if (args[i].equals(CLOSE_TRANSFERS_OPTION)) {
+                closeTransfers = true;
+            } else if (args[i].startsWith(WALKING_TRANSFERS_OPTION)) {
+                try {
+                    walkingRadius = Double.parseDouble(
+                            args[i].substring(WALKING_TRANSFERS_OPTION.length()));
+                    valid = walkingRadius >= 0;
+                } catch (NumberFormatException e) {
+                    valid = false;
+                }
+            } else {
+                valid = false;
+            }
+        }
+        if (!valid) {
+            System.err.println("Usage: TimeTablePreprocessor <source> <destination> ["
+                    + WALKING_TRANSFERS_OPTION + "<meters>] [" + CLOSE_TRANSFERS_OPTION + "]");
+            System.exit(1);
+        }
+        preprocess(Path.of(args[0]), Path.of(args[1]), closeTransfers, walkingRadius);
+    }
+
+    /**
+     * Prétraite l'horaire du dossier source et écrit le résultat dans le dossier destination,
+     * qui est créé s'il n'existe pas. Chaque sous-dossier du dossier source dont le nom est une
+     * date est traité comme les données de ce jour.
+     *
+     * @param source         le dossier horaire source
+     * @param destination    le dossier dans lequel écrire l'horaire prétraité
+     * @param closeTransfers vrai si et seulement si les changements doivent être remplacés par
+     *                       leur fermeture transitive
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void preprocess(Path source, Path destination, boolean closeTransfers)
+            throws IOException {
+        preprocess(source, destination, closeTransfers, 0);
+    }
+
+    /**
+     * Prétraite l'horaire du dossier source et écrit le résultat dans le dossier destination,
+     * qui est créé s'il n'existe pas, en ajoutant les changements à pied entre les gares situées
+     * à au plus la distance donnée l'une de l'autre. Les changements à pied sont ajoutés avant
+     * le calcul de l'éventuelle fermeture transitive.
+     *
+     * @param source         le dossier horaire source
+     * @param destination    le dossier dans lequel écrire l'horaire prétraité
+     * @param closeTransfers vrai si et seulement si les changements doivent être remplacés par
+     *                       leur fermeture transitive
+     * @param walkingRadius  la distance maximale, en mètres, entre deux gares reliées par un
+     *                       changement à pied ajouté, ou 0 pour n'en ajouter aucun
+     * @throws IOException              en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException si la distance est négative
+     */
+    public static void preprocess(Path source, Path destination, boolean closeTransfers,
+                                  double walkingRadius) throws IOException {
+        Preconditions.checkArgument(walkingRadius >= 0);
+        TimeTable timeTable = FileTimeTable.in(source);
+        Files.createDirectories(destination);
+
+        for (String file : COPIED_FILES) {
+            Files.copy(source.resolve(file), destination.resolve(file),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        Transfers transfers = timeTable.transfers();
+        StructuredBufferWriter transfersWriter = null;
+        if (walkingRadius > 0) {
+            transfersWriter = walkingTransfers(transfers, timeTable.stations(), walkingRadius);
+            transfers = new BufferedTransfers(transfersWriter.buffer());
+        }
+        if (closeTransfers) {
+            transfersWriter = closedTransfers(transfers, timeTable.stations().size());
+        }
+        if (transfersWriter != null) {
+            transfersWriter.writeTo(destination.resolve(FileTimeTable.PATH_TRANSFERS));
+        } else {
+            Files.copy(source.resolve(FileTimeTable.PATH_TRANSFERS),
+                    destination.resolve(FileTimeTable.PATH_TRANSFERS),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        for (LocalDate date : FileTimeTable.dates(source)) {
+            Path dayDestination = destination.resolve(date.toString());
+            Files.createDirectories(dayDestination);
+            Files.copy(TimeTableDeduplicator.resolve(source.resolve(date.toString()),
+                            FileTimeTable.PATH_TRIPS),
+                    dayDestination.resolve(FileTimeTable.PATH_TRIPS),
+                    StandardCopyOption.REPLACE_EXISTING);
+            preprocessConnections(timeTable, timeTable.connectionsFor(date), dayDestination);
+        }
+    }
+
+    /**
+     * Trie à nouveau les liaisons d'un jour et écrit, dans le dossier donné, les liaisons, les
+     * index des liaisons suivantes et le résumé des dernières arrivées par gare.
+     */
+    private static void preprocessConnections(TimeTable timeTable, Connections connections,
+                                              Path dayDirectory) throws IOException {
+        int nConnections = connections.size();
+
+        // Ordre de parcours du routeur : heure de départ décroissante (impérativement), puis
+        // heure d'arrivée décroissante, puis course et position décroissante, pour que les
+        // liaisons de durée nulle d'une course restent parcourues après celles qui les
+        // prolongent. Aucune autre clé ne doit précéder la position au sein d'une course.
+        Integer[] order = new Integer[nConnections];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator
+                .<Integer>comparingInt(i -> -connections.depMins(i))
+                .thenComparingInt(i -> -connections.arrMins(i))
+                .thenComparingInt(connections::tripId)
+                .thenComparingInt(i -> -connections.tripPos(i)));
+
+        int[] newIds = new int[nConnections];
+        for (int newId = 0; newId < nConnections; newId++) {
+            newIds[order[newId]] = newId;
+        }
+
+        StructuredBufferWriter connectionsWriter =
+                new StructuredBufferWriter(BufferedConnections.CONNECTION_STRUCTURE, nConnections);
+        StructuredBufferWriter succWriter =
+                new StructuredBufferWriter(BufferedConnections.SUCC_STRUCTURE, nConnections);
+        int[] lastArrMins = new int[timeTable.stations().size()];
+        Arrays.fill(lastArrMins, -1);
+
+        for (int newId = 0; newId < nConnections; newId++) {
+            int id = order[newId];
+            int arrMins = connections.arrMins(id);
+            connectionsWriter.setU16(BufferedConnections.DEP_STOP_ID, newId,
+                    connections.depStopId(id));
+            connectionsWriter.setU16(BufferedConnections.DEP_MINUTES, newId,
+                    connections.depMins(id));
+            connectionsWriter.setU16(BufferedConnections.ARR_STOP_ID, newId,
+                    connections.arrStopId(id));
+            connectionsWriter.setU16(BufferedConnections.ARR_MINUTES, newId, arrMins);
+            connectionsWriter.setS32(BufferedConnections.TRIP_POS_ID, newId,
+                    Bits32_24_8.pack(connections.tripId(id), connections.tripPos(id)));
+            succWriter.setS32(BufferedConnections.NEXT_CONNECTION_ID, newId,
+                    newIds[connections.nextConnectionId(id)]);
+
+            int arrStationId = timeTable.stationId(connections.arrStopId(id));
+            lastArrMins[arrStationId] = Math.max(lastArrMins[arrStationId], arrMins);
+        }
+
+        StructuredBufferWriter lastArrivalsWriter = new StructuredBufferWriter(
+                BufferedConnections.LAST_ARRIVAL_STRUCTURE, lastArrMins.length);
+        for (int stationId = 0; stationId < lastArrMins.length; stationId++) {
+            lastArrivalsWriter.setU16(BufferedConnections.LAST_ARR_MINUTES, stationId,
+                    lastArrMins[stationId] < 0
+                            ? BufferedConnections.NO_ARRIVAL
+                            : lastArrMins[stationId]);
+        }
+
+        connectionsWriter.writeTo(dayDirectory.resolve(FileTimeTable.PATH_CONNECTIONS));
+        succWriter.writeTo(dayDirectory.resolve(FileTimeTable.PATH_CONNECTIONS_SUC));
+        lastArrivalsWriter.writeTo(dayDirectory.resolve(FileTimeTable.PATH_LAST_ARRIVALS));
+    }
+
+    /**
+     * Calcule la fermeture transitive des changements donnés. Pour chaque gare d'arrivée, un
+     * algorithme de Dijkstra parcourt à rebours les changements entre gares distinctes, et
+     * retient toutes les gares depuis lesquelles elle est atteignable à pied en au plus la durée
+     * du plus long changement d'origine. Les changements au sein d'une même gare sont conservés
+     * tels quels. Le résultat est trié par gare d'arrivée, comme l'exige
+     * {@link BufferedTransfers}.
+     *
+     * @param transfers les changements d'origine
+     * @param nStations le nombre de gares de l'horaire
+     * @return la table des changements fermée, prête à être écrite
+     */
+    private static StructuredBufferWriter closedTransfers(Transfers transfers, int nStations) {
+        int maxMinutes = 0;
+        for (int i = 0; i < transfers.size(); i++) {
+            maxMinutes = Math.max(maxMinutes, transfers.minutes(i));
+        }
+        maxMinutes = Math.min(maxMinutes, MAX_TRANSFER_MINUTES);
+
+        // Changements fermés, empaquetés (départ, arrivée, minutes)
+        List<int[]> closed = new ArrayList<>();
+        int[] distance = new int[nStations];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        List<Integer> visited = new ArrayList<>();
+        PriorityQueue<long[]> queue = new PriorityQueue<>(Comparator.comparingLong(e -> e[0]));
+
+        for (int arrStationId = 0; arrStationId < nStations; arrStationId++) {
+            int selfMinutes = -1;
+            distance[arrStationId] = 0;
+            visited.add(arrStationId);
+            queue.add(new long[]{0, arrStationId});
+
+            while (!queue.isEmpty()) {
+                long[] entry = queue.poll();
+                int stationId = (int) entry[1];
+                if (entry[0] > distance[stationId]) {
+                    continue;
+                }
+                int range = arrivingAt(transfers, stationId);
+                for (int j = PackedRange.startInclusive(range);
+                     j < PackedRange.endExclusive(range); j++) {
+                    int depStationId = transfers.depStationId(j);
+                    if (depStationId == stationId) {
+                        if (stationId == arrStationId) {
+                            selfMinutes = transfers.minutes(j);
+                        }
+                        continue;
+                    }
+                    int newDistance = distance[stationId] + transfers.minutes(j);
+                    if (newDistance <= maxMinutes && newDistance < distance[depStationId]) {
+                        if (distance[depStationId] == Integer.MAX_VALUE) {
+                            visited.add(depStationId);
+                        }
+                        distance[depStationId] = newDistance;
+                        queue.add(new long[]{newDistance, depStationId});
+                    }
+                }
+            }
+
+            visited.sort(Comparator.naturalOrder());
+            for (int depStationId : visited) {
+                if (depStationId == arrStationId) {
+                    if (selfMinutes >= 0) {
+                        closed.add(new int[]{arrStationId, arrStationId, selfMinutes});
+                    }
+                } else {
+                    closed.add(new int[]{depStationId, arrStationId, distance[depStationId]});
+                }
+                distance[depStationId] = Integer.MAX_VALUE;
+            }
+            visited.clear();
+        }
+        return transfersWriter(closed);
+    }
+
+    /**
+     * Ajoute aux changements donnés des changements à pied entre toutes les gares distinctes
+     * situées à au plus la distance donnée l'une de l'autre, sauf lorsqu'un changement les relie
+     * déjà. Les gares voisines de chaque gare d'arrivée sont trouvées à l'aide d'un
+     * {@link StationGrid}, ce qui rend le calcul quasi linéaire en le nombre de gares. Le
+     * résultat est trié par gare d'arrivée, puis par gare de départ.
+     *
+     * @param transfers les changements d'origine
+     * @param stations  les gares de l'horaire
+     * @param radius    la distance maximale, en mètres, entre deux gares reliées à pied
+     * @return la table des changements complétée, prête à être écrite
+     */
+    private static StructuredBufferWriter walkingTransfers(Transfers transfers, Stations stations,
+                                                           double radius) {
+        StationGrid grid = StationGrid.of(stations);
+        int nStations = stations.size();
+        // Durée des changements arrivant à la gare courante, par gare de départ
+        int[] minutes = new int[nStations];
+        Arrays.fill(minutes, -1);
+        List<Integer> depStations = new ArrayList<>();
+        List<int[]> merged = new ArrayList<>();
+
+        for (int arrStationId = 0; arrStationId < nStations; arrStationId++) {
+            int range = arrivingAt(transfers, arrStationId);
+            for (int j = PackedRange.startInclusive(range);
+                 j < PackedRange.endExclusive(range); j++) {
+                int depStationId = transfers.depStationId(j);
+                if (minutes[depStationId] < 0) {
+                    depStations.add(depStationId);
+                }
+                minutes[depStationId] = transfers.minutes(j);
+            }
+            double longitude = stations.longitude(arrStationId);
+            double latitude = stations.latitude(arrStationId);
+            for (int depStationId : grid.withinRadius(longitude, latitude, radius)) {
+                if (depStationId != arrStationId && minutes[depStationId] < 0) {
+                    depStations.add(depStationId);
+                    minutes[depStationId] = walkingMinutes(
+                            grid.distance(depStationId, longitude, latitude));
+                }
+            }
+
+            depStations.sort(Comparator.naturalOrder());
+            for (int depStationId : depStations) {
+                merged.add(new int[]{depStationId, arrStationId, minutes[depStationId]});
+                minutes[depStationId] = -1;
+            }
+            depStations.clear();
+        }
+        return transfersWriter(merged);
+    }
+
+    /**
+     * Retourne la durée, en minutes, d'un trajet à pied de la distance donnée, comprise entre
+     * 1 et la durée maximale d'un changement.
+     */
+    private static int walkingMinutes(double distance) {
+        double minutes = Math.ceil(distance / WALKING_SPEED / SECONDS_PER_MINUTE);
+        return (int) Math.max(1, Math.min(MAX_TRANSFER_MINUTES, minutes));
+    }
+
+    /**
+     * Retourne la table des changements donnés, empaquetés (départ, arrivée, minutes), dans le
+     * même ordre.
+     */
+    private static StructuredBufferWriter transfersWriter(List<int[]> transfers) {
+        StructuredBufferWriter writer =
+                new StructuredBufferWriter(BufferedTransfers.TRANSFER_STRUCTURE, transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            int[] transfer = transfers.get(i);
+            writer.setU16(BufferedTransfers.DEP_STATION_ID, i, transfer[0]);
+            writer.setU16(BufferedTransfers.ARR_STATION_ID, i, transfer[1]);
+            writer.setU8(BufferedTransfers.TRANSFER_MINUTES, i, transfer[2]);
+        }
+        return writer;
+    }
+
+    /**
+     * Retourne l'intervalle des changements arrivant à la gare donnée, qui est vide pour les
+     * gares d'index supérieur à celui de la dernière gare d'arrivée de la table.
+     */
+    private static int arrivingAt(Transfers transfers, int stationId) {
+        try {
+            return transfers.arrivingAt(stationId);
+        } catch (IndexOutOfBoundsException e) {
+            return PackedRange.pack(0, 0);
+        }
+    }
+}
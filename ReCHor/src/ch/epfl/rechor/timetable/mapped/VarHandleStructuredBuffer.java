@@ -0,0 +1,173 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.Preconditions;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.stream.IntStream;
+
+/**
+ * Représente un tableau d'octets structuré selon une Structure, dont les champs sont lus au
+ * moyen de {@link VarHandle} sur le ByteBuffer.
+ * <p>
+ * Contrairement à {@link StructuredBuffer}, les décalages des champs et la taille d'un élément
+ * sont extraits une fois pour toutes de la structure lors de la construction, de sorte que
+ * chaque accès se réduit à une multiplication, une addition et une lecture que le compilateur
+ * JIT transforme en une simple instruction de chargement. Les lectures restent vérifiées : un
+ * indice invalide lève IndexOutOfBoundsException, comme avec StructuredBuffer.
+ *
+ * @author Antoine Lepin (390950)
+ * @author Darius Giannoli (380759)
+ */
+public final class VarHandleStructuredBuffer implements StructuredData {
+
+    // Accès aux entiers de 16 et 32 bits stockés en gros-boutiste, quel que soit l'ordre du buffer
+    private static final VarHandle SHORT_HANDLE =
+            MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_HANDLE =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Structure structure;
+    private final ByteBuffer buffer;
+    private final int elementCount;
+    private final int elementSize;
+    private final int[] fieldOffsets;
+
+    /**
+     * Construit un VarHandleStructuredBuffer à partir d'une structure et d'un ByteBuffer.
+     *
+     * @param structure la structure des éléments
+     * @param buffer    le tampon contenant les données aplaties
+     * @throws IllegalArgumentException si la capacité du buffer n'est pas un multiple
+     *                                  de la taille totale de la structure
+     */
+    public VarHandleStructuredBuffer(Structure structure, ByteBuffer buffer) {
+        this.elementSize = structure.totalSize();
+        Preconditions.checkArgument(buffer.capacity() % elementSize == 0);
+        this.structure = structure;
+        this.buffer = buffer;
+        this.elementCount = buffer.capacity() / elementSize;
+
+        this.fieldOffsets = new int[structure.fieldCount()];
+        for (int i = 0; i < fieldOffsets.length; i++) {
+            fieldOffsets[i] = structure.offset(i, 0);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return la structure des éléments
+     */
+    @Override
+    public Structure structure() {
+        return structure;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return le nombre d'éléments
+     */
+    @Override
+    public int size() {
+        return elementCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param fieldIndex   l'indice du champ
+     * @param elementIndex l'indice de l'élément
+     * @return la valeur U8 en entier positif
+     */
+    @Override
+    public int getU8(int fieldIndex, int elementIndex) {
+        return Byte.toUnsignedInt(buffer.get(offset(fieldIndex, elementIndex)));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param fieldIndex   l'indice du champ
+     * @param elementIndex l'indice de l'élément
+     * @return la valeur U16 en entier positif
+     */
+    @Override
+    public int getU16(int fieldIndex, int elementIndex) {
+        return Short.toUnsignedInt((short) SHORT_HANDLE.get(buffer,
+                offset(fieldIndex, elementIndex)));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param fieldIndex   l'indice du champ
+     * @param elementIndex l'indice de l'élément
+     * @return la valeur S32
+     */
+    @Override
+    public int getS32(int fieldIndex, int elementIndex) {
+        return (int) INT_HANDLE.get(buffer, offset(fieldIndex, elementIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Le décalage de chaque valeur est obtenu en ajoutant la taille d'un élément au précédent,
+     * sans repasser par la structure.
+     */
+    @Override
+    public int[] column(int fieldIndex) {
+        int[] column = new int[elementCount];
+        int offset = fieldOffsets[fieldIndex];
+        switch (structure.fieldType(fieldIndex)) {
+            case U8 -> {
+                for (int i = 0; i < elementCount; i++, offset += elementSize) {
+                    column[i] = Byte.toUnsignedInt(buffer.get(offset));
+                }
+            }
+            case U16 -> {
+                for (int i = 0; i < elementCount; i++, offset += elementSize) {
+                    column[i] = Short.toUnsignedInt((short) SHORT_HANDLE.get(buffer, offset));
+                }
+            }
+            case S32 -> {
+                for (int i = 0; i < elementCount; i++, offset += elementSize) {
+                    column[i] = (int) INT_HANDLE.get(buffer, offset);
+                }
+            }
+        }
+        return column;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param fieldIndex l'indice du champ
+     * @return le flot des valeurs de la colonne
+     */
+    @Override
+    public IntStream columnStream(int fieldIndex) {
+        // Vérifie l'indice du champ avant que le flot ne soit consommé
+        int fieldOffset = fieldOffsets[fieldIndex];
+        return switch (structure.fieldType(fieldIndex)) {
+            case U8 -> IntStream.range(0, elementCount).map(i ->
+                    Byte.toUnsignedInt(buffer.get(i * elementSize + fieldOffset)));
+            case U16 -> IntStream.range(0, elementCount).map(i ->
+                    Short.toUnsignedInt((short) SHORT_HANDLE.get(buffer,
+                            i * elementSize + fieldOffset)));
+            case S32 -> IntStream.range(0, elementCount).map(i ->
+                    (int) INT_HANDLE.get(buffer, i * elementSize + fieldOffset));
+        };
+    }
+
+    /**
+     * Calcule le décalage, dans le buffer, du champ donné de l'élément donné.
+     */
+    private int offset(int fieldIndex, int elementIndex) {
+        return elementIndex * elementSize + fieldOffsets[fieldIndex];
+    }
+}
@@ -0,0 +1,37 @@
+package ch.epfl.rechor;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyPhaseTimerTest {
+
+    @Test
+    void phaseTimerRecordsPhasesInCompletionOrder() {
+        PhaseTimer timer = new PhaseTimer();
+        int result = timer.time("first", () -> 42);
+        assertEquals(42, result);
+        timer.record("second", 2_500_000);
+
+        List<PhaseTimer.Timing> timings = timer.timings();
+        assertEquals(2, timings.size());
+        assertEquals("first", timings.get(0).name());
+        assertEquals(new PhaseTimer.Timing("second", 2_500_000), timings.get(1));
+        assertTrue(timer.report().contains("2.5 ms"));
+    }
+
+    @Test
+    void phaseTimerRecordsFailingPhases() {
+        PhaseTimer timer = new PhaseTimer();
+        assertThrows(IOException.class, () -> timer.time("failing", () -> {
+            throw new IOException();
+        }));
+        assertEquals("failing", timer.timings().get(0).name());
+        assertThrows(IllegalArgumentException.class, () -> timer.record("negative", -1));
+    }
+}
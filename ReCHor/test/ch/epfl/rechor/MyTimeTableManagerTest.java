@@ -0,0 +1,101 @@
+package ch.epfl.rechor;
+
+import ch.epfl.rechor.timetable.mapped.MyPackedTimeTableTest;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyTimeTableManagerTest {
+
+    // Fichiers de l'horaire, nommés comme dans FileTimeTable
+    private static final String STRINGS_FILE = "strings.txt";
+    private static final String STATIONS_FILE = "stations.bin";
+
+    // Remplace atomiquement la table des chaînes, en renommant la première gare
+    private static void renameFirstStation(Path directory, String name) throws IOException {
+        Path temporary = directory.resolve(STRINGS_FILE + ".tmp");
+        Files.writeString(temporary, name + "\nRenens VD\n1\n2\nIC 1\nGenève\nLsne\n",
+                StandardCharsets.ISO_8859_1);
+        Files.move(temporary, directory.resolve(STRINGS_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Test
+    void reloadSwapsVersionAndKeepsPreviousOneUsable() throws IOException {
+        Path directory = MyPackedTimeTableTest.createTimeTable();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (TimeTableManager manager = TimeTableManager.start(directory, executor,
+                new PhaseTimer(), Duration.ofHours(1))) {
+            List<TimeTableStartup> notified = new CopyOnWriteArrayList<>();
+            manager.addListener(notified::add);
+            TimeTableStartup previous = manager.current();
+
+            renameFirstStation(directory, "Morges");
+            assertTrue(manager.reload());
+
+            TimeTableStartup current = manager.current();
+            assertNotSame(previous, current);
+            assertEquals(List.of(current), notified);
+            assertEquals(1, manager.generation());
+            assertEquals("Morges", current.timeTable().stations().name(0));
+            assertEquals(0, (int) current.stationNameToIndex().get("Morges"));
+            // Une recherche en cours continue d'utiliser l'ancienne version
+            assertEquals("Lausanne", previous.timeTable().stations().name(0));
+            assertEquals(0, (int) previous.stationNameToIndex().get("Lausanne"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void failedReloadKeepsCurrentVersion() throws IOException {
+        Path directory = MyPackedTimeTableTest.createTimeTable();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (TimeTableManager manager = TimeTableManager.start(directory, executor,
+                new PhaseTimer(), Duration.ofHours(1))) {
+            TimeTableStartup previous = manager.current();
+            Files.delete(directory.resolve(STATIONS_FILE));
+
+            assertFalse(manager.reload());
+            assertSame(previous, manager.current());
+            assertEquals(0, manager.generation());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void modificationOfDirectoryTriggersReload() throws IOException, InterruptedException {
+        Path directory = MyPackedTimeTableTest.createTimeTable();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (TimeTableManager manager = TimeTableManager.start(directory, executor,
+                new PhaseTimer(), Duration.ofMillis(50))) {
+            CountDownLatch reloaded = new CountDownLatch(1);
+            manager.addListener(startup -> reloaded.countDown());
+
+            renameFirstStation(directory, "Morges");
+
+            assertTrue(reloaded.await(10, TimeUnit.SECONDS));
+            assertEquals("Morges", manager.current().timeTable().stations().name(0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
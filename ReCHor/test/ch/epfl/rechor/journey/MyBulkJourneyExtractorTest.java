@@ -0,0 +1,70 @@
+package ch.epfl.rechor.journey;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.DATE;
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.randomTimeTable;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MyBulkJourneyExtractorTest {
+
+    private static final int STATIONS = 60;
+
+    @Test
+    void parallelExtractionEqualsSequentialExtraction() {
+        Profile profile = new Router(randomTimeTable(31, STATIONS, 500)).profile(DATE, 11);
+        AtomicInteger active = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        // Accédée sans synchronisation : les appels du consommateur ne doivent pas se chevaucher
+        Map<Integer, List<Journey>> journeys = new HashMap<>();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            BulkJourneyExtractor.journeysForAll(profile, pool, batch -> {
+                if (active.incrementAndGet() != 1) {
+                    overlapped.set(true);
+                }
+                // Laisse aux autres fils le temps d'appeler le consommateur simultanément
+                Thread.yield();
+                assertNull(journeys.put(batch.depStationId(), batch.journeys()));
+                active.decrementAndGet();
+            });
+        } finally {
+            pool.shutdown();
+        }
+
+        assertFalse(overlapped.get());
+        assertEquals(STATIONS, journeys.size());
+        for (int depStationId = 0; depStationId < STATIONS; depStationId++) {
+            assertEquals(JourneyExtractor.journeys(profile, depStationId),
+                    journeys.get(depStationId));
+        }
+    }
+
+    @Test
+    void journeysExtractsOnlyGivenStations() {
+        Profile profile = new Router(randomTimeTable(32, STATIONS, 300)).profile(DATE, 3);
+        Map<Integer, List<Journey>> journeys = new HashMap<>();
+        int[] depStationIds = {5, 0, 59, 17};
+        BulkJourneyExtractor.journeys(profile, depStationIds, ForkJoinPool.commonPool(),
+                batch -> journeys.put(batch.depStationId(), batch.journeys()));
+        assertEquals(depStationIds.length, journeys.size());
+        for (int depStationId : depStationIds) {
+            assertEquals(JourneyExtractor.journeys(profile, depStationId),
+                    journeys.get(depStationId));
+        }
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> BulkJourneyExtractor.journeys(profile, new int[]{STATIONS},
+                        ForkJoinPool.commonPool(), batch -> {}));
+    }
+}
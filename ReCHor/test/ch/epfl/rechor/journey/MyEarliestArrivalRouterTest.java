@@ -0,0 +1,144 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.CachedTimeTable;
+import ch.epfl.rechor.timetable.Stations;
+import ch.epfl.rechor.timetable.TimeTable;
+import ch.epfl.rechor.timetable.mapped.FileTimeTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.CHANGE_MINUTES;
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.DATE;
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.randomTimeTable;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vérifie le parcours en avant ({@link EarliestArrivalRouter}) par rapport aux profils calculés
+ * par {@link Router#profile}, et compare, dans {@link #main}, la latence d'une requête « partir
+ * maintenant de A vers B » à celle du chemin passant par un profil complet.
+ */
+public class MyEarliestArrivalRouterTest {
+    private static final int RUNS = 20;
+    private static final int STATIONS = 40;
+
+    // Heure d'arrivée au plus tôt des voyages du profil partant au plus tôt à l'heure donnée,
+    // ou -1 s'il n'y en a pas
+    private static int expectedArrival(Profile profile, int depStationId, int depMins) {
+        int[] best = {Integer.MAX_VALUE};
+        profile.forStation(depStationId).forEach(t -> {
+            if (PackedCriteria.depMins(t) >= depMins) {
+                best[0] = Math.min(best[0], PackedCriteria.arrMins(t));
+            }
+        });
+        return best[0] == Integer.MAX_VALUE ? -1 : best[0];
+    }
+
+    private static int minutes(LocalDateTime dateTime) {
+        return (int) Duration.between(DATE.atStartOfDay(), dateTime).toMinutes();
+    }
+
+    @Test
+    void earliestArrivalMatchesProfileFront() {
+        TimeTable timeTable = randomTimeTable(14, STATIONS, 500);
+        Router router = new Router(timeTable);
+        EarliestArrivalRouter forward = new EarliestArrivalRouter(timeTable);
+        Random random = new Random(15);
+        int reachable = 0;
+        for (int arrStationId : new int[]{3, 19, 38}) {
+            Profile profile = router.profile(DATE, arrStationId);
+            for (int q = 0; q < 40; q++) {
+                int depStationId = random.nextInt(STATIONS);
+                int depMins = 300 + random.nextInt(1100);
+                int expected = expectedArrival(profile, depStationId, depMins);
+                assertEquals(expected,
+                        forward.earliestArrival(DATE, depStationId, arrStationId, depMins));
+
+                Optional<Journey> journey =
+                        forward.journey(DATE, depStationId, arrStationId, depMins);
+                assertEquals(expected == -1, journey.isEmpty());
+                if (journey.isPresent()) {
+                    reachable += 1;
+                    Journey j = journey.get();
+                    // Comme dans un profil, l'heure d'arrivée inclut le changement au sein de la
+                    // gare d'arrivée, que le voyage n'inclut pas lorsqu'il se termine en transport
+                    int change = j.legs().getLast() instanceof Journey.Leg.Transport
+                            ? CHANGE_MINUTES
+                            : 0;
+                    assertEquals(expected, minutes(j.arrTime()) + change);
+                    assertTrue(minutes(j.depTime()) >= depMins);
+                    assertEquals("S" + depStationId, j.depStop().name());
+                    assertEquals("S" + arrStationId, j.arrStop().name());
+                }
+            }
+        }
+        assertTrue(reachable > 0);
+    }
+
+    @Test
+    void earliestArrivalHandlesUnreachableAndInvalidStations() {
+        EarliestArrivalRouter forward =
+                new EarliestArrivalRouter(randomTimeTable(16, STATIONS, 50));
+        // Aucune course ne part après minuit moins une minute
+        assertEquals(-1, forward.earliestArrival(DATE, 1, 2, 1439));
+        assertTrue(forward.journey(DATE, 1, 2, 1439).isEmpty());
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> forward.earliestArrival(DATE, STATIONS, 2, 600));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> forward.journey(DATE, 0, -1, 600));
+    }
+
+    static int stationId(Stations stations, String stationName) {
+        for (int i = 0; i < stations.size(); i++) {
+            if (stations.name(i).equals(stationName)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    public static void main(String[] args) throws IOException {
+        TimeTable timeTable = new CachedTimeTable(FileTimeTable.in(Path.of("timetable")));
+        Stations stations = timeTable.stations();
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+        int depStationId = stationId(stations, "Ecublens VD, EPFL");
+        int arrStationId = stationId(stations, "Gruyères");
+        int depMins = 8 * 60;
+
+        Router router = new Router(timeTable);
+        EarliestArrivalRouter forward = new EarliestArrivalRouter(timeTable);
+
+        // Échauffement
+        router.profile(date, arrStationId);
+        forward.journey(date, depStationId, arrStationId, depMins);
+
+        long tProfile = System.nanoTime();
+        List<Journey> journeys = List.of();
+        for (int i = 0; i < RUNS; i++) {
+            journeys = JourneyExtractor.journeys(router.profile(date, arrStationId), depStationId);
+        }
+        double profileMs = (System.nanoTime() - tProfile) * 1e-6 / RUNS;
+
+        long tForward = System.nanoTime();
+        Optional<Journey> journey = Optional.empty();
+        for (int i = 0; i < RUNS; i++) {
+            journey = forward.journey(date, depStationId, arrStationId, depMins);
+        }
+        double forwardMs = (System.nanoTime() - tForward) * 1e-6 / RUNS;
+
+        System.out.printf("Profil + extraction : %.3f ms (%d voyages)%n",
+                profileMs, journeys.size());
+        System.out.printf("Parcours en avant   : %.3f ms%n", forwardMs);
+        journey.ifPresent(j -> System.out.println(JourneyIcalConverter.toIcalendar(j)));
+    }
+}
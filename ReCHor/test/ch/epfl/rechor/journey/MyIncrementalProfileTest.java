@@ -0,0 +1,338 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.PackedRange;
+import ch.epfl.rechor.timetable.Connections;
+import ch.epfl.rechor.timetable.DelayedConnections;
+import ch.epfl.rechor.timetable.Platforms;
+import ch.epfl.rechor.timetable.RealTimeTimeTable;
+import ch.epfl.rechor.timetable.Routes;
+import ch.epfl.rechor.timetable.StationAliases;
+import ch.epfl.rechor.timetable.Stations;
+import ch.epfl.rechor.timetable.TimeTable;
+import ch.epfl.rechor.timetable.Transfers;
+import ch.epfl.rechor.timetable.Trips;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyIncrementalProfileTest {
+
+    static final LocalDate DATE = LocalDate.of(2025, 3, 18);
+    static final int CHANGE_MINUTES = 2;
+
+    /**
+     * Retourne un horaire aléatoire dont les arrêts sont les gares, où l'on peut changer de
+     * véhicule dans chaque gare en 2 minutes, et qui n'a de courses qu'à la date DATE.
+     */
+    static TimeTable randomTimeTable(long seed, int stationCount, int tripCount) {
+        return arrayTimeTable(stationCount, tripCount,
+                randomConnections(seed, stationCount, tripCount));
+    }
+
+    /**
+     * Retourne des liaisons aléatoires, sous la forme {depStop, depMins, arrStop, arrMins, trip,
+     * pos}, dans un ordre quelconque.
+     */
+    static List<int[]> randomConnections(long seed, int stationCount, int tripCount) {
+        Random random = new Random(seed);
+        // depStop, depMins, arrStop, arrMins, trip, pos
+        List<int[]> connections = new ArrayList<>();
+        for (int trip = 0; trip < tripCount; trip++) {
+            int stop = random.nextInt(stationCount);
+            int mins = 300 + random.nextInt(1080);
+            int length = 2 + random.nextInt(8);
+            for (int pos = 0; pos < length; pos++) {
+                int next = random.nextInt(stationCount);
+                if (next == stop) {
+                    next = (next + 1) % stationCount;
+                }
+                int arrMins = mins + 3 + random.nextInt(15);
+                connections.add(new int[]{stop, mins, next, arrMins, trip, pos});
+                stop = next;
+                mins = arrMins + random.nextInt(3);
+            }
+        }
+        return connections;
+    }
+
+    /**
+     * Retourne l'horaire dont les liaisons sont celles données, où la route de chaque course est
+     * celle de même index et le véhicule de chaque route est celui d'index égal au sien modulo
+     * le nombre de types de véhicules.
+     */
+    static TimeTable arrayTimeTable(int stationCount, int tripCount, List<int[]> tripConnections) {
+        List<int[]> connections = new ArrayList<>(tripConnections);
+        connections.sort(Comparator.<int[]>comparingInt(c -> -c[1])
+                .thenComparingInt(c -> c[4]).thenComparingInt(c -> c[5]));
+
+        int[][] data = connections.toArray(int[][]::new);
+        int[] next = new int[data.length];
+        int[][] connectionIds = new int[tripCount][];
+        for (int id = 0; id < data.length; id++) {
+            int[] c = data[id];
+            if (connectionIds[c[4]] == null) {
+                connectionIds[c[4]] = new int[10];
+                Arrays.fill(connectionIds[c[4]], -1);
+            }
+            connectionIds[c[4]][c[5]] = id;
+        }
+        for (int[] ids : connectionIds) {
+            if (ids == null) {
+                continue;
+            }
+            int length = 0;
+            while (length < ids.length && ids[length] >= 0) {
+                length += 1;
+            }
+            for (int pos = 0; pos < length; pos++) {
+                next[ids[pos]] = ids[(pos + 1) % length];
+            }
+        }
+        return new ArrayTimeTable(stationCount, tripCount, data, next);
+    }
+
+    private record ArrayTimeTable(int stationCount, int tripCount, int[][] data, int[] next)
+            implements TimeTable {
+        @Override
+        public Stations stations() {
+            return new Stations() {
+                @Override
+                public int size() {
+                    return stationCount;
+                }
+
+                @Override
+                public String name(int id) {
+                    return "S" + id;
+                }
+
+                @Override
+                public double longitude(int id) {
+                    return 6.5 + id * 0.01;
+                }
+
+                @Override
+                public double latitude(int id) {
+                    return 46.5;
+                }
+            };
+        }
+
+        @Override
+        public StationAliases stationAliases() {
+            return null;
+        }
+
+        @Override
+        public Platforms platforms() {
+            return null;
+        }
+
+        @Override
+        public Routes routes() {
+            return new Routes() {
+                @Override
+                public int size() {
+                    return tripCount;
+                }
+
+                @Override
+                public Vehicle vehicle(int id) {
+                    return Vehicle.ALL.get(id % Vehicle.ALL.size());
+                }
+
+                @Override
+                public String name(int id) {
+                    return "L" + id;
+                }
+            };
+        }
+
+        @Override
+        public Transfers transfers() {
+            return new Transfers() {
+                @Override
+                public int size() {
+                    return stationCount;
+                }
+
+                @Override
+                public int depStationId(int id) {
+                    return id;
+                }
+
+                @Override
+                public int minutes(int id) {
+                    return CHANGE_MINUTES;
+                }
+
+                @Override
+                public int arrivingAt(int stationId) {
+                    return PackedRange.pack(stationId, stationId + 1);
+                }
+
+                @Override
+                public int minutesBetween(int depStationId, int arrStationId) {
+                    if (depStationId != arrStationId) {
+                        throw new NoSuchElementException();
+                    }
+                    return CHANGE_MINUTES;
+                }
+            };
+        }
+
+        @Override
+        public Trips tripsFor(LocalDate date) {
+            checkDate(date);
+            return new Trips() {
+                @Override
+                public int size() {
+                    return tripCount;
+                }
+
+                @Override
+                public int routeId(int id) {
+                    return id;
+                }
+
+                @Override
+                public String destination(int id) {
+                    return "D" + id;
+                }
+            };
+        }
+
+        @Override
+        public Connections connectionsFor(LocalDate date) {
+            checkDate(date);
+            return new Connections() {
+                @Override
+                public int size() {
+                    return data.length;
+                }
+
+                @Override
+                public int depStopId(int id) {
+                    return data[id][0];
+                }
+
+                @Override
+                public int depMins(int id) {
+                    return data[id][1];
+                }
+
+                @Override
+                public int arrStopId(int id) {
+                    return data[id][2];
+                }
+
+                @Override
+                public int arrMins(int id) {
+                    return data[id][3];
+                }
+
+                @Override
+                public int tripId(int id) {
+                    return data[id][4];
+                }
+
+                @Override
+                public int tripPos(int id) {
+                    return data[id][5];
+                }
+
+                @Override
+                public int nextConnectionId(int id) {
+                    return next[id];
+                }
+            };
+        }
+
+        private static void checkDate(LocalDate date) {
+            if (!date.equals(DATE)) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+
+    static void assertSameProfile(Profile expected, Profile actual) {
+        for (int stationId = 0; stationId < expected.stationFront().size(); stationId++) {
+            List<Long> expectedTuples = new ArrayList<>();
+            List<Long> actualTuples = new ArrayList<>();
+            expected.forStation(stationId).forEach(expectedTuples::add);
+            actual.forStation(stationId).forEach(actualTuples::add);
+            assertEquals(expectedTuples, actualTuples);
+        }
+    }
+
+    /**
+     * Retourne l'index de la première liaison partant au plus tard à l'heure donnée.
+     */
+    private static int firstDepartingAtOrBefore(Connections connections, int mins) {
+        int id = 0;
+        while (connections.depMins(id) > mins) {
+            id += 1;
+        }
+        return id;
+    }
+
+    @Test
+    void incrementalProfileEqualsFullProfile() {
+        TimeTable timeTable = randomTimeTable(1, 60, 400);
+        Router router = new Router(timeTable);
+        IncrementalProfile incremental = router.incrementalProfile(DATE, 7, 600, 900, 1200);
+        assertSameProfile(router.profile(DATE, 7), incremental.profile());
+        assertEquals(3, incremental.checkpoints().size());
+        assertTrue(incremental.scannedConnections() <= timeTable.connectionsFor(DATE).size());
+    }
+
+    @Test
+    void repairRescansOnlyConnectionsBeforeDelays() {
+        RealTimeTimeTable timeTable = new RealTimeTimeTable(randomTimeTable(2, 60, 400));
+        Router router = new Router(timeTable);
+        IncrementalProfile incremental = router.incrementalProfile(DATE, 3, 1200, 900, 600);
+        assertSame(incremental, router.repair(incremental));
+
+        // Retard d'une liaison partant entre 13h00 et 14h00
+        Connections connections = timeTable.connectionsFor(DATE);
+        int delayed = firstDepartingAtOrBefore(connections, 840);
+        assertTrue(connections.depMins(delayed) > 780);
+        timeTable.update(DATE, List.of(DelayedConnections.Update.delay(delayed, 10, 10)));
+
+        IncrementalProfile repaired = router.repair(incremental);
+        assertSameProfile(router.profile(DATE, 3), repaired.profile());
+        int resumeFrom = firstDepartingAtOrBefore(timeTable.connectionsFor(DATE), 900);
+        assertEquals(connections.size() - resumeFrom, repaired.scannedConnections());
+
+        // Un second retard, plus tardif, oblige à reprendre plus tôt dans le parcours
+        int late = firstDepartingAtOrBefore(timeTable.connectionsFor(DATE), 1300);
+        timeTable.update(DATE, List.of(DelayedConnections.Update.delay(late, 5, 5)));
+        IncrementalProfile repairedTwice = router.repair(repaired);
+        assertSameProfile(router.profile(DATE, 3), repairedTwice.profile());
+        assertTrue(repairedTwice.scannedConnections() > repaired.scannedConnections());
+    }
+
+    @Test
+    void repairAfterCancellationEqualsFullProfile() {
+        RealTimeTimeTable timeTable = new RealTimeTimeTable(randomTimeTable(3, 40, 300));
+        Router router = new Router(timeTable);
+        IncrementalProfile incremental = router.incrementalProfile(DATE, 0, 480, 720, 960);
+        Connections connections = timeTable.connectionsFor(DATE);
+        timeTable.update(DATE, List.of(DelayedConnections.Update.cancel(
+                firstDepartingAtOrBefore(connections, 700))));
+
+        IncrementalProfile repaired = router.repair(incremental);
+        assertSameProfile(router.profile(DATE, 0), repaired.profile());
+        assertTrue(repaired.scannedConnections() < connections.size());
+    }
+}
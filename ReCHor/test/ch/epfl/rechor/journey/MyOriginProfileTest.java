@@ -0,0 +1,78 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.TimeTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.DATE;
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.arrayTimeTable;
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.randomConnections;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyOriginProfileTest {
+
+    private static final int STATIONS = 50;
+    // Gares sans aucune liaison, ajoutées après celles desservies
+    private static final int ISOLATED = 3;
+
+    private static List<Long> tuples(Profile profile, int stationId) {
+        List<Long> tuples = new ArrayList<>();
+        profile.forStation(stationId).forEach(tuples::add);
+        return tuples;
+    }
+
+    @Test
+    void originFrontsEqualThoseOfTheFullProfile() {
+        TimeTable timeTable = arrayTimeTable(STATIONS + ISOLATED, 500,
+                randomConnections(21, STATIONS, 500));
+        Router router = new Router(timeTable);
+        Random random = new Random(5);
+        int nonEmptyFronts = 0;
+        for (int query = 0; query < 20; query++) {
+            int destination = random.nextInt(STATIONS);
+            Profile full = router.profile(DATE, destination);
+            int[] origins = new int[1 + random.nextInt(6)];
+            for (int i = 0; i < origins.length; i++) {
+                origins[i] = random.nextInt(STATIONS + ISOLATED);
+            }
+            // Une gare isolée, dont aucune liaison n'est utile, fait toujours partie des
+            // gares de départ
+            origins[0] = STATIONS + query % ISOLATED;
+
+            Profile restricted = router.profile(DATE, destination, origins);
+            assertEquals(destination, restricted.arrStationId());
+            for (int origin : origins) {
+                assertEquals(tuples(full, origin), tuples(restricted, origin));
+                nonEmptyFronts += tuples(full, origin).isEmpty() ? 0 : 1;
+                assertEquals(JourneyExtractor.journeys(full, origin),
+                        JourneyExtractor.journeys(restricted, origin));
+            }
+            assertTrue(tuples(restricted, origins[0]).isEmpty());
+        }
+        assertTrue(nonEmptyFronts > 0);
+    }
+
+    @Test
+    void originProfileHandlesEdgeCases() {
+        TimeTable timeTable = arrayTimeTable(STATIONS + ISOLATED, 200,
+                randomConnections(22, STATIONS, 200));
+        Router router = new Router(timeTable);
+        // Sans gare de départ, aucune frontière n'est calculée
+        Profile empty = router.profile(DATE, 4, new int[0]);
+        for (int stationId = 0; stationId < STATIONS + ISOLATED; stationId++) {
+            assertTrue(tuples(empty, stationId).isEmpty());
+        }
+        // La destination elle-même comme gare de départ
+        assertEquals(tuples(router.profile(DATE, 4), 4),
+                tuples(router.profile(DATE, 4, new int[]{4}), 4));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> router.profile(DATE, 4, new int[]{STATIONS + ISOLATED}));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> router.profile(DATE, -1, new int[]{0}));
+    }
+}
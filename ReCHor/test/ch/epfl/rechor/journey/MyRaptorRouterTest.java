@@ -0,0 +1,210 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.Connections;
+import ch.epfl.rechor.timetable.DelayedConnections;
+import ch.epfl.rechor.timetable.OvernightTimeTable;
+import ch.epfl.rechor.timetable.Platforms;
+import ch.epfl.rechor.timetable.RealTimeTimeTable;
+import ch.epfl.rechor.timetable.Routes;
+import ch.epfl.rechor.timetable.StationAliases;
+import ch.epfl.rechor.timetable.Stations;
+import ch.epfl.rechor.timetable.TimeTable;
+import ch.epfl.rechor.timetable.Transfers;
+import ch.epfl.rechor.timetable.Trips;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.CHANGE_MINUTES;
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.DATE;
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.randomTimeTable;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyRaptorRouterTest {
+
+    private static final int STATIONS = 40;
+
+    private static int minutes(LocalDateTime dateTime) {
+        return (int) Duration.between(DATE.atStartOfDay(), dateTime).toMinutes();
+    }
+
+    // Frontière (changements, heure d'arrivée) des voyages du profil partant au plus tôt à
+    // l'heure donnée, par nombre de changements croissant
+    private static List<List<Integer>> expectedFront(Profile profile, int depStationId,
+                                                     int depMins) {
+        int[] bestByChanges = new int[128];
+        Arrays.fill(bestByChanges, Integer.MAX_VALUE);
+        profile.forStation(depStationId).forEach(t -> {
+            if (PackedCriteria.depMins(t) >= depMins) {
+                int changes = PackedCriteria.changes(t);
+                bestByChanges[changes] =
+                        Math.min(bestByChanges[changes], PackedCriteria.arrMins(t));
+            }
+        });
+        List<List<Integer>> front = new ArrayList<>();
+        int best = Integer.MAX_VALUE;
+        for (int changes = 0; changes < bestByChanges.length; changes++) {
+            if (bestByChanges[changes] < best) {
+                best = bestByChanges[changes];
+                front.add(List.of(changes, best));
+            }
+        }
+        return front;
+    }
+
+    // Comme dans un profil, l'heure d'arrivée inclut le changement au sein de la gare
+    // d'arrivée, que le voyage n'inclut pas lorsqu'il se termine en transport
+    private static List<List<Integer>> actualFront(List<Journey> journeys) {
+        List<List<Integer>> front = new ArrayList<>();
+        for (Journey journey : journeys) {
+            long rides = journey.legs().stream()
+                    .filter(l -> l instanceof Journey.Leg.Transport)
+                    .count();
+            int change = journey.legs().getLast() instanceof Journey.Leg.Transport
+                    ? CHANGE_MINUTES
+                    : 0;
+            front.add(List.of((int) rides - 1, minutes(journey.arrTime()) + change));
+        }
+        return front;
+    }
+
+    @Test
+    void journeysMatchProfileFrontAndEarliestArrival() {
+        TimeTable timeTable = randomTimeTable(8, STATIONS, 500);
+        Router router = new Router(timeTable);
+        RaptorRouter raptor = new RaptorRouter(timeTable);
+        EarliestArrivalRouter forward = new EarliestArrivalRouter(timeTable);
+        Random random = new Random(9);
+        for (int arrStationId : new int[]{0, 13, 27}) {
+            Profile profile = router.profile(DATE, arrStationId);
+            for (int q = 0; q < 30; q++) {
+                int depStationId = random.nextInt(STATIONS);
+                int depMins = 300 + random.nextInt(1000);
+                List<Journey> journeys =
+                        raptor.journeys(DATE, depStationId, arrStationId, depMins);
+                assertEquals(expectedFront(profile, depStationId, depMins),
+                        actualFront(journeys));
+                assertEquals(forward.earliestArrival(DATE, depStationId, arrStationId, depMins),
+                        raptor.earliestArrival(DATE, depStationId, arrStationId, depMins));
+                for (Journey journey : journeys) {
+                    assertEquals("S" + depStationId, journey.depStop().name());
+                    assertEquals("S" + arrStationId, journey.arrStop().name());
+                    assertTrue(minutes(journey.depTime()) >= depMins);
+                }
+            }
+        }
+    }
+
+    @Test
+    void parallelScanGivesSameJourneys() {
+        // Assez de courses pour que les tours dépassent le seuil de parallélisation
+        TimeTable timeTable = randomTimeTable(10, 300, 4_000);
+        RaptorRouter sequential = new RaptorRouter(timeTable, new ForkJoinPool(1));
+        RaptorRouter parallel = new RaptorRouter(timeTable, new ForkJoinPool(4));
+        for (int depStationId = 0; depStationId < 300; depStationId += 37) {
+            assertEquals(sequential.journeys(DATE, depStationId, 5, 420),
+                    parallel.journeys(DATE, depStationId, 5, 420));
+        }
+    }
+
+    @Test
+    void patternsFollowRealTimeUpdates() {
+        RealTimeTimeTable timeTable = new RealTimeTimeTable(randomTimeTable(12, STATIONS, 300));
+        RaptorRouter raptor = new RaptorRouter(timeTable);
+        int before = raptor.earliestArrival(DATE, 0, 17, 300);
+        assertTrue(before >= 0);
+
+        // L'annulation de toutes les liaisons change la clé du jour, et donc les motifs
+        List<DelayedConnections.Update> updates = new ArrayList<>();
+        for (int id = 0; id < timeTable.connectionsFor(DATE).size(); id++) {
+            updates.add(DelayedConnections.Update.cancel(id));
+        }
+        timeTable.update(DATE, updates);
+        assertEquals(-1, raptor.earliestArrival(DATE, 0, 17, 300));
+
+        // Leur rétablissement rend les motifs d'origine
+        updates.replaceAll(u -> DelayedConnections.Update.delay(u.connectionId(), 0, 0));
+        timeTable.update(DATE, updates);
+        assertEquals(before, raptor.earliestArrival(DATE, 0, 17, 300));
+    }
+
+    @Test
+    void truncatedNextDayTripsAreRouted() {
+        // Course 0 partant après minuit, course 1 dont la première liaison part avant elle
+        TimeTable day = MyIncrementalProfileTest.arrayTimeTable(6, 2, List.of(
+                new int[]{0, 1450, 1, 1460, 0, 0},
+                new int[]{2, 5, 3, 15, 1, 0},
+                new int[]{3, 20, 4, 30, 1, 1},
+                new int[]{4, 40, 5, 50, 1, 2}));
+        // Tous les jours ont les mêmes liaisons
+        TimeTable everyDay = new TimeTable() {
+            @Override
+            public Stations stations() {
+                return day.stations();
+            }
+
+            @Override
+            public StationAliases stationAliases() {
+                return day.stationAliases();
+            }
+
+            @Override
+            public Platforms platforms() {
+                return day.platforms();
+            }
+
+            @Override
+            public Routes routes() {
+                return day.routes();
+            }
+
+            @Override
+            public Transfers transfers() {
+                return day.transfers();
+            }
+
+            @Override
+            public Trips tripsFor(LocalDate date) {
+                return day.tripsFor(DATE);
+            }
+
+            @Override
+            public Connections connectionsFor(LocalDate date) {
+                return day.connectionsFor(DATE);
+            }
+        };
+        TimeTable timeTable = new OvernightTimeTable(everyDay);
+        // La liaison de position 0 de la course 1 du lendemain part avant 1450 - 1440 minutes et
+        // n'est donc pas retenue
+        Connections connections = timeTable.connectionsFor(DATE);
+        for (int id = 0; id < connections.size(); id++) {
+            assertTrue(connections.depMins(id) != 1445);
+        }
+
+        RaptorRouter raptor = new RaptorRouter(timeTable);
+        int expected = new EarliestArrivalRouter(timeTable).earliestArrival(DATE, 3, 5, 1455);
+        assertEquals(1490 + CHANGE_MINUTES, expected);
+        assertEquals(expected, raptor.earliestArrival(DATE, 3, 5, 1455));
+        assertEquals(1, raptor.journeys(DATE, 3, 5, 1455).size());
+    }
+
+    @Test
+    void unreachableDestinationGivesNoJourney() {
+        TimeTable timeTable = randomTimeTable(11, STATIONS, 50);
+        RaptorRouter raptor = new RaptorRouter(timeTable);
+        // Aucune course ne part après minuit moins une minute
+        assertTrue(raptor.journeys(DATE, 1, 2, 1439).isEmpty());
+        assertEquals(-1, raptor.earliestArrival(DATE, 1, 2, 1439));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> raptor.journeys(DATE, STATIONS, 2, 600));
+    }
+}
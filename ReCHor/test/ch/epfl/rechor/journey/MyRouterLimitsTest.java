@@ -0,0 +1,74 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.TimeTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.DATE;
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.assertSameProfile;
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.randomTimeTable;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyRouterLimitsTest {
+
+    private static final int STATIONS = 50;
+    private static final Set<Vehicle> ALL_VEHICLES = EnumSet.allOf(Vehicle.class);
+
+    // Tuples de la frontière de la gare donnée respectant les limites, sans leur charge utile
+    private static List<Long> tuples(Profile profile, int stationId, Router.Limits limits) {
+        List<Long> tuples = new ArrayList<>();
+        profile.forStation(stationId).forEach(t -> {
+            if (PackedCriteria.changes(t) <= limits.maxChanges()
+                    && PackedCriteria.arrMins(t) - PackedCriteria.depMins(t)
+                    <= limits.maxDuration()) {
+                tuples.add(PackedCriteria.withPayload(t, 0));
+            }
+        });
+        return tuples;
+    }
+
+    @Test
+    void limitedProfileKeepsExactlyTheOptimalTuplesWithinLimits() {
+        TimeTable timeTable = randomTimeTable(6, STATIONS, 600);
+        Router router = new Router(timeTable);
+        for (Router.Limits limits : List.of(new Router.Limits(0, 600),
+                new Router.Limits(1, 90), new Router.Limits(2, 45),
+                new Router.Limits(127, 60), new Router.Limits(3, Integer.MAX_VALUE))) {
+            for (int destination : new int[]{1, 25}) {
+                Profile full = router.profile(DATE, destination);
+                Profile limited = router.profile(DATE, destination, ALL_VEHICLES, limits);
+                int fullSize = 0;
+                int limitedSize = 0;
+                for (int stationId = 0; stationId < STATIONS; stationId++) {
+                    assertEquals(tuples(full, stationId, limits),
+                            tuples(limited, stationId, Router.Limits.NONE));
+                    fullSize += full.forStation(stationId).size();
+                    limitedSize += limited.forStation(stationId).size();
+                }
+                assertTrue(limitedSize < fullSize);
+            }
+        }
+    }
+
+    @Test
+    void noLimitsEqualsFullProfile() {
+        Router router = new Router(randomTimeTable(7, STATIONS, 300));
+        assertSameProfile(router.profile(DATE, 4),
+                router.profile(DATE, 4, ALL_VEHICLES, Router.Limits.NONE));
+        assertSameProfile(router.profile(DATE, 4),
+                router.profile(DATE, 4, ALL_VEHICLES, new Router.Limits(127, 100_000)));
+    }
+
+    @Test
+    void limitsRejectInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> new Router.Limits(-1, 60));
+        assertThrows(IllegalArgumentException.class, () -> new Router.Limits(128, 60));
+        assertThrows(IllegalArgumentException.class, () -> new Router.Limits(2, 0));
+    }
+}
@@ -0,0 +1,118 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.TimeTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.DATE;
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.randomTimeTable;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyTransferPatternsTest {
+
+    private static final int STATIONS = 40;
+    private static final int[] DESTINATIONS = {0, 13, 27};
+
+    // Nombre de courses, arrêts de départ et d'arrivée et heure d'arrivée de chaque voyage
+    private static List<List<Object>> summary(List<Journey> journeys) {
+        List<List<Object>> summary = new ArrayList<>();
+        for (Journey journey : journeys) {
+            long rides = journey.legs().stream()
+                    .filter(l -> l instanceof Journey.Leg.Transport)
+                    .count();
+            summary.add(List.of(rides, journey.depStop(), journey.arrStop(),
+                    journey.arrTime()));
+        }
+        return summary;
+    }
+
+    @Test
+    void journeysMatchRaptorRouter() throws IOException {
+        TimeTable timeTable = randomTimeTable(8, STATIONS, 500);
+        Path directory = Files.createTempDirectory("patterns");
+        TransferPatterns.compute(new Router(timeTable), DATE, DESTINATIONS, directory);
+
+        TransferPatternRouter router = new TransferPatternRouter(timeTable, directory);
+        RaptorRouter raptor = new RaptorRouter(timeTable);
+        Random random = new Random(12);
+        for (int arrStationId : DESTINATIONS) {
+            assertTrue(router.covers(DATE, arrStationId));
+            for (int q = 0; q < 40; q++) {
+                int depStationId = random.nextInt(STATIONS);
+                int depMins = 300 + random.nextInt(1000);
+                assertEquals(summary(raptor.journeys(DATE, depStationId, arrStationId, depMins)),
+                        summary(router.journeys(DATE, depStationId, arrStationId, depMins)));
+                assertEquals(raptor.earliestArrival(DATE, depStationId, arrStationId, depMins),
+                        router.earliestArrival(DATE, depStationId, arrStationId, depMins));
+            }
+        }
+    }
+
+    @Test
+    void computeSkipsDestinationsAlreadyComputed() throws IOException {
+        Router router = new Router(randomTimeTable(9, STATIONS, 300));
+        Path directory = Files.createTempDirectory("patterns");
+        assertEquals(3, TransferPatterns.compute(router, DATE, DESTINATIONS, directory));
+        assertEquals(0, TransferPatterns.compute(router, DATE, DESTINATIONS, directory));
+
+        // Une destination interrompue (fichier absent) est recalculée seule
+        Files.delete(directory.resolve("13.bin"));
+        assertEquals(1, TransferPatterns.compute(router, DATE, DESTINATIONS, directory));
+        assertEquals(DATE, TransferPatterns.read(directory, 0, STATIONS).orElseThrow().date());
+        assertTrue(TransferPatterns.read(directory, 0, STATIONS + 1).isEmpty());
+        assertTrue(TransferPatterns.read(directory, 1, STATIONS).isEmpty());
+        assertThrows(IndexOutOfBoundsException.class, () ->
+                TransferPatterns.compute(router, DATE, new int[]{STATIONS}, directory));
+    }
+
+    @Test
+    void patternsOfOtherConnectionsAreNeitherResumedNorUsed() throws IOException {
+        TimeTable computed = randomTimeTable(9, STATIONS, 300);
+        TimeTable current = randomTimeTable(11, STATIONS, 300);
+        Path directory = Files.createTempDirectory("patterns");
+        TransferPatterns.compute(new Router(computed), DATE, DESTINATIONS, directory);
+        assertEquals(TransferPatterns.Fingerprint.of(computed.connectionsFor(DATE)),
+                TransferPatterns.read(directory, 0, STATIONS).orElseThrow().fingerprint());
+
+        // Même jour et même nombre de gares, mais d'autres liaisons
+        TransferPatternRouter router = new TransferPatternRouter(current, directory);
+        assertFalse(router.covers(DATE, 0));
+        assertEquals(3, TransferPatterns.compute(new Router(current), DATE, DESTINATIONS,
+                directory));
+        assertEquals(TransferPatterns.Fingerprint.of(current.connectionsFor(DATE)),
+                TransferPatterns.read(directory, 0, STATIONS).orElseThrow().fingerprint());
+        assertTrue(new TransferPatternRouter(current, directory).covers(DATE, 0));
+    }
+
+    @Test
+    void uncoveredQueriesFallBackToRaptorRouter() throws IOException {
+        TimeTable timeTable = randomTimeTable(10, STATIONS, 300);
+        Path directory = Files.createTempDirectory("patterns");
+        TransferPatterns.compute(new Router(timeTable), DATE, new int[]{5}, directory);
+
+        TransferPatternRouter router = new TransferPatternRouter(timeTable, directory);
+        RaptorRouter raptor = new RaptorRouter(timeTable);
+        assertTrue(router.covers(DATE, 5));
+        assertFalse(router.covers(DATE, 6));
+        assertFalse(router.covers(DATE.plusDays(1), 5));
+        for (int depStationId = 0; depStationId < STATIONS; depStationId += 7) {
+            assertEquals(summary(raptor.journeys(DATE, depStationId, 6, 480)),
+                    summary(router.journeys(DATE, depStationId, 6, 480)));
+        }
+
+        // Les motifs calculés après une requête non couverte sont pris en compte
+        TransferPatterns.compute(new Router(timeTable), DATE, new int[]{6}, directory);
+        assertTrue(router.covers(DATE, 6));
+        assertEquals(summary(raptor.journeys(DATE, 0, 6, 480)),
+                summary(router.journeys(DATE, 0, 6, 480)));
+    }
+}
@@ -0,0 +1,155 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.*;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MyTravelTimeMatrixTest {
+    private static final LocalDate DATE = LocalDate.of(2025, Month.MARCH, 18);
+
+    private static long tuple(int depMins, int arrMins, int changes) {
+        return PackedCriteria.withDepMins(PackedCriteria.pack(arrMins, changes, 0), depMins);
+    }
+
+    private static Profile sampleProfile() {
+        ParetoFront front = new ParetoFront.Builder()
+                .add(tuple(480, 500, 0))
+                .add(tuple(470, 495, 1))
+                .build();
+        return new Profile(new FakeTimeTable(), DATE, 0,
+                List.of(ParetoFront.EMPTY, ParetoFront.EMPTY, front, ParetoFront.EMPTY));
+    }
+
+    @Test
+    void arrivalTimesUsesOnlyTuplesDepartingAfterDepMins() {
+        int[] arrivals = TravelTimeMatrix.arrivalTimes(sampleProfile(), 475);
+        assertArrayEquals(new int[]{475, 480, 500, TravelTimeMatrix.UNREACHABLE}, arrivals);
+    }
+
+    @Test
+    void arrivalTimesKeepsEarliestArrival() {
+        int[] arrivals = TravelTimeMatrix.arrivalTimes(sampleProfile(), 460);
+        assertEquals(495, arrivals[2]);
+    }
+
+    @Test
+    void minDurationsKeepsShortestJourney() {
+        int[] durations = TravelTimeMatrix.minDurations(sampleProfile(), 460);
+        assertArrayEquals(new int[]{0, 5, 20, TravelTimeMatrix.UNREACHABLE}, durations);
+    }
+
+    @Test
+    void geoJsonContainsOnlyReachableStations() {
+        int[] minutes = {0, 5, TravelTimeMatrix.UNREACHABLE, TravelTimeMatrix.UNREACHABLE};
+        String json = TravelTimeGeoJsonConverter.toGeoJson(new FakeTimeTable().stations(),
+                minutes);
+        assertEquals("{\"type\":\"FeatureCollection\",\"features\":["
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\","
+                + "\"coordinates\":[6.0,46.0]},\"properties\":{\"name\":\"station0\","
+                + "\"minutes\":0.0}},"
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\","
+                + "\"coordinates\":[7.0,47.0]},\"properties\":{\"name\":\"station1\","
+                + "\"minutes\":5.0}}]}", json);
+    }
+
+    @Test
+    void geoJsonRejectsWrongNumberOfValues() {
+        assertThrows(IllegalArgumentException.class, () ->
+                TravelTimeGeoJsonConverter.toGeoJson(new FakeTimeTable().stations(),
+                        new int[2]));
+    }
+
+    private static final class FakeTimeTable implements TimeTable {
+        private static final int STATIONS_SIZE = 4;
+
+        @Override
+        public Stations stations() {
+            return new Stations() {
+                @Override
+                public String name(int id) {
+                    return "station" + id;
+                }
+
+                @Override
+                public double longitude(int id) {
+                    return 6 + id;
+                }
+
+                @Override
+                public double latitude(int id) {
+                    return 46 + id;
+                }
+
+                @Override
+                public int size() {
+                    return STATIONS_SIZE;
+                }
+            };
+        }
+
+        @Override
+        public Transfers transfers() {
+            return new Transfers() {
+                @Override
+                public int depStationId(int id) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                @Override
+                public int minutes(int id) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                @Override
+                public int arrivingAt(int stationId) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                @Override
+                public int minutesBetween(int depStationId, int arrStationId) {
+                    // Seul changement : de la gare 1 vers la gare 0, en 5 minutes
+                    if (depStationId == 1 && arrStationId == 0) {
+                        return 5;
+                    }
+                    throw new NoSuchElementException();
+                }
+
+                @Override
+                public int size() {
+                    return 1;
+                }
+            };
+        }
+
+        @Override
+        public StationAliases stationAliases() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Platforms platforms() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Routes routes() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Trips tripsFor(LocalDate date) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Connections connectionsFor(LocalDate date) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
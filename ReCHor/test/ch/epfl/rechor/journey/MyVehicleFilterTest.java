@@ -0,0 +1,66 @@
+package ch.epfl.rechor.journey;
+
+import ch.epfl.rechor.timetable.TimeTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.DATE;
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.arrayTimeTable;
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.assertSameProfile;
+import static ch.epfl.rechor.journey.MyIncrementalProfileTest.randomConnections;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyVehicleFilterTest {
+
+    private static final int STATIONS = 50;
+    private static final int TRIPS = 500;
+
+    // Tuples de la frontière de la gare donnée, sans leur charge utile
+    private static List<Long> tuplesWithoutPayload(Profile profile, int stationId) {
+        List<Long> tuples = new ArrayList<>();
+        profile.forStation(stationId).forEach(t -> tuples.add(PackedCriteria.withPayload(t, 0)));
+        return tuples;
+    }
+
+    @Test
+    void filteredProfileEqualsProfileOfAllowedTripsOnly() {
+        List<int[]> connections = randomConnections(4, STATIONS, TRIPS);
+        TimeTable timeTable = arrayTimeTable(STATIONS, TRIPS, connections);
+        Set<Vehicle> vehicles = EnumSet.of(Vehicle.TRAIN, Vehicle.BUS, Vehicle.TRAM);
+
+        // Horaire ne contenant que les courses dont le véhicule est autorisé
+        List<int[]> allowed = connections.stream()
+                .filter(c -> vehicles.contains(timeTable.routes().vehicle(c[4])))
+                .toList();
+        assertTrue(allowed.size() < connections.size());
+        TimeTable allowedTimeTable = arrayTimeTable(STATIONS, TRIPS, allowed);
+
+        for (int destination : new int[]{0, 17, 42}) {
+            Profile filtered = new Router(timeTable).profile(DATE, destination, vehicles);
+            Profile expected = new Router(allowedTimeTable).profile(DATE, destination);
+            for (int stationId = 0; stationId < STATIONS; stationId++) {
+                assertEquals(tuplesWithoutPayload(expected, stationId),
+                        tuplesWithoutPayload(filtered, stationId));
+            }
+        }
+    }
+
+    @Test
+    void filterWithAllVehiclesEqualsFullProfile() {
+        TimeTable timeTable =
+                arrayTimeTable(STATIONS, TRIPS, randomConnections(5, STATIONS, TRIPS));
+        Router router = new Router(timeTable);
+        assertSameProfile(router.profile(DATE, 3),
+                router.profile(DATE, 3, EnumSet.allOf(Vehicle.class)));
+
+        Profile none = router.profile(DATE, 3, Set.of());
+        for (int stationId = 0; stationId < STATIONS; stationId++) {
+            assertEquals(0, none.forStation(stationId).size());
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package ch.epfl.rechor.timetable;
+
+import ch.epfl.rechor.timetable.MyOvernightTimeTableTest.ArrayConnections;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static ch.epfl.rechor.timetable.MyOvernightTimeTableTest.DATE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyDelayedConnectionsTest {
+
+    // depMins, arrMins, tripId, tripPos, nextConnectionId (les arrêts valent l'index)
+    private static final int[][] CONNECTIONS = {
+            {600, 610, 0, 2, 5},
+            {500, 520, 1, 1, 4},
+            {450, 460, 2, 0, 2},
+            {400, 410, 0, 1, 0},
+            {300, 320, 1, 0, 1},
+            {200, 210, 0, 0, 3},
+    };
+
+    private static int[] stopIds(Connections connections) {
+        int[] stopIds = new int[connections.size()];
+        for (int id = 0; id < stopIds.length; id++) {
+            stopIds[id] = connections.depStopId(id);
+        }
+        return stopIds;
+    }
+
+    @Test
+    void delayedConnectionsAreMovedToTheirNewPosition() {
+        DelayedConnections connections = new DelayedConnections(new ArrayConnections(CONNECTIONS))
+                .withUpdates(List.of(
+                        DelayedConnections.Update.delay(2, 200, 200),
+                        DelayedConnections.Update.delay(4, 100, 100)));
+        assertEquals(6, connections.size());
+        // À heure de départ égale, les liaisons sont rangées par heure d'arrivée décroissante
+        assertEquals(List.of(2, 1, 0, 4, 3, 5), boxed(stopIds(connections)));
+
+        // La liaison 1 suit la liaison 4 dans sa course, dont elle hérite du retard
+        int[] depMins = {650, 600, 600, 400, 400, 200};
+        for (int id = 0; id < depMins.length; id++) {
+            assertEquals(depMins[id], connections.depMins(id));
+        }
+        assertEquals(620, connections.arrMins(1));
+        assertEquals(420, connections.arrMins(3));
+        assertEquals(1, connections.tripId(3));
+        assertEquals(0, connections.tripPos(3));
+
+        assertEquals(0, connections.nextConnectionId(0));
+        assertEquals(1, connections.nextConnectionId(3));
+        assertEquals(3, connections.nextConnectionId(1));
+        assertEquals(4, connections.nextConnectionId(5));
+        assertEquals(2, connections.nextConnectionId(4));
+        assertEquals(5, connections.nextConnectionId(2));
+    }
+
+    @Test
+    void sameMinuteConnectionsOfATripStayInDescendingPosition() {
+        // Course 0 : saut de durée nulle (10h00 → 10h00) suivi d'une liaison partant à 10h00 ;
+        // course 1 : liaison partant aussi à 10h00
+        int[][] data = {
+                {600, 610, 0, 1, 2},
+                {600, 605, 1, 0, 1},
+                {600, 600, 0, 0, 0},
+        };
+        DelayedConnections original = new DelayedConnections(new ArrayConnections(data));
+
+        // Retard à l'arrivée seulement : la liaison en position 1 doit rester avant la
+        // précédente de sa course
+        DelayedConnections arrivalOnly =
+                original.withUpdates(List.of(DelayedConnections.Update.delay(0, 0, 5)));
+        assertEquals(List.of(0, 1, 2), boxed(stopIds(arrivalOnly)));
+        assertEquals(615, arrivalOnly.arrMins(0));
+        // Avance à l'arrivée qui en fait un second saut de durée nulle, toujours parcouru avant
+        // le premier
+        DelayedConnections hop =
+                original.withUpdates(List.of(DelayedConnections.Update.delay(0, 0, -10)));
+        assertEquals(List.of(1, 0, 2), boxed(stopIds(hop)));
+        for (Connections connections : List.of(arrivalOnly, hop)) {
+            for (int id = 1; id < connections.size(); id++) {
+                if (connections.tripId(id - 1) == connections.tripId(id)
+                        && connections.depMins(id - 1) == connections.depMins(id)) {
+                    assertTrue(connections.tripPos(id - 1) > connections.tripPos(id));
+                }
+            }
+        }
+    }
+
+    @Test
+    void cancellationRemovesRestOfTripAndCanBeUndone() {
+        DelayedConnections original = new DelayedConnections(new ArrayConnections(CONNECTIONS));
+        DelayedConnections cancelled =
+                original.withUpdates(List.of(DelayedConnections.Update.cancel(3)));
+        assertEquals(List.of(1, 2, 4, 5), boxed(stopIds(cancelled)));
+        assertEquals(3, cancelled.nextConnectionId(3));
+        assertEquals(2, cancelled.nextConnectionId(0));
+        assertEquals(0, cancelled.nextConnectionId(2));
+
+        DelayedConnections restored =
+                cancelled.withUpdates(List.of(DelayedConnections.Update.delay(3, 0, 0)));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), boxed(stopIds(restored)));
+        assertEquals(1, restored.updateCount());
+
+        // Les vues précédentes ne sont pas modifiées
+        assertEquals(6, original.size());
+        assertEquals(4, cancelled.size());
+    }
+
+    @Test
+    void delaysPropagateAlongTheTripUntilTheNextUpdate() {
+        DelayedConnections original = new DelayedConnections(new ArrayConnections(CONNECTIONS));
+        // Course 0 : liaisons 5, 3 et 0
+        DelayedConnections delayed =
+                original.withUpdates(List.of(DelayedConnections.Update.delay(5, 10, 30)));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), boxed(stopIds(delayed)));
+        int[] depMins = {630, 500, 450, 430, 300, 210};
+        int[] arrMins = {640, 520, 460, 440, 320, 240};
+        for (int id = 0; id < depMins.length; id++) {
+            assertEquals(depMins[id], delayed.depMins(id));
+            assertEquals(arrMins[id], delayed.arrMins(id));
+        }
+        assertEquals(3, delayed.nextConnectionId(5));
+        assertEquals(0, delayed.nextConnectionId(3));
+        assertEquals(5, delayed.nextConnectionId(0));
+
+        // Une mise à jour d'une liaison suivante remplace le retard propagé jusque-là
+        DelayedConnections replaced =
+                delayed.withUpdates(List.of(DelayedConnections.Update.delay(3, 0, 5)));
+        assertEquals(List.of(605, 500, 450, 400, 300, 210), boxed(depMins(replaced)));
+        assertEquals(615, replaced.arrMins(0));
+        assertEquals(415, replaced.arrMins(3));
+
+        // Une liaison ne peut pas partir avant l'arrivée de la précédente de sa course
+        assertThrows(IllegalArgumentException.class, () -> original.withUpdates(List.of(
+                DelayedConnections.Update.delay(5, 0, 250),
+                DelayedConnections.Update.delay(3, 0, 0))));
+        assertThrows(IllegalArgumentException.class, () -> original.withUpdates(List.of(
+                DelayedConnections.Update.delay(3, -250, -190))));
+        DelayedConnections late =
+                original.withUpdates(List.of(DelayedConnections.Update.delay(5, 0, 250)));
+        assertEquals(List.of(0, 3, 1, 2, 4, 5), boxed(stopIds(late)));
+        assertEquals(List.of(850, 650, 500, 450, 300, 200), boxed(depMins(late)));
+    }
+
+    @Test
+    void delayedConnectionsCheckUpdates() {
+        DelayedConnections connections = new DelayedConnections(new ArrayConnections(CONNECTIONS));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> connections.withUpdates(List.of(DelayedConnections.Update.cancel(6))));
+        assertThrows(IllegalArgumentException.class,
+                () -> connections.withUpdates(List.of(DelayedConnections.Update.delay(0, 20, 0))));
+        assertThrows(IllegalArgumentException.class,
+                () -> new DelayedConnections.Update(0, 1, 1, true));
+        assertThrows(IndexOutOfBoundsException.class, () -> connections.depMins(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> connections.depMins(6));
+    }
+
+    @Test
+    void randomUpdatesKeepConnectionsSorted() {
+        Random random = new Random(2025);
+        int size = 500;
+        // Courses de deux liaisons consécutives
+        int[][] data = new int[size][];
+        for (int id = 0; id < size; id++) {
+            int depMins = (size - id) * 2;
+            boolean first = id % 2 == 1;
+            data[id] = new int[]{depMins, depMins + 1, id / 2, first ? 0 : 1, first ? id - 1 : id + 1};
+        }
+        Connections underlying = new ArrayConnections(data);
+
+        List<DelayedConnections.Update> updates = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            int id = random.nextInt(size);
+            updates.add(random.nextInt(5) == 0
+                    ? DelayedConnections.Update.cancel(id)
+                    : DelayedConnections.Update.delay(id, random.nextInt(300), 300));
+        }
+        DelayedConnections connections = new DelayedConnections(underlying).withUpdates(updates);
+
+        List<Integer> actual = boxed(stopIds(connections));
+        assertEquals(actual.stream().distinct().count(), actual.size());
+        assertTrue(actual.size() < size);
+        for (int id = 1; id < connections.size(); id++) {
+            assertTrue(connections.depMins(id - 1) >= connections.depMins(id));
+        }
+        for (int id = 0; id < connections.size(); id++) {
+            int next = connections.nextConnectionId(id);
+            assertEquals(connections.tripId(id), connections.tripId(next));
+            assertTrue(next == id
+                    || data[connections.depStopId(id)][4] == connections.depStopId(next));
+        }
+    }
+
+    @Test
+    void realTimeTimeTableAppliesFeedToLaterQueries() throws IOException {
+        TimeTable timeTable = MyOvernightTimeTableTest.timeTable();
+        RealTimeTimeTable realTime = new RealTimeTimeTable(timeTable);
+        Connections before = realTime.connectionsFor(DATE);
+        Object keyBefore = realTime.dayKey(DATE);
+
+        realTime.applyFeed(new StringReader("""
+                # retards
+                %s 1 200 200
+
+                %s 0 cancelled
+                """.formatted(DATE, DATE)));
+        Connections after = realTime.connectionsFor(DATE);
+        assertEquals(1, after.size());
+        assertEquals(2, before.size());
+        assertNotEquals(keyBefore, realTime.dayKey(DATE));
+        assertSame(timeTable.connectionsFor(DATE.plusDays(1)).getClass(),
+                realTime.connectionsFor(DATE.plusDays(1)).getClass());
+
+        realTime.applyFeed(new StringReader(DATE + " 0 200 200\n"));
+        Connections restored = realTime.connectionsFor(DATE);
+        assertEquals(List.of(0, 1), boxed(stopIds(restored)));
+        assertEquals(1700, restored.depMins(0));
+        assertEquals(1580, restored.depMins(1));
+
+        // Rétablir l'horaire de la liaison 0 seule la ferait partir avant son arrivée à l'arrêt
+        assertThrows(IllegalArgumentException.class,
+                () -> realTime.applyFeed(new StringReader(DATE + " 0 0 0\n")));
+        assertEquals(1700, realTime.connectionsFor(DATE).depMins(0));
+
+        assertThrows(IOException.class,
+                () -> realTime.applyFeed(new StringReader(DATE + " 0 late\n")));
+        assertThrows(IOException.class,
+                () -> realTime.applyFeed(new StringReader("tomorrow 0 1 1\n")));
+    }
+
+    @Test
+    void realTimeTimeTableSeesUpdatesAboveACache() {
+        // Les mises à jour au-dessus du cache
+        RealTimeTimeTable realTime = new RealTimeTimeTable(
+                new CachedTimeTable(MyOvernightTimeTableTest.timeTable()));
+        assertEquals(1500, realTime.connectionsFor(DATE).depMins(0));
+        Object keyBefore = realTime.dayKey(DATE);
+
+        realTime.update(DATE, List.of(DelayedConnections.Update.delay(1, 200, 200)));
+        assertEquals(1700, realTime.connectionsFor(DATE).depMins(0));
+        assertEquals(1580, realTime.connectionsFor(DATE).depMins(1));
+        assertNotEquals(keyBefore, realTime.dayKey(DATE));
+        assertEquals(1, realTime.tripsFor(DATE).size());
+    }
+
+    @Test
+    void updateOfANextDayIsVisibleFromBothOvernightViews() {
+        // Ordre d'imbrication de l'application : la nuit au-dessus des mises à jour
+        RealTimeTimeTable realTime = new RealTimeTimeTable(
+                new CachedTimeTable(MyOvernightTimeTableTest.timeTable()));
+        TimeTable timeTable = new OvernightTimeTable(realTime);
+        LocalDate nextDay = DATE.plusDays(1);
+        Object keyToday = timeTable.dayKey(DATE);
+        Object keyNextDay = timeTable.dayKey(nextDay);
+
+        // L'identité 1 est celle de la liaison 300 → 310 dans l'horaire du lendemain
+        realTime.update(nextDay, List.of(DelayedConnections.Update.delay(1, 10, 10)));
+
+        assertTrue(contains(depMins(timeTable.connectionsFor(nextDay)), 310));
+        assertFalse(contains(depMins(timeTable.connectionsFor(nextDay)), 300));
+        assertTrue(contains(depMins(timeTable.connectionsFor(DATE)), 310 + 1440));
+        assertFalse(contains(depMins(timeTable.connectionsFor(DATE)), 300 + 1440));
+        assertNotEquals(keyToday, timeTable.dayKey(DATE));
+        assertNotEquals(keyNextDay, timeTable.dayKey(nextDay));
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) if (v == value) return true;
+        return false;
+    }
+
+    private static int[] depMins(Connections connections) {
+        int[] depMins = new int[connections.size()];
+        for (int id = 0; id < depMins.length; id++) {
+            depMins[id] = connections.depMins(id);
+        }
+        return depMins;
+    }
+
+    private static List<Integer> boxed(int[] values) {
+        List<Integer> list = new ArrayList<>();
+        for (int value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
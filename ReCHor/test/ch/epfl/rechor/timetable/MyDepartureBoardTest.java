@@ -0,0 +1,105 @@
+package ch.epfl.rechor.timetable;
+
+import ch.epfl.rechor.journey.Vehicle;
+import ch.epfl.rechor.timetable.mapped.FileTimeTable;
+import ch.epfl.rechor.timetable.mapped.GtfsImporter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static ch.epfl.rechor.timetable.mapped.MyGtfsImporterTest.createFeed;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyDepartureBoardTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 3, 18);
+
+    private static TimeTable importedTimeTable() throws IOException {
+        Path destination = Files.createTempDirectory("timetable");
+        GtfsImporter.importFeed(createFeed(), destination, DATE, DATE, Runnable::run);
+        return FileTimeTable.in(destination);
+    }
+
+    @Test
+    void departuresGiveRouteDestinationVehicleAndPlatform() throws IOException {
+        TimeTable timeTable = importedTimeTable();
+        DepartureBoard board = new DepartureBoard(timeTable);
+
+        // Lausanne (gare 0) et son quai 1 (arrêt 3)
+        List<DepartureBoard.Departure> lausanne = board.departures(DATE, 0, 7 * 60, 10);
+        assertEquals(2, lausanne.size());
+        DepartureBoard.Departure first = lausanne.getFirst();
+        assertEquals(DATE.atTime(8, 0), first.depTime());
+        assertEquals("IC 1", first.routeName());
+        assertEquals("Genève", first.destination());
+        assertEquals(Vehicle.TRAIN, first.vehicle());
+        assertEquals("1", first.platformName());
+        // Course partant après minuit, le jour suivant
+        assertEquals(DATE.plusDays(1).atTime(1, 10), lausanne.get(1).depTime());
+        assertEquals(lausanne, board.departures(DATE, 3, 7 * 60, 10));
+
+        assertEquals(List.of(first), board.departures(DATE, 0, 8 * 60, 1));
+        assertEquals(1, board.departures(DATE, 0, 8 * 60 + 1, 10).size());
+        assertTrue(board.departures(DATE, 0, 7 * 60, 0).isEmpty());
+
+        // Renens VD (gare 1), sans quai
+        List<DepartureBoard.Departure> renens = board.departures(DATE, 1, 0, 10);
+        assertEquals(1, renens.size());
+        assertEquals(DATE.atTime(8, 11), renens.getFirst().depTime());
+        assertNull(renens.getFirst().platformName());
+    }
+
+    @Test
+    void departuresFollowRealTimeUpdates() throws IOException {
+        RealTimeTimeTable timeTable = new RealTimeTimeTable(importedTimeTable());
+        DepartureBoard board = new DepartureBoard(timeTable);
+        DepartureBoard.Departure first = board.departures(DATE, 0, 7 * 60, 1).getFirst();
+        assertEquals(DATE.atTime(8, 0), first.depTime());
+
+        // Le retard change la clé du jour, et donc l'index
+        timeTable.update(DATE,
+                List.of(DelayedConnections.Update.delay(first.connectionId(), 5, 5)));
+        assertEquals(DATE.atTime(8, 5), board.departures(DATE, 0, 7 * 60, 1).getFirst().depTime());
+        // Le retard se propage au départ suivant de la course, à Renens VD
+        assertEquals(DATE.atTime(8, 16), board.departures(DATE, 1, 0, 1).getFirst().depTime());
+    }
+
+    @Test
+    void departuresMatchScanOfAllConnections() throws IOException {
+        TimeTable timeTable = importedTimeTable();
+        DepartureBoard board = new DepartureBoard(timeTable);
+        Connections connections = timeTable.connectionsFor(DATE);
+        int stops = timeTable.stations().size() + timeTable.platforms().size();
+        for (int stopId = 0; stopId < stops; stopId++) {
+            for (int depMins = 0; depMins < 1600; depMins += 10) {
+                int expected = 0;
+                for (int cId = 0; cId < connections.size(); cId++) {
+                    int depStopId = connections.depStopId(cId);
+                    boolean fromStop = timeTable.isStationId(stopId)
+                            ? timeTable.stationId(depStopId) == stopId
+                            : depStopId == stopId;
+                    if (fromStop && connections.depMins(cId) >= depMins) {
+                        expected += 1;
+                    }
+                }
+                List<DepartureBoard.Departure> departures =
+                        board.departures(DATE, stopId, depMins, 100);
+                assertEquals(expected, departures.size());
+                for (int i = 1; i < departures.size(); i++) {
+                    assertTrue(!departures.get(i).depTime()
+                            .isBefore(departures.get(i - 1).depTime()));
+                }
+            }
+        }
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> board.departures(DATE, stops, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> board.departures(DATE, 0, 0, -1));
+    }
+}
@@ -0,0 +1,216 @@
+package ch.epfl.rechor.timetable;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MyOvernightTimeTableTest {
+
+    static final LocalDate DATE = LocalDate.of(2025, 3, 18);
+
+    // depMins, arrMins, tripId, tripPos, nextConnectionId (les arrêts valent l'index)
+    private static final int[][] TODAY = {
+            {1500, 1510, 0, 1, 1},
+            {1380, 1390, 0, 0, 0},
+    };
+    private static final int[][] NEXT_DAY = {
+            {700, 710, 1, 2, 3},
+            {300, 310, 1, 1, 0},
+            {100, 110, 0, 0, 2},
+            {80, 90, 1, 0, 1},
+            {30, 40, 2, 0, 4},
+    };
+
+    record ArrayConnections(int[][] data) implements Connections {
+        @Override
+        public int size() {
+            return data.length;
+        }
+
+        @Override
+        public int depStopId(int id) {
+            return id;
+        }
+
+        @Override
+        public int depMins(int id) {
+            return data[id][0];
+        }
+
+        @Override
+        public int arrStopId(int id) {
+            return id;
+        }
+
+        @Override
+        public int arrMins(int id) {
+            return data[id][1];
+        }
+
+        @Override
+        public int tripId(int id) {
+            return data[id][2];
+        }
+
+        @Override
+        public int tripPos(int id) {
+            return data[id][3];
+        }
+
+        @Override
+        public int nextConnectionId(int id) {
+            return data[id][4];
+        }
+    }
+
+    record ArrayTrips(String... destinations) implements Trips {
+        @Override
+        public int size() {
+            return destinations.length;
+        }
+
+        @Override
+        public int routeId(int id) {
+            return id;
+        }
+
+        @Override
+        public String destination(int id) {
+            return destinations[id];
+        }
+    }
+
+    // Horaire dont seuls les jours DATE et DATE + 1 existent
+    static TimeTable timeTable() {
+        return new TimeTable() {
+            @Override
+            public Stations stations() {
+                return null;
+            }
+
+            @Override
+            public StationAliases stationAliases() {
+                return null;
+            }
+
+            @Override
+            public Platforms platforms() {
+                return null;
+            }
+
+            @Override
+            public Routes routes() {
+                return null;
+            }
+
+            @Override
+            public Transfers transfers() {
+                return null;
+            }
+
+            @Override
+            public Trips tripsFor(LocalDate date) {
+                if (date.equals(DATE)) {
+                    return new ArrayTrips("A");
+                }
+                if (date.equals(DATE.plusDays(1))) {
+                    return new ArrayTrips("B", "C", "D");
+                }
+                throw new UncheckedIOException(new NoSuchFileException(date.toString()));
+            }
+
+            @Override
+            public Connections connectionsFor(LocalDate date) {
+                if (date.equals(DATE)) {
+                    return new ArrayConnections(TODAY);
+                }
+                if (date.equals(DATE.plusDays(1))) {
+                    return new ArrayConnections(NEXT_DAY);
+                }
+                throw new UncheckedIOException(new NoSuchFileException(date.toString()));
+            }
+        };
+    }
+
+    @Test
+    void overnightConnectionsPrependNextDayMorning() {
+        OvernightConnections connections = new OvernightConnections(
+                new ArrayConnections(TODAY), new ArrayConnections(NEXT_DAY), 1, 540);
+        assertEquals(3, connections.nextDaySize());
+        assertEquals(5, connections.size());
+
+        int[] depMins = {1740, 1540, 1520, 1500, 1380};
+        int[] arrMins = {1750, 1550, 1530, 1510, 1390};
+        int[] tripIds = {2, 1, 2, 0, 0};
+        int[] stopIds = {1, 2, 3, 0, 1};
+        for (int id = 0; id < depMins.length; id++) {
+            assertEquals(depMins[id], connections.depMins(id));
+            assertEquals(arrMins[id], connections.arrMins(id));
+            assertEquals(tripIds[id], connections.tripId(id));
+            assertEquals(stopIds[id], connections.depStopId(id));
+            assertEquals(stopIds[id], connections.arrStopId(id));
+        }
+        assertEquals(1, connections.tripPos(0));
+        assertEquals(1, connections.tripPos(3));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> connections.depMins(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> connections.depMins(5));
+        assertEquals(Integer.MAX_VALUE, connections.lastArrMinsAt(0));
+    }
+
+    @Test
+    void overnightConnectionsSkipConnectionsOfShortenedTrips() {
+        OvernightConnections connections = new OvernightConnections(
+                new ArrayConnections(TODAY), new ArrayConnections(NEXT_DAY), 1, 540);
+        // La liaison de 07h00 de la course 1 n'est pas retenue
+        assertEquals(2, connections.nextConnectionId(0));
+        assertEquals(0, connections.nextConnectionId(2));
+        assertEquals(1, connections.nextConnectionId(1));
+        assertEquals(4, connections.nextConnectionId(3));
+        assertEquals(3, connections.nextConnectionId(4));
+    }
+
+    @Test
+    void overnightConnectionsCheckArguments() {
+        Connections today = new ArrayConnections(TODAY);
+        Connections nextDay = new ArrayConnections(NEXT_DAY);
+        assertThrows(IllegalArgumentException.class,
+                () -> new OvernightConnections(today, nextDay, -1, 540));
+        assertThrows(IllegalArgumentException.class,
+                () -> new OvernightConnections(today, nextDay, 1, 1441));
+        assertEquals(2, new OvernightConnections(today, nextDay, 1, 0).size());
+    }
+
+    @Test
+    void overnightTripsFollowTodayTrips() {
+        OvernightTrips trips = new OvernightTrips(new ArrayTrips("A"), new ArrayTrips("B", "C"));
+        assertEquals(3, trips.size());
+        assertEquals(2, trips.nextDayTripId(1));
+        assertEquals("A", trips.destination(0));
+        assertEquals("C", trips.destination(2));
+        assertEquals(1, trips.routeId(2));
+    }
+
+    @Test
+    void overnightTimeTableCombinesConsecutiveDays() {
+        TimeTable underlying = timeTable();
+        TimeTable timeTable = new OvernightTimeTable(underlying, 540);
+        assertEquals(4, timeTable.tripsFor(DATE).size());
+        assertEquals("C", timeTable.tripsFor(DATE).destination(timeTable.connectionsFor(DATE)
+                .tripId(0)));
+        assertEquals(5, timeTable.connectionsFor(DATE).size());
+        assertNotEquals(timeTable.dayKey(DATE), timeTable.dayKey(DATE.plusDays(1)));
+
+        // Le lendemain du dernier jour est absent : ses données sont utilisées seules
+        assertEquals(5, timeTable.connectionsFor(DATE.plusDays(1)).size());
+        assertEquals(3, timeTable.tripsFor(DATE.plusDays(1)).size());
+        assertSame(underlying.stations(), timeTable.stations());
+    }
+}
@@ -0,0 +1,128 @@
+package ch.epfl.rechor.timetable;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MyStationGridTest {
+
+    // Gares de coordonnées données, sous la forme {longitude, latitude}
+    record ArrayStations(double[][] coordinates) implements Stations {
+        @Override
+        public int size() {
+            return coordinates.length;
+        }
+
+        @Override
+        public String name(int id) {
+            return "S" + id;
+        }
+
+        @Override
+        public double longitude(int id) {
+            return coordinates[id][0];
+        }
+
+        @Override
+        public double latitude(int id) {
+            return coordinates[id][1];
+        }
+    }
+
+    // Gares aléatoires réparties sur la Suisse
+    static ArrayStations randomStations(long seed, int count) {
+        Random random = new Random(seed);
+        double[][] coordinates = new double[count][];
+        for (int i = 0; i < count; i++) {
+            coordinates[i] = new double[]{
+                    5.9 + 4.6 * random.nextDouble(), 45.8 + 2 * random.nextDouble()};
+        }
+        return new ArrayStations(coordinates);
+    }
+
+    private static int[] bruteForce(Stations stations, double lon, double lat, int k,
+                                    double radius) {
+        return IntStream.range(0, stations.size())
+                .boxed()
+                .filter(i -> StationGrid.distance(stations.longitude(i), stations.latitude(i),
+                        lon, lat) <= radius)
+                .sorted(Comparator.comparingDouble((Integer i) -> StationGrid.distance(
+                        stations.longitude(i), stations.latitude(i), lon, lat)))
+                .limit(k)
+                .mapToInt(i -> i)
+                .toArray();
+    }
+
+    // Compare les distances, les gares à égale distance pouvant être ordonnées différemment
+    private static void assertSameDistances(Stations stations, double lon, double lat,
+                                            int[] expected, int[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(StationGrid.distance(stations.longitude(expected[i]),
+                            stations.latitude(expected[i]), lon, lat),
+                    StationGrid.distance(stations.longitude(actual[i]),
+                            stations.latitude(actual[i]), lon, lat), 0.2);
+        }
+    }
+
+    @Test
+    void distanceMatchesKnownValues() {
+        // Lausanne – Genève, environ 51 km à vol d'oiseau
+        assertEquals(51_000, StationGrid.distance(6.6291, 46.5167, 6.1423, 46.2102), 1_000);
+        assertEquals(0.0, StationGrid.distance(7, 46, 7, 46));
+        assertEquals(Math.PI * StationGrid.EARTH_RADIUS, StationGrid.distance(0, 0, 180, 0), 1);
+    }
+
+    @Test
+    void queriesMatchBruteForceForAllCellSizes() {
+        ArrayStations stations = randomStations(2025, 2_000);
+        Random random = new Random(1);
+        for (StationGrid grid : new StationGrid[]{StationGrid.of(stations),
+                StationGrid.of(stations, 500), StationGrid.of(stations, 50_000)}) {
+            assertEquals(stations.size(), grid.size());
+            for (int q = 0; q < 200; q++) {
+                // Positions en Suisse, mais aussi légèrement à l'extérieur
+                double lon = 5.5 + 5.5 * random.nextDouble();
+                double lat = 45.5 + 2.5 * random.nextDouble();
+                double radius = 20_000 * random.nextDouble();
+                int k = 1 + random.nextInt(20);
+
+                assertSameDistances(stations, lon, lat,
+                        bruteForce(stations, lon, lat, Integer.MAX_VALUE, radius),
+                        grid.withinRadius(lon, lat, radius));
+                assertSameDistances(stations, lon, lat,
+                        bruteForce(stations, lon, lat, k, Double.POSITIVE_INFINITY),
+                        grid.nearest(lon, lat, k));
+            }
+        }
+    }
+
+    @Test
+    void queriesHandleEdgeCases() {
+        StationGrid empty = StationGrid.of(new ArrayStations(new double[0][]));
+        assertArrayEquals(new int[0], empty.nearest(7, 46, 3));
+        assertArrayEquals(new int[0], empty.withinRadius(7, 46, 1_000));
+
+        ArrayStations stations = randomStations(3, 10);
+        StationGrid grid = StationGrid.of(stations);
+        // Position très éloignée : toutes les gares sont retournées, dans l'ordre des distances
+        int[] all = grid.nearest(-74, 40.7, 100);
+        assertEquals(10, all.length);
+        assertSameDistances(stations, -74, 40.7,
+                bruteForce(stations, -74, 40.7, 100, Double.POSITIVE_INFINITY), all);
+        assertEquals(10, Arrays.stream(all).distinct().count());
+        assertArrayEquals(new int[0], grid.nearest(7, 46, 0));
+
+        assertThrows(IllegalArgumentException.class, () -> grid.nearest(7, 46, -1));
+        assertThrows(IllegalArgumentException.class, () -> grid.withinRadius(7, 46, -1));
+        assertThrows(IllegalArgumentException.class, () -> StationGrid.of(stations, 0));
+        assertThrows(IllegalArgumentException.class, () -> StationGrid.of(stations, 1e-3));
+    }
+}
@@ -0,0 +1,80 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static ch.epfl.rechor.timetable.mapped.Structure.FieldType.*;
+import static ch.epfl.rechor.timetable.mapped.Structure.field;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MyColumnarStructuredBufferTest {
+
+    private static final Structure STRUCTURE = new Structure(
+            field(0, U16),
+            field(1, U8),
+            field(2, S32)
+    );
+
+    private static StructuredBuffer randomData(int elementCount) {
+        byte[] bytes = new byte[elementCount * STRUCTURE.totalSize()];
+        new Random(32).nextBytes(bytes);
+        return new StructuredBuffer(STRUCTURE, ByteBuffer.wrap(bytes));
+    }
+
+    @Test
+    void encodedDataIsReadBackIdentically() {
+        StructuredBuffer data = randomData(53);
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            ColumnarStructuredBuffer columnar = new ColumnarStructuredBuffer(STRUCTURE,
+                    ColumnarStructuredBuffer.encode(data, order));
+            assertEquals(data.size(), columnar.size());
+            for (int i = 0; i < data.size(); i++) {
+                assertEquals(data.getU16(0, i), columnar.getU16(0, i));
+                assertEquals(data.getU8(1, i), columnar.getU8(1, i));
+                assertEquals(data.getS32(2, i), columnar.getS32(2, i));
+            }
+            for (int f = 0; f < STRUCTURE.fieldCount(); f++) {
+                assertArrayEquals(data.column(f), columnar.column(f));
+            }
+        }
+    }
+
+    @Test
+    void columnsAreAligned() {
+        ByteBuffer file = ColumnarStructuredBuffer.encode(randomData(3), ByteOrder.nativeOrder());
+        // En-tête de 12 + 3 octets arrondi à 16, puis colonnes de 6, 3 et 12 octets arrondies
+        assertEquals(16 + 8 + 8 + 16, file.capacity());
+    }
+
+    @Test
+    void emptyDataIsSupported() {
+        ColumnarStructuredBuffer columnar = new ColumnarStructuredBuffer(STRUCTURE,
+                ColumnarStructuredBuffer.encode(randomData(0), ByteOrder.LITTLE_ENDIAN));
+        assertEquals(0, columnar.size());
+        assertEquals(0, columnar.column(2).length);
+    }
+
+    @Test
+    void invalidFilesAreRejected() {
+        ByteBuffer file = ColumnarStructuredBuffer.encode(randomData(4), ByteOrder.BIG_ENDIAN);
+        Structure other = new Structure(field(0, U16), field(1, U16), field(2, S32));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ColumnarStructuredBuffer(other, file));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ColumnarStructuredBuffer(STRUCTURE, ByteBuffer.allocate(64)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ColumnarStructuredBuffer(STRUCTURE, file.slice(0, 20)));
+    }
+
+    @Test
+    void fileNameReplacesExtension() {
+        assertEquals("stations.v2", ColumnarStructuredBuffer.fileName("stations.bin"));
+        assertEquals("connections-succ.v2",
+                ColumnarStructuredBuffer.fileName("connections-succ.bin"));
+    }
+}
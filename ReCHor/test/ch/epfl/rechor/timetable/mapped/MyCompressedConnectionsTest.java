@@ -0,0 +1,102 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.Bits32_24_8;
+import ch.epfl.rechor.timetable.Connections;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static ch.epfl.rechor.timetable.mapped.MyPackedTimeTableTest.DATE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyCompressedConnectionsTest {
+
+    // Deux courses de trois liaisons, triées par heure de départ décroissante
+    private static final int[][] CONNECTIONS = {
+            // depStop, depMins, arrStop, arrMins, trip, pos, next
+            {40000, 1500, 3, 1520, 70000, 2, 4},
+            {2, 1000, 3, 1010, 1, 2, 5},
+            {1, 990, 2, 998, 1, 1, 1},
+            {4, 989, 40000, 1499, 70000, 1, 0},
+            {5, 100, 4, 980, 70000, 0, 3},
+            {0, 0, 1, 985, 1, 0, 2},
+    };
+
+    private static Connections connections() {
+        StructuredBufferWriter writer =
+                new StructuredBufferWriter(BufferedConnections.CONNECTION_STRUCTURE,
+                        CONNECTIONS.length);
+        StructuredBufferWriter succ =
+                new StructuredBufferWriter(BufferedConnections.SUCC_STRUCTURE, CONNECTIONS.length);
+        for (int i = 0; i < CONNECTIONS.length; i++) {
+            int[] c = CONNECTIONS[i];
+            writer.setU16(BufferedConnections.DEP_STOP_ID, i, c[0]);
+            writer.setU16(BufferedConnections.DEP_MINUTES, i, c[1]);
+            writer.setU16(BufferedConnections.ARR_STOP_ID, i, c[2]);
+            writer.setU16(BufferedConnections.ARR_MINUTES, i, c[3]);
+            writer.setS32(BufferedConnections.TRIP_POS_ID, i, Bits32_24_8.pack(c[4], c[5]));
+            succ.setS32(BufferedConnections.NEXT_CONNECTION_ID, i, c[6]);
+        }
+        return new BufferedConnections(writer.buffer(), succ.buffer());
+    }
+
+    private static void assertSameConnection(Connections expected, Connections actual, int id) {
+        assertEquals(expected.depStopId(id), actual.depStopId(id));
+        assertEquals(expected.depMins(id), actual.depMins(id));
+        assertEquals(expected.arrStopId(id), actual.arrStopId(id));
+        assertEquals(expected.arrMins(id), actual.arrMins(id));
+        assertEquals(expected.tripId(id), actual.tripId(id));
+        assertEquals(expected.tripPos(id), actual.tripPos(id));
+        assertEquals(expected.nextConnectionId(id), actual.nextConnectionId(id));
+    }
+
+    @Test
+    void compressedConnectionsMatchOriginalForAllBlockSizes() {
+        Connections original = connections();
+        for (int blockSize : new int[]{1, 2, 4, 64}) {
+            CompressedConnections compressed = new CompressedConnections(
+                    CompressedConnections.encode(original, blockSize), (ByteBuffer) null);
+            assertEquals(original.size(), compressed.size());
+            // Accès dans un ordre qui change de bloc à chaque liaison
+            for (int id : new int[]{5, 0, 3, 1, 4, 2}) {
+                assertSameConnection(original, compressed, id);
+            }
+            assertEquals(Integer.MAX_VALUE, compressed.lastArrMinsAt(0));
+        }
+    }
+
+    @Test
+    void compressedConnectionsAreSmallerAndCheckArguments() {
+        Connections original = connections();
+        ByteBuffer encoded = CompressedConnections.encode(original, 4);
+        assertTrue(encoded.capacity() < original.size() * (12 + 4) + 32);
+
+        CompressedConnections compressed = new CompressedConnections(encoded, (ByteBuffer) null);
+        assertThrows(IndexOutOfBoundsException.class, () -> compressed.depMins(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> compressed.depMins(6));
+        assertThrows(IllegalArgumentException.class,
+                () -> CompressedConnections.encode(original, 3));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CompressedConnections(ByteBuffer.allocate(16), (ByteBuffer) null));
+    }
+
+    @Test
+    void compressorWritesConnectionsPreferredByFileTimeTable() throws IOException {
+        Path directory = MyPackedTimeTableTest.createTimeTable();
+        Connections original = FileTimeTable.in(directory).connectionsFor(DATE);
+        ConnectionsCompressor.compress(directory, 2, true);
+
+        Path day = directory.resolve(DATE.toString());
+        assertTrue(Files.exists(day.resolve(FileTimeTable.PATH_COMPRESSED_CONNECTIONS)));
+        assertTrue(Files.notExists(day.resolve(FileTimeTable.PATH_CONNECTIONS)));
+
+        Connections compressed = FileTimeTable.in(directory).connectionsFor(DATE);
+        assertTrue(compressed instanceof CompressedConnections);
+        assertSameConnection(original, compressed, 0);
+    }
+}
@@ -0,0 +1,223 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.journey.Journey;
+import ch.epfl.rechor.journey.JourneyExtractor;
+import ch.epfl.rechor.journey.Router;
+import ch.epfl.rechor.journey.Vehicle;
+import ch.epfl.rechor.timetable.Connections;
+import ch.epfl.rechor.timetable.TimeTable;
+import ch.epfl.rechor.timetable.Trips;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static ch.epfl.rechor.timetable.mapped.MyPackedTimeTableTest.DATE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyGtfsImporterTest {
+
+    // Horaire GTFS d'une semaine, dont le mardi 18 mars 2025 fait circuler toutes les courses
+    public static Path createFeed() throws IOException {
+        Path gtfs = Files.createTempDirectory("gtfs");
+        Files.writeString(gtfs.resolve("stops.txt"), """
+                \uFEFFstop_id,stop_name,stop_lat,stop_lon,location_type,parent_station,platform_code
+                A,Lausanne,46.5167,6.6291,1,,
+                A1,Lausanne,46.5167,6.6291,0,A,1
+                B,Renens VD,46.5371,6.5786,,,
+                C,"Morges, ""gare""\",46.5107,6.4945,0,,
+                """);
+        Files.writeString(gtfs.resolve("routes.txt"), """
+                route_id,route_short_name,route_long_name,route_type
+                R1,IC 1,,2
+                R2,,Bus 701,700
+                """);
+        Files.writeString(gtfs.resolve("trips.txt"), """
+                route_id,service_id,trip_id,trip_headsign
+                R1,WD,T1,Genève
+                R2,WE,T2,
+                R1,WD,T3,Genève
+                """);
+        Files.writeString(gtfs.resolve("calendar.txt"), """
+                service_id,monday,tuesday,wednesday,thursday,friday,saturday,sunday,start_date,end_date
+                WD,1,1,1,1,1,0,0,20250317,20250323
+                WE,0,0,0,0,0,1,1,20250317,20250323
+                """);
+        Files.writeString(gtfs.resolve("calendar_dates.txt"), """
+                service_id,date,exception_type
+                WD,20250319,2
+                WE,20250318,1
+                """);
+        // Horaires de passage dans le désordre, pour que le tri externe soit nécessaire
+        Files.writeString(gtfs.resolve("stop_times.txt"), """
+                trip_id,arrival_time,departure_time,stop_id,stop_sequence
+                T3,25:30:00,25:30:00,C,2
+                T1,08:20:00,,C,3
+                T2,09:05:00,09:05:00,B,20
+
+                T1,08:10:00,08:11:00,B,2
+                T3,25:10:00,25:10:00,A1,1
+                T2,09:00:00,09:00:30,C,10
+                T1,08:00:00,08:00:00,A1,1
+                """);
+        Files.writeString(gtfs.resolve("transfers.txt"), """
+                from_stop_id,to_stop_id,transfer_type,min_transfer_time
+                A1,B,2,300
+                B,B,2,210
+                C,A,3,
+                """);
+        return gtfs;
+    }
+
+    @Test
+    void importerWritesStationsRoutesAndTransfers() throws IOException {
+        Path destination = Files.createTempDirectory("timetable");
+        GtfsImporter.importFeed(createFeed(), destination, null, null, Runnable::run, 2);
+        TimeTable timeTable = FileTimeTable.in(destination);
+
+        assertEquals(3, timeTable.stations().size());
+        assertEquals("Lausanne", timeTable.stations().name(0));
+        assertEquals("Renens VD", timeTable.stations().name(1));
+        assertEquals("Morges, \"gare\"", timeTable.stations().name(2));
+        assertEquals(46.5167, timeTable.stations().latitude(0), 1e-6);
+        assertEquals(6.6291, timeTable.stations().longitude(0), 1e-6);
+        assertEquals(0, timeTable.stationAliases().size());
+        assertEquals(1, timeTable.platforms().size());
+        assertEquals("1", timeTable.platforms().name(0));
+        assertEquals(0, timeTable.platforms().stationId(0));
+
+        assertEquals("IC 1", timeTable.routes().name(0));
+        assertEquals(Vehicle.TRAIN, timeTable.routes().vehicle(0));
+        assertEquals("Bus 701", timeTable.routes().name(1));
+        assertEquals(Vehicle.BUS, timeTable.routes().vehicle(1));
+
+        assertEquals(5, timeTable.transfers().minutesBetween(0, 1));
+        assertEquals(4, timeTable.transfers().minutesBetween(1, 1));
+        assertEquals(GtfsImporter.DEFAULT_TRANSFER_MINUTES,
+                timeTable.transfers().minutesBetween(0, 0));
+        assertThrows(Exception.class, () -> timeTable.transfers().minutesBetween(2, 0));
+
+        assertEquals(List.of(DATE.minusDays(1), DATE, DATE.plusDays(1), DATE.plusDays(2),
+                        DATE.plusDays(3), DATE.plusDays(4), DATE.plusDays(5)),
+                FileTimeTable.dates(destination));
+    }
+
+    @Test
+    void importerWritesSortedConnectionsOfActiveTrips() throws IOException {
+        Path destination = Files.createTempDirectory("timetable");
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            GtfsImporter.importFeed(createFeed(), destination, null, null, executor, 2);
+        } finally {
+            executor.shutdown();
+        }
+        TimeTable timeTable = FileTimeTable.in(destination);
+
+        Trips trips = timeTable.tripsFor(DATE);
+        assertEquals(3, trips.size());
+        assertEquals(0, trips.routeId(0));
+        assertEquals("Genève", trips.destination(0));
+        assertEquals(1, trips.routeId(1));
+        assertEquals("Renens VD", trips.destination(1));
+
+        // depStop, depMins, arrStop, arrMins, trip, pos, next
+        int[][] expected = {
+                {3, 1510, 2, 1530, 2, 0, 0},
+                {2, 540, 1, 545, 1, 0, 1},
+                {1, 491, 2, 500, 0, 1, 3},
+                {3, 480, 1, 490, 0, 0, 2},
+        };
+        Connections connections = timeTable.connectionsFor(DATE);
+        assertEquals(expected.length, connections.size());
+        for (int id = 0; id < expected.length; id++) {
+            int[] c = expected[id];
+            assertEquals(c[0], connections.depStopId(id));
+            assertEquals(c[1], connections.depMins(id));
+            assertEquals(c[2], connections.arrStopId(id));
+            assertEquals(c[3], connections.arrMins(id));
+            assertEquals(c[4], connections.tripId(id));
+            assertEquals(c[5], connections.tripPos(id));
+            assertEquals(c[6], connections.nextConnectionId(id));
+        }
+        assertEquals(1530, connections.lastArrMinsAt(2));
+
+        // Mercredi : service supprimé ; samedi : seul le service du week-end circule
+        assertEquals(0, timeTable.connectionsFor(DATE.plusDays(1)).size());
+        assertEquals(1, timeTable.connectionsFor(DATE.plusDays(4)).size());
+        assertEquals("Renens VD", timeTable.tripsFor(DATE.plusDays(4)).destination(0));
+    }
+
+    @Test
+    void importedTimeTableIsRoutableAndDatesCanBeRestricted() throws IOException {
+        Path destination = Files.createTempDirectory("timetable");
+        GtfsImporter.importFeed(createFeed(), destination, DATE, DATE, Runnable::run);
+        assertEquals(List.of(DATE), FileTimeTable.dates(destination));
+
+        TimeTable timeTable = FileTimeTable.in(destination);
+        List<Journey> journeys = JourneyExtractor.journeys(
+                new Router(timeTable).profile(DATE, 2), 0);
+        assertFalse(journeys.isEmpty());
+        // Le changement à pied de 5 minutes vers Renens VD permet de partir plus tard
+        assertEquals(491 - 5, journeys.getFirst().depTime().toLocalTime().toSecondOfDay() / 60);
+        assertThrows(IllegalArgumentException.class, () -> GtfsImporter.importFeed(
+                createFeed(), destination, DATE, DATE.minusDays(1), Runnable::run));
+    }
+
+    @Test
+    void zeroMinuteHopsAreOrderedSoThatTheDirectRideIsFound() throws IOException {
+        Path gtfs = createFeed();
+        // Course dont les liaisons partent et arrivent toutes à 8h00, une fois les secondes
+        // ignorées
+        Files.writeString(gtfs.resolve("stop_times.txt"), """
+                trip_id,arrival_time,departure_time,stop_id,stop_sequence
+                T1,08:00:00,08:00:00,A1,1
+                T1,08:00:15,08:00:20,B,2
+                T1,08:00:35,08:00:40,C,3
+                T1,08:00:50,08:00:55,B,4
+                """);
+        Path destination = Files.createTempDirectory("timetable");
+        GtfsImporter.importFeed(gtfs, destination, DATE, DATE, Runnable::run);
+        TimeTable timeTable = FileTimeTable.in(destination);
+
+        Connections connections = timeTable.connectionsFor(DATE);
+        assertEquals(3, connections.size());
+        for (int id = 0; id < connections.size(); id++) {
+            assertEquals(480, connections.depMins(id));
+            assertEquals(480, connections.arrMins(id));
+            // Position décroissante, la dernière liaison de la course étant la première
+            assertEquals(connections.size() - 1 - id, connections.tripPos(id));
+        }
+
+        // Depuis Lausanne, Morges n'est atteignable que par le trajet direct
+        List<Journey> journeys = JourneyExtractor.journeys(
+                new Router(timeTable).profile(DATE, 2), 0);
+        assertEquals(1, journeys.size());
+        Journey journey = journeys.getFirst();
+        assertEquals(1, journey.legs().stream()
+                .filter(l -> l instanceof Journey.Leg.Transport)
+                .count());
+        assertEquals(DATE.atTime(8, 0), journey.arrTime());
+    }
+
+    @Test
+    void importerRejectsUnknownStops() throws IOException {
+        Path gtfs = createFeed();
+        Files.writeString(gtfs.resolve("stop_times.txt"), """
+                trip_id,arrival_time,departure_time,stop_id,stop_sequence
+                T1,08:00:00,08:00:00,X,1
+                """);
+        Path destination = Files.createTempDirectory("timetable");
+        IOException e = assertThrows(IOException.class,
+                () -> GtfsImporter.importFeed(gtfs, destination, LocalDate.of(2025, 3, 18),
+                        LocalDate.of(2025, 3, 18), Runnable::run));
+        assertTrue(e.getMessage().contains("line 2"));
+    }
+}
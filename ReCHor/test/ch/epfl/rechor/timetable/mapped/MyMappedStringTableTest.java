@@ -0,0 +1,65 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MyMappedStringTableTest {
+
+    private static ByteBuffer bytes(String content) {
+        return ByteBuffer.wrap(content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    void mappedStringTableSplitsLinesLikeReadAllLines() throws IOException {
+        List<String> contents = List.of(
+                "",
+                "Lausanne",
+                "Lausanne\n",
+                "Lausanne\nRenens VD\n",
+                "Genève\r\nZürich HB\rBâle\n\nSion",
+                "\n\r\n\r",
+                "a\r\r\nb\n\rc");
+        for (String content : contents) {
+            Path file = Files.createTempFile("strings", ".txt");
+            Files.writeString(file, content, StandardCharsets.ISO_8859_1);
+            List<String> expected = Files.readAllLines(file, StandardCharsets.ISO_8859_1);
+
+            assertEquals(expected, new MappedStringTable(bytes(content)));
+            assertEquals(expected, new MappedStringTable(bytes(content), 0));
+            assertEquals(expected, new MappedStringTable(bytes(content), 1));
+        }
+    }
+
+    @Test
+    void mappedStringTableCachesDecodedStrings() {
+        MappedStringTable table = new MappedStringTable(bytes("a\nb\nc\nd\n"), 4);
+        String first = table.get(2);
+        assertSame(first, table.get(2));
+
+        // Avec un cache d'une seule case, chaque chaîne remplace la précédente
+        MappedStringTable small = new MappedStringTable(bytes("a\nb\n"), 1);
+        String a = small.get(0);
+        assertEquals("b", small.get(1));
+        assertEquals(a, small.get(0));
+    }
+
+    @Test
+    void mappedStringTableChecksArguments() {
+        MappedStringTable table = new MappedStringTable(bytes("a\nb\n"));
+        assertEquals(2, table.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> table.get(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> table.get(2));
+        assertThrows(IllegalArgumentException.class,
+                () -> new MappedStringTable(bytes("a"), -1));
+    }
+}
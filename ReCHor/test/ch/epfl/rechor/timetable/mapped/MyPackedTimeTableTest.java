@@ -0,0 +1,188 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.Bits32_24_8;
+import ch.epfl.rechor.timetable.Connections;
+import ch.epfl.rechor.timetable.TimeTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MyPackedTimeTableTest {
+
+    static final LocalDate DATE = LocalDate.of(2025, 3, 18);
+
+    public static Path createTimeTable() throws IOException {
+        Path directory = Files.createTempDirectory("timetable");
+        Files.writeString(directory.resolve(FileTimeTable.PATH_FILE),
+                "Lausanne\nRenens VD\n1\n2\nIC 1\nGenève\nLsne\n",
+                StandardCharsets.ISO_8859_1);
+
+        StructuredBufferWriter stations =
+                new StructuredBufferWriter(BufferedStations.STATION_STRUCTURE, 2);
+        stations.setU16(0, 0, 0);
+        stations.setS32(1, 0, 0x0A0B0C0D);
+        stations.setS32(2, 0, 0x01020304);
+        stations.setU16(0, 1, 1);
+        stations.writeTo(directory.resolve(FileTimeTable.PATH_STATIONS));
+
+        StructuredBufferWriter aliases =
+                new StructuredBufferWriter(BufferedStationAliases.ALIAS_STRUCTURE, 1);
+        aliases.setU16(0, 0, 6);
+        aliases.writeTo(directory.resolve(FileTimeTable.PATH_ALIASES));
+
+        StructuredBufferWriter platforms =
+                new StructuredBufferWriter(BufferedPlatforms.PLATFORM_STRUCTURE, 2);
+        platforms.setU16(0, 0, 2);
+        platforms.setU16(0, 1, 3);
+        platforms.setU16(1, 1, 1);
+        platforms.writeTo(directory.resolve(FileTimeTable.PATH_PLATFORMS));
+
+        StructuredBufferWriter routes =
+                new StructuredBufferWriter(BufferedRoutes.ROUTE_STRUCTURE, 1);
+        routes.setU16(0, 0, 4);
+        routes.setU8(1, 0, 2);
+        routes.writeTo(directory.resolve(FileTimeTable.PATH_ROUTES));
+
+        StructuredBufferWriter transfers =
+                new StructuredBufferWriter(BufferedTransfers.TRANSFER_STRUCTURE, 1);
+        transfers.setU8(BufferedTransfers.TRANSFER_MINUTES, 0, 5);
+        transfers.writeTo(directory.resolve(FileTimeTable.PATH_TRANSFERS));
+
+        Path day = Files.createDirectory(directory.resolve(DATE.toString()));
+        StructuredBufferWriter trips = new StructuredBufferWriter(BufferedTrips.TRIP_STRUCTURE, 1);
+        trips.setU16(1, 0, 5);
+        trips.writeTo(day.resolve(FileTimeTable.PATH_TRIPS));
+
+        StructuredBufferWriter connections =
+                new StructuredBufferWriter(BufferedConnections.CONNECTION_STRUCTURE, 1);
+        connections.setU16(BufferedConnections.DEP_STOP_ID, 0, 0);
+        connections.setU16(BufferedConnections.DEP_MINUTES, 0, 480);
+        connections.setU16(BufferedConnections.ARR_STOP_ID, 0, 1);
+        connections.setU16(BufferedConnections.ARR_MINUTES, 0, 485);
+        connections.setS32(BufferedConnections.TRIP_POS_ID, 0, Bits32_24_8.pack(0, 0));
+        connections.writeTo(day.resolve(FileTimeTable.PATH_CONNECTIONS));
+        new StructuredBufferWriter(BufferedConnections.SUCC_STRUCTURE, 1)
+                .writeTo(day.resolve(FileTimeTable.PATH_CONNECTIONS_SUC));
+        return directory;
+    }
+
+    private static void assertSameTimeTable(TimeTable expected, TimeTable actual) {
+        assertEquals(expected.stations().size(), actual.stations().size());
+        for (int i = 0; i < expected.stations().size(); i++) {
+            assertEquals(expected.stations().name(i), actual.stations().name(i));
+            assertEquals(expected.stations().longitude(i), actual.stations().longitude(i));
+            assertEquals(expected.stations().latitude(i), actual.stations().latitude(i));
+        }
+        assertEquals(expected.stationAliases().alias(0), actual.stationAliases().alias(0));
+        assertEquals(expected.platforms().name(1), actual.platforms().name(1));
+        assertEquals(expected.platforms().stationId(1), actual.platforms().stationId(1));
+        assertEquals(expected.routes().vehicle(0), actual.routes().vehicle(0));
+        assertEquals(expected.transfers().minutes(0), actual.transfers().minutes(0));
+        assertEquals(expected.tripsFor(DATE).destination(0), actual.tripsFor(DATE).destination(0));
+
+        Connections expectedConnections = expected.connectionsFor(DATE);
+        Connections actualConnections = actual.connectionsFor(DATE);
+        assertEquals(expectedConnections.size(), actualConnections.size());
+        assertEquals(expectedConnections.depMins(0), actualConnections.depMins(0));
+        assertEquals(expectedConnections.arrStopId(0), actualConnections.arrStopId(0));
+        assertEquals(expectedConnections.arrMins(0), actualConnections.arrMins(0));
+    }
+
+    @Test
+    void packedTimeTableMatchesDirectory() throws IOException {
+        Path directory = createTimeTable();
+        Path container = Files.createTempFile("timetable", ".rch");
+        TimeTablePacker.pack(directory, container);
+
+        PackedTimeTable packed = PackedTimeTable.in(container);
+        assertEquals(List.of(DATE), packed.dates());
+        assertEquals(0, Files.size(container) % PackedTimeTable.ALIGNMENT);
+        assertSameTimeTable(FileTimeTable.in(directory), packed);
+    }
+
+    @Test
+    void packedTimeTableReadsV2Sections() throws IOException {
+        Path directory = createTimeTable();
+        Path v2 = Files.createTempDirectory("timetable-v2");
+        TimeTableConverter.convert(directory, v2, ByteOrder.LITTLE_ENDIAN);
+        Path container = Files.createTempFile("timetable", ".rch");
+        TimeTablePacker.pack(v2, container);
+
+        assertSameTimeTable(FileTimeTable.in(directory), PackedTimeTable.in(container));
+    }
+
+    @Test
+    void packedTimeTableRejectsMissingDateAndInvalidFiles() throws IOException {
+        Path container = Files.createTempFile("timetable", ".rch");
+        TimeTablePacker.pack(createTimeTable(), container);
+        PackedTimeTable packed = PackedTimeTable.in(container);
+        assertThrows(UncheckedIOException.class,
+                () -> packed.connectionsFor(DATE.plusDays(1)));
+
+        Path notContainer = Files.createTempFile("timetable", ".rch");
+        Files.write(notContainer, new byte[16]);
+        assertThrows(IOException.class, () -> PackedTimeTable.in(notContainer));
+    }
+
+    @Test
+    void verifyDetectsCorruptedSection() throws IOException {
+        Path container = Files.createTempFile("timetable", ".rch");
+        TimeTablePacker.pack(createTimeTable(), container);
+        PackedTimeTable.in(container).verify();
+
+        byte[] bytes = Files.readAllBytes(container);
+        // Position de la première section, indiquée par la première entrée de la table
+        int firstSectionOffset = (int) ByteBuffer.wrap(bytes)
+                .getLong(PackedTimeTable.HEADER_SIZE + PackedTimeTable.OFFSET_OFFSET);
+        bytes[firstSectionOffset] ^= 1;
+        Files.write(container, bytes);
+        assertThrows(IOException.class, () -> PackedTimeTable.in(container).verify());
+    }
+
+    @Test
+    void packedTimeTableRejectsSectionsOutsideTheFile() throws IOException {
+        Path container = Files.createTempFile("timetable", ".rch");
+        TimeTablePacker.pack(createTimeTable(), container);
+        byte[] bytes = Files.readAllBytes(container);
+        int entry = PackedTimeTable.HEADER_SIZE;
+        long offset = ByteBuffer.wrap(bytes).getLong(entry + PackedTimeTable.OFFSET_OFFSET);
+        long length = ByteBuffer.wrap(bytes).getLong(entry + PackedTimeTable.LENGTH_OFFSET);
+
+        // Position négative, section dépassant la fin du fichier, longueur négative ou trop
+        // grande pour un ByteBuffer, et somme débordant d'un long
+        long[][] invalid = {
+                {-8, length},
+                {offset, bytes.length - offset + 1},
+                {bytes.length, 1},
+                {offset, -1},
+                {0, Integer.MAX_VALUE + 1L},
+                {Long.MAX_VALUE, length},
+                {offset, Long.MAX_VALUE},
+        };
+        for (long[] section : invalid) {
+            byte[] corrupted = bytes.clone();
+            ByteBuffer.wrap(corrupted)
+                    .putLong(entry + PackedTimeTable.OFFSET_OFFSET, section[0])
+                    .putLong(entry + PackedTimeTable.LENGTH_OFFSET, section[1]);
+            Files.write(container, corrupted);
+            assertThrows(IOException.class, () -> PackedTimeTable.in(container));
+        }
+
+        // Une section vide à la fin du fichier reste valide
+        ByteBuffer.wrap(bytes).putLong(entry + PackedTimeTable.OFFSET_OFFSET, bytes.length)
+                .putLong(entry + PackedTimeTable.LENGTH_OFFSET, 0);
+        Files.write(container, bytes);
+        PackedTimeTable.in(container);
+    }
+}
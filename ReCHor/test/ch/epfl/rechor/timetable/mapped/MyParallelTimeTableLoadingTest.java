@@ -0,0 +1,65 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.PhaseTimer;
+import ch.epfl.rechor.timetable.TimeTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static ch.epfl.rechor.timetable.mapped.MyPackedTimeTableTest.DATE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MyParallelTimeTableLoadingTest {
+
+    @Test
+    void parallelLoadingMatchesSequentialLoading() throws IOException {
+        Path directory = MyPackedTimeTableTest.createTimeTable();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            PhaseTimer timer = new PhaseTimer();
+            TimeTable parallel = FileTimeTable.in(directory, executor, timer);
+            TimeTable sequential = FileTimeTable.in(directory);
+
+            assertEquals(sequential.stations().name(1), parallel.stations().name(1));
+            assertEquals(sequential.stationAliases().alias(0), parallel.stationAliases().alias(0));
+            assertEquals(sequential.platforms().name(1), parallel.platforms().name(1));
+            assertEquals(sequential.routes().name(0), parallel.routes().name(0));
+            assertEquals(sequential.transfers().arrivingAt(0), parallel.transfers().arrivingAt(0));
+
+            Set<String> phases = timer.timings().stream()
+                    .map(PhaseTimer.Timing::name)
+                    .collect(Collectors.toSet());
+            assertEquals(Set.of(FileTimeTable.PATH_FILE, FileTimeTable.PATH_STATIONS,
+                    FileTimeTable.PATH_ALIASES, FileTimeTable.PATH_PLATFORMS,
+                    FileTimeTable.PATH_ROUTES, FileTimeTable.PATH_TRANSFERS), phases);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void parallelLoadingReportsMissingFiles() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Path missing = Path.of("does-not-exist");
+            assertThrows(IOException.class,
+                    () -> FileTimeTable.in(missing, executor, new PhaseTimer()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void prefaultLoadsDayFilesAndIgnoresMissingOnes() throws IOException {
+        Path directory = MyPackedTimeTableTest.createTimeTable();
+        FileTimeTable.prefault(directory, DATE);
+        FileTimeTable.prefault(directory, DATE.plusDays(1));
+        assertEquals(1, FileTimeTable.in(directory).connectionsFor(DATE).size());
+    }
+}
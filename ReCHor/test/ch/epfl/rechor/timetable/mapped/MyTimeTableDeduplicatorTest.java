@@ -0,0 +1,110 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.timetable.CachedTimeTable;
+import ch.epfl.rechor.timetable.Connections;
+import ch.epfl.rechor.timetable.TimeTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static ch.epfl.rechor.timetable.mapped.MyPackedTimeTableTest.DATE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyTimeTableDeduplicatorTest {
+
+    private static final LocalDate NEXT_DATE = DATE.plusDays(1);
+
+    // Crée un horaire dont les deux jours ont des fichiers identiques
+    private static Path createTimeTable() throws IOException {
+        Path directory = MyPackedTimeTableTest.createTimeTable();
+        Path day = directory.resolve(DATE.toString());
+        Path nextDay = Files.createDirectory(directory.resolve(NEXT_DATE.toString()));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(day)) {
+            for (Path file : files) {
+                Files.copy(file, nextDay.resolve(file.getFileName()));
+            }
+        }
+        return directory;
+    }
+
+    private static List<Path> files(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+
+    @Test
+    void deduplicationStoresIdenticalFilesOnce() throws IOException {
+        Path directory = createTimeTable();
+        int dayFiles = files(directory.resolve(DATE.toString())).size();
+        long daySize = 0;
+        for (Path file : files(directory.resolve(DATE.toString()))) {
+            daySize += Files.size(file);
+        }
+
+        assertEquals(daySize, TimeTableDeduplicator.deduplicate(directory));
+        assertEquals(dayFiles, files(directory.resolve(TimeTableDeduplicator.BLOB_DIRECTORY)).size());
+        for (LocalDate date : List.of(DATE, NEXT_DATE)) {
+            assertEquals(List.of(directory.resolve(date.toString())
+                            .resolve(TimeTableDeduplicator.MANIFEST)),
+                    files(directory.resolve(date.toString())));
+        }
+        assertEquals(List.of(DATE, NEXT_DATE), FileTimeTable.dates(directory));
+
+        // Une seconde déduplication ne change rien
+        assertEquals(0, TimeTableDeduplicator.deduplicate(directory));
+    }
+
+    @Test
+    void fileTimeTableReadsDeduplicatedDirectory() throws IOException {
+        Path directory = createTimeTable();
+        Connections expected = FileTimeTable.in(directory).connectionsFor(DATE);
+        TimeTableDeduplicator.deduplicate(directory);
+
+        TimeTable timeTable = FileTimeTable.in(directory);
+        for (LocalDate date : List.of(DATE, NEXT_DATE)) {
+            Connections actual = timeTable.connectionsFor(date);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.depMins(i), actual.depMins(i));
+                assertEquals(expected.arrStopId(i), actual.arrStopId(i));
+                assertEquals(expected.nextConnectionId(i), actual.nextConnectionId(i));
+            }
+            assertEquals(1, timeTable.tripsFor(date).size());
+        }
+    }
+
+    @Test
+    void identicalDaysShareTheirKeyAndCachedData() throws IOException {
+        Path directory = createTimeTable();
+        TimeTable before = FileTimeTable.in(directory);
+        assertNotEquals(before.dayKey(DATE), before.dayKey(NEXT_DATE));
+
+        TimeTableDeduplicator.deduplicate(directory);
+        TimeTable timeTable = new CachedTimeTable(FileTimeTable.in(directory));
+        assertEquals(timeTable.dayKey(DATE), timeTable.dayKey(NEXT_DATE));
+        assertSame(timeTable.connectionsFor(DATE), timeTable.connectionsFor(NEXT_DATE));
+        assertSame(timeTable.tripsFor(DATE), timeTable.tripsFor(NEXT_DATE));
+    }
+
+    @Test
+    void localFileTakesPrecedenceOverManifest() throws IOException {
+        Path directory = createTimeTable();
+        TimeTableDeduplicator.deduplicate(directory);
+        Path nextDay = directory.resolve(NEXT_DATE.toString());
+        ConnectionsCompressor.compress(directory, 2, false);
+
+        assertTrue(Files.exists(nextDay.resolve(FileTimeTable.PATH_COMPRESSED_CONNECTIONS)));
+        TimeTable timeTable = FileTimeTable.in(directory);
+        assertEquals(NEXT_DATE, timeTable.dayKey(NEXT_DATE));
+        assertTrue(timeTable.connectionsFor(NEXT_DATE) instanceof CompressedConnections);
+    }
+}
@@ -0,0 +1,67 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.journey.Router;
+import ch.epfl.rechor.timetable.Connections;
+import ch.epfl.rechor.timetable.TimeTable;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+
+/**
+ * Compare le temps de parcours de toutes les liaisons d'un jour, puis celui du calcul de
+ * quelques profils, sur l'horaire au format d'origine et sur sa conversion au format v2.
+ */
+public class MyTimeTableFormatBenchmark {
+    private static final int RUNS = 10;
+    private static final int PROFILES = 5;
+
+    private static long scan(Connections connections) {
+        long sum = 0;
+        for (int i = 0; i < connections.size(); i++) {
+            sum += connections.depMins(i) + connections.arrMins(i) + connections.tripId(i)
+                    + connections.nextConnectionId(i);
+        }
+        return sum;
+    }
+
+    private static void measure(String name, TimeTable timeTable, LocalDate date) {
+        Connections connections = timeTable.connectionsFor(date);
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            sum += scan(connections);
+        }
+        double scanMs = (System.nanoTime() - start) / 1e6 / RUNS;
+
+        Router router = new Router(timeTable);
+        start = System.nanoTime();
+        for (int i = 0; i < PROFILES; i++) {
+            router.profile(date, i * 1000);
+        }
+        double profileMs = (System.nanoTime() - start) / 1e6 / PROFILES;
+        System.out.printf("%s : parcours %.1f ms, profil %.1f ms (%d)%n",
+                name, scanMs, profileMs, sum);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path v1 = Path.of("timetable");
+        Path v2 = Files.createTempDirectory("timetable-v2");
+        LocalDate date = LocalDate.of(2025, Month.APRIL, 1);
+
+        long start = System.nanoTime();
+        TimeTableConverter.convert(v1, v2, ByteOrder.nativeOrder());
+        System.out.printf("Conversion : %.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+        TimeTable timeTableV1 = FileTimeTable.in(v1);
+        TimeTable timeTableV2 = FileTimeTable.in(v2);
+        // Deux tours, le premier servant d'échauffement
+        for (int i = 0; i < 2; i++) {
+            measure("v1", timeTableV1, date);
+            measure("v2", timeTableV2, date);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import ch.epfl.rechor.Bits32_24_8;
+import ch.epfl.rechor.PackedRange;
+import ch.epfl.rechor.journey.Journey;
+import ch.epfl.rechor.journey.JourneyExtractor;
+import ch.epfl.rechor.journey.Router;
+import ch.epfl.rechor.timetable.Connections;
+import ch.epfl.rechor.timetable.StationGrid;
+import ch.epfl.rechor.timetable.Stations;
+import ch.epfl.rechor.timetable.TimeTable;
+import ch.epfl.rechor.timetable.Transfers;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static ch.epfl.rechor.timetable.mapped.MyPackedTimeTableTest.DATE;
+import static ch.epfl.rechor.timetable.mapped.Structure.FieldType.*;
+import static ch.epfl.rechor.timetable.mapped.Structure.field;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MyTimeTablePreprocessorTest {
+
+    @Test
+    void structuredBufferWriterRoundTrips() {
+        Structure structure = new Structure(field(0, U16), field(1, U8), field(2, S32));
+        StructuredBufferWriter writer = new StructuredBufferWriter(structure, 2);
+        writer.setU16(0, 0, 0xFFFF);
+        writer.setU8(1, 0, 0xAB);
+        writer.setS32(2, 0, -5);
+        writer.setU16(0, 1, 1234);
+        writer.setS32(2, 1, Integer.MAX_VALUE);
+
+        StructuredBuffer buffer = new StructuredBuffer(structure, writer.buffer());
+        assertEquals(2, buffer.size());
+        assertEquals(0xFFFF, buffer.getU16(0, 0));
+        assertEquals(0xAB, buffer.getU8(1, 0));
+        assertEquals(-5, buffer.getS32(2, 0));
+        assertEquals(1234, buffer.getU16(0, 1));
+        assertEquals(0, buffer.getU8(1, 1));
+        assertEquals(Integer.MAX_VALUE, buffer.getS32(2, 1));
+    }
+
+    @Test
+    void structuredBufferWriterRejectsOutOfRangeValues() {
+        Structure structure = new Structure(field(0, U16), field(1, U8));
+        StructuredBufferWriter writer = new StructuredBufferWriter(structure, 1);
+        assertThrows(IllegalArgumentException.class, () -> writer.setU16(0, 0, 0x10000));
+        assertThrows(IllegalArgumentException.class, () -> writer.setU8(1, 0, -1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new StructuredBufferWriter(structure, -1));
+    }
+
+    @Test
+    void bufferedConnectionsUsesLastArrivalSummary() {
+        StructuredBufferWriter connections =
+                new StructuredBufferWriter(BufferedConnections.CONNECTION_STRUCTURE, 1);
+        connections.setU16(BufferedConnections.DEP_STOP_ID, 0, 0);
+        connections.setU16(BufferedConnections.DEP_MINUTES, 0, 480);
+        connections.setU16(BufferedConnections.ARR_STOP_ID, 0, 1);
+        connections.setU16(BufferedConnections.ARR_MINUTES, 0, 490);
+        connections.setS32(BufferedConnections.TRIP_POS_ID, 0, Bits32_24_8.pack(0, 0));
+        ByteBuffer succ = ByteBuffer.allocate(Integer.BYTES);
+
+        StructuredBufferWriter lastArrivals =
+                new StructuredBufferWriter(BufferedConnections.LAST_ARRIVAL_STRUCTURE, 2);
+        lastArrivals.setU16(BufferedConnections.LAST_ARR_MINUTES, 0,
+                BufferedConnections.NO_ARRIVAL);
+        lastArrivals.setU16(BufferedConnections.LAST_ARR_MINUTES, 1, 490);
+
+        BufferedConnections withSummary =
+                new BufferedConnections(connections.buffer(), succ, lastArrivals.buffer());
+        assertEquals(-1, withSummary.lastArrMinsAt(0));
+        assertEquals(490, withSummary.lastArrMinsAt(1));
+
+        BufferedConnections withoutSummary = new BufferedConnections(connections.buffer(), succ);
+        assertEquals(Integer.MAX_VALUE, withoutSummary.lastArrMinsAt(1));
+        assertEquals(490, withoutSummary.arrMins(0));
+    }
+
+    @Test
+    void walkingTransfersAreAddedBetweenCloseStations() throws IOException {
+        Path source = Files.createTempDirectory("timetable");
+        GtfsImporter.importFeed(MyGtfsImporterTest.createFeed(), source, DATE, DATE,
+                Runnable::run);
+        Path destination = Files.createTempDirectory("preprocessed");
+        // Lausanne – Renens VD : environ 4,5 km ; Morges est à plus de 5 km des deux autres
+        TimeTablePreprocessor.preprocess(source, destination, false, 5_000);
+        TimeTable timeTable = FileTimeTable.in(destination);
+        Stations stations = timeTable.stations();
+        Transfers transfers = timeTable.transfers();
+
+        // Les changements existants sont conservés, dont celui de Lausanne vers Renens VD
+        assertEquals(5, transfers.minutesBetween(0, 1));
+        assertEquals(4, transfers.minutesBetween(1, 1));
+        assertEquals(GtfsImporter.DEFAULT_TRANSFER_MINUTES, transfers.minutesBetween(0, 0));
+        double distance = StationGrid.distance(stations.longitude(0), stations.latitude(0),
+                stations.longitude(1), stations.latitude(1));
+        assertEquals((int) Math.ceil(distance / TimeTablePreprocessor.WALKING_SPEED / 60),
+                transfers.minutesBetween(1, 0));
+        assertThrows(Exception.class, () -> transfers.minutesBetween(2, 0));
+        assertThrows(Exception.class, () -> transfers.minutesBetween(1, 2));
+        // Les changements restent triés par gare d'arrivée, puis par gare de départ
+        int end = 0;
+        for (int stationId = 0; stationId < stations.size(); stationId++) {
+            int range = transfers.arrivingAt(stationId);
+            assertEquals(end, PackedRange.startInclusive(range));
+            end = PackedRange.endExclusive(range);
+            for (int i = PackedRange.startInclusive(range) + 1; i < end; i++) {
+                assertTrue(transfers.depStationId(i - 1) < transfers.depStationId(i));
+            }
+        }
+        assertEquals(transfers.size(), end);
+
+        // Avec la fermeture transitive, les changements à pied sont pris en compte
+        TimeTablePreprocessor.preprocess(source, destination, true, 5_000);
+        Transfers closed = FileTimeTable.in(destination).transfers();
+        assertEquals(transfers.size(), closed.size());
+        assertEquals(transfers.minutesBetween(1, 0), closed.minutesBetween(1, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> TimeTablePreprocessor.preprocess(source, destination, false, -1));
+    }
+
+    @Test
+    void zeroMinuteHopsOfATripStayInDescendingPosition() throws IOException {
+        Path gtfs = MyGtfsImporterTest.createFeed();
+        // Course dont les liaisons partent et arrivent toutes à 8h00 ; trier par gare d'arrivée
+        // avant la position placerait la première liaison (vers Renens VD) avant la deuxième
+        Files.writeString(gtfs.resolve("stop_times.txt"), """
+                trip_id,arrival_time,departure_time,stop_id,stop_sequence
+                T1,08:00:00,08:00:00,A1,1
+                T1,08:00:15,08:00:20,B,2
+                T1,08:00:35,08:00:40,C,3
+                T1,08:00:50,08:00:55,B,4
+                """);
+        Path source = Files.createTempDirectory("timetable");
+        GtfsImporter.importFeed(gtfs, source, DATE, DATE, Runnable::run);
+        Path destination = Files.createTempDirectory("preprocessed");
+        TimeTablePreprocessor.preprocess(source, destination, false, 0);
+        TimeTable timeTable = FileTimeTable.in(destination);
+
+        Connections connections = timeTable.connectionsFor(DATE);
+        assertEquals(3, connections.size());
+        for (int id = 0; id < connections.size(); id++) {
+            assertEquals(connections.size() - 1 - id, connections.tripPos(id));
+        }
+
+        // Depuis Lausanne, Morges est atteinte par le trajet direct
+        List<Journey> journeys = JourneyExtractor.journeys(
+                new Router(timeTable).profile(DATE, 2), 0);
+        assertEquals(1, journeys.size());
+        assertEquals(1, journeys.getFirst().legs().stream()
+                .filter(l -> l instanceof Journey.Leg.Transport)
+                .count());
+        assertEquals(DATE.atTime(8, 0), journeys.getFirst().arrTime());
+    }
+}
@@ -0,0 +1,103 @@
+package ch.epfl.rechor.timetable.mapped;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static ch.epfl.rechor.timetable.mapped.Structure.FieldType.*;
+import static ch.epfl.rechor.timetable.mapped.Structure.field;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MyVarHandleStructuredBufferTest {
+
+    private static final Structure STRUCTURE = new Structure(
+            field(0, U16),
+            field(1, U8),
+            field(2, S32),
+            field(3, U16)
+    );
+
+    private static ByteBuffer randomBuffer(int elementCount) {
+        byte[] bytes = new byte[elementCount * STRUCTURE.totalSize()];
+        new Random(2025).nextBytes(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    @Test
+    void varHandleBufferMatchesStructuredBuffer() {
+        ByteBuffer buffer = randomBuffer(100);
+        StructuredBuffer expected = new StructuredBuffer(STRUCTURE, buffer);
+        VarHandleStructuredBuffer actual = new VarHandleStructuredBuffer(STRUCTURE, buffer);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getU16(0, i), actual.getU16(0, i));
+            assertEquals(expected.getU8(1, i), actual.getU8(1, i));
+            assertEquals(expected.getS32(2, i), actual.getS32(2, i));
+            assertEquals(expected.getU16(3, i), actual.getU16(3, i));
+        }
+    }
+
+    @Test
+    void columnsMatchIndividualAccesses() {
+        ByteBuffer buffer = randomBuffer(37);
+        StructuredBuffer reference = new StructuredBuffer(STRUCTURE, buffer);
+        VarHandleStructuredBuffer fast = new VarHandleStructuredBuffer(STRUCTURE, buffer);
+
+        for (int field = 0; field < STRUCTURE.fieldCount(); field++) {
+            int[] expected = new int[reference.size()];
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = reference.get(field, i);
+            }
+            assertArrayEquals(expected, reference.column(field));
+            assertArrayEquals(expected, fast.column(field));
+            assertArrayEquals(expected, fast.columnStream(field).toArray());
+            assertArrayEquals(expected, reference.columnStream(field).toArray());
+        }
+    }
+
+    @Test
+    void varHandleBufferIgnoresBufferByteOrder() {
+        ByteBuffer buffer = ByteBuffer.allocate(6);
+        buffer.putShort(0, (short) 0x1234).putInt(2, 0xCAFEBABE);
+        buffer.order(java.nio.ByteOrder.LITTLE_ENDIAN);
+
+        Structure structure = new Structure(field(0, U16), field(1, S32));
+        VarHandleStructuredBuffer fast = new VarHandleStructuredBuffer(structure, buffer);
+        assertEquals(0x1234, fast.getU16(0, 0));
+        assertEquals(0xCAFEBABE, fast.getS32(1, 0));
+    }
+
+    @Test
+    void varHandleBufferThrowsOnInvalidIndexOrSize() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new VarHandleStructuredBuffer(STRUCTURE, ByteBuffer.allocate(10)));
+
+        VarHandleStructuredBuffer fast = new VarHandleStructuredBuffer(STRUCTURE, randomBuffer(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> fast.getU8(1, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> fast.getS32(2, -1));
+        assertThrows(IndexOutOfBoundsException.class, () -> fast.getU16(4, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> fast.column(4));
+    }
+
+    @Test
+    void ofSelectsImplementationFromSystemProperty() {
+        ByteBuffer buffer = randomBuffer(1);
+        String previous = System.getProperty(StructuredData.IMPLEMENTATION_PROPERTY);
+        try {
+            System.setProperty(StructuredData.IMPLEMENTATION_PROPERTY,
+                    StructuredData.BYTE_BUFFER_IMPLEMENTATION);
+            assertEquals(StructuredBuffer.class, StructuredData.of(STRUCTURE, buffer).getClass());
+            System.clearProperty(StructuredData.IMPLEMENTATION_PROPERTY);
+            assertEquals(VarHandleStructuredBuffer.class,
+                    StructuredData.of(STRUCTURE, buffer).getClass());
+        } finally {
+            if (previous != null) {
+                System.setProperty(StructuredData.IMPLEMENTATION_PROPERTY, previous);
+            }
+        }
+    }
+}